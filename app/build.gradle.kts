@@ -48,8 +48,11 @@ dependencies {
     implementation(libs.constraintlayout)
     implementation(libs.activity)
     implementation(files("./libs/signalquest-release.aar"))
+    implementation(project(":core"))
     testImplementation(libs.junit)
+    testImplementation(testFixtures(project(":core")))
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(testFixtures(project(":core")))
 
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.signalquest.example;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load harness: drives the real {@link Ntrip} client, in relay mode, against a {@link LocalCaster}
+ * on the device, stepping the stream's rate and burst size, to find where the client falls behind.
+ * <p>
+ * For each step it logs sustained throughput, socket-read-to-queued latency from the
+ * {@link LatencyTracer}, process CPU time per megabyte (the caster's share included, so an upper
+ * bound for the client's), and the epochs the caster sent late because the client's socket had
+ * backed up. Read the results with {@code adb logcat -s NtripLoad}.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class NtripLoadTest {
+    private static final String LOG_TAG = "NtripLoad";
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "pass";
+    private static final long STEP_MILLISECONDS = 10 * 1000;
+    private static final int[] RATES_HZ = {1, 5, 10, 20};
+    private static final int[] BURST_EPOCHS = {1, 4, 16};
+
+    private static final class Step {
+        final String mix;
+        final int rateHz;
+        final int burstEpochs;
+        double megabytesPerSecond;
+        double cpuMillisPerMegabyte;
+        long[] latency;
+        long lateEpochs;
+
+        Step(String mix, int rateHz, int burstEpochs) {
+            this.mix = mix;
+            this.rateHz = rateHz;
+            this.burstEpochs = burstEpochs;
+        }
+
+        boolean keptUp() {
+            return lateEpochs == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %2dHz x%-2d %7.3f MB/s %6.1f CPU ms/MB read-to-queued p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms late=%d%s",
+                    mix, rateHz, burstEpochs, megabytesPerSecond, cpuMillisPerMegabyte,
+                    latency[0] / 1000.0, latency[1] / 1000.0, latency[2] / 1000.0, latency[3] / 1000.0,
+                    lateEpochs, keptUp() ? "" : " BEHIND");
+        }
+    }
+
+    @Test
+    public void findsWhereTheClientFallsBehind() throws Exception {
+        Step baseline = null;
+        try (LocalCaster caster = new LocalCaster(USERNAME, PASSWORD)) {
+            for (String mix : new String[]{"MSM4", "MSM7"}) {
+                for (int rateHz : RATES_HZ) {
+                    for (int burstEpochs : BURST_EPOCHS) {
+                        Step step = run(caster, mix, rateHz, burstEpochs);
+                        Log.i(LOG_TAG, step.toString());
+                        if (baseline == null) {
+                            baseline = step;
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue("1Hz MSM4 should never fall behind: " + baseline, baseline.keptUp());
+    }
+
+    private Step run(LocalCaster caster, String mix, int rateHz, int burstEpochs) throws InterruptedException {
+        Step step = new Step(mix, rateHz, burstEpochs);
+        String mountpoint = mix + "_" + rateHz + "_" + burstEpochs;
+        caster.mount(mountpoint, mix.equals("MSM4") ? SyntheticRtcm.msm4Base() : SyntheticRtcm.msm7Base(), rateHz, burstEpochs);
+        Ntrip.NtripService service = new Ntrip.NtripService("127.0.0.1", caster.getPort(), USERNAME, PASSWORD, mountpoint, false);
+        service.autoReconnect = false;
+        App.ntrip.connect(service);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (App.ntrip.getState() != Ntrip.State.ACTIVE && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Ntrip.State.ACTIVE, App.ntrip.getState());
+
+        App.tracer.clear();
+        long bytes = caster.getBytesSent();
+        long late = caster.getLateEpochs();
+        long cpuMillis = Process.getElapsedCpuTime();
+        long start = System.nanoTime();
+        Thread.sleep(STEP_MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double megabytes = (caster.getBytesSent() - bytes) / 1e6;
+        step.cpuMillisPerMegabyte = (Process.getElapsedCpuTime() - cpuMillis) / megabytes;
+        step.lateEpochs = caster.getLateEpochs() - late;
+        step.latency = App.tracer.summary(LatencyTracer.Hop.SOCKET_TO_PARSED);
+        step.megabytesPerSecond = megabytes / seconds;
+        App.ntrip.disconnect();
+        return step;
+    }
+}
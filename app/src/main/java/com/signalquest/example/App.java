@@ -3,23 +3,71 @@ package com.signalquest.example;
 import android.annotation.SuppressLint;
 import android.app.Application;
 import android.content.Context;
-import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.signalquest.api.Location;
+import com.signalquest.api.Status;
+
+import java.io.File;
+import java.io.IOException;
+
 /***
  * Sets up relationships between different components, makes the ApplicationContext available,
- * and supplies an error broadcaster.
+ * and supplies the app's {@link EventStream}s, the {@link FlightRecorder} and the {@link LatencyTracer}.
  */
 public class App extends Application {
+    /**
+     * Connection changes, published on {@link #connections}.
+     */
+    enum Connection {
+        SITEPOINT_CONNECTED,
+        SITEPOINT_DISCONNECTED,
+        NTRIP_DISCONNECTED,
+    }
+
+    // in-process, in place of system broadcasts; see BroadcastExport for those
+    final static EventStream<Location> locations = new EventStream<>();
+    final static EventStream<Status> statuses = new EventStream<>();
+    final static EventStream<Connection> connections = new EventStream<>();
+    final static EventStream<String> errors = new EventStream<>();
+    // re-sends the streams as the old broadcasts, for listeners outside the app
+    final static boolean EXPORT_BROADCASTS = false;
+    private final static Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Delivers a subscriber's events on the UI thread.
+     */
+    final static EventStream.Dispatcher MAIN_THREAD = (task, delayMillis) -> mainHandler.postDelayed(task, delayMillis);
+
+    // follows the primary SitePoint session's corrections and writes
+    final static LatencyTracer tracer = new LatencyTracer();
     final static Ntrip ntrip = new Ntrip();
     final static  BleManager bleManager = new BleManager();
-    public final static String ERROR_ACTION = "com.signalquest.example.ERROR_ACTION";
+    private final static String LOG_TAG = "App";
+    // enough for a minute or so of a busy MSM7 stream plus the Bluetooth traffic
+    final static FlightRecorder recorder = new FlightRecorder(1024 * 1024);
+    // avoids dumping the recorder for every error in a burst
+    private final static long ERROR_DUMP_INTERVAL_MILLISECONDS = 30 * 1000;
+    private static long lastErrorDump = 0;
+
+    /**
+     * Makes the primary SitePoint's position available to {@link NtripGga}, and publishes it.
+     */
+    public static void onSitePointLocation(Location location) {
+        NtripGga.setSitePointLocation(location);
+        locations.publish(location);
+    }
 
     /**
-     * Makes {@link Ntrip#next(int)} available to {@link BleManager}.
+     * Makes the primary SitePoint's solution mode and satellite count available to {@link NtripGga}, and its
+     * aiding quality to the {@link LatencyTracer}, and publishes it.
      */
-    public static byte[] getRtcmData(int maxLength) {
-        return ntrip.next(maxLength);
+    public static void onSitePointStatus(Status status) {
+        NtripGga.setSitePointStatus(status);
+        tracer.onAidingQuality(status.getAidingQuality());
+        statuses.publish(status);
     }
 
     /**
@@ -36,6 +84,16 @@ public class App extends Application {
     public void onCreate() {
         super.onCreate();
         App.context = getApplicationContext();
+        if (EXPORT_BROADCASTS) {
+            BroadcastExport.start();
+        }
+    }
+
+    @Override
+    public void onTerminate() {
+        // only ever called on emulators, but there the reactor thread shouldn't outlive the app
+        ntrip.close();
+        super.onTerminate();
     }
 
     public static Context getAppContext() {
@@ -47,13 +105,64 @@ public class App extends Application {
     }
 
     public static void displayError(String logTag, String error, Exception e) {
-        Intent intent = new Intent(App.ERROR_ACTION);
-        intent.putExtra("error", error);
-        context.sendBroadcast(intent);
+        errors.publish(error);
         if (e == null) {
             Log.e(logTag, error);
         } else {
             Log.e(logTag, error, e);
+            dumpFlightRecorderForError();
+        }
+    }
+
+    /**
+     * Dumps the {@link FlightRecorder} to a timestamped file in the app's external files directory
+     * (falling back to internal), for pulling with adb.
+     *
+     * @return the dump file, or null if writing failed.
+     */
+    public static File dumpFlightRecorder() {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        File file = new File(dir, "flight-recorder-" + System.currentTimeMillis() + ".bin");
+        try {
+            recorder.dump(file);
+            Log.i(LOG_TAG, "Flight recorder dumped to " + file);
+            return file;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Flight recorder dump failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Exports the {@link LatencyTracer}'s histograms as CSV, next to the flight recorder dumps.
+     *
+     * @return the export file, or null if writing failed.
+     */
+    public static File exportLatency() {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        File file = new File(dir, "latency-" + System.currentTimeMillis() + ".csv");
+        try {
+            tracer.export(file);
+            Log.i(LOG_TAG, "Latency exported to " + file);
+            return file;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Latency export failed", e);
+            return null;
+        }
+    }
+
+    private static synchronized void dumpFlightRecorderForError() {
+        long now = SystemClock.elapsedRealtime();
+        if (lastErrorDump != 0 && now - lastErrorDump < ERROR_DUMP_INTERVAL_MILLISECONDS) {
+            return;
         }
+        lastErrorDump = now;
+        dumpFlightRecorder();
     }
 }
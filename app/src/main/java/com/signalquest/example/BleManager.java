@@ -1,21 +1,10 @@
 package com.signalquest.example;
 
-import static android.bluetooth.BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
-import static com.signalquest.example.SitePoint.CCCD;
-import static com.signalquest.example.SitePoint.RTCM_CHARACTERISTIC;
 import static com.signalquest.example.SitePoint.SITEPOINT_SERVICE;
-import static com.signalquest.example.SitePoint.MESSAGE_CHARACTERISTIC;
 
 import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattDescriptor;
-import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.BluetoothProfile;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
 import android.bluetooth.le.ScanFilter;
@@ -23,46 +12,47 @@ import android.bluetooth.le.ScanRecord;
 import android.bluetooth.le.ScanResult;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
-import android.content.Intent;
-import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ParcelUuid;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
-
-import com.signalquest.api.Location;
-import com.signalquest.api.MessageHandler;
-import com.signalquest.api.ApiException;
-import com.signalquest.api.Status;
+import com.signalquest.api.ScanStatus;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interacts with Android's Bluetooth implementation.
  * <p>
- * Scans for SitePoints, connects to them, reads SitePoint messages and NTRIP data,
- * disconnects from SitePoints, and reports on some Bluetooth status.
+ * Scans for SitePoints, connects to them, each in a {@link SitePointSession} of its own, hands
+ * them NTRIP data, disconnects from SitePoints, and reports on some Bluetooth status.
  */
 @SuppressLint("MissingPermission")
 public class BleManager {
     private final static String LOG_TAG = "BleManager";
-    static final String BT_CONNECT_ACTION = "com.signalquest.example.BT_CONNECT_ACTION";
-    static final String BT_DISCONNECT_ACTION = "com.signalquest.example.BT_DISCONNECT_ACTION";
-    static final String LOCATION_MESSAGE_RECEIVED = "com.signalquest.example.LOCATION_MESSAGE_RECEIVED";
-    static final String STATUS_MESSAGE_RECEIVED = "com.signalquest.example.STATUS_MESSAGE_RECEIVED";
-    SitePoint sitePoint = null;
-    private BluetoothGatt gatt = null;
-    private BluetoothGattCharacteristic messageCharacteristic = null;
-    private BluetoothGattCharacteristic rtcmCharacteristic = null;
+    // by address, oldest first; guarded by this
+    private final Map<String, SitePointSession> sessions = new LinkedHashMap<>();
+    // a copy of the sessions, for going through them without locking or allocating
+    private volatile SitePointSession[] activeSessions = new SitePointSession[0];
     private BluetoothAdapter bluetoothAdapter = null;
     private BluetoothManager bluetoothManager = null;
     private BluetoothLeScanner bleScanner = null;
     private ScanCallback scanCallback = null;
-    private boolean writingRtcm = false;
+    // every match is reported, dozens a second per SitePoint, but their status rarely changes
+    private final AdvertisementCache<ScanStatus> scanStatuses = new AdvertisementCache<>(ScanStatus::new);
+    private static final long SCAN_TICK_MILLISECONDS = 1000;
+    private final ScanPolicy scanPolicy = new ScanPolicy();
+    private final Runnable scanTick = this::scanTick;
+    private List<ScanFilter> scanFilters = null;
+    private final Handler handler = new Handler(Looper.getMainLooper());
 
     /**
-     * Scans and creates SitePoints from scan results.
+     * Scans and creates SitePoints from scan results, stepping the scan setting down as the
+     * {@link ScanPolicy} decides, and back up for new SitePoints.
      *
      * @param sitePointHandler listens for SitePoint scan results
      */
@@ -70,27 +60,53 @@ public class BleManager {
         if (disabled()) {
             return;
         }
-        ScanSettings scanSettings =
-                new ScanSettings.Builder()
-                        .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
-                        .setMatchMode(ScanSettings.MATCH_MODE_AGGRESSIVE)
-                        .setCallbackType(ScanSettings.CALLBACK_TYPE_ALL_MATCHES)
-                        .build();
         ScanFilter scanFilter =
                 new ScanFilter.Builder()
                         .setServiceUuid(new ParcelUuid(SITEPOINT_SERVICE))
                         .build();
-        List<ScanFilter> filters = Collections.singletonList(scanFilter);
+        scanFilters = Collections.singletonList(scanFilter);
         assignBluetoothVariables();
+        // so a SitePoint is new to each scan
+        scanStatuses.clear();
         scanCallback = new ScanCallback() {
             @Override
             public void onScanResult(int callbackType, ScanResult result) {
+                scanned(1, handle(result) ? 1 : 0);
+            }
+
+            /**
+             * Results held by the controller, in {@link ScanPolicy.Mode#BATCHED}.
+             */
+            @Override
+            public void onBatchScanResults(List<ScanResult> results) {
+                int newSitePoints = 0;
+                for (ScanResult result : results) {
+                    if (handle(result)) {
+                        newSitePoints++;
+                    }
+                }
+                scanned(results.size(), newSitePoints);
+            }
+
+            /**
+             * @return the SitePoint is new to this scan.
+             */
+            private boolean handle(ScanResult result) {
                 final ScanRecord scanRecord = result.getScanRecord();
                 if (scanRecord == null) {
                     Log.w(LOG_TAG, "No scan record");
-                    return;
+                    return false;
+                }
+                byte[] manufacturerData = scanRecord.getManufacturerSpecificData(SitePoint.SIGNALQUEST_ID);
+                if (manufacturerData == null) {
+                    Log.w(LOG_TAG, "No SignalQuest manufacturer data");
+                    return false;
                 }
-                sitePointHandler.onScanResult(new SitePoint(result, scanRecord));
+                String address = result.getDevice().getAddress();
+                boolean isNew = !scanStatuses.contains(address);
+                ScanStatus scanStatus = scanStatuses.decode(address, manufacturerData);
+                sitePointHandler.onScanResult(new SitePoint(result, scanRecord, scanStatus));
+                return isNew;
             }
 
             @Override
@@ -98,108 +114,153 @@ public class BleManager {
                 Log.e(LOG_TAG, "Scan failed with error code " + errorCode);
             }
         };
-        bleScanner.startScan(filters, scanSettings, scanCallback);
+        scanPolicy.start();
+        bleScanner.startScan(scanFilters, scanSettings(scanPolicy.getMode()), scanCallback);
+        handler.removeCallbacks(scanTick);
+        handler.postDelayed(scanTick, SCAN_TICK_MILLISECONDS);
     }
 
     public void stopScanning() {
+        handler.removeCallbacks(scanTick);
+        scanPolicy.stop();
         bleScanner.stopScan(scanCallback);
+        Log.i(LOG_TAG, "Scan stopped\n" + scanPolicy.report());
+    }
+
+    private ScanSettings scanSettings(ScanPolicy.Mode mode) {
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setCallbackType(ScanSettings.CALLBACK_TYPE_ALL_MATCHES);
+        switch (mode) {
+            case BURST:
+                builder.setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                        .setMatchMode(ScanSettings.MATCH_MODE_AGGRESSIVE);
+                break;
+            case BALANCED:
+                builder.setScanMode(ScanSettings.SCAN_MODE_BALANCED)
+                        .setMatchMode(ScanSettings.MATCH_MODE_STICKY);
+                break;
+            case BATCHED:
+                builder.setScanMode(ScanSettings.SCAN_MODE_LOW_POWER)
+                        .setMatchMode(ScanSettings.MATCH_MODE_STICKY);
+                // otherwise the scan fails; low power alone still saves most of it
+                if (bluetoothAdapter.isOffloadedScanBatchingSupported()) {
+                    builder.setReportDelay(ScanPolicy.REPORT_DELAY_MILLISECONDS);
+                }
+                break;
+        }
+        return builder.build();
+    }
+
+    private void scanned(int results, int newSitePoints) {
+        if (scanPolicy.scanned(results, newSitePoints)) {
+            applyScanMode();
+        }
     }
 
     /**
-     * Connect GATT for the passed in SitePoint.
+     * Steps the {@link ScanPolicy} along with time, every {@link #SCAN_TICK_MILLISECONDS} while scanning.
      */
-    public void connect(SitePoint sitePoint) throws IllegalStateException {
-        this.sitePoint = sitePoint;
-        gatt = sitePoint.scanResult.getDevice().connectGatt(App.getAppContext(), false, gattCallback, BluetoothDevice.TRANSPORT_LE);
+    private void scanTick() {
+        if (scanPolicy.tick()) {
+            applyScanMode();
+        }
+        handler.postDelayed(scanTick, SCAN_TICK_MILLISECONDS);
     }
 
     /**
-     * Disconnect from the connected SitePoint.
-     * <p>
-     * Disconnects GATT, but closing GATT is handled in the {@link BluetoothGattCallback}
+     * Restarts the scan with the policy's mode; any batched results are delivered first.
      */
-    public void disconnect() {
-        if (sitePoint != null) {
-            if (gatt != null) {
-                try {
-                    Log.i(LOG_TAG, "Disconnecting");
-                    gatt.disconnect();
-                } catch (Exception e) {
-                    Log.e(LOG_TAG, "Disconnect exception", e);
-                    App.displayError(LOG_TAG, "Disconnecting failed.");
-                }
-            } else {
-                sitePoint = null;
-                messageCharacteristic = null;
-                rtcmCharacteristic = null;
+    private void applyScanMode() {
+        ScanPolicy.Mode mode = scanPolicy.getMode();
+        Log.i(LOG_TAG, "Scan to " + mode + " with " + scanStatuses.size() + " SitePoints");
+        App.recorder.event(FlightRecorder.SCAN_MODE, mode.ordinal(), scanStatuses.size());
+        bleScanner.flushPendingScanResults(scanCallback);
+        bleScanner.stopScan(scanCallback);
+        bleScanner.startScan(scanFilters, scanSettings(mode), scanCallback);
+    }
+
+    String getScanReport() {
+        return scanPolicy.report();
+    }
+
+    /**
+     * Connects the passed in SitePoint, alongside any already connected, in a {@link SitePointSession}
+     * of its own, reading the NTRIP corrections through its own cursor.
+     */
+    public void connect(SitePoint sitePoint) throws IllegalStateException {
+        SitePointSession session;
+        synchronized (this) {
+            if (sessions.containsKey(sitePoint.getAddress())) {
+                return;
             }
+            session = new SitePointSession(sitePoint, App.ntrip.getCorrections().newCursor(), sessionListener);
+            sessions.put(sitePoint.getAddress(), session);
+            sessionsChanged();
+        }
+        try {
+            session.connect();
+        } catch (IllegalStateException e) {
+            // stops its message reader too
+            session.close();
+            throw e;
         }
     }
 
     /**
-     * Turn on notifications for the passed-in characteristic.
+     * Disconnect from the passed in SitePoint, if connected.
      * <p>
-     * Failure to enable the notification is unexpected, so we cleanup by disconnecting.
+     * Disconnects GATT, but closing GATT is handled by its {@link SitePointSession}.
      */
-    private void enableNotifications(BluetoothGattCharacteristic characteristic) {
-        if (characteristic == null) {
-            Log.i(LOG_TAG, "enableNotifications, characteristic null");
-            return;
-        } else if ( (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0) {
-            Log.i(LOG_TAG,"enableNotifications, notify disabled");
-            return;
-        }
-        Log.d(LOG_TAG,"enableNotifications characteristic " + characteristic.getUuid());
-        boolean enabled = gatt.setCharacteristicNotification(characteristic, true);
-        if (!enabled) {
-            Log.w(LOG_TAG,"enableNotifications, setCharacteristicNotification failed");
-            disconnect();
-            return;
-        }
-        BluetoothGattDescriptor cccd = characteristic.getDescriptor(CCCD);
-        cccd.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-        // Calls onDescriptorWrite()
-        if (!gatt.writeDescriptor(cccd)) {
-            Log.w(LOG_TAG, "enableNotifications, writeDescriptor failed");
-            disconnect();
+    public void disconnect(SitePoint sitePoint) {
+        SitePointSession session = getSession(sitePoint);
+        if (session != null) {
+            session.disconnect();
         }
     }
 
     /**
-     * Handle an NTRIP parse by writing the resulting RTCM data to a SitePoint.
+     * Disconnect from every connected SitePoint.
      */
-    void ntripParsed() {
-        writeRtcm();
+    public void disconnectAll() {
+        for (SitePointSession session : activeSessions) {
+            session.disconnect();
+        }
+    }
+
+    private synchronized SitePointSession getSession(SitePoint sitePoint) {
+        return sitePoint == null ? null : sessions.get(sitePoint.getAddress());
     }
 
     /**
-     * Writes RTCM data to the {#rtcmCharacteristic}.
-     * <p>
-     * There may be more data then can be written at once, so this gets re-called in
-     * {@link BluetoothGattCallback#onCharacteristicWrite(BluetoothGatt, BluetoothGattCharacteristic, int)},
-     * after the current data has been sent to the SitePoint (writing with
-     * {@link BluetoothGattCharacteristic#WRITE_TYPE_NO_RESPONSE} for fast turnarounds).
+     * Keeps the session array in step with the map, and makes the oldest session the primary.
      */
-    private synchronized void writeRtcm() {
-        if (writingRtcm || rtcmCharacteristic == null) { return; }
-        // see https://developer.android.com/about/versions/14/behavior-changes-all#mtu-set-to-517
-        byte[] message = App.getRtcmData(Math.min(mtu, 512) - 5);
-        if (message.length == 0) {
-            Log.d(LOG_TAG, "RTCM timing no data available");
-            return;
+    private void sessionsChanged() {
+        activeSessions = sessions.values().toArray(new SitePointSession[0]);
+        boolean first = true;
+        for (SitePointSession session : activeSessions) {
+            session.setPrimary(first);
+            first = false;
         }
-        writingRtcm = true;
-        StringBuilder sb = new StringBuilder();
-        for (byte b : message) { sb.append(String.format("%02X ", b)); }
-        Log.d(LOG_TAG, "RTCM timing to write , " + sb);
+    }
 
-        if (Build.VERSION.SDK_INT < 33) {
-            rtcmCharacteristic.setValue(message);
-            gatt.writeCharacteristic(rtcmCharacteristic);
-        } else {
-            gatt.writeCharacteristic(rtcmCharacteristic, message, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+    private final SitePointSession.Listener sessionListener = new SitePointSession.Listener() {
+        @Override
+        public void connected(SitePointSession session) {
+            App.connections.publish(App.Connection.SITEPOINT_CONNECTED);
         }
-    }
+
+        @Override
+        public void closed(SitePointSession session) {
+            synchronized (BleManager.this) {
+                if (sessions.get(session.getAddress()) == session) {
+                    sessions.remove(session.getAddress());
+                    session.setPrimary(false);
+                    sessionsChanged();
+                }
+            }
+            App.connections.publish(App.Connection.SITEPOINT_DISCONNECTED);
+        }
+    };
 
     private void assignBluetoothVariables() {
         if (bluetoothManager == null) {
@@ -218,242 +279,66 @@ public class BleManager {
         return bluetoothAdapter == null || !bluetoothAdapter.isEnabled();
     }
 
-    @SuppressLint("MissingPermission")
+    /**
+     * From the connection state cached off the GATT callbacks, so binding a scan list row costs no IPC.
+     */
     public boolean connectedToThisAndroid(SitePoint sitePoint) {
-        ScanResult scanResult = sitePoint.scanResult;
-        BluetoothManager bluetoothManager = (BluetoothManager) App.getAppContext().getSystemService(Context.BLUETOOTH_SERVICE);
-        return BluetoothProfile.STATE_CONNECTED == bluetoothManager.getConnectionState(scanResult.getDevice(), BluetoothProfile.GATT);
+        SitePointSession session = getSession(sitePoint);
+        return session != null && session.isConnected();
     }
 
-    // default starting value, probably much lower than negotiated MTU
-    private int mtu = 23;
-
-    private void setMtu(int mtu) {
-        this.mtu = mtu;
+    /**
+     * @return a session was started for the SitePoint, connected yet or not.
+     */
+    public boolean hasSession(SitePoint sitePoint) {
+        return getSession(sitePoint) != null;
     }
 
     /**
-     * Passes scan results back as SitePoints
+     * @return the SitePoint's messages are the ones shown, and sent to the caster.
      */
-    public interface SitePointHandler {
-        void onScanResult(SitePoint sitePoint);
+    public boolean isPrimary(SitePoint sitePoint) {
+        SitePointSession session = getSession(sitePoint);
+        return session != null && session.isPrimary();
     }
 
-    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
-        /**
-         * Connected?
-         * <ol>
-         * <li>Request a higher MTU, which gets handled in {@link #onMtuChanged(BluetoothGatt, int, int)}.</li>
-         * <li>Let the UI know by calling {@link #broadcastConnect()}.</li>
-         * </ol>
-         *
-         * Disconnected?
-         * <ol>
-         * <li>Close GATT.</li>
-         * <li>Let the UI know by calling {@link #broadcastDisconnect()}.</li>
-         * </ol>
-         *
-         * Failed? Disconnect GATT (calls back to here with BluetoothProfile.STATE_DISCONNECTED).
-         */
-        @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            super.onConnectionStateChange(gatt, status, newState);
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                if (newState == BluetoothProfile.STATE_CONNECTED) {
-                    Log.d(LOG_TAG, "GATT connected");
-                    BleManager.this.gatt = gatt;
-                    // request Android max of 517
-                    gatt.requestMtu(517);
-                    broadcastConnect();
-                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                    Log.d(LOG_TAG, "GATT disconnected");
-                    gatt.close();
-                    sitePoint = null;
-                    messageCharacteristic = null;
-                    rtcmCharacteristic = null;
-                    broadcastDisconnect();
-                } else if (newState == BluetoothProfile.STATE_CONNECTING) {
-                    Log.d(LOG_TAG, "GATT connecting");
-                } else if (newState == BluetoothProfile.STATE_DISCONNECTING) {
-                    Log.d(LOG_TAG, "GATT disconnecting");
-                } else {
-                    Log.w(LOG_TAG, "GATT unhandled state " + newState);
-                }
-            } else {
-                Log.i(LOG_TAG,"GATT failed with status " + status);
-                gatt.disconnect();
-                sitePoint = null;
-                messageCharacteristic = null;
-                rtcmCharacteristic = null;
-                broadcastDisconnect();
-            }
-        }
-
-        /**
-         * Call {@link BluetoothGatt#discoverServices()}, triggered from the {@link BluetoothGatt#requestMtu(int)}
-         * call from {@link #onConnectionStateChange(BluetoothGatt, int, int)}.
-         */
-        @Override
-        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
-            super.onMtuChanged(gatt, mtu, status);
-            Log.i(LOG_TAG, "mtu changed to " + mtu + " (success? " + (status == BluetoothGatt.GATT_SUCCESS) + ")");
-            BleManager.this.setMtu(mtu);
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                gatt.discoverServices();
-            }
-        }
-
-        /**
-         * Hook up characteristics and enable notifications on the message characteristic.
-         * triggered from the {@link BluetoothGatt#discoverServices()} call in {@link #onMtuChanged(BluetoothGatt, int, int)}.
-         */
-        @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            super.onServicesDiscovered(gatt, status);
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                for (BluetoothGattService service : gatt.getServices()) {
-                    Log.d(LOG_TAG,"Discovered service " + service.getUuid());
-                    for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
-                        Log.d(LOG_TAG, "Discovered characteristic " + characteristic.getUuid());
-                        if (MESSAGE_CHARACTERISTIC.equals(characteristic.getUuid())) {
-                            messageCharacteristic = characteristic;
-                        } else if (RTCM_CHARACTERISTIC.equals(characteristic.getUuid())) {
-                            rtcmCharacteristic = characteristic;
-                            // write "with response"
-                            rtcmCharacteristic.setWriteType(WRITE_TYPE_NO_RESPONSE);
-                        }
-                    }
-                }
-                if (messageCharacteristic != null) {
-                    Log.d(LOG_TAG,"enabling notifications for messaging characteristic");
-                    enableNotifications(messageCharacteristic);
-                }
-            } else {
-                Log.w(LOG_TAG, "Discovering services failed");
-                disconnect();
-            }
-        }
-
-        /**
-         * Handle descriptor write failures (e.g. enabling/disabling notifications).
-         */
-        @Override
-        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-            super.onDescriptorWrite(gatt, descriptor, status);
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(LOG_TAG, "Descriptor written");
-            } else {
-                Log.i(LOG_TAG, "Descriptor write failed");
-                disconnect();
-            }
-        }
-
-        /**
-         * Send SignalQuest message data to {@link #readMessage(byte[])}.
-         */
-        @Override
-        public void onCharacteristicChanged(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic, @NonNull byte[] data) {
-            super.onCharacteristicChanged(gatt, characteristic, data);
-            Log.v(LOG_TAG, "onCharacteristicChanged " + characteristic.getUuid() + ", data " + toHex(data));
-            if (characteristic.getUuid().equals(MESSAGE_CHARACTERISTIC)) {
-                readMessage(data);
-            }
-        }
-
-        /**
-         * Same as {@link #onCharacteristicChanged(BluetoothGatt, BluetoothGattCharacteristic, byte[])},
-         * but for older Androids (pre Android 13, pre SDK level 33).
-         */
-        @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            if (android.os.Build.VERSION.SDK_INT >= 33) {
-                Log.v(LOG_TAG, "Deprecated onCharacteristicChanged ignored");
-                return;
-            }
-            super.onCharacteristicChanged(gatt, characteristic);
-            Log.d(LOG_TAG, "onCharacteristicChanged (deprecated) " + characteristic.getUuid() + ", data " + toHex(characteristic.getValue()));
-            if (characteristic.getUuid().equals(MESSAGE_CHARACTERISTIC)) {
-                readMessage(characteristic.getValue());
-            }
-        }
-
-        /**
-         * Logging writes and write failures, and possibly writing the next batch of RTCM data.
-         */
-        @Override
-        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-            super.onCharacteristicWrite(gatt, characteristic, status);
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(LOG_TAG, "Characteristic write successful");
-                if (characteristic.getUuid().equals(RTCM_CHARACTERISTIC)) {
-                    Log.d(LOG_TAG, "RTCM timing written");
-                    writingRtcm = false;
-                    writeRtcm();
-                }
-            } else {
-                Log.e(LOG_TAG, "Characteristic write unsuccessful: " + status);
-            }
-        }
-
-        /**
-         * This {@link MessageHandler} parses SitePoint data, in {@link #readMessage(byte[])}, and broadcasts the results for the UI.
-         */
-        private final MessageHandler messageHandler = new MessageHandler(new MessageHandler.MessageReceiver() {
-            @Override
-            public void receive(Status status) {
-                Intent intent = new Intent(STATUS_MESSAGE_RECEIVED);
-                intent.putExtra("status", new StatusParcelable(status));
-                App.getAppContext().sendBroadcast(intent);
-                StringBuilder sb = new StringBuilder();
-                for (boolean b : status.getAidingQuality()) { sb.append(b ? "1" : "0"); }
-                Log.d(LOG_TAG, "RTCM timing aiding bins , " + sb);
-            }
-
-            @Override
-            public void receive(Location location) {
-                Intent intent = new Intent(LOCATION_MESSAGE_RECEIVED);
-                intent.putExtra("location", new LocationParcelable(location));
-                App.getAppContext().sendBroadcast(intent);
-            }
-        });
-
-        // TODO turn on private Javadoc? Leaning towards YES for example, not SDK.
-        /**
-         * Parse the SignalQuest messages using the {@link MessageHandler}, which sends the results
-         * to its {@link MessageHandler.MessageReceiver}.
-         */
-        private void readMessage(byte[] data) {
-            if (data == null || data.length == 0 || allZero(data)) {
-                Log.w(LOG_TAG, "No messages");
-                return;
-            }
-            try {
-                messageHandler.parse(data);
-            } catch (ApiException e) {
-                App.displayError(LOG_TAG, e.getMessage());
-            } catch (Exception e) {
-                App.displayError(LOG_TAG, "readMessage exception: " + e);
-                Log.e(LOG_TAG, "readMessage failure", e);
-            }
-        }
-
-        private boolean allZero(byte[] bytes) {
-            for (byte b : bytes) { if (b != 0) { return false; }}
-            return true;
+    /**
+     * @return the SitePoints with sessions, oldest first.
+     */
+    public List<SitePoint> getSitePoints() {
+        SitePointSession[] current = activeSessions;
+        List<SitePoint> sitePoints = new ArrayList<>(current.length);
+        for (SitePointSession session : current) {
+            sitePoints.add(session.sitePoint);
         }
+        return sitePoints;
+    }
 
-        private String toHex(byte[] bytes) {
-            StringBuilder sb = new StringBuilder();
-            for (byte b : bytes) { sb.append(String.format("%02X ", b)); }
-            return sb.toString();
+    /**
+     * Handle an NTRIP parse by letting every session write the new RTCM, as its own link allows.
+     */
+    void ntripParsed() {
+        for (SitePointSession session : activeSessions) {
+            session.writeRtcm();
         }
+    }
 
-        private void broadcastDisconnect() {
-            App.getAppContext().sendBroadcast(new Intent(BT_DISCONNECT_ACTION));
+    /**
+     * @return per SitePoint: RTCM throughput, lag behind the stream, frames skipped or stale, and
+     * its GATT operation and message parsing reports.
+     */
+    String getSessionReport() {
+        StringBuilder report = new StringBuilder();
+        for (SitePointSession session : activeSessions) {
+            report.append(session.report());
         }
+        return report.toString();
+    }
 
-        private void broadcastConnect() {
-            App.getAppContext().sendBroadcast(new Intent(BT_CONNECT_ACTION));
-        }
-    };
+    /**
+     * Passes scan results back as SitePoints
+     */
+    public interface SitePointHandler {
+        void onScanResult(SitePoint sitePoint);
+    }
 }
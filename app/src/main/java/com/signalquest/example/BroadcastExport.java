@@ -0,0 +1,48 @@
+package com.signalquest.example;
+
+import android.content.Intent;
+
+/**
+ * Optionally re-publishes the app's {@link EventStream}s as the system broadcasts they replaced, for
+ * anything outside the app still listening for them; off unless {@link App#EXPORT_BROADCASTS} is set.
+ * <p>
+ * SitePoint messages go out as {@link LocationParcelable}s and {@link StatusParcelable}s, errors as an
+ * {@code error} string extra.
+ */
+class BroadcastExport {
+    static final String ERROR_ACTION = "com.signalquest.example.ERROR_ACTION";
+    static final String BT_CONNECT_ACTION = "com.signalquest.example.BT_CONNECT_ACTION";
+    static final String BT_DISCONNECT_ACTION = "com.signalquest.example.BT_DISCONNECT_ACTION";
+    static final String NTRIP_DISCONNECT_ACTION = "com.signalquest.example.NTRIP_DISCONNECT_ACTION";
+    static final String LOCATION_MESSAGE_RECEIVED = "com.signalquest.example.LOCATION_MESSAGE_RECEIVED";
+    static final String STATUS_MESSAGE_RECEIVED = "com.signalquest.example.STATUS_MESSAGE_RECEIVED";
+
+    /**
+     * Subscribes to every stream, sending each event as it's published.
+     */
+    static void start() {
+        App.locations.subscribe(location -> send(new Intent(LOCATION_MESSAGE_RECEIVED)
+                .putExtra("location", new LocationParcelable(location))), EventStream.PUBLISHING_THREAD, 0);
+        App.statuses.subscribe(status -> send(new Intent(STATUS_MESSAGE_RECEIVED)
+                .putExtra("status", new StatusParcelable(status))), EventStream.PUBLISHING_THREAD, 0);
+        App.errors.subscribe(error -> send(new Intent(ERROR_ACTION).putExtra("error", error)),
+                EventStream.PUBLISHING_THREAD, 0);
+        App.connections.subscribe(connection -> {
+            switch (connection) {
+                case SITEPOINT_CONNECTED:
+                    send(new Intent(BT_CONNECT_ACTION));
+                    break;
+                case SITEPOINT_DISCONNECTED:
+                    send(new Intent(BT_DISCONNECT_ACTION));
+                    break;
+                case NTRIP_DISCONNECTED:
+                    send(new Intent(NTRIP_DISCONNECT_ACTION));
+                    break;
+            }
+        }, EventStream.PUBLISHING_THREAD, 0);
+    }
+
+    private static void send(Intent intent) {
+        App.getAppContext().sendBroadcast(intent);
+    }
+}
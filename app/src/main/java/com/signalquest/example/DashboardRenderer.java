@@ -0,0 +1,69 @@
+package com.signalquest.example;
+
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import com.signalquest.api.Location;
+import com.signalquest.api.Status;
+
+/**
+ * Shows the latest SitePoint {@link Location} and {@link Status} at most once per display frame.
+ * <p>
+ * Messages, on whichever thread publishes them, only replace the {@link Dashboard}'s snapshot, and
+ * post a frame callback if none is pending. On the frame, fields are formatted into reusable buffers
+ * and only the views whose text changed are set, so steady-state rendering allocates nothing.
+ */
+class DashboardRenderer implements Choreographer.FrameCallback {
+    private final Dashboard dashboard = new Dashboard();
+    private final TextView[] views;
+    private final Choreographer choreographer;
+
+    /**
+     * On the UI thread, whose {@link Choreographer} is used.
+     *
+     * @param views by {@link Dashboard.Field} ordinal.
+     */
+    DashboardRenderer(TextView[] views) {
+        this.views = views;
+        choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Any thread.
+     */
+    void onLocation(Location location) {
+        if (dashboard.setLocation(location.getITow(), location.getLatitude(), location.getLongitude(),
+                location.getHeight(), location.getHorizontalAccuracy(), location.getVerticalAccuracy())) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Any thread.
+     */
+    void onStatus(Status status) {
+        if (dashboard.setStatus(status.getITow(), status.getTime(), status.getMode(), status.getSatellites(),
+                status.getBattery(), status.isCharging(), status.getAidingQuality(), status.getModeLabel())) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        int changed = dashboard.render();
+        for (Dashboard.Field field : Dashboard.FIELDS) {
+            if (Dashboard.changed(changed, field)) {
+                Dashboard.Text text = dashboard.text(field);
+                views[field.ordinal()].setText(text.chars(), 0, text.length());
+            }
+        }
+    }
+
+    /**
+     * Drops any pending frame, before the views are cleared; the next message sets them all again.
+     */
+    void clear() {
+        choreographer.removeFrameCallback(this);
+        dashboard.reset();
+    }
+}
@@ -2,14 +2,12 @@ package com.signalquest.example;
 
 import android.annotation.SuppressLint;
 import static android.bluetooth.BluetoothAdapter.ACTION_REQUEST_ENABLE;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -28,34 +26,37 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.switchmaterial.SwitchMaterial;
-import com.signalquest.api.Location;
-import com.signalquest.api.Status;
 import com.signalquest.example.Ntrip.NtripService;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.TimeZone;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Scan for and connect to SitePoints, display their data, and relay NTRIP to them.
  */
 public class MainActivity extends AppCompatActivity {
     final private static String LOG_TAG = "MainActivity";
+    private final ArrayList<EventStream.Subscription> subscriptions = new ArrayList<>();
     private boolean scanning = false;
-    private final ArrayList<SitePoint> sitePoints = new ArrayList<>();
+    // scan list changes are batched, to redraw a list of dozens at most this often
+    private static final long LIST_UPDATE_MILLISECONDS = 250;
+    // on the main thread, where scan results arrive
+    private final SitePointRegistry<SitePoint> sitePoints = new SitePointRegistry<>();
     private SitePointView sitePointView = null;
     private final Handler expiryHandler = new Handler(Looper.getMainLooper());
+    private boolean listUpdatePending = false;
+    private DashboardRenderer dashboardRenderer = null;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -67,6 +68,7 @@ public class MainActivity extends AppCompatActivity {
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
+        dashboardRenderer = new DashboardRenderer(dashboardViews());
 
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
             @SuppressLint("MissingSuperCall")
@@ -87,8 +89,11 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * <ol>
-     *     <li>Sets up a {@link BroadcastReceiver}, for the actions listed below in 'dataFilter'.</li>
+     *     <li>Subscribes to the app's {@link EventStream}s, on the UI thread but for SitePoint messages,
+     *     which go straight to the {@link DashboardRenderer}.</li>
      *     <li>Hooks up section toggling and NTRIP button click handlers.</li>
+     *     <li>Hooks up the flight recorder dump, on long-pressing the Status header.</li>
+     *     <li>Hooks up the latency report and export, on long-pressing the NTRIP header.</li>
      *     <li>Attaches SitePoint section, for receiving scan updates.</li>
      *     <li>Ensures Bluetooth is enabled.</li>
      *     <li>Starts scanning.</li>
@@ -97,22 +102,37 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        IntentFilter dataFilter = new IntentFilter();
-        for (String action : new String [] {
-                App.ERROR_ACTION,
-                BleManager.BT_CONNECT_ACTION, BleManager.BT_DISCONNECT_ACTION,
-                Ntrip.NTRIP_DISCONNECT_ACTION,
-                BleManager.LOCATION_MESSAGE_RECEIVED, BleManager.STATUS_MESSAGE_RECEIVED,
-        }) {
-            dataFilter.addAction(action);
-        }
-        ContextCompat.registerReceiver(this, receiver, dataFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        subscriptions.add(App.connections.subscribe(this::onConnection, App.MAIN_THREAD, 0));
+        subscriptions.add(App.errors.subscribe(
+                error -> Toast.makeText(this, error, Toast.LENGTH_SHORT).show(), App.MAIN_THREAD, 0));
+        // the renderer coalesces to the display's frames itself
+        subscriptions.add(App.locations.subscribe(dashboardRenderer::onLocation, EventStream.PUBLISHING_THREAD, 0));
+        subscriptions.add(App.statuses.subscribe(dashboardRenderer::onStatus, EventStream.PUBLISHING_THREAD, 0));
 
         setupToggling(R.id.sitepoint_tab_header_toggle, R.id.sitepoint_layout);
         setupToggling(R.id.ntrip_tab_header_toggle, R.id.ntrip_layout);
         setupToggling(R.id.status_tab_header_toggle, R.id.status_layout);
         setupToggling(R.id.location_tab_header_toggle, R.id.location_layout);
 
+        findViewById(R.id.status_tab_header_text).setOnLongClickListener(view -> {
+            File dump = App.dumpFlightRecorder();
+            String message = dump == null ? "Flight recorder dump failed" : "Flight recorder dumped to " + dump.getName();
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
+        findViewById(R.id.ntrip_tab_header_text).setOnLongClickListener(view -> {
+            File export = App.exportLatency();
+            String saved = export == null ? "Export failed" : "Exported to " + export.getName();
+            new AlertDialog.Builder(this)
+                    .setTitle("Correction Latency")
+                    .setMessage(App.tracer.report() + App.bleManager.getSessionReport() + App.bleManager.getScanReport()
+                            + "\n" + saved)
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+            return true;
+        });
+
         Button ntripConnectButton = findViewById(R.id.ntrip_connect_button);
         ntripConnectButton.setOnClickListener(view -> {
             if (App.ntrip.getState() == Ntrip.State.IDLE) {
@@ -130,8 +150,7 @@ public class MainActivity extends AppCompatActivity {
 
         if (App.bleManager.disabled()) {
             enableBluetooth();
-        } else if (App.bleManager.sitePoint == null) {
-            sitePoints.clear();
+        } else {
             startScanning();
         }
     }
@@ -240,17 +259,21 @@ public class MainActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         stopScanning();
-        unregisterReceiver(receiver);
+        for (EventStream.Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        App.bleManager.disconnect();
+        App.bleManager.disconnectAll();
     }
 
     /**
-     * Removes old scan results; turned on in {@link #startScanning()}, turns off when {@link #scanning} is false.
+     * Removes old scan results, a registry tick at a time; turned on in {@link #startScanning()},
+     * turns off when {@link #scanning} is false.
      */
     Runnable expiryChecker = new Runnable() {
         @Override
@@ -258,18 +281,48 @@ public class MainActivity extends AppCompatActivity {
             if (!scanning) {
                 return;
             }
-            // reversed for deleting by index
-            for (int i = sitePoints.size() - 1; 0 <= i; i--) {
-                SitePoint sitePoint = sitePoints.get(i);
-                if (sitePoint.expired()) {
-                    sitePointView.remove(i);
-                    sitePoints.remove(i);
-                }
+            if (0 < sitePoints.expire(SystemClock.elapsedRealtime())) {
+                scheduleListUpdate();
             }
-            expiryHandler.postDelayed(expiryChecker, 10 * 1000);
+            expiryHandler.postDelayed(expiryChecker, SitePointRegistry.DEFAULT_TICK_MILLISECONDS);
         }
     };
 
+    private final Runnable listUpdater = () -> {
+        listUpdatePending = false;
+        sitePointView.submit(sitePointList());
+    };
+
+    /**
+     * @return the SitePoints with sessions, whether or not they're still advertising, then the rest scanned.
+     */
+    private List<SitePoint> sitePointList() {
+        List<SitePoint> list = App.bleManager.getSitePoints();
+        for (SitePoint sitePoint : sitePoints.devices()) {
+            if (!App.bleManager.hasSession(sitePoint)) {
+                list.add(sitePoint);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Shows the registry's changes in the list, along with any others within {@link #LIST_UPDATE_MILLISECONDS}.
+     */
+    private void scheduleListUpdate() {
+        if (!listUpdatePending) {
+            listUpdatePending = true;
+            expiryHandler.postDelayed(listUpdater, LIST_UPDATE_MILLISECONDS);
+        }
+    }
+
+    private void clearSitePoints() {
+        sitePoints.clear();
+        expiryHandler.removeCallbacks(listUpdater);
+        listUpdatePending = false;
+        sitePointView.submit(sitePointList());
+    }
+
     /**
      * Start scanning, handle scan results, and start the {@link #expiryChecker}.
      */
@@ -278,26 +331,17 @@ public class MainActivity extends AppCompatActivity {
             Log.w(LOG_TAG, "Bluetooth not enabled");
             return;
         }
-        sitePoints.clear();
-        sitePointView.rebuild();
+        clearSitePoints();
         App.bleManager.startScanning(sitePoint -> {
             if (!scanning) {
                 Log.d(LOG_TAG, "Ignoring late scan result while not scanning.");
                 return;
             }
-            boolean exists = false;
-            for (int i = 0; i < sitePoints.size(); i++) {
-                SitePoint sp = sitePoints.get(i);
-                if (sp.addressMatches(sitePoint)) {
-                    sitePoints.set(i, sitePoint);
-                    sitePointView.update(i);
-                    exists = true;
-                    break;
-                }
-            }
-            if (!exists) {
-                sitePoints.add(sitePoint);
-                sitePointView.add(sitePoints.size() - 1);
+            SitePoint previous = sitePoints.get(sitePoint.getAddress());
+            // in use (here or elsewhere), or not, goes in the next list update; RSSI changes are throttled
+            boolean significant = previous != null && previous.connectedFromScan() != sitePoint.connectedFromScan();
+            if (sitePoints.update(sitePoint.getAddress(), sitePoint, SystemClock.elapsedRealtime(), significant)) {
+                scheduleListUpdate();
             }
         });
         scanning = true;
@@ -313,79 +357,73 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Stop scanning then connect.
+     * Connect, alongside any SitePoints already connected.
      * <p>
-     * This app stops scanning when connected to simplify the UI; stopping the scan is not necessary.
+     * Scanning carries on, for connecting more; the {@link ScanPolicy} soon steps it down to low power.
      */
     public void connect(SitePoint sitePoint) {
         Log.i(LOG_TAG,"Connecting to " + sitePoint.getName());
-        stopScanning();
         try {
             App.bleManager.connect(sitePoint);
         } catch (IllegalStateException e) {
             Log.e(LOG_TAG, "Error connecting: " + e.getMessage());
         }
-        sitePoints.clear();
-        sitePoints.add(App.bleManager.sitePoint);
-        sitePointView.rebuild();
+        // moves it up with the others connected
+        sitePointView.submit(sitePointList());
     }
 
-    public void disconnectSitePoint() {
-        Log.i(LOG_TAG,"Disconnect from SitePoint device");
-        App.bleManager.disconnect();
-        // Status and Location values are no longer relevant
-        clearMessageValues();
+    public void disconnectSitePoint(SitePoint sitePoint) {
+        Log.i(LOG_TAG,"Disconnect from SitePoint device " + sitePoint.getName());
+        // Status and Location values are no longer relevant, if they were this SitePoint's
+        boolean shown = App.bleManager.isPrimary(sitePoint);
+        App.bleManager.disconnect(sitePoint);
+        if (shown) {
+            clearMessageValues();
+        }
     }
 
-    private final BroadcastReceiver receiver = new BroadcastReceiver() {
-        @SuppressLint("DefaultLocale")
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (BleManager.BT_CONNECT_ACTION.equals(action)) {
-                // updates the connected button
-                sitePointView.rebuild();
-            } else if (BleManager.BT_DISCONNECT_ACTION.equals(action)) {
-                Log.d(LOG_TAG, "Handling disconnect");
-                sitePointView.rebuild();
-                startScanning();
-            } else if (Ntrip.NTRIP_DISCONNECT_ACTION.equals(action)) {
-                handleNtripDisconnected();
-            } else if (App.ERROR_ACTION.equals(action)) {
-                String error = intent.getStringExtra("error");
-                Toast.makeText(MainActivity.this, error, Toast.LENGTH_SHORT).show();
-            } else if (BleManager.LOCATION_MESSAGE_RECEIVED.equals(action)) {
-                LocationParcelable parcelable = intent.getParcelableExtra("location");
-                assert parcelable != null;
-                Location location = parcelable.getLocation();
-                setValue(R.id.location_itow, location.getITow() + "");
-                setValue(R.id.location_latitude, String.format("%.7f", location.getLatitude()) + "°");
-                setValue(R.id.location_longitude, String.format("%.7f", location.getLongitude()) + "°");
-                setValue(R.id.location_height, String.format("%,.4f", location.getHeight()) + "m");
-                setValue(R.id.location_horizontal_accuracy, String.format("%,.4f", location.getHorizontalAccuracy()) + "m");
-                setValue(R.id.location_vertical_accuracy, String.format("%,.4f", location.getVerticalAccuracy()) + "m");
-            } else if (BleManager.STATUS_MESSAGE_RECEIVED.equals(action)) {
-                StatusParcelable parcelable = intent.getParcelableExtra("status");
-                assert parcelable != null;
-                Status status = parcelable.getStatus();
-                setValue(R.id.status_battery, status.getBattery() + "%");
-                setValue(R.id.status_charging, status.isCharging() + "");
-                setValue(R.id.status_itow, status.getITow() + "");
-                setValue(R.id.status_time, status.getTime() + "");
-                DateFormat timeFormat = SimpleDateFormat.getTimeInstance(DateFormat.MEDIUM);
-                timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-                setValue(R.id.status_time_formatted, timeFormat.format(new Date(status.getTime() * 1000)));
-                setValue(R.id.status_satellites, status.getSatellites() + "");
-                setValue(R.id.status_mode, status.getMode() + "");
-                setValue(R.id.status_mode_label, status.getModeLabel());
-                setValue(R.id.status_aiding_quality, Arrays.toString(status.getAidingQuality())
-                        .replace("true", "1").replace("false", "0")
-                        .replaceAll("[, \\[\\]]", ""));
-            }
+    private void onConnection(App.Connection connection) {
+        if (connection == App.Connection.SITEPOINT_CONNECTED) {
+            // updates the connected button
+            sitePointView.rebuild();
+        } else if (connection == App.Connection.SITEPOINT_DISCONNECTED) {
+            Log.d(LOG_TAG, "Handling disconnect");
+            sitePointView.submit(sitePointList());
+            sitePointView.rebuild();
+        } else if (connection == App.Connection.NTRIP_DISCONNECTED) {
+            handleNtripDisconnected();
         }
-    };
+    }
+
+    /**
+     * @return the SitePoint message fields' views, by {@link Dashboard.Field} ordinal.
+     */
+    private TextView[] dashboardViews() {
+        int[] ids = new int[Dashboard.FIELDS.length];
+        ids[Dashboard.Field.LOCATION_ITOW.ordinal()] = R.id.location_itow;
+        ids[Dashboard.Field.LATITUDE.ordinal()] = R.id.location_latitude;
+        ids[Dashboard.Field.LONGITUDE.ordinal()] = R.id.location_longitude;
+        ids[Dashboard.Field.HEIGHT.ordinal()] = R.id.location_height;
+        ids[Dashboard.Field.HORIZONTAL_ACCURACY.ordinal()] = R.id.location_horizontal_accuracy;
+        ids[Dashboard.Field.VERTICAL_ACCURACY.ordinal()] = R.id.location_vertical_accuracy;
+        ids[Dashboard.Field.BATTERY.ordinal()] = R.id.status_battery;
+        ids[Dashboard.Field.CHARGING.ordinal()] = R.id.status_charging;
+        ids[Dashboard.Field.STATUS_ITOW.ordinal()] = R.id.status_itow;
+        ids[Dashboard.Field.TIME.ordinal()] = R.id.status_time;
+        ids[Dashboard.Field.TIME_FORMATTED.ordinal()] = R.id.status_time_formatted;
+        ids[Dashboard.Field.SATELLITES.ordinal()] = R.id.status_satellites;
+        ids[Dashboard.Field.MODE.ordinal()] = R.id.status_mode;
+        ids[Dashboard.Field.MODE_LABEL.ordinal()] = R.id.status_mode_label;
+        ids[Dashboard.Field.AIDING_QUALITY.ordinal()] = R.id.status_aiding_quality;
+        TextView[] views = new TextView[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            views[i] = findViewById(ids[i]);
+        }
+        return views;
+    }
 
     private void clearMessageValues() {
+        dashboardRenderer.clear();
         clearValue(R.id.status_battery, R.string.status_battery);
         clearValue(R.id.status_charging, R.string.status_charging);
         clearValue(R.id.status_itow, R.string.status_itow);
@@ -409,11 +447,6 @@ public class MainActivity extends AppCompatActivity {
         field.setText(stringId);
     }
 
-    private void setValue(int fieldId, String value) {
-        TextView field = findViewById(fieldId);
-        field.setText(value);
-    }
-
     public static class SitePointRow extends RecyclerView.ViewHolder {
         public SitePointRow(View itemView) {
             super(itemView);
@@ -429,28 +462,45 @@ public class MainActivity extends AppCompatActivity {
             return new SitePointRow(LayoutInflater.from(MainActivity.this).inflate(R.layout.site_point_row_layout, parent, false));
         }
 
-        public void rebuild() {
-            MainActivity.this.runOnUiThread(this::notifyDataSetChanged);
-        }
+        // diffs each submitted list against the shown one on a background thread, then dispatches the changes
+        private final AsyncListDiffer<SitePoint> differ = new AsyncListDiffer<>(this, new DiffUtil.ItemCallback<SitePoint>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull SitePoint oldItem, @NonNull SitePoint newItem) {
+                return oldItem.addressMatches(newItem);
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull SitePoint oldItem, @NonNull SitePoint newItem) {
+                return Objects.equals(oldItem.getName(), newItem.getName())
+                        && oldItem.getRssi() == newItem.getRssi()
+                        && oldItem.connectedFromScan() == newItem.connectedFromScan();
+            }
+        });
 
-        public void update(int index) {
-            MainActivity.this.runOnUiThread(() -> notifyItemChanged(index));
+        /**
+         * Shows the list; on the main thread.
+         */
+        public void submit(List<SitePoint> sitePoints) {
+            differ.submitList(sitePoints);
         }
 
-        public void add(int index) {
-            MainActivity.this.runOnUiThread(() -> notifyItemInserted(index));
+        /**
+         * Rebinds every row, for connection state changes, which the diff doesn't see.
+         */
+        public void rebuild() {
+            MainActivity.this.runOnUiThread(this::notifyDataSetChanged);
         }
 
-        public void remove(int index) {
-            MainActivity.this.runOnUiThread(() -> notifyItemRemoved(index));
+        private SitePoint getItem(int position) {
+            return differ.getCurrentList().get(position);
         }
 
         /**
-         * Displays a SitePoint row, including querying connection status for updating buttons.
+         * Displays a SitePoint row, including the cached connection status for updating buttons.
          */
         @Override
         public void onBindViewHolder(@NonNull SitePointRow holder, int position) {
-            SitePoint sitePoint = sitePoints.get(position);
+            SitePoint sitePoint = getItem(position);
             TextView nameView = holder.itemView.findViewById(R.id.sitepoint_name);
             TextView rssiView = holder.itemView.findViewById(R.id.sitepoint_rssi_value);
             nameView.setText(sitePoint.getName());
@@ -459,9 +509,10 @@ public class MainActivity extends AppCompatActivity {
             Button connectButton = holder.itemView.findViewById(R.id.connect_button);
 
             boolean connectedHere = App.bleManager.connectedToThisAndroid(sitePoint);
-            // this app isn't scanning after we're connected, so this will be out of date while connecting and connected
+            // from the last advertisement seen, which also says connected for one connected here, so
+            // it only counts without a session; after disconnecting, the next advertisement clears it
             boolean connectedFromScan = sitePoint.connectedFromScan();
-            boolean selected = sitePoint.addressMatches(App.bleManager.sitePoint);
+            boolean selected = App.bleManager.hasSession(sitePoint);
             if (connectedHere) {
                 updateButton(connectButton, "Disconnect", true);
             } else if (selected) {
@@ -477,13 +528,13 @@ public class MainActivity extends AppCompatActivity {
                 int pos = holder.getAdapterPosition();
                 Button connButton = v.findViewById(R.id.connect_button);
                 if (connectedHere) {
-                    Log.d(LOG_TAG,"Disconnect button clicked for device " + sitePoints.get(pos).getName());
+                    Log.d(LOG_TAG,"Disconnect button clicked for device " + getItem(pos).getName());
                     updateButton(connButton, "Disconnecting", false);
-                    MainActivity.this.disconnectSitePoint();
+                    MainActivity.this.disconnectSitePoint(getItem(pos));
                 } else if (!selected) {
-                    Log.d(LOG_TAG,"Connect button clicked for device " + sitePoints.get(pos).getName());
+                    Log.d(LOG_TAG,"Connect button clicked for device " + getItem(pos).getName());
                     updateButton(connButton, "Connecting", false);
-                    MainActivity.this.connect(sitePoints.get(pos));
+                    MainActivity.this.connect(getItem(pos));
                 }
             });
         }
@@ -496,7 +547,7 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public int getItemCount() {
-            return sitePoints.size();
+            return differ.getCurrentList().size();
         }
     }
 }
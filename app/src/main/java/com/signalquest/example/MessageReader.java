@@ -0,0 +1,95 @@
+package com.signalquest.example;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Parses SitePoint notifications on a thread of its own, so the Bluetooth binder thread, which also
+ * delivers the {@code onCharacteristicWrite} callbacks that pace RTCM, only copies each one into a
+ * {@link MessageRing} and returns.
+ * <p>
+ * Keeps the time spent parsing each message, and the ring's occupancy and drops, for {@link #report()}.
+ */
+class MessageReader {
+    private static final String LOG_TAG = "MessageReader";
+    // plenty for seconds of notifications at the largest MTU
+    private static final int RING_CAPACITY = 64 * 1024;
+    private static final int MAX_MESSAGE_LENGTH = 512;
+
+    private final MessageRing ring = new MessageRing(RING_CAPACITY, MAX_MESSAGE_LENGTH);
+    private final Consumer<byte[]> parser;
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final Thread thread;
+    private volatile boolean parked = false;
+    private volatile boolean closed = false;
+
+    /**
+     * @param parser run on the reader's thread, with a copy of each message.
+     */
+    MessageReader(Consumer<byte[]> parser) {
+        this.parser = parser;
+        thread = new Thread(this::run, "SitePoint messages");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a notification for parsing; called on the binder thread, so it never blocks.
+     */
+    void offer(byte[] data) {
+        if (data == null) {
+            return;
+        }
+        if (!ring.offer(data, 0, data.length)) {
+            Log.w(LOG_TAG, "Message dropped, " + ring);
+            return;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        byte[] message = new byte[ring.getMaxMessageLength()];
+        while (!closed) {
+            int length = ring.poll(message);
+            if (length < 0) {
+                parked = true;
+                // checked again after saying so, or an offer in between would never unpark us
+                if (ring.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                parser.accept(Arrays.copyOf(message, length));
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Parsing failed", e);
+            }
+            long nanos = System.nanoTime() - start;
+            synchronized (this) {
+                parseTime.recordNanos(nanos);
+            }
+        }
+    }
+
+    /**
+     * Stops the thread, dropping any messages not yet parsed; for when the SitePoint is gone.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return per-message parse time, and the ring's occupancy and drops.
+     */
+    synchronized String report() {
+        return "SitePoint message parsing: " + parseTime + "\n" + ring + "\n";
+    }
+}
@@ -1,8 +1,6 @@
 package com.signalquest.example;
 
-import android.content.Intent;
-import android.os.Handler;
-import android.os.HandlerThread;
+import android.location.Location;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -10,191 +8,458 @@ import androidx.annotation.NonNull;
 import com.signalquest.api.NtripParser;
 import com.signalquest.api.NtripParser.AuthorizationFailure;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.nio.channels.SocketChannel;
-import java.util.ArrayDeque;
-import java.util.Base64;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * NTRIP Service connector.
  * <p>
  * Connects to an NTRIP service, parses the authorization header, and listens for RTCM messages. Will
- * also, optionally, send the current phone position as a GGA message, on a timer.
+ * also, optionally, send the current SitePoint (or phone) position as a GGA message, when the
+ * {@link GgaScheduler} says it's due.
+ * Socket reads go through an {@link NtripResponseDecoder}, which separates the header from the
+ * (possibly chunked) RTCM.
+ * <p>
+ * The socket, its writes, and the timers (GGA, stall detection and reconnect backoff) all run on one
+ * long-lived {@link NioReactor} thread, so connecting and reconnecting don't start threads.
  * <p>
  * The {@link #connect(NtripService)} kicks off the normal flow (managed by a state machine) of:
- * {@link #startAiding()}, {@link #handleAuthorized(byte[])}, followed by multiple calls to
- * {@link NtripParser#parseRtcm(byte[])}, with data available using {@link NtripParser#next(int)}.
+ * {@link #startAiding()}, {@link #handleAuthorized(byte[], boolean)}, followed by multiple calls to
+ * {@link RtcmRelay#put(byte[], int, int)}, which frames the RTCM once into a {@link CorrectionFanout},
+ * read by each connected SitePoint through its own cursor, see {@link #getCorrections()}.
+ * <p>
+ * With {@link NtripService#secondary} set, a second caster streams alongside, through a
+ * {@link SecondaryStream}, and a {@link StreamFailover} picks which of the two reaches the relay.
+ * <p>
+ * With {@link NtripService#relayMode} cleared, RTCM goes through {@link NtripParser#parseRtcm(byte[])}
+ * instead, and {@link NtripParser#next(int)}'s output is stored in the fanout as it's parsed.
  */
 class Ntrip {
-    private final static int GGA_INTERVAL_MILLISECONDS = 5000;
-    public enum State { IDLE, CONNECTING, AUTHORIZING, ACTIVE }
+    // VRS casters place the virtual base from the GGA, so a move this far is worth telling them about
+    private final static double GGA_MIN_DISTANCE_METERS = 100;
+    // casters drop clients that go quiet for too long
+    private final static long GGA_MAX_INTERVAL_MILLISECONDS = 30 * 1000;
+    private final static long RECONNECT_INITIAL_MILLISECONDS = 1000;
+    private final static long RECONNECT_MAX_MILLISECONDS = 30 * 1000;
+    private final static long TICK_MILLISECONDS = 1000;
+    // a caster streams every second or so; this long with nothing (or no connection) means it's gone
+    private final static long STALL_MILLISECONDS = 15 * 1000;
+    // set only while connected to a redundant pair
+    private volatile StreamFailover failover;
+    private volatile SecondaryStream secondary;
+    public enum State { IDLE, CONNECTING, AUTHORIZING, ACTIVE, RECONNECTING }
     public State getState() {
         return _state;
     }
-    private State _state = State.IDLE;
+    private volatile State _state = State.IDLE;
+
+    private void setState(State state) {
+        if (_state != state) {
+            App.recorder.event(FlightRecorder.NTRIP_STATE, state.ordinal(), 0);
+        }
+        _state = state;
+    }
     private final static String LOG_TAG = "NTRIP";
-    private NtripService ntripService;
+    // 16 KiB matches the NtripParser output buffer; 512 is the largest Bluetooth write
+    private final static int RELAY_CAPACITY = 16 * 1024;
+    private final static int RELAY_MAX_WRITE = 512;
+    final static long DEFAULT_MAX_CORRECTION_AGE_MILLISECONDS = 5000;
+    // set and cleared under the lock, read from the reactor thread
+    private volatile NtripService ntripService;
     private final NtripParser parser;
+    private final CorrectionFanout corrections = new CorrectionFanout(RELAY_CAPACITY, RELAY_MAX_WRITE, DEFAULT_MAX_CORRECTION_AGE_MILLISECONDS);
+    private final RtcmRelay relay = new RtcmRelay(corrections);
     private NtripGga gga = null;
-    private Handler ggaHandler;
-    private Server ntripServer;
-    static final String NTRIP_DISCONNECT_ACTION = "com.signalquest.example.NTRIP_DISCONNECT_ACTION";
-
-    private final ServerListener serverListener = new ServerListener() {
+    private SourcetableCache sourcetables;
+    // waiting on the sourcetable for choosing its mountpoint
+    private NtripService pendingNearest;
+    // re-sent as soon as a dropped stream is authorized again
+    private byte[] lastGga = null;
+    private final GgaScheduler ggaScheduler = new GgaScheduler(GGA_MIN_DISTANCE_METERS, GGA_MAX_INTERVAL_MILLISECONDS);
+    private final NioReactor reactor = new NioReactor("ntrip reactor");
+    private volatile NioReactor.Connection connection;
+    private NioReactor.Timer ticker;
+    // last connection attempt or read, in System.nanoTime(), for stall detection
+    private volatile long lastActivityAt;
+    private final Reconnector reconnector = new Reconnector(
+            new Backoff(RECONNECT_INITIAL_MILLISECONDS, RECONNECT_MAX_MILLISECONDS), reactor, this::reconnect);
+
+    private final NioReactor.Listener connectionListener = new NioReactor.Listener() {
         @Override
-        public void handleData(byte[] data) {
-            StringBuilder sb = new StringBuilder();
-            for (byte b : data) { sb.append(String.format("%02X ", b)); }
-            Log.d(LOG_TAG, "RTCM timing to parse , " + sb);
+        public void handleData(NioReactor.Connection from, byte[] data, int offset, int length) {
+            if (from != connection) {
+                return;
+            }
+            readAt = System.nanoTime();
+            lastActivityAt = readAt;
+            App.recorder.record(FlightRecorder.NTRIP_RX, data, offset, length);
 
             switch (_state) {
                 case AUTHORIZING:
-                    Log.d(LOG_TAG, "Parsing authorized");
-                    handleAuthorized(data);
-                    break;
                 case ACTIVE:
-                    Log.d(LOG_TAG, "Parsing incoming RTCM");
-                    parser.parseRtcm(data);
-                    App.onParsed();
+                    try {
+                        responseDecoder.decode(data, offset, length);
+                    } catch (ProtocolException e) {
+                        connectionFailed(e);
+                        return;
+                    }
+                    if (rtcmReceived) {
+                        rtcmReceived = false;
+                        App.onParsed();
+                    }
                     break;
                 default:
-                    String str = new String(data);
+                    String str = new String(data, offset, length);
                     Log.w(LOG_TAG, "Unhandled state " + _state.name() + ", data: " + str.length() + " bytes: (" + str + ")");
             }
         }
 
         @Override
-        public void connected() {
+        public void connected(NioReactor.Connection from) {
+            // under the lock, since this can run before openConnection() has stored the connection
+            synchronized (Ntrip.this) {
+                if (from != connection) {
+                    return;
+                }
+            }
             Ntrip.this.startAiding();
         }
 
         @Override
-        public void handleException(Exception e) {
-            if (_state != State.IDLE) {
-                disconnect();
+        public void handleException(NioReactor.Connection from, Exception e) {
+            synchronized (Ntrip.this) {
+                if (from != connection) {
+                    return;
+                }
             }
-            App.displayError(LOG_TAG, e.toString(), e);
+            connectionFailed(e);
         }
     };
 
+    // RTCM was handed on during the current read
+    private boolean rtcmReceived = false;
+    // when the current read came off the socket, for the LatencyTracer
+    private long readAt;
+    private final NtripResponseDecoder responseDecoder = new NtripResponseDecoder(new NtripResponseDecoder.Listener() {
+        @Override
+        public void onHeader(byte[] header, int length, boolean accepted) {
+            Log.d(LOG_TAG, "Parsing authorized");
+            handleAuthorized(Arrays.copyOf(header, length), accepted);
+        }
+
+        @Override
+        public void onPayload(byte[] buffer, int offset, int length) {
+            if (_state != State.ACTIVE) {
+                return;
+            }
+            NtripService service = ntripService;
+            if (service == null) {
+                // disconnected since the state was checked
+                return;
+            }
+            reconnector.correctionReceived();
+            StreamFailover redundant = failover;
+            if (redundant != null) {
+                redundant.put(StreamFailover.PRIMARY, buffer, offset, length);
+            } else if (service.relayMode) {
+                relay.put(buffer, offset, length, readAt);
+            } else {
+                Log.d(LOG_TAG, "Parsing incoming RTCM");
+                parser.parseRtcm(Arrays.copyOfRange(buffer, offset, offset + length));
+                drainParser();
+            }
+            App.tracer.record(LatencyTracer.Hop.SOCKET_TO_PARSED, System.nanoTime() - readAt);
+            rtcmReceived = true;
+        }
+    });
+
     /**
-     * Sets up the {@link NtripParser}.
+     * Sets up the {@link NtripParser}, and logs whatever throws on the reactor thread.
      */
     public Ntrip() {
         this.parser = new NtripParser();
+        reactor.setFailureHandler(e -> Log.e(LOG_TAG, "NTRIP reactor task failed", e));
     }
 
     /**
      * Connects to the given NTRIP service.
      */
-    public void connect(NtripService service) {
+    public synchronized void connect(NtripService service) {
+        pendingNearest = null;
         if (ntripService != null) {
             Log.i(LOG_TAG, ("Disconnecting from " + ntripService));
             disconnect();
         }
 
         if (service.mountpoint == null || service.mountpoint.isEmpty()) {
-            Log.w(LOG_TAG, "This example app does not handle mountpoint listings");
-            App.displayError(LOG_TAG, "Mountpoint missing");
+            connectNearest(service);
             return;
         }
 
         try {
             ntripService = service;
-            ntripServer = new Server(service.server, service.port, serverListener);
-            ntripServer.start();
-            _state = State.CONNECTING;
+            relay.clear();
+            corrections.setMaxAgeMillis(service.maxCorrectionAgeMillis);
+            setState(State.CONNECTING);
+            openConnection();
+            startSecondary(service);
+            ticker = reactor.schedule(this::tick, TICK_MILLISECONDS, TICK_MILLISECONDS);
         } catch (Exception e) {
             Log.w(LOG_TAG, "Unhandled: unable to connect to server");
-            _state = State.IDLE;
+            setState(State.IDLE);
         }
     }
 
-    public byte[] next(int maxLength) {
-        return parser.next(maxLength);
+    /**
+     * Moves the {@link NtripParser}'s output into the fanout, for when it's not relaying; the parser's
+     * chunks are stored as frames, and split to each SitePoint's MTU as they're read.
+     */
+    private void drainParser() {
+        byte[] parsed;
+        while ((parsed = parser.next(RELAY_MAX_WRITE)).length > 0) {
+            corrections.offer(parsed, 0, parsed.length, readAt);
+        }
+    }
+
+    /**
+     * @return the corrections shared by the {@link BleManager}'s SitePoint sessions, each reading
+     * them through a {@link CorrectionFanout.Cursor} of its own.
+     */
+    CorrectionFanout getCorrections() {
+        return corrections;
     }
 
     /**
-     * Disconnect and broadcast for UI; this class will self-disconnect for errors.
+     * Picks the caster's mountpoint closest to the phone, using its cached sourcetable, then connects.
+     * The sourcetable may need fetching, so this happens on a separate thread.
      */
-    public void disconnect() {
-        _state = State.IDLE;
-        stopGgaTimer();
-        ntripServer.stop();
+    private void connectNearest(NtripService service) {
+        Location location = getGga().getLocation();
+        if (location == null) {
+            App.displayError(LOG_TAG, "Mountpoint missing, and no position for choosing the nearest one");
+            return;
+        }
+        if (sourcetables == null) {
+            File directory = new File(App.getAppContext().getCacheDir(), "sourcetables");
+            sourcetables = new SourcetableCache(directory, SourcetableCache.DEFAULT_TTL_MILLISECONDS);
+        }
+        pendingNearest = service;
+        new Thread(() -> {
+            try {
+                MountpointIndex index = sourcetables.getIndex(service);
+                long start = System.nanoTime();
+                Sourcetable.Stream nearest = index.nearest(location.getLatitude(), location.getLongitude());
+                long micros = (System.nanoTime() - start) / 1000;
+                if (nearest == null) {
+                    App.displayError(LOG_TAG, "No RTCM 3 mountpoints with a location at " + service.server);
+                    return;
+                }
+                double km = MountpointIndex.distanceKm(nearest, location.getLatitude(), location.getLongitude());
+                Log.i(LOG_TAG, String.format(Locale.US, "Nearest of %d mountpoints is %s, %.1fkm away (%dus)",
+                        index.size(), nearest, km, micros));
+                synchronized (Ntrip.this) {
+                    // unless disconnected, or connected elsewhere, meanwhile
+                    if (pendingNearest != service) {
+                        return;
+                    }
+                    pendingNearest = null;
+                    service.mountpoint = nearest.mountpoint;
+                    connect(service);
+                }
+            } catch (IOException e) {
+                App.displayError(LOG_TAG, "Unable to get the sourcetable from " + service.server, e);
+            }
+        }, "ntrip sourcetable").start();
+    }
+
+    private synchronized NtripGga getGga() {
+        if (gga == null) {
+            gga = new NtripGga();
+        }
+        return gga;
+    }
+
+    /**
+     * Disconnect and broadcast for UI; this class will self-disconnect for errors, unless
+     * {@link NtripService#autoReconnect} is set, in which case only authorization failures disconnect.
+     */
+    public synchronized void disconnect() {
+        Log.i(LOG_TAG, corrections.toString());
+        Log.i(LOG_TAG, reconnector.toString());
+        Log.i(LOG_TAG, ggaScheduler.toString());
+        setState(State.IDLE);
+        reconnector.cancel();
+        pendingNearest = null;
+        if (ticker != null) {
+            ticker.cancel();
+            ticker = null;
+        }
+        closeConnection();
+        if (secondary != null) {
+            Log.i(LOG_TAG, secondary.toString());
+            Log.i(LOG_TAG, failover.toString());
+            secondary.close();
+            secondary = null;
+            failover = null;
+        }
         ntripService = null;
+        lastGga = null;
         broadcastDisconnect();
     }
 
-    private void sendGgaString() {
-        if (ntripService != null && ntripService.sendPosition && _state == State.ACTIVE) {
-            if (gga == null) {
-                gga = new NtripGga();
-            }
+    /**
+     * Disconnects, and stops the reactor thread; this can't be used afterwards.
+     */
+    void close() {
+        if (_state != State.IDLE) {
+            disconnect();
+        }
+        // outside the lock, which the reactor thread may be waiting on
+        reactor.close();
+    }
 
-            String gga = this.gga.toString();
-            if (gga.isEmpty()) {
-                Log.w(LOG_TAG, "No position to send to NTRIP server");
-                return;
-            }
-            String serverRequest = gga + "\r\n";
-            byte[] data = serverRequest.getBytes();
-            StringBuilder sb = new StringBuilder();
-            for (byte b : data) { sb.append(String.format("%02X ", b)); }
-            Log.d(LOG_TAG, "GGA for server , " + sb);
-            try {
-                ntripServer.write(data);
-            } catch (Exception e) {
-                App.displayError(LOG_TAG, "Error writing GGA to NTRIP server");
-            }
+    /**
+     * Starts the service's redundant secondary stream, if it has one; it only works through the relay.
+     */
+    private void startSecondary(NtripService service) {
+        NtripService standby = service.secondary;
+        if (standby == null || !service.relayMode) {
+            return;
+        }
+        if (standby.mountpoint == null || standby.mountpoint.isEmpty()) {
+            Log.w(LOG_TAG, "Secondary caster has no mountpoint; streaming without redundancy");
+            return;
         }
+        failover = new StreamFailover(relay);
+        secondary = new SecondaryStream(reactor, standby, failover,
+                new Backoff(RECONNECT_INITIAL_MILLISECONDS, RECONNECT_MAX_MILLISECONDS), STALL_MILLISECONDS);
+        secondary.start();
     }
 
-    private final Runnable ggaPoster = new Runnable() {
-        @Override
-        public void run() {
-            if (_state != State.ACTIVE) {
+    private synchronized void openConnection() {
+        lastActivityAt = System.nanoTime();
+        StreamFailover redundant = failover;
+        if (redundant != null) {
+            redundant.reset(StreamFailover.PRIMARY);
+        }
+        connection = reactor.connect(ntripService.server, ntripService.port, connectionListener);
+    }
+
+    private synchronized void closeConnection() {
+        if (connection != null) {
+            Log.i(LOG_TAG, connection.getWriteQueue().toString());
+            connection.close();
+            connection = null;
+        }
+    }
+
+    private void connectionFailed(Exception e) {
+        NtripService service = ntripService;
+        if (_state != State.IDLE && service != null && service.autoReconnect) {
+            Log.w(LOG_TAG, "NTRIP connection lost, reconnecting: " + e);
+            scheduleReconnect();
+            return;
+        }
+        if (_state != State.IDLE) {
+            disconnect();
+        }
+        App.displayError(LOG_TAG, e.toString(), e);
+    }
+
+    /**
+     * Runs on the reactor every {@link #TICK_MILLISECONDS} while connected (or reconnecting).
+     */
+    private void tick() {
+        SecondaryStream standby = secondary;
+        if (standby != null) {
+            standby.tick();
+        }
+        State state = _state;
+        if (state == State.CONNECTING || state == State.AUTHORIZING || state == State.ACTIVE) {
+            long quietMillis = (System.nanoTime() - lastActivityAt) / 1_000_000L;
+            if (quietMillis > STALL_MILLISECONDS) {
+                connectionFailed(new SocketTimeoutException("Nothing from the caster for " + quietMillis + "ms"));
                 return;
             }
-            sendGgaString();
-            ggaHandler.postDelayed(this, GGA_INTERVAL_MILLISECONDS);
-
         }
-    };
+        sendGgaIfDue();
+    }
 
-    private void startGgaTimer() {
-        if (ggaHandler == null) {
-            HandlerThread ggaHandlerThread = new HandlerThread("gga");
-            ggaHandlerThread.start();
-            ggaHandler = new Handler(ggaHandlerThread.getLooper());
+    /**
+     * Drops the current connection and waits out the {@link Backoff} before trying again, keeping
+     * queued corrections (the {@link CorrectionFanout} ages them out if the outage is long).
+     */
+    private synchronized void scheduleReconnect() {
+        if (_state == State.IDLE) {
+            return;
         }
-        ggaHandler.postDelayed(ggaPoster, GGA_INTERVAL_MILLISECONDS);
+        setState(State.RECONNECTING);
+        closeConnection();
+        long delay = reconnector.connectionLost();
+        Log.i(LOG_TAG, "Reconnecting to " + ntripService + " in " + delay + "ms");
     }
 
-    private void stopGgaTimer() {
-        if (ggaHandler != null) {
-            ggaHandler.removeCallbacks(ggaPoster);
+    /**
+     * Runs on the {@link Reconnector} timer; authorization is redone by {@link #startAiding()} once connected.
+     */
+    private synchronized void reconnect() {
+        if (_state != State.RECONNECTING || ntripService == null) {
+            return;
         }
+        setState(State.CONNECTING);
+        openConnection();
     }
 
-    private static String getSlashedMountpoint(NtripService service) {
-        String mountpoint = service.mountpoint;
-        return mountpoint.startsWith("/") ? mountpoint : "/" + mountpoint;
+    /**
+     * Runs on the reactor thread, on each {@link #tick()} and once authorized.
+     *
+     * @return whether a GGA was sent.
+     */
+    private boolean sendGgaIfDue() {
+        NtripService service = ntripService;
+        NioReactor.Connection current = connection;
+        if (service == null || current == null || !service.sendPosition || _state != State.ACTIVE) {
+            return false;
+        }
+        NtripGga gga = getGga();
+        if (!gga.resolve(service.ggaSource)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        GgaScheduler.Reason reason = ggaScheduler.due(now, gga.getLatitude(), gga.getLongitude(), gga.getQuality());
+        if (reason == null) {
+            return false;
+        }
+        ByteBuffer sentence = gga.encode();
+        // the write is queued, so it gets its own copy of the encoder's buffer
+        byte[] data = Arrays.copyOf(sentence.array(), sentence.limit());
+        lastGga = data;
+        App.recorder.record(FlightRecorder.NTRIP_TX, data);
+        current.write(data);
+        SecondaryStream standby = secondary;
+        if (standby != null) {
+            standby.sendGga(data);
+        }
+        ggaScheduler.sent(reason, now, gga.getLatitude(), gga.getLongitude(), gga.getQuality());
+        return true;
     }
 
     private void startAiding() {
-        if (ntripService != null) {
-            Log.i(LOG_TAG, ("authorize for " + ntripService));
-            _state = State.AUTHORIZING;
-            String serverRequest = "GET " + getSlashedMountpoint(ntripService) + " HTTP/1.1\r\nHost: " + ntripService.server + "\r\nAccept: */*\r\nUser-Agent: SignalQuest NTRIP Client/1.0\r\nAuthorization: Basic " + getBasicAuth() + "\r\nConnection: close\r\n\r\n";
-            Log.d(LOG_TAG, "Authorization request: " + serverRequest);
-            byte[] data = serverRequest.getBytes();
+        NtripService service = ntripService;
+        if (service != null) {
+            Log.i(LOG_TAG, ("authorize for " + service));
+            setState(State.AUTHORIZING);
+            responseDecoder.reset();
+            byte[] data = request(service);
+            Log.d(LOG_TAG, "Authorization request: " + new String(data));
+            App.recorder.record(FlightRecorder.NTRIP_TX, data);
             try {
-                ntripServer.write(data);
+                connection.write(data);
             } catch (Exception e) {
                 App.displayError(LOG_TAG, "Error creating NTRIP aiding server request", e);
                 disconnect();
@@ -204,21 +469,47 @@ class Ntrip {
         }
     }
 
-    private String getBasicAuth() {
-        String username = ntripService.username;
-        String password = ntripService.password;
-        String authString = username + ":" + password;
-        return Base64.getEncoder().encodeToString(authString.getBytes());
+    /**
+     * @return the stream request for the service's mountpoint.
+     */
+    static byte[] request(NtripService service) {
+        return NtripRequest.stream(service.server, service.mountpoint, service.username, service.password);
     }
 
-    private void handleAuthorized(byte[] serverResponse) {
+    /**
+     * Called with the response header only; RTCM following it in the same read is passed on by the
+     * {@link NtripResponseDecoder} once this has made the stream active.
+     */
+    private void handleAuthorized(byte[] serverResponse, boolean accepted) {
         try {
-            parser.parseAuthorized(serverResponse);
+            if (!accepted) {
+                // the parser throws with a failure summary for the caster's usual errors
+                parser.parseAuthorized(serverResponse);
+                App.displayError(LOG_TAG, "NTRIP auth failure: " + new String(serverResponse).trim());
+                disconnect();
+                return;
+            }
+            NtripService service = ntripService;
+            if (service == null) {
+                // disconnected while the response was on its way
+                return;
+            }
             Log.d(LOG_TAG, "NTRIP auth success, active");
-            _state = State.ACTIVE;
-            if (ntripService.sendPosition) {
-                // Start a repeating timer to send the latest GGA string (if any known)
-                startGgaTimer();
+            boolean restoring = reconnector.isReconnecting();
+            setState(State.ACTIVE);
+            reconnector.restored();
+            if (restoring) {
+                Log.i(LOG_TAG, "NTRIP restored; " + reconnector);
+            }
+            if (service.sendPosition) {
+                // casters such as VRS networks need a position before streaming, so don't wait for a tick
+                ggaScheduler.reset();
+                byte[] gga = lastGga;
+                NioReactor.Connection current = connection;
+                if (!sendGgaIfDue() && restoring && gga != null && current != null) {
+                    App.recorder.record(FlightRecorder.NTRIP_TX, gga);
+                    current.write(gga);
+                }
             }
         } catch (AuthorizationFailure e) {
             App.displayError(LOG_TAG, "NTRIP auth failure: (" + e.summary + ": " + e.details);
@@ -227,122 +518,7 @@ class Ntrip {
     }
 
     private void broadcastDisconnect() {
-        App.getAppContext().sendBroadcast(new Intent(NTRIP_DISCONNECT_ACTION));
-    }
-
-    /**
-     * Simple server that connects to, reads from, and writes to a socket.
-     */
-    private static class Server implements Runnable {
-
-        private final Handler handler;
-        private final String serverAddress;
-        private final int serverPort;
-        private SocketChannel socketChannel;
-        private Selector selector;
-        private volatile boolean running = false;
-        private final ServerListener listener;
-        Queue<ByteBuffer> writeBuffer = new ArrayDeque<>();
-
-        public Server(String serverAddress, int serverPort, ServerListener listener) {
-            this.serverAddress = serverAddress;
-            this.serverPort = serverPort;
-            this.listener = listener;
-            HandlerThread thread = new HandlerThread("ntrip server");
-            thread.start();
-            handler = new Handler(thread.getLooper());
-        }
-
-        public void run() {
-            try {
-                selector = Selector.open();
-                socketChannel = SocketChannel.open();
-                socketChannel.configureBlocking(false);
-                socketChannel.register(selector, SelectionKey.OP_CONNECT);
-                InetSocketAddress address = new InetSocketAddress(serverAddress, serverPort);
-                socketChannel.connect(address);
-                while (running) {
-                    selector.select();
-                    if (!selector.isOpen()) {
-                        break;
-                    }
-                    for (SelectionKey key : selector.selectedKeys()) {
-                        if (key.isConnectable()) {
-                            if (socketChannel.isConnectionPending()) {
-                                socketChannel.finishConnect();
-                                socketChannel.register(selector, SelectionKey.OP_READ);
-                                listener.connected();
-                            }
-                        } else if (key.isReadable()) {
-                            ByteBuffer buffer = ByteBuffer.allocate(1024);
-                            int bytesRead = socketChannel.read(buffer);
-                            if (bytesRead == -1) {
-                                throw new RuntimeException("Server has closed the connection");
-                            }
-                            buffer.flip();
-                            byte[] response = new byte[bytesRead];
-                            buffer.get(response);
-                            listener.handleData(response);
-                            buffer.clear();
-                        } else if (key.isWritable()) {
-                            ByteBuffer buffer = writeBuffer.peek();
-                            if (buffer != null) {
-                                socketChannel.write(buffer);
-                                if (buffer.remaining() == 0) {
-                                    writeBuffer.poll();
-                                }
-                            }
-                            if (writeBuffer.isEmpty()) {
-                                key.interestOps(SelectionKey.OP_READ);
-                            }
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                listener.handleException(e);
-                stop();
-            }
-        }
-
-        public void start() {
-            running = true;
-            handler.post(this);
-        }
-
-        public void stop() {
-            running = false;
-            try {
-                if (socketChannel != null && socketChannel.isOpen()) {
-                    socketChannel.close();
-                }
-                if (selector != null && selector.isOpen()) {
-                    selector.wakeup();
-                    selector.close();
-                }
-            } catch (IOException e) {
-                listener.handleException(e);
-            }
-        }
-
-        public void write(byte[] data) {
-            assert(running);
-            if (socketChannel != null && socketChannel.isConnected()) {
-                writeBuffer.add(ByteBuffer.wrap(data));
-                socketChannel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-                selector.wakeup();
-            } else {
-                listener.handleException(new IOException("Socket channel is not connected"));
-            }
-        }
-    }
-
-    /**
-     * Used by the {@link Server} for reporting read data and exceptions, and reporting the connected event.
-     */
-    private interface ServerListener {
-        void handleData(byte[] data);
-        void connected();
-        void handleException(Exception e);
+        App.connections.publish(App.Connection.NTRIP_DISCONNECTED);
     }
 
     public static class NtripService {
@@ -352,6 +528,27 @@ class Ntrip {
         public boolean sendPosition;
         public String username;
         public String password;
+        /**
+         * Frame and relay RTCM through the {@link RtcmRelay}, instead of through the {@link NtripParser}.
+         */
+        public boolean relayMode = true;
+        /**
+         * Queued corrections older than this are dropped instead of being sent to the SitePoint.
+         */
+        public long maxCorrectionAgeMillis = DEFAULT_MAX_CORRECTION_AGE_MILLISECONDS;
+        /**
+         * Reconnect, with backoff, when the connection drops, rather than disconnecting.
+         */
+        public boolean autoReconnect = true;
+        /**
+         * Where the position sent to the caster, when {@link #sendPosition} is set, comes from.
+         */
+        public NtripGga.Source ggaSource = NtripGga.Source.SITEPOINT;
+        /**
+         * A second caster (or mountpoint) streamed at the same time, which takes over within an epoch
+         * when this one degrades; needs {@link #relayMode}. It's sent this service's GGA, whatever its own settings.
+         */
+        public NtripService secondary;
 
         public NtripService(String server, int port, String username, String password, String mountpoint, boolean sendPosition) {
             this.server = server;
@@ -364,7 +561,7 @@ class Ntrip {
 
         @NonNull
         public String toString() {
-            return "NtripService: " + server + ":" + port + getSlashedMountpoint(this);
+            return "NtripService: " + server + ":" + port + NtripRequest.slashed(mountpoint);
         }
     }
 }
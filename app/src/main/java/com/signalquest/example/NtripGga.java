@@ -4,84 +4,171 @@ import static android.content.Context.LOCATION_SERVICE;
 import static android.content.pm.PackageManager.PERMISSION_GRANTED;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import com.signalquest.api.Status;
+
+import java.nio.ByteBuffer;
 
 /**
- * Uses {@link LocationManager} to get NMEA GGA sentences for seeding NTRIP services.
+ * Builds NMEA GGA sentences for seeding NTRIP services, from the SitePoint's position or this Android's.
  * <p>
- * This class doesn't use any SignalQuest services; it is only included to make using this example,
- * with NTRIP services that require location seeding, easier.
+ * The SitePoint's latest {@link com.signalquest.api.Location} and {@link Status} come from
+ * {@link BleManager}; the phone's come from {@link LocationManager}. With {@link Source#SITEPOINT}, the
+ * phone is only used while the SitePoint has no recent fix, e.g. before it's connected.
  * <p>
- * To use, instantiate this class and call {@link #toString()} to get the latest GGA sentence.
+ * To use, instantiate this class and call {@link #encode(Source)} to get the latest GGA sentence,
+ * written by a reused {@link NmeaEncoder}; or {@link #resolve(Source)} the position first, to decide
+ * whether it's worth sending, then {@link #encode()} it.
  * <p>
  * Requires ACCESS_COARSE_LOCATION and ACCESS_FINE_LOCATION permissions.
  */
 public class NtripGga {
-
-    LocationService locationService;
+    // SitePoint iTOW is GPS time, ahead of UTC by the leap seconds since 1980
+    private static final long GPS_UTC_LEAP_MILLISECONDS = 18 * 1000;
+    private static final long SITEPOINT_FIX_MAX_AGE_MILLISECONDS = 10 * 1000;
+    // SitePoint solution modes, as labelled by Status#getModeLabel()
+    private static final int MODE_2D = 2;
+    private static final int MODE_3D = 3;
+    private static final int MODE_RTK_FLOAT = 4;
+    private static final int MODE_RTK_FIXED = 5;
+    private static final int MODE_AUTO_SURVEYING = 6;
+    private static final int MODE_FIXED_BASE = 7;
+    // used for the HDOP field, which SitePoints don't report
+    private static final double NOMINAL_HDOP = 1.0;
+
+    enum Source { SITEPOINT, PHONE }
+
+    private static volatile com.signalquest.api.Location sitePointLocation;
+    private static volatile long sitePointLocationAt;
+    private static volatile Status sitePointStatus;
+
+    private final LocationService locationService;
+    private final NmeaEncoder encoder = new NmeaEncoder();
+    // learnt from the phone's mean-sea-level altitude, when it has one; changes slowly with position
+    private double geoidSeparation = 0.0;
+    // the position picked by resolve()
+    private long utcMillis;
+    private double latitude;
+    private double longitude;
+    private int quality;
+    private int satellites;
+    private double altitude;
 
     NtripGga() { locationService = new LocationService(); }
 
+    static void setSitePointLocation(com.signalquest.api.Location location) {
+        sitePointLocation = location;
+        sitePointLocationAt = SystemClock.elapsedRealtime();
+    }
+
+    static void setSitePointStatus(Status status) {
+        sitePointStatus = status;
+    }
+
     /**
-     * @return An NMEA GGA sentence, using this Android's current location, for passing to an NTRIP service.
+     * Picks the position to send from the given source, falling back to the phone's.
+     *
+     * @return false if there's no position yet.
      */
-    @NonNull
-    @Override
-    public String toString() {
-        String gga = "";
-        // could also use a SitePoint location
-        if (locationService.location != null) {
-            @SuppressLint("SimpleDateFormat") DateFormat timestampFormatter = new SimpleDateFormat("HHmmss");
-            timestampFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-            String nmea0183GPGGA;
-            double latitude = toNmea(locationService.location.getLatitude());
-            double longitude = toNmea(locationService.location.getLongitude());
-
-            nmea0183GPGGA = "GPGGA," + timestampFormatter.format(new Date(locationService.location.getTime()));
-            nmea0183GPGGA += String.format(Locale.US, ",%07.2f,", Math.abs(latitude));
-            nmea0183GPGGA += latitude > 0.0 ? "N" : "S";
-            nmea0183GPGGA += String.format(Locale.US, ",%08.2f,", Math.abs(longitude));
-            nmea0183GPGGA += longitude > 0.0 ? "E" : "W";
-            nmea0183GPGGA += ",1,10,1,";
-            nmea0183GPGGA += String.format(Locale.US, "%1.1f,M,%1.1f,M,5,", locationService.location.getAltitude(), locationService.location.getAltitude());
-            nmea0183GPGGA += String.format("*%02X", nmeaSentenceChecksum(nmea0183GPGGA));
-            nmea0183GPGGA = "$" + nmea0183GPGGA;
-            gga = nmea0183GPGGA;
+    boolean resolve(Source source) {
+        Location phone = locationService.location;
+        if (phone != null && Build.VERSION.SDK_INT >= 34 && phone.hasMslAltitude()) {
+            geoidSeparation = phone.getAltitude() - phone.getMslAltitudeMeters();
+        }
+        if (source == Source.SITEPOINT) {
+            com.signalquest.api.Location location = sitePointLocation;
+            Status status = sitePointStatus;
+            long age = SystemClock.elapsedRealtime() - sitePointLocationAt;
+            int sitePointQuality = status == null ? NmeaEncoder.QUALITY_INVALID : toGgaQuality(status.getMode());
+            if (location != null && sitePointQuality != NmeaEncoder.QUALITY_INVALID && age < SITEPOINT_FIX_MAX_AGE_MILLISECONDS) {
+                utcMillis = location.getITow() - GPS_UTC_LEAP_MILLISECONDS;
+                latitude = location.getLatitude();
+                longitude = location.getLongitude();
+                quality = sitePointQuality;
+                satellites = status.getSatellites();
+                // SitePoint heights are above the ellipsoid
+                altitude = location.getHeight() - geoidSeparation;
+                return true;
+            }
         }
-        return gga;
+        if (phone == null) {
+            return false;
+        }
+        utcMillis = phone.getTime();
+        latitude = phone.getLatitude();
+        longitude = phone.getLongitude();
+        quality = NmeaEncoder.QUALITY_GPS;
+        // the phone doesn't say how many satellites it used; 10 is what casters have always been sent
+        satellites = 10;
+        altitude = phone.getAltitude() - geoidSeparation;
+        return true;
+    }
+
+    double getLatitude() {
+        return latitude;
+    }
+
+    double getLongitude() {
+        return longitude;
+    }
+
+    int getQuality() {
+        return quality;
     }
 
-    private double toNmea(double degrees) {
-        double degreeSign = degrees < 0.0 ? -1.0 : 1.0;
-        double degree = Math.abs(degrees);
-        double degreeDecimal = Math.floor(degree);
-        double degreeFraction = degree - degreeDecimal;
-        double minutes = degreeFraction * 60.0;
-        return degreeSign * ((degreeDecimal * 100) + minutes);
+    /**
+     * @return a GGA sentence with CRLF for the last {@link #resolve(Source)}d position, for passing to
+     * an NTRIP service, in a buffer reused by the next call.
+     */
+    ByteBuffer encode() {
+        return encoder.encodeGga(utcMillis, latitude, longitude, quality, satellites, NOMINAL_HDOP, altitude, geoidSeparation);
+    }
+
+    /**
+     * @return as {@link #encode()}, for the latest position; or null if there's no position yet.
+     */
+    @Nullable
+    ByteBuffer encode(Source source) {
+        return resolve(source) ? encode() : null;
     }
 
-    private long nmeaSentenceChecksum(String sentence) {
-        int checksum = 0;
-        for (int i = 0; i < sentence.length(); i++) {
-            checksum ^= sentence.charAt(i);
+    /**
+     * @return the GGA fix quality for a SitePoint solution mode.
+     */
+    static int toGgaQuality(int mode) {
+        switch (mode) {
+            case MODE_2D:
+            case MODE_3D:
+            case MODE_AUTO_SURVEYING:
+                return NmeaEncoder.QUALITY_GPS;
+            case MODE_RTK_FLOAT:
+                return NmeaEncoder.QUALITY_RTK_FLOAT;
+            case MODE_RTK_FIXED:
+                return NmeaEncoder.QUALITY_RTK_FIXED;
+            case MODE_FIXED_BASE:
+                return NmeaEncoder.QUALITY_MANUAL;
+            default:
+                // offline, acquiring, or unsupported
+                return NmeaEncoder.QUALITY_INVALID;
         }
-        checksum &= 0x0ff;
-        return checksum;
+    }
+
+    /**
+     * @return this Android's latest location, or null if none is known yet.
+     */
+    Location getLocation() {
+        return locationService.location;
     }
 
     private static class LocationService implements LocationListener {
@@ -89,7 +176,7 @@ public class NtripGga {
 
         int REFRESH_METERS = 500;
 
-        Location location;
+        volatile Location location;
 
         LocationService() {
             Context context = App.getAppContext();
@@ -99,7 +186,10 @@ public class NtripGga {
             // should be granted on startup; not handling user-revocation
             assert(fineGranted && coarseGranted);
             String provider = (Build.VERSION.SDK_INT >= 31) ? LocationManager.FUSED_PROVIDER : LocationManager.NETWORK_PROVIDER;
-            locationManager.requestLocationUpdates(provider, REFRESH_MILLISECONDS, REFRESH_METERS, this);
+            // delivered on the main thread, as this may be created on one without a Looper
+            locationManager.requestLocationUpdates(provider, REFRESH_MILLISECONDS, REFRESH_METERS, this, Looper.getMainLooper());
+            // so a position is available straight away, e.g. for choosing the nearest mountpoint
+            location = locationManager.getLastKnownLocation(provider);
         }
 
         @Override
@@ -0,0 +1,167 @@
+package com.signalquest.example;
+
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+
+/**
+ * The standby half of a redundant pair of correction streams (see {@link StreamFailover}).
+ * <p>
+ * Connects, authorizes, and reconnects after a {@link Backoff} on its own, on the shared
+ * {@link NioReactor}, so its outages never touch the primary's state; everything it reads goes to the
+ * failover as the {@link StreamFailover#SECONDARY} stream. Errors are counted rather than shown, since
+ * the primary may be streaming fine.
+ */
+class SecondaryStream implements NioReactor.Listener, NtripResponseDecoder.Listener {
+    private final NioReactor reactor;
+    private final Ntrip.NtripService service;
+    private final StreamFailover failover;
+    private final Backoff backoff;
+    private final long stallNanos;
+    private final NtripResponseDecoder decoder = new NtripResponseDecoder(this);
+
+    private volatile NioReactor.Connection connection;
+    private NioReactor.Timer retry;
+    private boolean running = false;
+    private volatile boolean authorized = false;
+    // the primary's latest GGA, when it sends them; sent again on each new connection
+    private volatile byte[] gga;
+    private volatile long lastActivityAt;
+    private int connects = 0;
+    private int failures = 0;
+    private Exception lastFailure;
+
+    SecondaryStream(NioReactor reactor, Ntrip.NtripService service, StreamFailover failover, Backoff backoff,
+                    long stallMillis) {
+        this.reactor = reactor;
+        this.service = service;
+        this.failover = failover;
+        this.backoff = backoff;
+        this.stallNanos = stallMillis * 1_000_000L;
+    }
+
+    synchronized void start() {
+        running = true;
+        connect();
+    }
+
+    synchronized void close() {
+        running = false;
+        authorized = false;
+        if (retry != null) {
+            retry.cancel();
+            retry = null;
+        }
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    private synchronized void connect() {
+        if (!running) {
+            return;
+        }
+        authorized = false;
+        connects++;
+        lastActivityAt = System.nanoTime();
+        connection = reactor.connect(service.server, service.port, this);
+    }
+
+    private synchronized void failed(Exception e) {
+        if (!running) {
+            return;
+        }
+        failures++;
+        lastFailure = e;
+        authorized = false;
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+        retry = reactor.schedule(this::connect, backoff.nextDelayMillis());
+    }
+
+    /**
+     * Called on the reactor every second or so, to catch a stream that's gone quiet.
+     */
+    void tick() {
+        if (running && connection != null && System.nanoTime() - lastActivityAt > stallNanos) {
+            failed(new SocketTimeoutException("Nothing from the secondary caster for " + stallNanos / 1_000_000L + "ms"));
+        }
+    }
+
+    /**
+     * Sends the rover's position, if authorized, and keeps it for the next connection.
+     */
+    void sendGga(byte[] data) {
+        gga = data;
+        NioReactor.Connection current = connection;
+        if (authorized && current != null) {
+            current.write(data);
+        }
+    }
+
+    boolean isAuthorized() {
+        return authorized;
+    }
+
+    /**
+     * Synchronized, as are failures, since this can run before {@link #connect()} has stored the connection.
+     */
+    @Override
+    public synchronized void connected(NioReactor.Connection from) {
+        if (from != connection) {
+            return;
+        }
+        decoder.reset();
+        failover.reset(StreamFailover.SECONDARY);
+        from.write(Ntrip.request(service));
+    }
+
+    @Override
+    public void handleData(NioReactor.Connection from, byte[] buffer, int offset, int length) {
+        if (from != connection) {
+            return;
+        }
+        lastActivityAt = System.nanoTime();
+        try {
+            decoder.decode(buffer, offset, length);
+        } catch (ProtocolException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void handleException(NioReactor.Connection from, Exception e) {
+        if (from == connection) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public void onHeader(byte[] header, int length, boolean accepted) {
+        if (!accepted) {
+            failed(new ProtocolException("Secondary caster refused: "
+                    + new String(header, 0, Math.min(length, 64)).trim()));
+            return;
+        }
+        authorized = true;
+        backoff.reset();
+        byte[] position = gga;
+        NioReactor.Connection current = connection;
+        if (position != null && current != null) {
+            current.write(position);
+        }
+    }
+
+    @Override
+    public void onPayload(byte[] buffer, int offset, int length) {
+        failover.put(StreamFailover.SECONDARY, buffer, offset, length);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SecondaryStream: " + service + ", " + connects + " connects, " + failures + " failures"
+                + (lastFailure == null ? "" : " (last " + lastFailure + ")");
+    }
+}
@@ -3,8 +3,6 @@ package com.signalquest.example;
 import android.annotation.SuppressLint;
 import android.bluetooth.le.ScanRecord;
 import android.bluetooth.le.ScanResult;
-import android.os.SystemClock;
-import android.util.SparseArray;
 
 import com.signalquest.api.ScanStatus;
 
@@ -15,13 +13,12 @@ import java.util.UUID;
  */
 public class SitePoint {
 
-    private final static int SIGNALQUEST_ID = 3127;
+    final static int SIGNALQUEST_ID = 3127;
 
     public static UUID SITEPOINT_SERVICE = UUID.fromString("00000100-34ed-12ef-63f4-317792041d17");
     public static UUID RTCM_CHARACTERISTIC = UUID.fromString("00000102-34ed-12ef-63f4-317792041d17");
     public static UUID MESSAGE_CHARACTERISTIC = UUID.fromString("00000105-34ed-12ef-63f4-317792041d17");
     public static UUID CCCD = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
-    private final static short SCAN_OLD_SECONDS = 10;
     final ScanResult scanResult;
     private final ScanRecord scanRecord;
     public ScanStatus scanStatus;
@@ -44,41 +41,22 @@ public class SitePoint {
     }
 
     /**
-     * @return whether the scan result is old, so the UI can stop showing it.
+     * @param scanStatus decoded from the record's {@link #SIGNALQUEST_ID} manufacturer data.
      */
-    public boolean expired() {
-        long androidSeconds = (long) (SystemClock.elapsedRealtime() / Math.pow(10, 3));
-        long scanSeconds = (long) (scanResult.getTimestampNanos() / Math.pow(10, 9));
-        return SCAN_OLD_SECONDS < androidSeconds - scanSeconds;
-    }
-
     @SuppressLint("MissingPermission")
-    public SitePoint(ScanResult scanResult, ScanRecord scanRecord) {
+    public SitePoint(ScanResult scanResult, ScanRecord scanRecord, ScanStatus scanStatus) {
         this.scanResult = scanResult;
         this.scanRecord = scanRecord;
-        byte[] manufacturerData = getManufacturerData();
-        this.scanStatus = new ScanStatus(manufacturerData);
-    }
-
-    private byte[] getManufacturerData() {
-        byte[] signalQuestData = null;
-        SparseArray<byte[]> manufacturerData = scanRecord.getManufacturerSpecificData();
-        for (int i = 0; i < manufacturerData.size(); i++) {
-            int manufacturerId = manufacturerData.keyAt(i);
-            if (SIGNALQUEST_ID == manufacturerId) {
-                signalQuestData = manufacturerData.valueAt(i);
-            }
-        }
-        assert (signalQuestData != null);
-        return signalQuestData;
+        this.scanStatus = scanStatus;
     }
 
     /**
      * Connected to any Bluetooth Central, not necessarily this Android.
+     * <p>
+     * This app keeps scanning while connected, to connect more SitePoints, so this is also true for
+     * one connected here; check {@link BleManager#hasSession(SitePoint)} first to tell the two apart.
      */
     public boolean connectedFromScan() {
-        // Please note: this app does not scan while connecting/connected, so this will
-        // return false when connected to this Android.
         return scanStatus.isConnected();
     }
 }
@@ -0,0 +1,690 @@
+package com.signalquest.example;
+
+import static android.bluetooth.BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+import static com.signalquest.example.SitePoint.CCCD;
+import static com.signalquest.example.SitePoint.MESSAGE_CHARACTERISTIC;
+import static com.signalquest.example.SitePoint.RTCM_CHARACTERISTIC;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.BluetoothStatusCodes;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.signalquest.api.ApiException;
+import com.signalquest.api.Location;
+import com.signalquest.api.MessageHandler;
+import com.signalquest.api.Status;
+
+import java.util.function.IntConsumer;
+
+/**
+ * One SitePoint's GATT connection, with its own MTU, operation scheduling, RTCM write pacing, link
+ * control and message parsing, so several SitePoints can be connected at once.
+ * <p>
+ * Each session reads the shared NTRIP corrections through its own {@link CorrectionFanout.Cursor},
+ * paced by its own link, so a slow SitePoint never holds up the others.
+ * <p>
+ * The {@link BleManager} makes one session the primary: its messages are published through {@link App},
+ * for the UI and {@link NtripGga}, and its RTCM writes are the ones the {@link LatencyTracer} follows.
+ */
+@SuppressLint("MissingPermission")
+class SitePointSession {
+    private final static String LOG_TAG = "SitePointSession";
+    private static final long LINK_POLL_MILLISECONDS = 2000;
+
+    /**
+     * Told of the session's connection coming up and going away.
+     */
+    interface Listener {
+        void connected(SitePointSession session);
+
+        /**
+         * The session is over, and can't be reconnected.
+         */
+        void closed(SitePointSession session);
+    }
+
+    final SitePoint sitePoint;
+    private final CorrectionFanout.Cursor corrections;
+    private final Listener listener;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false;
+    private volatile boolean primary = false;
+    // set on the main and binder threads, read from the scheduler's and the relay's; read once into a local where used
+    private volatile BluetoothGatt gatt = null;
+    private volatile BluetoothGattCharacteristic messageCharacteristic = null;
+    private volatile BluetoothGattCharacteristic rtcmCharacteristic = null;
+    // default starting value, probably much lower than negotiated MTU
+    private volatile int mtu = 23;
+    private final RtcmWritePacer rtcmPacer = new RtcmWritePacer();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable retryRtcm = this::writeRtcm;
+    private final IntConsumer settleRtcm = this::settleRtcm;
+    private final GattScheduler gattScheduler = new GattScheduler(new GattScheduler.Gatt() {
+        @Override
+        public boolean start(GattScheduler.Operation operation) {
+            return startOperation(operation);
+        }
+
+        @Override
+        public byte[] nextRtcm() {
+            return SitePointSession.this.nextRtcm();
+        }
+
+        @Override
+        public void gaveUp(GattScheduler.Operation operation) {
+            operationGivenUp(operation);
+        }
+
+        @Override
+        public void wake(long delayMillis) {
+            handler.removeCallbacks(gattAlarm);
+            handler.postDelayed(gattAlarm, delayMillis);
+        }
+    });
+    private final Runnable gattAlarm = gattScheduler::onAlarm;
+    private final LinkPolicy linkPolicy = new LinkPolicy();
+    private final Runnable pollLink = this::pollLink;
+
+    SitePointSession(SitePoint sitePoint, CorrectionFanout.Cursor corrections, Listener listener) {
+        this.sitePoint = sitePoint;
+        this.corrections = corrections;
+        this.listener = listener;
+    }
+
+    /**
+     * Connect GATT for the session's SitePoint.
+     */
+    void connect() throws IllegalStateException {
+        gatt = sitePoint.scanResult.getDevice().connectGatt(App.getAppContext(), false, gattCallback, BluetoothDevice.TRANSPORT_LE);
+    }
+
+    /**
+     * Disconnects GATT, but closing GATT is handled in the {@link BluetoothGattCallback}
+     */
+    void disconnect() {
+        BluetoothGatt gatt = this.gatt;
+        if (gatt != null) {
+            try {
+                Log.i(LOG_TAG, "Disconnecting " + sitePoint.getAddress());
+                gatt.disconnect();
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Disconnect exception", e);
+                App.displayError(LOG_TAG, "Disconnecting failed.");
+            }
+        } else {
+            close();
+        }
+    }
+
+    /**
+     * From the connection state cached off the GATT callbacks, so it costs no IPC.
+     */
+    boolean isConnected() {
+        return connected;
+    }
+
+    boolean isPrimary() {
+        return primary;
+    }
+
+    /**
+     * Makes this the session whose messages are published and whose writes are traced, or not.
+     */
+    void setPrimary(boolean primary) {
+        if (this.primary == primary) {
+            return;
+        }
+        this.primary = primary;
+        corrections.setTracer(primary ? App.tracer : null);
+        // the write in flight was started untraced, or by the old primary; switched first, so no
+        // callback from before the switch completes a trace from after it
+        App.tracer.writesAbandoned();
+    }
+
+    String getAddress() {
+        return sitePoint.getAddress();
+    }
+
+    /**
+     * Turn on notifications for the passed-in characteristic.
+     * <p>
+     * Failure to enable the notification is unexpected, so we cleanup by disconnecting.
+     */
+    private void enableNotifications(BluetoothGattCharacteristic characteristic) {
+        if (characteristic == null) {
+            Log.i(LOG_TAG, "enableNotifications, characteristic null");
+            return;
+        } else if ( (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0) {
+            Log.i(LOG_TAG,"enableNotifications, notify disabled");
+            return;
+        }
+        Log.d(LOG_TAG,"enableNotifications characteristic " + characteristic.getUuid());
+        boolean enabled = gatt.setCharacteristicNotification(characteristic, true);
+        if (!enabled) {
+            Log.w(LOG_TAG,"enableNotifications, setCharacteristicNotification failed");
+            disconnect();
+            return;
+        }
+        // Calls onDescriptorWrite()
+        gattScheduler.submit(GattScheduler.Kind.WRITE_DESCRIPTOR);
+    }
+
+    /**
+     * Starts a GATT operation for the {@link #gattScheduler}.
+     *
+     * @return the stack took it.
+     */
+    private boolean startOperation(GattScheduler.Operation operation) {
+        BluetoothGatt gatt = this.gatt;
+        if (gatt == null) {
+            return false;
+        }
+        switch (operation.kind) {
+            case MTU:
+                return gatt.requestMtu(operation.argument);
+            case DISCOVER_SERVICES:
+                return gatt.discoverServices();
+            case WRITE_DESCRIPTOR:
+                BluetoothGattCharacteristic characteristic = messageCharacteristic;
+                if (characteristic == null) {
+                    return false;
+                }
+                BluetoothGattDescriptor cccd = characteristic.getDescriptor(CCCD);
+                cccd.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                return gatt.writeDescriptor(cccd);
+            case READ_RSSI:
+                return gatt.readRemoteRssi();
+            case RTCM_WRITE:
+                return startRtcm(gatt, operation.data);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gives up on the operation the {@link #gattScheduler} couldn't get through: RTCM is dropped (and counted),
+     * a failed MTU request leaves the default, and a connection that can't be set up is dropped.
+     */
+    private void operationGivenUp(GattScheduler.Operation operation) {
+        Log.w(LOG_TAG, "Gave up on " + operation);
+        switch (operation.kind) {
+            case MTU:
+                gattScheduler.submit(GattScheduler.Kind.DISCOVER_SERVICES);
+                break;
+            case DISCOVER_SERVICES:
+            case WRITE_DESCRIPTOR:
+                App.displayError(LOG_TAG, "SitePoint " + sitePoint.getName() + " not responding, disconnecting.");
+                disconnect();
+                break;
+            case RTCM_WRITE:
+                if (operation.taken) {
+                    if (primary) {
+                        App.tracer.writesAbandoned();
+                    }
+                    rtcmPacer.failed();
+                } else {
+                    rtcmPacer.dropped(operation.data.length);
+                    corrections.recycle(operation.data);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Lets the {@link #gattScheduler} know RTCM is waiting, to write it when the link is free.
+     */
+    void writeRtcm() {
+        if (rtcmCharacteristic == null) { return; }
+        gattScheduler.rtcmAvailable();
+    }
+
+    /**
+     * Takes the next RTCM write for the {@link #gattScheduler}, while {@link #rtcmPacer} allows.
+     * <p>
+     * Writes use {@link BluetoothGattCharacteristic#WRITE_TYPE_NO_RESPONSE}, so each
+     * {@link BluetoothGattCallback#onCharacteristicWrite(BluetoothGatt, BluetoothGattCharacteristic, int)}
+     * only means the stack has taken it, and frees the link for the next. While
+     * congestion pauses writing, with nothing in flight to call back, a retry is scheduled.
+     * <p>
+     * Each write holds as many whole RTCM frames as fit, from this session's cursor
+     * (see {@link CorrectionFanout.Cursor#next(int)}); the primary's cursor reports each frame's
+     * arrival to {@link App#tracer} as it's read, for the write's queue wait and end-to-end latency.
+     *
+     * @return the write, or null for none now.
+     */
+    private byte[] nextRtcm() {
+        if (rtcmCharacteristic == null) { return null; }
+        if (!rtcmPacer.mayWrite()) {
+            long backoff = rtcmPacer.getBackoffRemainingMillis();
+            if (backoff > 0 && !rtcmPacer.isInFlight()) {
+                handler.removeCallbacks(retryRtcm);
+                handler.postDelayed(retryRtcm, backoff);
+            }
+            return null;
+        }
+        // see https://developer.android.com/about/versions/14/behavior-changes-all#mtu-set-to-517
+        byte[] message = corrections.next(Math.min(mtu, 512) - 5);
+        if (message.length == 0) {
+            Log.d(LOG_TAG, "RTCM timing no data available");
+            return null;
+        }
+        return message;
+    }
+
+    /**
+     * Hands an RTCM write to the stack; the written array goes back to the cursor's pool once Android
+     * has copied it. One refused as busy is kept for the scheduler's retry.
+     *
+     * @return the stack took the write.
+     */
+    private boolean startRtcm(BluetoothGatt gatt, byte[] message) {
+        BluetoothGattCharacteristic characteristic = rtcmCharacteristic;
+        if (characteristic == null || !writeRtcm(gatt, characteristic, message)) {
+            rtcmPacer.rejected();
+            return false;
+        }
+        App.recorder.record(FlightRecorder.BLE_RTCM_TX, message);
+        if (primary) {
+            App.tracer.writeStarted();
+        }
+        rtcmPacer.started(message.length);
+        // both write calls have copied the value by now
+        corrections.recycle(message);
+        return true;
+    }
+
+    /**
+     * @return the stack took the write, rather than being busy.
+     */
+    private boolean writeRtcm(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] message) {
+        if (Build.VERSION.SDK_INT < 33) {
+            characteristic.setValue(message);
+            return gatt.writeCharacteristic(characteristic);
+        }
+        return gatt.writeCharacteristic(characteristic, message, WRITE_TYPE_NO_RESPONSE) == BluetoothStatusCodes.SUCCESS;
+    }
+
+    /**
+     * Called back for an RTCM write; the {@link #gattScheduler} checks it's for the write in flight,
+     * not one that already timed out, and has it settled before freeing the link for the next operation.
+     */
+    private void rtcmWritten(int status) {
+        if (!gattScheduler.completed(GattScheduler.Kind.RTCM_WRITE, settleRtcm, status)) {
+            Log.w(LOG_TAG, "RTCM write called back after its timeout");
+        }
+    }
+
+    /**
+     * Settles the write in flight with the {@link #rtcmPacer} and, on the primary, its trace.
+     */
+    private void settleRtcm(int status) {
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            if (primary) {
+                App.tracer.writeCompleted();
+            }
+            rtcmPacer.completed();
+        } else if (status == BluetoothGatt.GATT_CONNECTION_CONGESTED) {
+            Log.i(LOG_TAG, "RTCM write congested, backing off; " + rtcmPacer);
+            if (primary) {
+                App.tracer.writeCompleted();
+            }
+            rtcmPacer.congested();
+        } else {
+            Log.e(LOG_TAG, "RTCM write unsuccessful: " + status);
+            if (primary) {
+                // nothing was sent to time
+                App.tracer.writesAbandoned();
+            }
+            rtcmPacer.failed();
+        }
+    }
+
+    /**
+     * @return this SitePoint's RTCM throughput and how far it's behind the stream, then its GATT
+     * operation and message parsing reports.
+     */
+    String report() {
+        return "SitePoint " + sitePoint.getName() + (primary ? " (shown)" : "") + ": "
+                + rtcmPacer.getBytesPerSecond() + " B/s RTCM, " + rtcmPacer.getDrops() + " writes dropped busy, "
+                + corrections + "\n"
+                + gattScheduler.report() + messageReader.report();
+    }
+
+    /**
+     * Drops GATT operations and RTCM writes in flight or waiting, when the SitePoint goes away.
+     */
+    private void resetOperations() {
+        Log.i(LOG_TAG, rtcmPacer.toString());
+        Log.i(LOG_TAG, "GATT operations:\n" + gattScheduler.report());
+        Log.i(LOG_TAG, "RTCM " + corrections);
+        handler.removeCallbacks(retryRtcm);
+        handler.removeCallbacks(gattAlarm);
+        byte[] unsent = gattScheduler.reset();
+        if (unsent != null) {
+            corrections.recycle(unsent);
+        }
+        rtcmPacer.reset();
+        if (primary) {
+            App.tracer.writesAbandoned();
+        }
+    }
+
+    /**
+     * Reads the connection's RSSI every {@link #LINK_POLL_MILLISECONDS}, for {@link #linkSampled(BluetoothGatt, int)}.
+     */
+    private void pollLink() {
+        BluetoothGatt gatt = this.gatt;
+        if (gatt == null || rtcmCharacteristic == null) {
+            return;
+        }
+        gattScheduler.submit(GattScheduler.Kind.READ_RSSI);
+        handler.postDelayed(pollLink, LINK_POLL_MILLISECONDS);
+    }
+
+    /**
+     * Moves the link between high priority on 2M PHY and balanced on 1M, as {@link LinkPolicy}
+     * decides from the RSSI and whether RTCM is flowing, logging each change with the RTCM
+     * throughput it was made at, to see which setting helps.
+     */
+    private void linkSampled(BluetoothGatt gatt, int rssi) {
+        if (!linkPolicy.update(rssi, rtcmPacer.getBytesWritten())) {
+            return;
+        }
+        LinkPolicy.Mode mode = linkPolicy.getMode();
+        Log.i(LOG_TAG, "Link to " + mode + " at " + rtcmPacer.getBytesPerSecond() + " B/s RTCM; " + linkPolicy);
+        App.recorder.event(FlightRecorder.GATT_LINK, mode.ordinal(), rssi);
+        boolean fast = mode == LinkPolicy.Mode.FAST;
+        if (!gatt.requestConnectionPriority(fast ? BluetoothGatt.CONNECTION_PRIORITY_HIGH : BluetoothGatt.CONNECTION_PRIORITY_BALANCED)) {
+            Log.w(LOG_TAG, "requestConnectionPriority failed");
+        }
+        int phy = fast ? BluetoothDevice.PHY_LE_2M_MASK : BluetoothDevice.PHY_LE_1M_MASK;
+        // the answer comes back in onPhyUpdate, if the SitePoint's controller agrees
+        gatt.setPreferredPhy(phy, phy, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+    }
+
+    /**
+     * Stops the link polling, when the SitePoint goes away.
+     */
+    private void resetLink() {
+        handler.removeCallbacks(pollLink);
+        linkPolicy.reset();
+    }
+
+    /**
+     * Ends the session, once, stopping its message reader; the {@link Listener} drops it.
+     * <p>
+     * Called when GATT closes, or when connecting fails before it opened.
+     */
+    void close() {
+        connected = false;
+        if (closed) {
+            return;
+        }
+        closed = true;
+        resetOperations();
+        resetLink();
+        messageReader.close();
+        messageCharacteristic = null;
+        rtcmCharacteristic = null;
+        listener.closed(this);
+    }
+
+    /**
+     * Takes SitePoint notifications off the binder thread, to {@link #readMessage(byte[])}.
+     */
+    private final MessageReader messageReader = new MessageReader(this::readMessage);
+
+    /**
+     * This {@link MessageHandler} parses SitePoint data, in {@link #readMessage(byte[])} on the
+     * {@link #messageReader}'s thread, and publishes the primary session's results, through {@link App}, for the UI.
+     */
+    private final MessageHandler messageHandler = new MessageHandler(new MessageHandler.MessageReceiver() {
+        @Override
+        public void receive(Status status) {
+            if (!primary) {
+                return;
+            }
+            App.onSitePointStatus(status);
+            StringBuilder sb = new StringBuilder();
+            for (boolean b : status.getAidingQuality()) { sb.append(b ? "1" : "0"); }
+            Log.d(LOG_TAG, "RTCM timing aiding bins , " + sb);
+        }
+
+        @Override
+        public void receive(Location location) {
+            if (primary) {
+                App.onSitePointLocation(location);
+            }
+        }
+    });
+
+    /**
+     * Parse the SignalQuest messages using the {@link MessageHandler}, which sends the results
+     * to its {@link MessageHandler.MessageReceiver}.
+     */
+    private void readMessage(byte[] data) {
+        if (data == null || data.length == 0 || allZero(data)) {
+            Log.w(LOG_TAG, "No messages");
+            return;
+        }
+        try {
+            messageHandler.parse(data);
+        } catch (ApiException e) {
+            App.displayError(LOG_TAG, e.getMessage());
+        } catch (Exception e) {
+            App.displayError(LOG_TAG, "readMessage exception: " + e);
+            Log.e(LOG_TAG, "readMessage failure", e);
+        }
+    }
+
+    private boolean allZero(byte[] bytes) {
+        for (byte b : bytes) { if (b != 0) { return false; }}
+        return true;
+    }
+
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        /**
+         * Connected?
+         * <ol>
+         * <li>Request a higher MTU through the {@link #gattScheduler}, which gets handled in {@link #onMtuChanged(BluetoothGatt, int, int)}.</li>
+         * <li>Let the {@link Listener} know.</li>
+         * </ol>
+         *
+         * Disconnected? Close GATT, and {@link #close()} the session.
+         * <p>
+         * Failed? Disconnect and close GATT, since no BluetoothProfile.STATE_DISCONNECTED follows to
+         * close it, and close the session.
+         */
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            super.onConnectionStateChange(gatt, status, newState);
+            App.recorder.event(FlightRecorder.GATT_CONNECTION, status, newState);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                if (newState == BluetoothProfile.STATE_CONNECTED) {
+                    Log.d(LOG_TAG, "GATT connected " + gatt.getDevice().getAddress());
+                    SitePointSession.this.gatt = gatt;
+                    connected = true;
+                    // request Android max of 517
+                    gattScheduler.submit(GattScheduler.Kind.MTU, 517);
+                    listener.connected(SitePointSession.this);
+                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                    Log.d(LOG_TAG, "GATT disconnected " + gatt.getDevice().getAddress());
+                    gatt.close();
+                    close();
+                } else if (newState == BluetoothProfile.STATE_CONNECTING) {
+                    Log.d(LOG_TAG, "GATT connecting");
+                } else if (newState == BluetoothProfile.STATE_DISCONNECTING) {
+                    Log.d(LOG_TAG, "GATT disconnecting");
+                } else {
+                    Log.w(LOG_TAG, "GATT unhandled state " + newState);
+                }
+            } else {
+                Log.i(LOG_TAG,"GATT failed with status " + status);
+                gatt.disconnect();
+                // each unclosed client holds one of the stack's few client slots
+                gatt.close();
+                close();
+            }
+        }
+
+        /**
+         * Queue {@link BluetoothGatt#discoverServices()}, triggered from the {@link BluetoothGatt#requestMtu(int)}
+         * call from {@link #onConnectionStateChange(BluetoothGatt, int, int)}; if the request failed,
+         * services are discovered anyway, at the default MTU.
+         */
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            super.onMtuChanged(gatt, mtu, status);
+            App.recorder.event(FlightRecorder.GATT_MTU, mtu, status);
+            Log.i(LOG_TAG, "mtu changed to " + mtu + " (success? " + (status == BluetoothGatt.GATT_SUCCESS) + ")");
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                SitePointSession.this.mtu = mtu;
+            }
+            // unless the request already timed out, and discovery went ahead
+            if (gattScheduler.completed(GattScheduler.Kind.MTU)) {
+                gattScheduler.submit(GattScheduler.Kind.DISCOVER_SERVICES);
+            }
+        }
+
+        /**
+         * Hook up characteristics, enable notifications on the message characteristic, and start
+         * polling the link for {@link #linkSampled(BluetoothGatt, int)}.
+         * triggered from the {@link BluetoothGatt#discoverServices()} call in {@link #onMtuChanged(BluetoothGatt, int, int)}.
+         */
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            super.onServicesDiscovered(gatt, status);
+            App.recorder.event(FlightRecorder.GATT_SERVICES, status, 0);
+            gattScheduler.completed(GattScheduler.Kind.DISCOVER_SERVICES);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                for (BluetoothGattService service : gatt.getServices()) {
+                    Log.d(LOG_TAG,"Discovered service " + service.getUuid());
+                    for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+                        Log.d(LOG_TAG, "Discovered characteristic " + characteristic.getUuid());
+                        if (MESSAGE_CHARACTERISTIC.equals(characteristic.getUuid())) {
+                            messageCharacteristic = characteristic;
+                        } else if (RTCM_CHARACTERISTIC.equals(characteristic.getUuid())) {
+                            // write "with response"; set before it's published to the relay
+                            characteristic.setWriteType(WRITE_TYPE_NO_RESPONSE);
+                            rtcmCharacteristic = characteristic;
+                        }
+                    }
+                }
+                if (messageCharacteristic != null) {
+                    Log.d(LOG_TAG,"enabling notifications for messaging characteristic");
+                    enableNotifications(messageCharacteristic);
+                }
+                if (rtcmCharacteristic != null) {
+                    handler.removeCallbacks(pollLink);
+                    handler.postDelayed(pollLink, LINK_POLL_MILLISECONDS);
+                }
+            } else {
+                Log.w(LOG_TAG, "Discovering services failed");
+                disconnect();
+            }
+        }
+
+        /**
+         * Feeds the RSSI read by {@link #pollLink()} to the link controller.
+         */
+        @Override
+        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
+            super.onReadRemoteRssi(gatt, rssi, status);
+            gattScheduler.completed(GattScheduler.Kind.READ_RSSI);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                linkSampled(gatt, rssi);
+            } else {
+                Log.d(LOG_TAG, "readRemoteRssi failed: " + status);
+            }
+        }
+
+        /**
+         * Logs the PHY the link actually settled on, after {@link #linkSampled(BluetoothGatt, int)}.
+         */
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            super.onPhyUpdate(gatt, txPhy, rxPhy, status);
+            Log.i(LOG_TAG, "PHY tx " + txPhy + " rx " + rxPhy + " (success? " + (status == BluetoothGatt.GATT_SUCCESS) + ")");
+        }
+
+        /**
+         * Handle descriptor write failures (e.g. enabling/disabling notifications).
+         */
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            super.onDescriptorWrite(gatt, descriptor, status);
+            App.recorder.event(FlightRecorder.GATT_DESCRIPTOR, status, 0);
+            gattScheduler.completed(GattScheduler.Kind.WRITE_DESCRIPTOR);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.d(LOG_TAG, "Descriptor written");
+            } else {
+                Log.i(LOG_TAG, "Descriptor write failed");
+                disconnect();
+            }
+        }
+
+        /**
+         * Queue SignalQuest message data for {@link #readMessage(byte[])}, on the {@link #messageReader}'s thread.
+         */
+        @Override
+        public void onCharacteristicChanged(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic, @NonNull byte[] data) {
+            super.onCharacteristicChanged(gatt, characteristic, data);
+            if (characteristic.getUuid().equals(MESSAGE_CHARACTERISTIC)) {
+                App.recorder.record(FlightRecorder.BLE_MESSAGE_RX, data);
+                messageReader.offer(data);
+            }
+        }
+
+        /**
+         * Same as {@link #onCharacteristicChanged(BluetoothGatt, BluetoothGattCharacteristic, byte[])},
+         * but for older Androids (pre Android 13, pre SDK level 33).
+         */
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            if (android.os.Build.VERSION.SDK_INT >= 33) {
+                Log.v(LOG_TAG, "Deprecated onCharacteristicChanged ignored");
+                return;
+            }
+            super.onCharacteristicChanged(gatt, characteristic);
+            if (characteristic.getUuid().equals(MESSAGE_CHARACTERISTIC)) {
+                byte[] data = characteristic.getValue();
+                if (data != null) {
+                    App.recorder.record(FlightRecorder.BLE_MESSAGE_RX, data);
+                }
+                messageReader.offer(data);
+            }
+        }
+
+        /**
+         * Logging writes and write failures, and for RTCM, settling the write and possibly
+         * writing the next batch.
+         */
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            super.onCharacteristicWrite(gatt, characteristic, status);
+            App.recorder.event(FlightRecorder.GATT_WRITE, status, 0);
+            if (characteristic.getUuid().equals(RTCM_CHARACTERISTIC)) {
+                Log.d(LOG_TAG, "RTCM timing written");
+                rtcmWritten(status);
+            } else if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.d(LOG_TAG, "Characteristic write successful");
+            } else {
+                Log.e(LOG_TAG, "Characteristic write unsuccessful: " + status);
+            }
+        }
+    };
+}
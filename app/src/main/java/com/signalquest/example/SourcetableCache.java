@@ -0,0 +1,156 @@
+package com.signalquest.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-caster sourcetables, fetched on demand and kept on disk for a time-to-live.
+ * <p>
+ * The caster's response goes through an {@link NtripResponseDecoder} straight to a file, which is then
+ * parsed with {@link Sourcetable#parse(InputStream)}; the parsed table and its {@link MountpointIndex}
+ * are also kept in memory until the file expires. The fetch stops at the {@code ENDSOURCETABLE} line,
+ * rather than waiting for a caster that keeps the connection open to close it. Blocks on the network,
+ * so call it off the main thread.
+ */
+class SourcetableCache {
+    static final long DEFAULT_TTL_MILLISECONDS = 24 * 60 * 60 * 1000L;
+    private static final int TIMEOUT_MILLISECONDS = 10 * 1000;
+    private static final byte[] END = "ENDSOURCETABLE".getBytes(StandardCharsets.US_ASCII);
+
+    private final File directory;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> loaded = new HashMap<>();
+
+    private static class Entry {
+        final long modified;
+        final Sourcetable table;
+        final MountpointIndex index;
+
+        Entry(long modified, Sourcetable table) {
+            this.modified = modified;
+            this.table = table;
+            this.index = new MountpointIndex(table.streams);
+        }
+    }
+
+    SourcetableCache(File directory, long ttlMillis) {
+        this(directory, ttlMillis, System::currentTimeMillis);
+    }
+
+    SourcetableCache(File directory, long ttlMillis, LongSupplier clock) {
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the caster's sourcetable, from memory or disk if fresh, otherwise fetched.
+     */
+    Sourcetable get(Ntrip.NtripService service) throws IOException {
+        return load(service).table;
+    }
+
+    /**
+     * @return an index of the caster's streams, from memory or disk if fresh, otherwise fetched.
+     */
+    MountpointIndex getIndex(Ntrip.NtripService service) throws IOException {
+        return load(service).index;
+    }
+
+    private synchronized Entry load(Ntrip.NtripService service) throws IOException {
+        File file = fileFor(service);
+        long modified = file.lastModified();
+        if (modified == 0 || clock.getAsLong() - modified > ttlMillis) {
+            fetch(service, file);
+            modified = file.lastModified();
+        }
+        Entry entry = loaded.get(file.getName());
+        if (entry == null || entry.modified != modified) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                entry = new Entry(modified, Sourcetable.parse(in));
+            }
+            loaded.put(file.getName(), entry);
+        }
+        return entry;
+    }
+
+    File fileFor(Ntrip.NtripService service) {
+        String name = (service.server + "_" + service.port).replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(directory, "sourcetable-" + name + ".txt");
+    }
+
+    private void fetch(Ntrip.NtripService service, File file) throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        File partial = new File(directory, file.getName() + ".partial");
+        boolean[] accepted = new boolean[1];
+        boolean[] ended = new boolean[1];
+        try (Socket socket = new Socket();
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(partial))) {
+            NtripResponseDecoder decoder = new NtripResponseDecoder(new NtripResponseDecoder.Listener() {
+                // bytes of END matched at the start of the current line, or -1 once it can't match
+                private int endMatched = 0;
+
+                @Override
+                public void onHeader(byte[] header, int length, boolean ok) {
+                    accepted[0] = ok;
+                }
+
+                @Override
+                public void onPayload(byte[] buffer, int offset, int length) {
+                    try {
+                        out.write(buffer, offset, length);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = offset; i < offset + length && !ended[0]; i++) {
+                        byte b = buffer[i];
+                        if (b == '\n') {
+                            endMatched = 0;
+                        } else if (endMatched >= 0) {
+                            endMatched = b == END[endMatched] ? endMatched + 1 : -1;
+                            ended[0] = endMatched == END.length;
+                        }
+                    }
+                }
+            }, true);
+            socket.connect(new InetSocketAddress(service.server, service.port), TIMEOUT_MILLISECONDS);
+            socket.setSoTimeout(TIMEOUT_MILLISECONDS);
+            socket.getOutputStream().write(request(service));
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while (!ended[0] && (read = in.read(buffer)) != -1) {
+                decoder.decode(buffer, 0, read);
+            }
+            if (!accepted[0]) {
+                throw new ProtocolException("No sourcetable from " + service.server + ":" + service.port);
+            }
+        } catch (IOException | RuntimeException e) {
+            //noinspection ResultOfMethodCallIgnored
+            partial.delete();
+            throw e;
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Unable to save sourcetable to " + file);
+        }
+    }
+
+    private static byte[] request(Ntrip.NtripService service) {
+        return NtripRequest.sourcetable(service.server, service.username, service.password);
+    }
+}
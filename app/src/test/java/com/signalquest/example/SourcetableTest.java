@@ -0,0 +1,96 @@
+package com.signalquest.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link Sourcetable} parsing and {@link SourcetableCache} fetching and expiry.
+ */
+public class SourcetableTest {
+    private static final String TABLE =
+            "STR;BASE1;Denver;RTCM 3.2;1004(1),1005(10),1077(1);2;GPS+GLO;NET1;USA;39.74;-104.99;0;0;sNTRIP;none;B;N;9600;\r\n"
+            + "STR;VRS;Network RTK;RTCM 3.1;1004(1);2;GPS;NET1;USA;0.00;0.00;1;1;sNTRIP;none;B;N;9600;misc;with;semicolons\r\n"
+            + "STR;OLD;Legacy;RTCM 2.3;1(1);0;GPS;NET1;USA;40.01;-105.27;0;0;sNTRIP;none;B;N;2400;\r\n"
+            + "STR;BROKEN;Bad;RTCM 3.2;;2;GPS;NET1;USA;north;west;0;0\r\n"
+            + "CAS;caster.example.com;2101;Example;Operator;0;USA;39.7;-105.0;;0;\r\n"
+            + "NET;NET1;Operator;B;N;http://example.com;;;\r\n"
+            + "ENDSOURCETABLE\r\n";
+    private static final String HTTP_HEADER = "HTTP/1.1 200 OK\r\nContent-Type: gnss/sourcetable\r\n\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = System.currentTimeMillis();
+
+    @Test
+    public void parsesRecordsAndSkipsBrokenOnes() throws IOException {
+        Sourcetable table = Sourcetable.parse(new ByteArrayInputStream(TABLE.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(3, table.streams.size());
+        Sourcetable.Stream base = table.streams.get(0);
+        assertEquals("BASE1", base.mountpoint);
+        assertEquals(39.74, base.latitude, 0);
+        assertEquals(-104.99, base.longitude, 0);
+        assertTrue(base.isRtcm3() && base.hasLocation() && !base.nmea);
+        Sourcetable.Stream vrs = table.streams.get(1);
+        assertTrue(vrs.nmea && vrs.networkSolution && !vrs.hasLocation());
+        assertFalse(table.streams.get(2).isRtcm3());
+        assertEquals(2101, table.casters.get(0).port);
+        assertEquals("NET1", table.networks.get(0).identifier);
+    }
+
+    @Test
+    public void fetchesOnceUntilExpired() throws IOException {
+        byte[] body = TABLE.getBytes(StandardCharsets.US_ASCII);
+        try (FakeCaster caster = new FakeCaster(HTTP_HEADER, body)) {
+            Ntrip.NtripService service = new Ntrip.NtripService("127.0.0.1", caster.getPort(), "user", "pass", "", false);
+            File directory = folder.newFolder();
+            SourcetableCache cache = new SourcetableCache(directory, 60 * 1000, () -> now);
+
+            assertEquals("BASE1", cache.getIndex(service).nearest(39.7, -105.0).mountpoint);
+            assertEquals(3, cache.get(service).streams.size());
+            // a new cache, as after a restart, still reads the file
+            assertEquals(3, new SourcetableCache(directory, 60 * 1000, () -> now).get(service).streams.size());
+            assertEquals(1, caster.getConnections());
+
+            now += 61 * 1000;
+            assertEquals(3, cache.get(service).streams.size());
+            assertEquals(2, caster.getConnections());
+        }
+    }
+
+    @Test
+    public void stopsAtTheEndOfTheTable() throws IOException {
+        byte[] body = TABLE.getBytes(StandardCharsets.US_ASCII);
+        // sends the table once, then leaves the connection open
+        try (FakeCaster caster = new FakeCaster(HTTP_HEADER, body, 60 * 1000, 1)) {
+            Ntrip.NtripService service = new Ntrip.NtripService("127.0.0.1", caster.getPort(), "user", "pass", "", false);
+            SourcetableCache cache = new SourcetableCache(folder.newFolder(), 60 * 1000, () -> now);
+            long start = System.nanoTime();
+            assertEquals(3, cache.get(service).streams.size());
+            // well inside the read timeout
+            assertTrue((System.nanoTime() - start) / 1_000_000L < 5000);
+        }
+    }
+
+    @Test
+    public void keepsTheOldTableWhenRefused() throws IOException {
+        try (FakeCaster caster = new FakeCaster("HTTP/1.1 401 Unauthorized\r\n\r\n", new byte[0])) {
+            Ntrip.NtripService service = new Ntrip.NtripService("127.0.0.1", caster.getPort(), "user", "bad", "", false);
+            SourcetableCache cache = new SourcetableCache(folder.newFolder(), 60 * 1000, () -> now);
+            try {
+                cache.get(service);
+                fail("refused fetch should throw");
+            } catch (IOException expected) {
+                assertFalse(cache.fileFor(service).exists());
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link StreamFailover} switches between a primary and secondary stream on a clock, and
+ * then end to end, with a {@link SecondaryStream}, against two local casters, one of which stalls.
+ */
+public class StreamFailoverTest {
+    private static final int PRIMARY_TYPE = 1005;
+    private static final int SECONDARY_TYPE = 1006;
+    private static final byte[] PRIMARY_EPOCH = RtcmTestFrames.concat(
+            RtcmTestFrames.frame(PRIMARY_TYPE, 19), RtcmTestFrames.frame(1077, 100));
+    private static final byte[] SECONDARY_EPOCH = RtcmTestFrames.concat(
+            RtcmTestFrames.frame(SECONDARY_TYPE, 21), RtcmTestFrames.frame(1087, 100));
+
+    private final long[] now = {0};
+    private final List<Integer> delivered = new ArrayList<>();
+    private final StreamFailover failover = new StreamFailover(
+            (buffer, offset, length, messageType) -> delivered.add(messageType), () -> now[0]);
+
+    private void feed(int stream, long atMillis) {
+        now[0] = atMillis * 1_000_000L;
+        byte[] epoch = stream == StreamFailover.PRIMARY ? PRIMARY_EPOCH : SECONDARY_EPOCH;
+        failover.put(stream, epoch, 0, epoch.length);
+    }
+
+    /**
+     * Both streams at 1 Hz, the secondary 300ms behind, from 1s in, with the primary's last epoch at the given time.
+     */
+    private void runUntil(long endMillis, long primaryLastMillis) {
+        for (long t = 1000; t <= endMillis; t += 1000) {
+            if (t <= primaryLastMillis) {
+                feed(StreamFailover.PRIMARY, t);
+            }
+            if (t + 300 <= endMillis) {
+                feed(StreamFailover.SECONDARY, t + 300);
+            }
+        }
+    }
+
+    @Test
+    public void staysOnAHealthyPrimary() {
+        runUntil(20_000, 20_000);
+        assertEquals(StreamFailover.PRIMARY, failover.getActive());
+        assertEquals(0, failover.getSwitches());
+        assertFalse(delivered.contains(SECONDARY_TYPE));
+        assertEquals(100, failover.getScore(StreamFailover.PRIMARY));
+    }
+
+    @Test
+    public void switchesAtTheSecondarysNextEpochOnceThePrimaryIsLate() {
+        // primary's last epoch at 5s; it's late from 6.5s, and the secondary's next epoch is at 7.3s
+        runUntil(6300, 5000);
+        assertEquals(StreamFailover.PRIMARY, failover.getActive());
+        delivered.clear();
+        feed(StreamFailover.SECONDARY, 7300);
+        assertEquals(StreamFailover.SECONDARY, failover.getActive());
+        assertEquals(1, failover.getSwitches());
+        // the whole epoch, not just its tail
+        assertEquals(2, delivered.size());
+        assertEquals(SECONDARY_TYPE, (int) delivered.get(0));
+        assertTrue(failover.getScore(StreamFailover.PRIMARY) < 100);
+    }
+
+    @Test
+    public void switchesOnCrcFailures() {
+        runUntil(5300, 5000);
+        byte[] corrupt = PRIMARY_EPOCH.clone();
+        corrupt[10] ^= 0x55;
+        for (long t = 6000; t <= 8000; t += 1000) {
+            now[0] = t * 1_000_000L;
+            failover.put(StreamFailover.PRIMARY, corrupt, 0, corrupt.length);
+            feed(StreamFailover.SECONDARY, t + 300);
+        }
+        assertEquals(StreamFailover.SECONDARY, failover.getActive());
+    }
+
+    @Test
+    public void failsBackOnceThePrimaryHasHeldUp() {
+        runUntil(7300, 5000);
+        assertEquals(StreamFailover.SECONDARY, failover.getActive());
+        // primary back from 10s: healthy for the failback time at 20s, and taken at its first epoch after
+        for (long t = 8000; t < 20_000; t += 1000) {
+            if (t >= 10_000) {
+                feed(StreamFailover.PRIMARY, t);
+            }
+            feed(StreamFailover.SECONDARY, t + 300);
+            assertEquals(StreamFailover.SECONDARY, failover.getActive());
+        }
+        feed(StreamFailover.PRIMARY, 20_000);
+        assertEquals(StreamFailover.PRIMARY, failover.getActive());
+        assertEquals(2, failover.getSwitches());
+    }
+
+    @Test
+    public void failsOverBetweenTwoLocalCasters() throws Exception {
+        long epochMillis = 100;
+        List<long[]> frames = new ArrayList<>();
+        StreamFailover live = new StreamFailover((buffer, offset, length, messageType) -> {
+            synchronized (frames) {
+                frames.add(new long[]{System.nanoTime(), messageType});
+            }
+        });
+        try (FakeCaster primaryCaster = new FakeCaster(PRIMARY_EPOCH, epochMillis, 20);
+             FakeCaster secondaryCaster = new FakeCaster(SECONDARY_EPOCH, epochMillis, 1000);
+             NioReactor reactor = new NioReactor("failover reactor")) {
+            Primary primary = new Primary(live);
+            reactor.connect("127.0.0.1", primaryCaster.getPort(), primary);
+            // so the secondary doesn't take over before the primary has started
+            assertTrue(primary.streaming.await(5, TimeUnit.SECONDS));
+
+            Ntrip.NtripService service = new Ntrip.NtripService("127.0.0.1", secondaryCaster.getPort(), "user", "pass", "TEST", false);
+            SecondaryStream secondary = new SecondaryStream(reactor, service, live, new Backoff(10, 100), 5000);
+            secondary.start();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (live.getActive() != StreamFailover.SECONDARY && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(live.toString() + "; " + secondary, StreamFailover.SECONDARY, live.getActive());
+            assertTrue(secondary.isAuthorized());
+            secondary.close();
+        }
+
+        long lastPrimary = 0;
+        long firstSecondary = 0;
+        synchronized (frames) {
+            for (long[] frame : frames) {
+                if (frame[1] == PRIMARY_TYPE) {
+                    assertEquals("primary after failover", 0, firstSecondary);
+                    lastPrimary = frame[0];
+                } else if (frame[1] == SECONDARY_TYPE && firstSecondary == 0) {
+                    firstSecondary = frame[0];
+                }
+            }
+        }
+        assertEquals(1, live.getSwitches());
+        // late after 1.5 epochs, then taken at the secondary's next epoch: under 3 epochs without corrections
+        long gapMillis = (firstSecondary - lastPrimary) / 1_000_000L;
+        assertTrue("gap " + gapMillis + "ms", gapMillis < 3 * epochMillis);
+    }
+
+    /**
+     * The part of {@link Ntrip} that reads the primary, without the native parser or app wiring.
+     */
+    private static class Primary implements NioReactor.Listener, NtripResponseDecoder.Listener {
+        final CountDownLatch streaming = new CountDownLatch(1);
+        private final StreamFailover failover;
+        private final NtripResponseDecoder decoder = new NtripResponseDecoder(this);
+
+        Primary(StreamFailover failover) {
+            this.failover = failover;
+        }
+
+        @Override
+        public void connected(NioReactor.Connection connection) {
+            connection.write("GET /TEST HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void handleData(NioReactor.Connection connection, byte[] buffer, int offset, int length) {
+            try {
+                decoder.decode(buffer, offset, length);
+            } catch (ProtocolException e) {
+                fail(e.toString());
+            }
+        }
+
+        @Override
+        public void handleException(NioReactor.Connection connection, Exception e) {
+        }
+
+        @Override
+        public void onHeader(byte[] header, int length, boolean accepted) {
+            assertTrue(accepted);
+        }
+
+        @Override
+        public void onPayload(byte[] buffer, int offset, int length) {
+            failover.put(StreamFailover.PRIMARY, buffer, offset, length);
+            streaming.countDown();
+        }
+    }
+}
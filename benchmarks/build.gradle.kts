@@ -0,0 +1,23 @@
+// JMH benchmarks for the hot paths in :core; run with ./gradlew :benchmarks:jmh
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    jmhImplementation(project(":core"))
+    jmhImplementation(testFixtures(project(":core")))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // allocation rates alongside throughput, since the hot paths are meant not to allocate
+    profilers.add("gc")
+    // kept for comparing runs, to catch regressions
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,92 @@
+package com.signalquest.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding SitePoint scan statuses with and without an {@link AdvertisementCache}, over a job site's
+ * advertisements: 40 SitePoints, each advertising in turn at random, one advertisement in 50
+ * carrying a changed status (battery, satellites, or in use), as they drift over a scan.
+ * <p>
+ * {@code com.signalquest.api.ScanStatus} is in the app's Android library, and decodes through
+ * native code, so {@link Status} stands in: it copies the payload behind a header and allocates the
+ * result, as the library does before its native call. Run with {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdvertisementBenchmark {
+    private static final int SITEPOINTS = 40;
+    private static final int ADVERTISEMENTS = 4096;
+    private static final int CHANGE_ONE_IN = 50;
+    private static final byte[] HEADER = {55, 12};
+
+    static final class Status {
+        final boolean connected;
+        final int battery;
+        final boolean charging;
+        final int satellites;
+
+        Status(byte[] payload) {
+            byte[] message = new byte[HEADER.length + payload.length];
+            System.arraycopy(HEADER, 0, message, 0, HEADER.length);
+            System.arraycopy(payload, 0, message, HEADER.length, payload.length);
+            connected = (message[2] & 1) != 0;
+            charging = (message[2] & 2) != 0;
+            battery = message[3];
+            satellites = message[4];
+        }
+    }
+
+    private final String[] addresses = new String[ADVERTISEMENTS];
+    // each a fresh array, as every scan record's manufacturer data is
+    private final byte[][] payloads = new byte[ADVERTISEMENTS][];
+    private final AdvertisementCache<Status> cache = new AdvertisementCache<>(Status::new);
+    private int next = 0;
+
+    @Setup
+    public void advertise() {
+        Random random = new Random(3127);
+        byte[][] current = new byte[SITEPOINTS][];
+        String[] deviceAddresses = new String[SITEPOINTS];
+        for (int i = 0; i < SITEPOINTS; i++) {
+            deviceAddresses[i] = String.format("C0:FF:EE:00:00:%02X", i);
+            current[i] = new byte[]{0, (byte) (50 + random.nextInt(50)), (byte) (10 + random.nextInt(20)), 0, 0, 0, 0, 0};
+        }
+        for (int i = 0; i < ADVERTISEMENTS; i++) {
+            int device = random.nextInt(SITEPOINTS);
+            if (random.nextInt(CHANGE_ONE_IN) == 0) {
+                current[device] = current[device].clone();
+                current[device][random.nextInt(3)] ^= 1;
+            }
+            addresses[i] = deviceAddresses[device];
+            payloads[i] = current[device].clone();
+        }
+    }
+
+    @Benchmark
+    public Status cached() {
+        int i = next++ & (ADVERTISEMENTS - 1);
+        return cache.decode(addresses[i], payloads[i]);
+    }
+
+    @Benchmark
+    public Status uncached() {
+        int i = next++ & (ADVERTISEMENTS - 1);
+        return new Status(payloads[i]);
+    }
+}
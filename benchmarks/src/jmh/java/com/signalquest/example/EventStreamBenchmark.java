@@ -0,0 +1,79 @@
+package com.signalquest.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish-to-delivery latency through an {@link EventStream}, at the SitePoint's 20 Hz: each
+ * invocation waits out a 50 ms period unmeasured, so the subscriber's thread has gone idle, as it
+ * would between real messages, then times one event from publish until the subscriber has it.
+ * <p>
+ * {@code direct} delivers on the publishing thread; {@code thread} hands off to a subscriber thread
+ * of its own, like the UI's, so includes waking it.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class EventStreamBenchmark {
+    private static final long PERIOD_MILLISECONDS = 50;
+
+    @Param({"direct", "thread"})
+    public String delivery;
+
+    private final EventStream<Object> stream = new EventStream<>();
+    private final Object event = new Object();
+    private ExecutorService subscriberThread;
+    private volatile long delivered = 0;
+
+    @Setup
+    public void subscribe() {
+        EventStream.Dispatcher dispatcher;
+        if (delivery.equals("direct")) {
+            dispatcher = EventStream.PUBLISHING_THREAD;
+        } else {
+            subscriberThread = Executors.newSingleThreadExecutor();
+            dispatcher = (task, delayMillis) -> subscriberThread.execute(task);
+        }
+        stream.subscribe(event -> delivered++, dispatcher, 0);
+    }
+
+    @Setup(Level.Invocation)
+    public void waitForTheNextEpoch() throws InterruptedException {
+        Thread.sleep(PERIOD_MILLISECONDS);
+    }
+
+    @Benchmark
+    public long publishToDelivery() {
+        long expected = delivered + 1;
+        stream.publish(event);
+        while (delivered != expected) {
+            // spin; a park would add its own wake-up to the measurement
+        }
+        return expected;
+    }
+
+    @TearDown
+    public void unsubscribe() {
+        if (subscriberThread != null) {
+            subscriberThread.shutdown();
+        }
+    }
+}
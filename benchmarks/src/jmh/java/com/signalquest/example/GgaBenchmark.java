@@ -0,0 +1,87 @@
+package com.signalquest.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link NmeaEncoder} with the GGA formatting that {@code NtripGga.toString()} used to do,
+ * each through to the bytes handed to the socket. Run with {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GgaBenchmark {
+    private final NmeaEncoder encoder = new NmeaEncoder();
+    private final long time = 1_700_000_000_000L;
+    private final double latitude = 39.7392358;
+    private final double longitude = -104.990251;
+    private final double altitude = 1609.34;
+
+    @Benchmark
+    public ByteBuffer encoder() {
+        return encoder.encodeGga(time, latitude, longitude, NmeaEncoder.QUALITY_RTK_FIXED, 18, 0.8, altitude, -16.9);
+    }
+
+    @Benchmark
+    public byte[] formatted() {
+        return (formattedGga() + "\r\n").getBytes();
+    }
+
+    /**
+     * The previous {@code NtripGga.toString()}, with the phone location replaced by fields.
+     */
+    private String formattedGga() {
+        DateFormat timestampFormatter = new SimpleDateFormat("HHmmss");
+        timestampFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        String nmea0183GPGGA;
+        double latitude = toNmea(this.latitude);
+        double longitude = toNmea(this.longitude);
+
+        nmea0183GPGGA = "GPGGA," + timestampFormatter.format(new Date(time));
+        nmea0183GPGGA += String.format(Locale.US, ",%07.2f,", Math.abs(latitude));
+        nmea0183GPGGA += latitude > 0.0 ? "N" : "S";
+        nmea0183GPGGA += String.format(Locale.US, ",%08.2f,", Math.abs(longitude));
+        nmea0183GPGGA += longitude > 0.0 ? "E" : "W";
+        nmea0183GPGGA += ",1,10,1,";
+        nmea0183GPGGA += String.format(Locale.US, "%1.1f,M,%1.1f,M,5,", altitude, altitude);
+        nmea0183GPGGA += String.format("*%02X", nmeaSentenceChecksum(nmea0183GPGGA));
+        return "$" + nmea0183GPGGA;
+    }
+
+    private static double toNmea(double degrees) {
+        double degreeSign = degrees < 0.0 ? -1.0 : 1.0;
+        double degree = Math.abs(degrees);
+        double degreeDecimal = Math.floor(degree);
+        double degreeFraction = degree - degreeDecimal;
+        double minutes = degreeFraction * 60.0;
+        return degreeSign * ((degreeDecimal * 100) + minutes);
+    }
+
+    private static long nmeaSentenceChecksum(String sentence) {
+        int checksum = 0;
+        for (int i = 0; i < sentence.length(); i++) {
+            checksum ^= sentence.charAt(i);
+        }
+        checksum &= 0x0ff;
+        return checksum;
+    }
+}
@@ -0,0 +1,95 @@
+package com.signalquest.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The NTRIP hot paths: an NTRIP 2 chunked stream through the {@link NtripResponseDecoder}, in
+ * socket-sized reads, and picking the nearest of a large caster's mountpoints with the
+ * {@link MountpointIndex}. Run with {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NtripBenchmark {
+    private static final int READ_LENGTH = 1024;
+    private static final int MOUNTPOINTS = 5000;
+
+    private final byte[] chunked = chunked(RtcmTestFrames.concat(
+            RtcmTestFrames.frame(1005, 19), RtcmTestFrames.frame(1077, 420), RtcmTestFrames.frame(1087, 380),
+            RtcmTestFrames.frame(1097, 400), RtcmTestFrames.frame(1127, 360)), 500);
+    private long payloadBytes = 0;
+    private final NtripResponseDecoder decoder = new NtripResponseDecoder(new NtripResponseDecoder.Listener() {
+        @Override
+        public void onHeader(byte[] header, int length, boolean accepted) {
+        }
+
+        @Override
+        public void onPayload(byte[] buffer, int offset, int length) {
+            payloadBytes += length;
+        }
+    });
+    private MountpointIndex index;
+    private final Random random = new Random(7);
+
+    @Setup
+    public void setUp() throws ProtocolException {
+        byte[] header = "HTTP/1.1 200 OK\r\nNtrip-Version: Ntrip/2.0\r\nTransfer-Encoding: chunked\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        decoder.decode(header, 0, header.length);
+
+        List<Sourcetable.Stream> streams = new ArrayList<>();
+        for (int i = 0; i < MOUNTPOINTS; i++) {
+            streams.add(new Sourcetable.Stream("M" + i, "", "RTCM 3.2", "GPS", "", "",
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, false, false));
+        }
+        index = new MountpointIndex(streams);
+    }
+
+    /**
+     * The payload split into chunks of up to {@code chunkLength}, as casters send it.
+     */
+    private static byte[] chunked(byte[] payload, int chunkLength) {
+        List<byte[]> parts = new ArrayList<>();
+        for (int offset = 0; offset < payload.length; offset += chunkLength) {
+            int length = Math.min(chunkLength, payload.length - offset);
+            parts.add((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            byte[] data = new byte[length];
+            System.arraycopy(payload, offset, data, 0, length);
+            parts.add(data);
+            parts.add("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return RtcmTestFrames.concat(parts.toArray(new byte[0][]));
+    }
+
+    @Benchmark
+    public long decodeChunked() throws ProtocolException {
+        for (int offset = 0; offset < chunked.length; offset += READ_LENGTH) {
+            decoder.decode(chunked, offset, Math.min(READ_LENGTH, chunked.length - offset));
+        }
+        return payloadBytes;
+    }
+
+    @Benchmark
+    public Sourcetable.Stream nearestMountpoint() {
+        return index.nearest(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+    }
+}
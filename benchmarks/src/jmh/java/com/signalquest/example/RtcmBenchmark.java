@@ -0,0 +1,59 @@
+package com.signalquest.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One MSM7 epoch, in socket-sized reads, through the {@link Rtcm3Framer} alone, and through the
+ * {@link RtcmRelay} and a SitePoint's {@link CorrectionFanout.Cursor} to Bluetooth-sized writes. Run
+ * with {@code -prof gc}; neither should allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RtcmBenchmark {
+    private static final int READ_LENGTH = 1024;
+    private static final int WRITE_LENGTH = 244;
+    private static final byte[] EPOCH = RtcmTestFrames.concat(
+            RtcmTestFrames.frame(1005, 19), RtcmTestFrames.frame(1077, 420), RtcmTestFrames.frame(1087, 380),
+            RtcmTestFrames.frame(1097, 400), RtcmTestFrames.frame(1127, 360), RtcmTestFrames.frame(1230, 8));
+
+    private final Rtcm3Framer framer = new Rtcm3Framer((buffer, offset, length, messageType) -> {
+    });
+    private final CorrectionFanout corrections = new CorrectionFanout(16 * 1024, 512, 5000);
+    private final CorrectionFanout.Cursor cursor = corrections.newCursor();
+    private final RtcmRelay relay = new RtcmRelay(corrections);
+
+    @Benchmark
+    public long frame() {
+        for (int offset = 0; offset < EPOCH.length; offset += READ_LENGTH) {
+            framer.feed(EPOCH, offset, Math.min(READ_LENGTH, EPOCH.length - offset));
+        }
+        return framer.getCrcFailures();
+    }
+
+    @Benchmark
+    public void relay(Blackhole blackhole) {
+        for (int offset = 0; offset < EPOCH.length; offset += READ_LENGTH) {
+            relay.put(EPOCH, offset, Math.min(READ_LENGTH, EPOCH.length - offset));
+        }
+        byte[] write;
+        while ((write = cursor.next(WRITE_LENGTH)).length > 0) {
+            blackhole.consume(write);
+            cursor.recycle(write);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.signalquest.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Socket writes through the {@link WriteQueue}: a burst of GGA-sized buffers offered, then gathered
+ * into a channel. Contention is covered by {@code WriteQueueTest}; this is the per-buffer cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteQueueBenchmark {
+    private static final byte[] GGA = "$GPGGA,172814.00,3944.3541,N,10459.4151,W,4,18,0.8,1609.34,M,-16.9,M,1.0,0000*4C\r\n"
+            .getBytes();
+
+    private final WriteQueue queue = new WriteQueue();
+    private final GatheringByteChannel sink = new Sink();
+
+    @Benchmark
+    public boolean offerAndWrite() throws IOException {
+        for (int i = 0; i < 8; i++) {
+            queue.offer(ByteBuffer.wrap(GGA));
+        }
+        return queue.write(sink);
+    }
+
+    /**
+     * Takes everything, like a socket with room in its send buffer.
+     */
+    private static class Sink implements GatheringByteChannel {
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += sources[i].remaining();
+                sources[i].position(sources[i].limit());
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,15 @@
+// The app's platform-independent code, kept free of Android so it can be tested and benchmarked on a JVM
+plugins {
+    `java-library`
+    // FakeCaster and RtcmTestFrames, shared with the app's unit tests and the benchmarks
+    `java-test-fixtures`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,103 @@
+package com.signalquest.example;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded advertisement payloads, by device address, so a payload that hasn't changed since the
+ * device's last advertisement isn't decoded again.
+ * <p>
+ * Scanning with every match reported delivers dozens of advertisements a second per device, and
+ * their manufacturer data rarely changes. A hit compares the payload with the last one decoded, its
+ * hash first, and allocates nothing. The least recently advertised devices are dropped past a limit.
+ * <p>
+ * Not thread-safe; used from the thread scan results arrive on.
+ */
+class AdvertisementCache<V> {
+    static final int DEFAULT_MAX_DEVICES = 256;
+
+    interface Decoder<V> {
+        V decode(byte[] payload);
+    }
+
+    private static final class Decoded<V> {
+        int hash;
+        byte[] payload;
+        V value;
+    }
+
+    private final Decoder<V> decoder;
+    private final LinkedHashMap<String, Decoded<V>> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    AdvertisementCache(Decoder<V> decoder) {
+        this(decoder, DEFAULT_MAX_DEVICES);
+    }
+
+    AdvertisementCache(Decoder<V> decoder, int maxDevices) {
+        this.decoder = decoder;
+        // access order, for dropping the least recently advertised
+        entries = new LinkedHashMap<String, Decoded<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decoded<V>> eldest) {
+                return maxDevices < size();
+            }
+        };
+    }
+
+    /**
+     * @return the payload's decoding, the device's previous one if the payload is unchanged.
+     */
+    V decode(String address, byte[] payload) {
+        int hash = Arrays.hashCode(payload);
+        Decoded<V> decoded = entries.get(address);
+        if (decoded != null && decoded.hash == hash && Arrays.equals(decoded.payload, payload)) {
+            hits++;
+            return decoded.value;
+        }
+        misses++;
+        V value = decoder.decode(payload);
+        if (decoded == null) {
+            decoded = new Decoded<>();
+            entries.put(address, decoded);
+        }
+        // copied, since the caller's array isn't ours to keep
+        if (decoded.payload == null || decoded.payload.length != payload.length) {
+            decoded.payload = new byte[payload.length];
+        }
+        System.arraycopy(payload, 0, decoded.payload, 0, payload.length);
+        decoded.hash = hash;
+        decoded.value = value;
+        return value;
+    }
+
+    /**
+     * @return the device has a cached decoding; doesn't count as advertising, for the least recently advertised.
+     */
+    boolean contains(String address) {
+        return entries.containsKey(address);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "devices=" + entries.size() + " hits=" + hits + " misses=" + misses;
+    }
+}
@@ -0,0 +1,48 @@
+package com.signalquest.example;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter, for spacing out reconnect attempts.
+ * <p>
+ * Each delay is drawn from the upper half of a window that doubles per attempt, up to a cap
+ * ("equal jitter"), so clients dropped together don't retry together, and no retry is immediate.
+ */
+class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private final Random random;
+    private int attempts = 0;
+
+    Backoff(long initialMillis, long maxMillis) {
+        this(initialMillis, maxMillis, new Random());
+    }
+
+    Backoff(long initialMillis, long maxMillis, Random random) {
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    /**
+     * @return the delay before the next attempt.
+     */
+    synchronized long nextDelayMillis() {
+        // capping the shift keeps the window from overflowing
+        long window = Math.min(maxMillis, initialMillis << Math.min(attempts, 30));
+        attempts++;
+        long half = window / 2;
+        return half + (long) (random.nextDouble() * (window - half));
+    }
+
+    synchronized int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts over from the initial delay, after a successful connection.
+     */
+    synchronized void reset() {
+        attempts = 0;
+    }
+}
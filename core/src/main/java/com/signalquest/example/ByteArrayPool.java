@@ -0,0 +1,53 @@
+package com.signalquest.example;
+
+/**
+ * Recycles exact-length byte arrays for Bluetooth writes.
+ * <p>
+ * Both {@code BluetoothGattCharacteristic.setValue(byte[])} and the SDK 33
+ * {@code writeCharacteristic(characteristic, value, writeType)} send the whole array, so arrays are
+ * pooled by exact length rather than handed out as larger slices. RTCM writes settle into a handful
+ * of lengths (mostly the MTU payload size), so the pool stops allocating once warmed up.
+ */
+class ByteArrayPool {
+    private final byte[][][] free;
+    private final int[] counts;
+    private final int depth;
+
+    /**
+     * @param maxLength longest array handed out; longer requests are allocated and never pooled
+     * @param depth     arrays kept per length, i.e. how many writes can be outstanding at once
+     */
+    ByteArrayPool(int maxLength, int depth) {
+        this.free = new byte[maxLength + 1][][];
+        this.counts = new int[maxLength + 1];
+        this.depth = depth;
+    }
+
+    /**
+     * @return a recycled array of exactly {@code length} bytes, or a new one if none is free.
+     */
+    synchronized byte[] acquire(int length) {
+        if (length < free.length && counts[length] > 0) {
+            byte[] array = free[length][--counts[length]];
+            free[length][counts[length]] = null;
+            return array;
+        }
+        return new byte[length];
+    }
+
+    /**
+     * Returns an array for reuse; the caller must not touch it afterwards.
+     */
+    synchronized void release(byte[] array) {
+        int length = array.length;
+        if (length == 0 || length >= free.length) {
+            return;
+        }
+        if (free[length] == null) {
+            free[length] = new byte[depth][];
+        }
+        if (counts[length] < depth) {
+            free[length][counts[length]++] = array;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.signalquest.example;
+
+import java.util.function.LongSupplier;
+
+/**
+ * One NTRIP correction stream shared by several SitePoints, each reading it at its own pace.
+ * <p>
+ * RTCM is framed once, and each frame is stored once, in a byte ring with one entry per frame,
+ * numbered in arrival order. Each SitePoint session reads through its own {@link Cursor}, so the
+ * writer never waits on a reader: a full ring drops its oldest frames, and a cursor that falls that
+ * far behind skips ahead to the start of the next epoch (frames arriving within
+ * {@link #EPOCH_GAP_NANOS} of each other, since casters send each epoch as a burst), counting what it
+ * missed. A slow SitePoint only ever costs itself frames.
+ * <p>
+ * Each cursor drops frames older than the maximum correction age, since stale corrections are worse
+ * than none, packs as many whole frames as fit into one write, only splitting a frame longer than a
+ * write on its own, and takes its writes from a {@link ByteArrayPool} of its own, so steady state
+ * doesn't allocate.
+ */
+class CorrectionFanout implements RtcmRelay.Sink {
+    static final byte[] EMPTY = new byte[0];
+    static final long EPOCH_GAP_NANOS = 25_000_000L;
+
+    private final LongSupplier nanoClock;
+    private final int maxWriteLength;
+    private final byte[] ring;
+    // per frame, by sequence number modulo their length
+    private final long[] starts;
+    private final int[] lengths;
+    private final long[] arrivals;
+    private final long[] epochs;
+    // the oldest frame kept, and the next to arrive
+    private long firstSequence = 0;
+    private long nextSequence = 0;
+    // in bytes ever offered
+    private long firstByte = 0;
+    private long nextByte = 0;
+    // cursors behind this were cleared, rather than lapped
+    private long clearedSequence = 0;
+    private long epoch = 0;
+    private long evictedEpoch = -1;
+    private long lastArrival = Long.MIN_VALUE;
+    private long maxAgeNanos;
+    private long evicted = 0;
+    private long overflowDrops = 0;
+
+    CorrectionFanout(int capacity, int maxWriteLength, long maxAgeMillis) {
+        this(capacity, maxWriteLength, maxAgeMillis, System::nanoTime);
+    }
+
+    CorrectionFanout(int capacity, int maxWriteLength, long maxAgeMillis, LongSupplier nanoClock) {
+        this.ring = new byte[capacity];
+        int maxEntries = capacity / (Rtcm3Framer.HEADER_LENGTH + Rtcm3Framer.CRC_LENGTH) + 1;
+        this.starts = new long[maxEntries];
+        this.lengths = new int[maxEntries];
+        this.arrivals = new long[maxEntries];
+        this.epochs = new long[maxEntries];
+        this.maxWriteLength = maxWriteLength;
+        this.nanoClock = nanoClock;
+        setMaxAgeMillis(maxAgeMillis);
+    }
+
+    synchronized void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeNanos = maxAgeMillis * 1_000_000L;
+    }
+
+    /**
+     * @return a reader starting at the next frame to arrive.
+     */
+    synchronized Cursor newCursor() {
+        return new Cursor(nextSequence);
+    }
+
+    /**
+     * Stores one frame, arriving now, dropping the oldest frames if there's no room.
+     */
+    @Override
+    public void offer(byte[] frame, int offset, int length) {
+        offer(frame, offset, length, nanoClock.getAsLong());
+    }
+
+    /**
+     * Stores one frame, dropping the oldest frames if there's no room; never waits on a cursor.
+     *
+     * @param arrivalNanos when the frame arrived, on this fanout's clock; frames passed in order.
+     */
+    @Override
+    public synchronized void offer(byte[] frame, int offset, int length, long arrivalNanos) {
+        if (length > ring.length) {
+            overflowDrops++;
+            return;
+        }
+        if (lastArrival == Long.MIN_VALUE || arrivalNanos - lastArrival > EPOCH_GAP_NANOS) {
+            epoch++;
+        }
+        lastArrival = arrivalNanos;
+        while (nextByte + length - firstByte > ring.length || nextSequence - firstSequence == lengths.length) {
+            evictedEpoch = epochs[index(firstSequence)];
+            firstSequence++;
+            firstByte = firstSequence == nextSequence ? nextByte : starts[index(firstSequence)];
+            evicted++;
+        }
+        int tail = (int) (nextByte % ring.length);
+        int first = Math.min(length, ring.length - tail);
+        System.arraycopy(frame, offset, ring, tail, first);
+        System.arraycopy(frame, offset + first, ring, 0, length - first);
+        int entry = index(nextSequence);
+        starts[entry] = nextByte;
+        lengths[entry] = length;
+        arrivals[entry] = arrivalNanos;
+        epochs[entry] = epoch;
+        nextSequence++;
+        nextByte += length;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % lengths.length);
+    }
+
+    /**
+     * Drops every stored frame; cursors carry on from the next to arrive, without counting them as skipped.
+     */
+    @Override
+    public synchronized void clear() {
+        firstSequence = nextSequence;
+        firstByte = nextByte;
+        clearedSequence = nextSequence;
+        lastArrival = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return frames stored.
+     */
+    synchronized int getDepth() {
+        return (int) (nextSequence - firstSequence);
+    }
+
+    synchronized int getDepthBytes() {
+        return (int) (nextByte - firstByte);
+    }
+
+    /**
+     * @return frames dropped from the ring to make room; only cursors still behind them miss them.
+     */
+    synchronized long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * @return frames too long for the ring.
+     */
+    synchronized long getOverflowDrops() {
+        return overflowDrops;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CorrectionFanout: depth " + getDepth() + " (" + getDepthBytes() + " bytes), received "
+                + nextSequence + ", evicted " + evicted + ", too long " + overflowDrops;
+    }
+
+    /**
+     * One SitePoint's read position in the stream, with its throughput, lag and drop counters.
+     * <p>
+     * Read from that SitePoint's write path; its counters may be read from anywhere.
+     */
+    final class Cursor {
+        private final ByteArrayPool pool = new ByteArrayPool(maxWriteLength, 2);
+        private long sequence;
+        // bytes of the current frame already written, when it was too long for one write
+        private int written = 0;
+        private long bytes = 0;
+        private long frames = 0;
+        private long skipped = 0;
+        private long staleDrops = 0;
+        private long lastAgeNanos = 0;
+        private long maxAgeAtReadNanos = 0;
+        private long totalAgeNanos = 0;
+        private LatencyTracer tracer;
+
+        private Cursor(long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * Has each frame's queueing time, and the oldest's arrival, traced from now on; null stops it.
+         */
+        void setTracer(LatencyTracer tracer) {
+            synchronized (CorrectionFanout.this) {
+                this.tracer = tracer;
+            }
+        }
+
+        /**
+         * @return the oldest whole, fresh frames not yet read that fit in {@code maxLength}, in a pooled
+         * array; the next part of the current frame if it alone is longer than {@code maxLength}; or {@link #EMPTY}.
+         */
+        byte[] next(int maxLength) {
+            synchronized (CorrectionFanout.this) {
+                long now = nanoClock.getAsLong();
+                catchUp();
+                // a partly written frame is finished, even if stale
+                while (sequence < nextSequence && written == 0 && now - arrivals[index(sequence)] > maxAgeNanos) {
+                    sequence++;
+                    staleDrops++;
+                }
+                if (sequence == nextSequence || maxLength <= 0) {
+                    return EMPTY;
+                }
+                int currentRemaining = lengths[index(sequence)] - written;
+                long from = starts[index(sequence)] + written;
+                int length;
+                int wholeFrames = 0;
+                if (currentRemaining > maxLength) {
+                    length = maxLength;
+                    written += maxLength;
+                } else {
+                    length = currentRemaining;
+                    wholeFrames = 1;
+                    while (sequence + wholeFrames < nextSequence) {
+                        int frameLength = lengths[index(sequence + wholeFrames)];
+                        if (length + frameLength > maxLength) {
+                            break;
+                        }
+                        length += frameLength;
+                        wholeFrames++;
+                    }
+                    written = 0;
+                }
+                byte[] out = pool.acquire(length);
+                int head = (int) (from % ring.length);
+                int first = Math.min(length, ring.length - head);
+                System.arraycopy(ring, head, out, 0, first);
+                System.arraycopy(ring, 0, out, first, length - first);
+                bytes += length;
+                for (int i = 0; i < wholeFrames; i++) {
+                    long arrival = arrivals[index(sequence)];
+                    long age = now - arrival;
+                    lastAgeNanos = age;
+                    maxAgeAtReadNanos = Math.max(maxAgeAtReadNanos, age);
+                    totalAgeNanos += age;
+                    frames++;
+                    if (tracer != null) {
+                        tracer.dequeued(arrival, now);
+                    }
+                    sequence++;
+                }
+                return out;
+            }
+        }
+
+        /**
+         * Moves past frames cleared or dropped from the ring since the last read; dropped ones, and
+         * the rest of their epoch, count as skipped.
+         */
+        private void catchUp() {
+            if (sequence < clearedSequence) {
+                sequence = clearedSequence;
+                written = 0;
+            }
+            if (sequence >= firstSequence) {
+                return;
+            }
+            long resume = firstSequence;
+            while (resume < nextSequence && epochs[index(resume)] == evictedEpoch) {
+                resume++;
+            }
+            // everything kept is from the epoch being dropped, so just the oldest kept
+            if (resume == nextSequence) {
+                resume = firstSequence;
+            }
+            skipped += resume - sequence;
+            sequence = resume;
+            written = 0;
+        }
+
+        /**
+         * Returns an array from {@link #next(int)} to the pool, after it has been handed to Bluetooth.
+         */
+        void recycle(byte[] data) {
+            pool.release(data);
+        }
+
+        /**
+         * @return frames stored that this cursor hasn't finished reading.
+         */
+        long getLagFrames() {
+            synchronized (CorrectionFanout.this) {
+                return nextSequence - Math.max(sequence, firstSequence);
+            }
+        }
+
+        /**
+         * @return bytes stored that this cursor hasn't read.
+         */
+        long getLagBytes() {
+            synchronized (CorrectionFanout.this) {
+                if (sequence < firstSequence) {
+                    return nextByte - firstByte;
+                }
+                return sequence == nextSequence ? 0 : nextByte - starts[index(sequence)] - written;
+            }
+        }
+
+        long getBytes() {
+            synchronized (CorrectionFanout.this) {
+                return bytes;
+            }
+        }
+
+        /**
+         * @return whole frames read.
+         */
+        long getFrames() {
+            synchronized (CorrectionFanout.this) {
+                return frames;
+            }
+        }
+
+        /**
+         * @return frames missed because this cursor fell a whole ring behind.
+         */
+        long getSkipped() {
+            synchronized (CorrectionFanout.this) {
+                return skipped;
+            }
+        }
+
+        /**
+         * @return frames dropped at read for being older than the maximum correction age.
+         */
+        long getStaleDrops() {
+            synchronized (CorrectionFanout.this) {
+                return staleDrops;
+            }
+        }
+
+        /**
+         * @return queueing age of the most recently read frame.
+         */
+        long getLastAgeMillis() {
+            synchronized (CorrectionFanout.this) {
+                return lastAgeNanos / 1_000_000L;
+            }
+        }
+
+        long getMaxAgeAtReadMillis() {
+            synchronized (CorrectionFanout.this) {
+                return maxAgeAtReadNanos / 1_000_000L;
+            }
+        }
+
+        long getAverageAgeMillis() {
+            synchronized (CorrectionFanout.this) {
+                return frames == 0 ? 0 : totalAgeNanos / frames / 1_000_000L;
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (CorrectionFanout.this) {
+                return "lag " + getLagFrames() + " frames (" + getLagBytes() + " bytes), read " + frames
+                        + ", skipped " + skipped + ", stale " + staleDrops + ", age at read avg "
+                        + getAverageAgeMillis() + "ms max " + getMaxAgeAtReadMillis() + "ms";
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.signalquest.example;
+
+/**
+ * The SitePoint dashboard's fields, formatted without allocating, for rendering at most once a frame.
+ * <p>
+ * Publishers hand in each message's values, which only replace the pending snapshot; a burst between
+ * frames costs one render. {@link #render()} formats every field into its own reusable {@link Text}
+ * and reports which changed, so the views of unchanged ones can be left alone.
+ */
+class Dashboard {
+    enum Field {
+        LOCATION_ITOW,
+        LATITUDE,
+        LONGITUDE,
+        HEIGHT,
+        HORIZONTAL_ACCURACY,
+        VERTICAL_ACCURACY,
+        BATTERY,
+        CHARGING,
+        STATUS_ITOW,
+        TIME,
+        TIME_FORMATTED,
+        SATELLITES,
+        MODE,
+        MODE_LABEL,
+        AIDING_QUALITY,
+    }
+
+    // values() copies
+    static final Field[] FIELDS = Field.values();
+    private static final char DEGREE = '\u00B0';
+    private static final int MAX_AIDING_BINS = 16;
+
+    /**
+     * A field's text, built in one buffer and shown from another, so a view can keep the shown
+     * buffer (as {@code TextView.setText(char[], int, int)} does) while the next is built.
+     */
+    static final class Text {
+        private static final int INITIAL_CAPACITY = 32;
+        // a long, with grouping
+        private final char[] digits = new char[26];
+        private char[] building = new char[INITIAL_CAPACITY];
+        private int buildingLength = 0;
+        private char[] shown = new char[INITIAL_CAPACITY];
+        private int shownLength = 0;
+        private boolean isShown = false;
+
+        Text clear() {
+            buildingLength = 0;
+            return this;
+        }
+
+        Text append(char c) {
+            if (buildingLength == building.length) {
+                char[] grown = new char[building.length * 2];
+                System.arraycopy(building, 0, grown, 0, buildingLength);
+                building = grown;
+            }
+            building[buildingLength++] = c;
+            return this;
+        }
+
+        Text append(CharSequence text) {
+            if (text == null) {
+                return append("null");
+            }
+            for (int i = 0; i < text.length(); i++) {
+                append(text.charAt(i));
+            }
+            return this;
+        }
+
+        Text append(boolean value) {
+            return append(value ? "true" : "false");
+        }
+
+        Text append(long value) {
+            return append(value, false);
+        }
+
+        /**
+         * @param grouped with a comma between each three digits, like {@code %,d}.
+         */
+        Text append(long value, boolean grouped) {
+            // negated, to cover Long.MIN_VALUE
+            long negative = value < 0 ? value : -value;
+            int count = 0;
+            do {
+                if (grouped && count % 4 == 3) {
+                    digits[digits.length - ++count] = ',';
+                }
+                digits[digits.length - ++count] = (char) ('0' - negative % 10);
+                negative /= 10;
+            } while (negative != 0);
+            if (value < 0) {
+                append('-');
+            }
+            for (int i = digits.length - count; i < digits.length; i++) {
+                append(digits[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Appends with a fixed number of decimals, rounding half up, like {@code %.Nf} (or {@code %,.Nf}).
+         */
+        Text append(double value, int decimals, boolean grouped) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return append(Double.isNaN(value) ? "NaN" : value > 0 ? "Infinity" : "-Infinity");
+            }
+            long scale = 1;
+            for (int i = 0; i < decimals; i++) {
+                scale *= 10;
+            }
+            long scaled = Math.round(Math.abs(value) * scale);
+            if (value < 0) {
+                append('-');
+            }
+            append(scaled / scale, grouped);
+            if (decimals > 0) {
+                append('.');
+                long fraction = scaled % scale;
+                for (long place = scale / 10; place > 0; place /= 10) {
+                    append((char) ('0' + fraction / place % 10));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Appends the time of day, UTC, as {@code HH:mm:ss}.
+         */
+        Text appendTimeOfDay(long epochSeconds) {
+            long seconds = ((epochSeconds % 86400) + 86400) % 86400;
+            appendTwoDigits(seconds / 3600).append(':');
+            appendTwoDigits(seconds / 60 % 60).append(':');
+            return appendTwoDigits(seconds % 60);
+        }
+
+        private Text appendTwoDigits(long value) {
+            return append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+        }
+
+        /**
+         * Shows what's been built, unless it's what's already shown.
+         *
+         * @return it changed.
+         */
+        boolean commit() {
+            if (isShown && buildingLength == shownLength) {
+                boolean same = true;
+                for (int i = 0; i < shownLength && same; i++) {
+                    same = building[i] == shown[i];
+                }
+                if (same) {
+                    return false;
+                }
+            }
+            char[] previous = shown;
+            shown = building;
+            shownLength = buildingLength;
+            building = previous;
+            isShown = true;
+            return true;
+        }
+
+        /**
+         * Forgets what was shown, so the next commit counts as a change.
+         */
+        void reset() {
+            isShown = false;
+        }
+
+        /**
+         * @return the shown text; unchanged until the next commit that changes it.
+         */
+        char[] chars() {
+            return shown;
+        }
+
+        int length() {
+            return shownLength;
+        }
+
+        @Override
+        public String toString() {
+            return new String(shown, 0, shownLength);
+        }
+    }
+
+    private final Text[] texts = new Text[FIELDS.length];
+
+    // pending snapshot, guarded by this
+    private boolean renderPending = false;
+    private boolean locationPending = false;
+    private long locationITow;
+    private double latitude;
+    private double longitude;
+    private double height;
+    private double horizontalAccuracy;
+    private double verticalAccuracy;
+    private boolean statusPending = false;
+    private long statusITow;
+    private long time;
+    private int mode;
+    private int satellites;
+    private int battery;
+    private boolean charging;
+    private String modeLabel;
+    private final boolean[] aidingQuality = new boolean[MAX_AIDING_BINS];
+    private int aidingBins;
+
+    // the render thread's copy
+    private final boolean[] renderAiding = new boolean[MAX_AIDING_BINS];
+
+    Dashboard() {
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = new Text();
+        }
+    }
+
+    /**
+     * @return a render should be scheduled; false if one already is.
+     */
+    synchronized boolean setLocation(long iTow, double latitude, double longitude, double height,
+                                     double horizontalAccuracy, double verticalAccuracy) {
+        this.locationITow = iTow;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.height = height;
+        this.horizontalAccuracy = horizontalAccuracy;
+        this.verticalAccuracy = verticalAccuracy;
+        locationPending = true;
+        return schedule();
+    }
+
+    /**
+     * @return a render should be scheduled; false if one already is.
+     */
+    synchronized boolean setStatus(long iTow, long time, int mode, int satellites, int battery, boolean charging,
+                                   boolean[] aidingQuality, String modeLabel) {
+        this.statusITow = iTow;
+        this.time = time;
+        this.mode = mode;
+        this.satellites = satellites;
+        this.battery = battery;
+        this.charging = charging;
+        this.modeLabel = modeLabel;
+        aidingBins = Math.min(aidingQuality.length, MAX_AIDING_BINS);
+        System.arraycopy(aidingQuality, 0, this.aidingQuality, 0, aidingBins);
+        statusPending = true;
+        return schedule();
+    }
+
+    private boolean schedule() {
+        if (renderPending) {
+            return false;
+        }
+        renderPending = true;
+        return true;
+    }
+
+    /**
+     * Formats the latest snapshot. On the rendering thread.
+     *
+     * @return a bit per {@link Field} ordinal, set for those that changed.
+     */
+    int render() {
+        boolean location;
+        boolean status;
+        long locationITow, statusITow, time;
+        double latitude, longitude, height, horizontalAccuracy, verticalAccuracy;
+        int mode, satellites, battery, aidingBins;
+        boolean charging;
+        String modeLabel;
+        synchronized (this) {
+            renderPending = false;
+            location = locationPending;
+            status = statusPending;
+            locationPending = false;
+            statusPending = false;
+            locationITow = this.locationITow;
+            latitude = this.latitude;
+            longitude = this.longitude;
+            height = this.height;
+            horizontalAccuracy = this.horizontalAccuracy;
+            verticalAccuracy = this.verticalAccuracy;
+            statusITow = this.statusITow;
+            time = this.time;
+            mode = this.mode;
+            satellites = this.satellites;
+            battery = this.battery;
+            charging = this.charging;
+            modeLabel = this.modeLabel;
+            aidingBins = this.aidingBins;
+            System.arraycopy(aidingQuality, 0, renderAiding, 0, aidingBins);
+        }
+        int changed = 0;
+        if (location) {
+            changed |= commit(Field.LOCATION_ITOW, text(Field.LOCATION_ITOW).clear().append(locationITow));
+            changed |= commit(Field.LATITUDE, text(Field.LATITUDE).clear().append(latitude, 7, false).append(DEGREE));
+            changed |= commit(Field.LONGITUDE, text(Field.LONGITUDE).clear().append(longitude, 7, false).append(DEGREE));
+            changed |= commit(Field.HEIGHT, text(Field.HEIGHT).clear().append(height, 4, true).append('m'));
+            changed |= commit(Field.HORIZONTAL_ACCURACY, text(Field.HORIZONTAL_ACCURACY).clear().append(horizontalAccuracy, 4, true).append('m'));
+            changed |= commit(Field.VERTICAL_ACCURACY, text(Field.VERTICAL_ACCURACY).clear().append(verticalAccuracy, 4, true).append('m'));
+        }
+        if (status) {
+            changed |= commit(Field.BATTERY, text(Field.BATTERY).clear().append(battery).append('%'));
+            changed |= commit(Field.CHARGING, text(Field.CHARGING).clear().append(charging));
+            changed |= commit(Field.STATUS_ITOW, text(Field.STATUS_ITOW).clear().append(statusITow));
+            changed |= commit(Field.TIME, text(Field.TIME).clear().append(time));
+            changed |= commit(Field.TIME_FORMATTED, text(Field.TIME_FORMATTED).clear().appendTimeOfDay(time));
+            changed |= commit(Field.SATELLITES, text(Field.SATELLITES).clear().append(satellites));
+            changed |= commit(Field.MODE, text(Field.MODE).clear().append(mode));
+            changed |= commit(Field.MODE_LABEL, text(Field.MODE_LABEL).clear().append(modeLabel));
+            Text aiding = text(Field.AIDING_QUALITY).clear();
+            for (int i = 0; i < aidingBins; i++) {
+                aiding.append(renderAiding[i] ? '1' : '0');
+            }
+            changed |= commit(Field.AIDING_QUALITY, aiding);
+        }
+        return changed;
+    }
+
+    private static int commit(Field field, Text text) {
+        return text.commit() ? 1 << field.ordinal() : 0;
+    }
+
+    static boolean changed(int mask, Field field) {
+        return (mask & 1 << field.ordinal()) != 0;
+    }
+
+    Text text(Field field) {
+        return texts[field.ordinal()];
+    }
+
+    /**
+     * Drops the pending snapshot and forgets what was shown, when the views are cleared.
+     */
+    synchronized void reset() {
+        renderPending = false;
+        locationPending = false;
+        statusPending = false;
+        for (Text text : texts) {
+            text.reset();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.signalquest.example;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process, typed publish/subscribe stream, for SitePoint messages and app events that never
+ * leave the process, so they needn't be parcelled through system broadcasts.
+ * <p>
+ * Each subscriber picks its thread, through a {@link Dispatcher}, and its rate: with no minimum
+ * interval it gets every event, in order; with one, events are conflated, so it gets the latest at
+ * most once per interval, and the last of a burst still arrives once the interval is up.
+ * {@link #publish(Object)} never blocks on a subscriber.
+ */
+class EventStream<T> {
+    interface Listener<T> {
+        void onEvent(T event);
+    }
+
+    /**
+     * Where, and when, a subscriber's deliveries run: a thread's message queue on Android, an
+     * executor or the publishing thread elsewhere.
+     */
+    interface Dispatcher {
+        /**
+         * Runs the task after about {@code delayMillis}, which is 0 for as soon as possible.
+         */
+        void dispatch(Runnable task, long delayMillis);
+    }
+
+    /**
+     * Delivers on the publishing thread; only for subscribers without a minimum interval.
+     */
+    static final Dispatcher PUBLISHING_THREAD = (task, delayMillis) -> task.run();
+
+    interface Subscription {
+        /**
+         * Stops deliveries, including any already dispatched.
+         */
+        void cancel();
+    }
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LongSupplier nanoClock;
+    private volatile long published = 0;
+
+    EventStream() {
+        this(System::nanoTime);
+    }
+
+    EventStream(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param minIntervalMillis 0 for every event; otherwise the latest, at most this often.
+     */
+    Subscription subscribe(Listener<? super T> listener, Dispatcher dispatcher, long minIntervalMillis) {
+        Subscriber subscriber = new Subscriber(listener, dispatcher, minIntervalMillis * 1_000_000L);
+        subscribers.add(subscriber);
+        return () -> {
+            subscriber.cancelled = true;
+            subscribers.remove(subscriber);
+        };
+    }
+
+    /**
+     * Hands the event to every subscriber's dispatcher. Any thread.
+     */
+    void publish(T event) {
+        published++;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return events published; racy across publishing threads, so only a metric.
+     */
+    long getPublished() {
+        return published;
+    }
+
+    private final class Subscriber {
+        final Listener<? super T> listener;
+        final Dispatcher dispatcher;
+        final long minIntervalNanos;
+        volatile boolean cancelled = false;
+        // conflating only: the latest undelivered event, and whether a delivery is dispatched
+        final AtomicReference<T> latest = new AtomicReference<>();
+        final AtomicBoolean dispatched = new AtomicBoolean();
+        final Runnable deliverLatest = this::deliverLatest;
+        // when the last conflated delivery ran
+        volatile long deliveredAt;
+        volatile boolean delivered = false;
+
+        Subscriber(Listener<? super T> listener, Dispatcher dispatcher, long minIntervalNanos) {
+            this.listener = listener;
+            this.dispatcher = dispatcher;
+            this.minIntervalNanos = minIntervalNanos;
+        }
+
+        void offer(T event) {
+            if (minIntervalNanos == 0) {
+                if (dispatcher == PUBLISHING_THREAD) {
+                    // no task to allocate, for subscribers on the message path
+                    if (!cancelled) {
+                        listener.onEvent(event);
+                    }
+                    return;
+                }
+                dispatcher.dispatch(() -> {
+                    if (!cancelled) {
+                        listener.onEvent(event);
+                    }
+                }, 0);
+                return;
+            }
+            latest.set(event);
+            if (!dispatched.compareAndSet(false, true)) {
+                // the dispatched delivery will pick this up
+                return;
+            }
+            long delay = 0;
+            if (delivered) {
+                long remaining = deliveredAt + minIntervalNanos - nanoClock.getAsLong();
+                delay = Math.max(0, (remaining + 999_999) / 1_000_000L);
+            }
+            dispatcher.dispatch(deliverLatest, delay);
+        }
+
+        private void deliverLatest() {
+            // cleared first, so an event offered from here on dispatches another delivery
+            dispatched.set(false);
+            T event = latest.getAndSet(null);
+            if (event == null || cancelled) {
+                return;
+            }
+            deliveredAt = nanoClock.getAsLong();
+            delivered = true;
+            listener.onEvent(event);
+        }
+    }
+}
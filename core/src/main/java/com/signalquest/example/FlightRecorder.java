@@ -0,0 +1,136 @@
+package com.signalquest.example;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Fixed-size binary ring of raw wire bytes and state transitions, for dumping after the fact.
+ * <p>
+ * Replaces per-packet hex logging: recording is a timestamp plus an array copy, with no formatting
+ * or allocation, so it can stay on in the NTRIP and Bluetooth hot paths. When the ring is full, the
+ * oldest whole records are dropped.
+ * <p>
+ * Each record is {@code [long nanoTime][byte type][unsigned short length][length bytes]}, big-endian.
+ * Events (see {@link #event(byte, int, int)}) carry two ints as their payload. A dump starts with
+ * {@link #MAGIC}, a version byte, and the wall-clock milliseconds and {@link System#nanoTime()} at
+ * dump time, for converting record timestamps.
+ */
+class FlightRecorder {
+    static final int MAGIC = 0x53514652; // "SQFR"
+    static final byte VERSION = 1;
+
+    // wire data
+    static final byte NTRIP_RX = 1;
+    static final byte NTRIP_TX = 2;
+    static final byte BLE_RTCM_TX = 3;
+    static final byte BLE_MESSAGE_RX = 4;
+    // events, payload (a, b)
+    static final byte NTRIP_STATE = 16;          // (Ntrip.State ordinal, 0)
+    static final byte GATT_CONNECTION = 17;      // (status, newState)
+    static final byte GATT_MTU = 18;             // (mtu, status)
+    static final byte GATT_SERVICES = 19;        // (status, 0)
+    static final byte GATT_DESCRIPTOR = 20;      // (status, 0)
+    static final byte GATT_WRITE = 21;           // (status, 0)
+    static final byte GATT_LINK = 22;            // (LinkPolicy.Mode ordinal, RSSI)
+    static final byte SCAN_MODE = 23;            // (ScanPolicy.Mode ordinal, SitePoints seen)
+
+    private static final int HEADER_LENGTH = 8 + 1 + 2;
+    private static final int MAX_PAYLOAD = 0xFFFF;
+
+    private final byte[] ring;
+    private final byte[] eventPayload = new byte[8];
+    private int head = 0;
+    private int size = 0;
+    private long droppedRecords = 0;
+
+    FlightRecorder(int capacity) {
+        this.ring = new byte[capacity];
+    }
+
+    /**
+     * Records wire bytes; payloads too long for one record are truncated.
+     */
+    synchronized void record(byte type, byte[] data, int offset, int length) {
+        int payload = Math.min(length, Math.min(MAX_PAYLOAD, ring.length - HEADER_LENGTH));
+        int recordLength = HEADER_LENGTH + payload;
+        while (ring.length - size < recordLength) {
+            dropOldest();
+        }
+        int position = (head + size) % ring.length;
+        long nanos = System.nanoTime();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            ring[position] = (byte) (nanos >>> shift);
+            position = (position + 1) % ring.length;
+        }
+        ring[position] = type;
+        position = (position + 1) % ring.length;
+        ring[position] = (byte) (payload >>> 8);
+        position = (position + 1) % ring.length;
+        ring[position] = (byte) payload;
+        position = (position + 1) % ring.length;
+        int first = Math.min(payload, ring.length - position);
+        System.arraycopy(data, offset, ring, position, first);
+        System.arraycopy(data, offset + first, ring, 0, payload - first);
+        size += recordLength;
+    }
+
+    void record(byte type, byte[] data) {
+        record(type, data, 0, data.length);
+    }
+
+    /**
+     * Records a state transition or callback, such as {@link #GATT_MTU} with (mtu, status).
+     */
+    synchronized void event(byte type, int a, int b) {
+        for (int i = 0; i < 4; i++) {
+            eventPayload[i] = (byte) (a >>> (24 - 8 * i));
+            eventPayload[4 + i] = (byte) (b >>> (24 - 8 * i));
+        }
+        record(type, eventPayload, 0, eventPayload.length);
+    }
+
+    private void dropOldest() {
+        int lengthPosition = (head + 9) % ring.length;
+        int payload = ((ring[lengthPosition] & 0xFF) << 8) | (ring[(lengthPosition + 1) % ring.length] & 0xFF);
+        int recordLength = HEADER_LENGTH + payload;
+        head = (head + recordLength) % ring.length;
+        size -= recordLength;
+        droppedRecords++;
+    }
+
+    synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return records overwritten since creation; only the most recent ones survive for a dump.
+     */
+    synchronized long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /**
+     * Writes the header and all records, oldest first; recording continues afterwards.
+     */
+    synchronized void dump(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(System.nanoTime());
+        int first = Math.min(size, ring.length - head);
+        out.write(ring, head, first);
+        out.write(ring, 0, size - first);
+        out.flush();
+    }
+
+    void dump(File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            dump(out);
+        }
+    }
+}
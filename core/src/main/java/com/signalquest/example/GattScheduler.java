@@ -0,0 +1,360 @@
+package com.signalquest.example;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a SitePoint connection's GATT operations one at a time, as Android requires, with timeouts,
+ * retries and per-operation latency.
+ * <p>
+ * Control operations (MTU, service discovery, descriptor writes, RSSI reads) queue in order; RTCM
+ * writes are pulled from the {@link Gatt} whenever the link is free, so corrections go first, but
+ * after {@link #MAX_RTCM_STREAK} writes in a row a waiting control operation gets its turn.
+ * <p>
+ * An operation the stack refuses (busy) is retried shortly after, and one whose callback doesn't
+ * come within its kind's timeout is retried, up to {@link #MAX_ATTEMPTS} attempts; then the
+ * {@link Gatt} is told it was given up on, and the next operation runs, so nothing hangs the queue.
+ * A timed-out RTCM write isn't retried: it may have gone, and newer corrections are waiting.
+ * <p>
+ * Each attempt the stack takes is numbered, and one that times out is still owed a callback. Callbacks
+ * come back in the order the stack took their operations, so a late one is matched to the oldest owed
+ * attempt of its kind, and ignored, rather than to the operation now in flight; owed attempts of other
+ * kinds ahead of it never got theirs. Should a late callback have gone missing, the next of its kind
+ * is taken for it, and once that operation times out it's known to have been called back already.
+ * <p>
+ * Time comes from the {@link Gatt}'s wake-ups: it calls {@link #onAlarm()} when asked, early or late.
+ */
+class GattScheduler {
+    static final int MAX_ATTEMPTS = 3;
+    static final int MAX_RTCM_STREAK = 4;
+    /** Also the {@link RtcmWritePacer}'s back-off, so a refused RTCM write is retried as writing may resume. */
+    static final long RETRY_MILLISECONDS = 50;
+
+    enum Kind {
+        MTU(5000),
+        DISCOVER_SERVICES(10000),
+        WRITE_DESCRIPTOR(5000),
+        READ_RSSI(2000),
+        RTCM_WRITE(1000);
+
+        final long timeoutMillis;
+
+        Kind(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    static final class Operation {
+        final Kind kind;
+        /** The MTU requested, for {@link Kind#MTU}. */
+        final int argument;
+        /** The corrections, for {@link Kind#RTCM_WRITE}. */
+        final byte[] data;
+        int attempts = 0;
+        /** The stack took the last attempt, so its callback is (or was) due. */
+        boolean taken = false;
+        /** The last attempt's number, in the order the stack took them. */
+        long sequence;
+
+        Operation(Kind kind, int argument, byte[] data) {
+            this.kind = kind;
+            this.argument = argument;
+            this.data = data;
+        }
+
+        @Override
+        public String toString() {
+            return kind + (kind == Kind.RTCM_WRITE ? "(" + data.length + " bytes)" : "") + " attempt " + attempts;
+        }
+    }
+
+    /**
+     * The Bluetooth side: Android's {@code BluetoothGatt} in the app, a fake in tests.
+     */
+    interface Gatt {
+        /**
+         * Hands the operation to the stack.
+         *
+         * @return it was taken, so its callback will come; false if the stack was busy.
+         */
+        boolean start(Operation operation);
+
+        /**
+         * @return the next RTCM write, or null for none now.
+         */
+        byte[] nextRtcm();
+
+        /**
+         * The operation timed out or was refused too often, and won't be retried.
+         */
+        void gaveUp(Operation operation);
+
+        /**
+         * Asks for {@link #onAlarm()} in about {@code delayMillis}, replacing any earlier request.
+         */
+        void wake(long delayMillis);
+    }
+
+    private final Gatt gatt;
+    private final LongSupplier nanoClock;
+    private final ArrayDeque<Operation> control = new ArrayDeque<>();
+    // the operation taken or waiting to retry; null when the link is free
+    private Operation current = null;
+    private long startedAt;
+    private long deadline;
+    private int rtcmStreak = 0;
+    private long takenSequence = 0;
+    // timed-out attempts whose callbacks may yet come, oldest first
+    private final ArrayDeque<Owed> owed = new ArrayDeque<>();
+    // a late callback of the current operation's kind came while it was in flight
+    private boolean staleWhileTaken = false;
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[KINDS.length];
+    private final long[] completions = new long[KINDS.length];
+    private final long[] refusals = new long[KINDS.length];
+    private final long[] timeouts = new long[KINDS.length];
+    private final long[] givenUp = new long[KINDS.length];
+    private final long[] lateCallbacks = new long[KINDS.length];
+
+    private static final class Owed {
+        final long sequence;
+        final Kind kind;
+
+        Owed(long sequence, Kind kind) {
+            this.sequence = sequence;
+            this.kind = kind;
+        }
+    }
+
+    GattScheduler(Gatt gatt) {
+        this(gatt, System::nanoTime);
+    }
+
+    GattScheduler(Gatt gatt, LongSupplier nanoClock) {
+        this.gatt = gatt;
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Queues a control operation.
+     */
+    synchronized void submit(Kind kind) {
+        submit(kind, 0);
+    }
+
+    synchronized void submit(Kind kind, int argument) {
+        control.add(new Operation(kind, argument, null));
+        next();
+    }
+
+    /**
+     * RTCM is waiting; starts a write if the link is free.
+     */
+    synchronized void rtcmAvailable() {
+        next();
+    }
+
+    /**
+     * An operation's callback came.
+     *
+     * @return it was for the operation in flight; false for a late or unasked-for callback.
+     */
+    synchronized boolean completed(Kind kind) {
+        return completed(kind, null, 0);
+    }
+
+    /**
+     * An operation's callback came with {@code status}; if it's for the operation in flight,
+     * {@code settle} is given the status before the next operation starts.
+     *
+     * @return it was for the operation in flight; false for a late or unasked-for callback.
+     */
+    synchronized boolean completed(Kind kind, IntConsumer settle, int status) {
+        boolean inFlight = current != null && current.taken && current.kind == kind;
+        // the attempt this callback is for: the oldest owed of its kind (those of other kinds ahead of
+        // it were never called back), else the one in flight
+        long sequence = inFlight ? current.sequence : -1;
+        while (!owed.isEmpty()) {
+            Owed first = owed.poll();
+            if (first.kind == kind) {
+                sequence = first.sequence;
+                break;
+            }
+        }
+        if (!inFlight || sequence != current.sequence) {
+            if (sequence >= 0) {
+                lateCallbacks[kind.ordinal()]++;
+                staleWhileTaken |= inFlight;
+            }
+            return false;
+        }
+        if (settle != null) {
+            settle.accept(status);
+        }
+        int k = kind.ordinal();
+        latency[k].recordNanos(nanoClock.getAsLong() - startedAt);
+        completions[k]++;
+        current = null;
+        next();
+        return true;
+    }
+
+    /**
+     * Retries or times out the current operation, if it's due.
+     */
+    synchronized void onAlarm() {
+        if (current == null) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        if (now - deadline < 0) {
+            gatt.wake(Math.max(1, (deadline - now) / 1_000_000L));
+            return;
+        }
+        if (!current.taken) {
+            attempt();
+            return;
+        }
+        Operation operation = current;
+        timeouts[operation.kind.ordinal()]++;
+        if (!staleWhileTaken) {
+            owed.add(new Owed(operation.sequence, operation.kind));
+        }
+        if (operation.kind == Kind.RTCM_WRITE || operation.attempts >= MAX_ATTEMPTS) {
+            giveUp();
+        } else {
+            attempt();
+        }
+    }
+
+    /**
+     * Starts the next operation, if the link is free: RTCM unless a control operation has waited
+     * through a streak of writes.
+     */
+    private void next() {
+        while (current == null) {
+            if (control.isEmpty() || rtcmStreak < MAX_RTCM_STREAK) {
+                byte[] rtcm = gatt.nextRtcm();
+                if (rtcm != null) {
+                    rtcmStreak++;
+                    current = new Operation(Kind.RTCM_WRITE, 0, rtcm);
+                    attempt();
+                    continue;
+                }
+            }
+            Operation operation = control.poll();
+            if (operation == null) {
+                return;
+            }
+            rtcmStreak = 0;
+            current = operation;
+            attempt();
+        }
+    }
+
+    private void attempt() {
+        Operation operation = current;
+        operation.attempts++;
+        long now = nanoClock.getAsLong();
+        operation.taken = true;
+        operation.sequence = ++takenSequence;
+        staleWhileTaken = false;
+        startedAt = now;
+        deadline = now + operation.kind.timeoutMillis * 1_000_000L;
+        // the fake may call back from inside start
+        if (gatt.start(operation)) {
+            if (current == operation) {
+                gatt.wake(operation.kind.timeoutMillis);
+            }
+            return;
+        }
+        operation.taken = false;
+        takenSequence--;
+        refusals[operation.kind.ordinal()]++;
+        if (operation.attempts >= MAX_ATTEMPTS) {
+            giveUp();
+            return;
+        }
+        deadline = now + RETRY_MILLISECONDS * 1_000_000L;
+        gatt.wake(RETRY_MILLISECONDS);
+    }
+
+    private void giveUp() {
+        Operation operation = current;
+        givenUp[operation.kind.ordinal()]++;
+        current = null;
+        gatt.gaveUp(operation);
+        next();
+    }
+
+    /**
+     * Drops everything queued and in flight, when the connection goes.
+     *
+     * @return the RTCM write waiting to retry, if any, for recycling; one the stack took is done with.
+     */
+    synchronized byte[] reset() {
+        byte[] rtcm = current != null && !current.taken ? current.data : null;
+        current = null;
+        control.clear();
+        owed.clear();
+        staleWhileTaken = false;
+        rtcmStreak = 0;
+        return rtcm;
+    }
+
+    synchronized int getQueued() {
+        return control.size();
+    }
+
+    /**
+     * @return a copy of the start-to-callback latencies for the kind.
+     */
+    synchronized LatencyHistogram getLatency(Kind kind) {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(latency[kind.ordinal()]);
+        return copy;
+    }
+
+    synchronized long getTimeouts(Kind kind) {
+        return timeouts[kind.ordinal()];
+    }
+
+    synchronized long getRefusals(Kind kind) {
+        return refusals[kind.ordinal()];
+    }
+
+    synchronized long getGivenUp(Kind kind) {
+        return givenUp[kind.ordinal()];
+    }
+
+    /**
+     * @return callbacks that came after their operation timed out, and were ignored.
+     */
+    synchronized long getLateCallbacks(Kind kind) {
+        return lateCallbacks[kind.ordinal()];
+    }
+
+    /**
+     * @return a line per kind of operation run: its latency, and how often it was refused, timed out,
+     * given up on, or called back late.
+     */
+    synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        for (Kind kind : KINDS) {
+            int k = kind.ordinal();
+            if (completions[k] + refusals[k] + timeouts[k] == 0) {
+                continue;
+            }
+            report.append(String.format(Locale.US, "%s: %s; %d busy, %d timed out, %d given up, %d late%n",
+                    kind, latency[k], refusals[k], timeouts[k], givenUp[k], lateCallbacks[k]));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.signalquest.example;
+
+/**
+ * Decides when the rover's position is worth sending to the caster again.
+ * <p>
+ * A GGA goes out when the rover has moved more than a distance threshold since the last one, when
+ * its fix quality changes, or when the maximum interval has passed, which keeps casters that
+ * expect regular uploads happy. A stationary rover then sends little, while a moving one keeps a
+ * VRS caster's virtual base close.
+ */
+class GgaScheduler {
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    enum Reason { FIRST, MOVED, QUALITY, INTERVAL }
+
+    private final double minDistanceMeters;
+    private final long maxIntervalNanos;
+
+    private boolean sentAny = false;
+    private long lastSentAt;
+    private double lastLatitude;
+    private double lastLongitude;
+    private int lastQuality;
+    private final long[] sentFor = new long[Reason.values().length];
+
+    GgaScheduler(double minDistanceMeters, long maxIntervalMillis) {
+        this.minDistanceMeters = minDistanceMeters;
+        this.maxIntervalNanos = maxIntervalMillis * 1_000_000L;
+    }
+
+    /**
+     * Sends the next position straight away, e.g. on a new connection.
+     */
+    synchronized void reset() {
+        sentAny = false;
+    }
+
+    /**
+     * @return why the given position should be sent now, or null if it needn't be.
+     */
+    synchronized Reason due(long nowNanos, double latitude, double longitude, int quality) {
+        if (!sentAny) {
+            return Reason.FIRST;
+        }
+        if (quality != lastQuality) {
+            return Reason.QUALITY;
+        }
+        if (distanceMeters(latitude, longitude) > minDistanceMeters) {
+            return Reason.MOVED;
+        }
+        if (nowNanos - lastSentAt >= maxIntervalNanos) {
+            return Reason.INTERVAL;
+        }
+        return null;
+    }
+
+    synchronized void sent(Reason reason, long nowNanos, double latitude, double longitude, int quality) {
+        sentAny = true;
+        lastSentAt = nowNanos;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastQuality = quality;
+        sentFor[reason.ordinal()]++;
+    }
+
+    /**
+     * Equirectangular approximation; plenty at GGA thresholds of metres to kilometres.
+     */
+    private double distanceMeters(double latitude, double longitude) {
+        double dy = (latitude - lastLatitude) * METERS_PER_DEGREE;
+        double dLongitude = Math.abs(longitude - lastLongitude);
+        if (dLongitude > 180) {
+            dLongitude = 360 - dLongitude;
+        }
+        double dx = dLongitude * METERS_PER_DEGREE * Math.cos(Math.toRadians((latitude + lastLatitude) / 2));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    synchronized long getSent(Reason reason) {
+        return sentFor[reason.ordinal()];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GgaScheduler: sent " + sentFor[Reason.FIRST.ordinal()] + " first, "
+                + sentFor[Reason.MOVED.ordinal()] + " moved, " + sentFor[Reason.QUALITY.ordinal()] + " quality, "
+                + sentFor[Reason.INTERVAL.ordinal()] + " interval";
+    }
+}
@@ -0,0 +1,117 @@
+package com.signalquest.example;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Fixed-memory, log-linear histogram of latencies, in microseconds, from a microsecond to about a minute.
+ * <p>
+ * Each power of two is split into {@link #SUB_BUCKETS} buckets, so any percentile is within about
+ * 6% of the true value, in a few hundred counters whatever the number of samples. The maximum is exact.
+ * Not thread-safe; the {@link LatencyTracer} guards its histograms.
+ */
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // 2^26 microseconds, about 67s; anything longer is counted as this
+    static final long MAX_MICROS = (1L << 26) - 1;
+    private static final int BUCKETS = bucket(MAX_MICROS) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long maxMicros = 0;
+    private long totalMicros = 0;
+
+    void recordNanos(long nanos) {
+        record(Math.max(nanos, 0) / 1000);
+    }
+
+    void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_MICROS);
+        counts[bucket(value)]++;
+        count++;
+        totalMicros += value;
+        maxMicros = Math.max(maxMicros, value);
+    }
+
+    /**
+     * Adds another histogram's samples to this one.
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        totalMicros += other.totalMicros;
+        maxMicros = Math.max(maxMicros, other.maxMicros);
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalMicros = 0;
+        maxMicros = 0;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMaxMicros() {
+        return maxMicros;
+    }
+
+    long getMeanMicros() {
+        return count == 0 ? 0 : totalMicros / count;
+    }
+
+    /**
+     * @param percentile 0 to 100.
+     * @return the top of the bucket holding the percentile (but no more than the maximum), or 0 if empty.
+     */
+    long percentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketTop(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    /**
+     * Values below {@link #SUB_BUCKETS} get a bucket each; above, each power of two gets
+     * {@link #SUB_BUCKETS}, picked by the bits after the highest.
+     */
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    static long bucketTop(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * @return count, p50, p99, p99.9 and max, in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n=%d p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                count, percentileMicros(50) / 1000.0, percentileMicros(99) / 1000.0,
+                percentileMicros(99.9) / 1000.0, maxMicros / 1000.0);
+    }
+}
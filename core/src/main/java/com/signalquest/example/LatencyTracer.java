@@ -0,0 +1,218 @@
+package com.signalquest.example;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Where correction latency goes, hop by hop, from the NTRIP socket to the SitePoint.
+ * <p>
+ * Each {@link Hop} has a {@link LatencyHistogram} over the whole session. The samples since the
+ * last SitePoint status are also kept aside, and when the next status arrives they're added to the
+ * histograms for its aiding quality (how many of its {@link #AIDING_BINS} bins are set), so latency
+ * can be read against how well the SitePoint was actually aided. Memory is fixed, whatever the
+ * session length.
+ * <p>
+ * Writes are timed from the oldest frame's arrival when it's dequeued, then the start of the write,
+ * then its callback. {@link GattScheduler} has one write in flight at a time.
+ */
+class LatencyTracer {
+    static final int AIDING_BINS = 8;
+
+    enum Hop {
+        /** Socket read to the frames queued (or, without the relay, parsed by the NtripParser). */
+        SOCKET_TO_PARSED,
+        /** Frame queued to dequeued for a Bluetooth write. */
+        QUEUE_WAIT,
+        /** {@code writeCharacteristic} to {@code onCharacteristicWrite}. */
+        GATT_WRITE,
+        /** Socket read of a write's oldest frame to the write's {@code onCharacteristicWrite}. */
+        END_TO_END,
+    }
+
+    private static final Hop[] HOPS = Hop.values();
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final LongSupplier nanoClock;
+    private final LatencyHistogram[] total = histograms();
+    private final LatencyHistogram[] sinceStatus = histograms();
+    private final LatencyHistogram[][] byAiding = new LatencyHistogram[AIDING_BINS + 1][];
+    private final long[] statusesByAiding = new long[AIDING_BINS + 1];
+
+    // the oldest frame's arrival for the write being prepared, if any
+    private long dequeuedArrival = NONE;
+    // the write in flight: when it started, or NONE, and its oldest frame's arrival, if any
+    private long inFlightSince = NONE;
+    private long inFlightArrival = NONE;
+
+    LatencyTracer() {
+        this(System::nanoTime);
+    }
+
+    LatencyTracer(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        for (int i = 0; i <= AIDING_BINS; i++) {
+            byAiding[i] = histograms();
+        }
+    }
+
+    private static LatencyHistogram[] histograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[HOPS.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    long now() {
+        return nanoClock.getAsLong();
+    }
+
+    synchronized void record(Hop hop, long nanos) {
+        total[hop.ordinal()].recordNanos(nanos);
+        sinceStatus[hop.ordinal()].recordNanos(nanos);
+    }
+
+    /**
+     * A frame has been dequeued for a write; the first since the last write marks the write's age.
+     */
+    synchronized void dequeued(long arrivalNanos, long dequeuedNanos) {
+        record(Hop.QUEUE_WAIT, dequeuedNanos - arrivalNanos);
+        if (dequeuedArrival == NONE) {
+            dequeuedArrival = arrivalNanos;
+        }
+    }
+
+    /**
+     * The dequeued data has been handed to Bluetooth.
+     */
+    synchronized void writeStarted() {
+        inFlightSince = now();
+        inFlightArrival = dequeuedArrival;
+        dequeuedArrival = NONE;
+    }
+
+    /**
+     * Bluetooth has called back for the write in flight.
+     */
+    synchronized void writeCompleted() {
+        if (inFlightSince == NONE) {
+            return;
+        }
+        long now = now();
+        record(Hop.GATT_WRITE, now - inFlightSince);
+        if (inFlightArrival != NONE) {
+            record(Hop.END_TO_END, now - inFlightArrival);
+        }
+        inFlightSince = NONE;
+    }
+
+    /**
+     * Forgets the write in flight, as when the connection drops.
+     */
+    synchronized void writesAbandoned() {
+        inFlightSince = NONE;
+        dequeuedArrival = NONE;
+    }
+
+    /**
+     * Attributes the samples since the last status to this status's aiding quality.
+     */
+    synchronized void onAidingQuality(boolean[] bins) {
+        int level = 0;
+        for (int i = 0; i < bins.length && i < AIDING_BINS; i++) {
+            if (bins[i]) {
+                level++;
+            }
+        }
+        statusesByAiding[level]++;
+        for (int hop = 0; hop < HOPS.length; hop++) {
+            byAiding[level][hop].add(sinceStatus[hop]);
+            sinceStatus[hop].clear();
+        }
+    }
+
+    /**
+     * @return p50/p99/p99.9/max for the hop over the session, in microseconds.
+     */
+    synchronized long[] summary(Hop hop) {
+        return summary(total[hop.ordinal()]);
+    }
+
+    /**
+     * @return p50/p99/p99.9/max for the hop, over the samples followed by a status with {@code level}
+     * aiding bins set, in microseconds.
+     */
+    synchronized long[] summary(Hop hop, int level) {
+        return summary(byAiding[level][hop.ordinal()]);
+    }
+
+    private static long[] summary(LatencyHistogram histogram) {
+        return new long[]{histogram.percentileMicros(50), histogram.percentileMicros(99),
+                histogram.percentileMicros(99.9), histogram.getMaxMicros()};
+    }
+
+    synchronized long getCount(Hop hop) {
+        return total[hop.ordinal()].getCount();
+    }
+
+    synchronized void clear() {
+        for (int hop = 0; hop < HOPS.length; hop++) {
+            total[hop].clear();
+            sinceStatus[hop].clear();
+            for (LatencyHistogram[] level : byAiding) {
+                level[hop].clear();
+            }
+        }
+        Arrays.fill(statusesByAiding, 0);
+        dequeuedArrival = NONE;
+        inFlightSince = NONE;
+    }
+
+    /**
+     * @return the session's histograms, then those for each aiding quality seen, one per line.
+     */
+    synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        for (Hop hop : HOPS) {
+            report.append(hop).append(": ").append(total[hop.ordinal()]).append('\n');
+        }
+        for (int level = AIDING_BINS; level >= 0; level--) {
+            if (statusesByAiding[level] == 0) {
+                continue;
+            }
+            report.append(String.format(Locale.US, "aiding %d/%d (%d statuses)%n", level, AIDING_BINS, statusesByAiding[level]));
+            for (Hop hop : HOPS) {
+                report.append("  ").append(hop).append(": ").append(byAiding[level][hop.ordinal()]).append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes every histogram as CSV, with an {@code all} row per hop and a row per hop and aiding quality.
+     */
+    synchronized void export(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("hop,aiding,statuses,count,mean_us,p50_us,p99_us,p99.9_us,max_us");
+            for (Hop hop : HOPS) {
+                exportRow(out, hop, "all", 0, total[hop.ordinal()]);
+            }
+            for (int level = 0; level <= AIDING_BINS; level++) {
+                for (Hop hop : HOPS) {
+                    exportRow(out, hop, Integer.toString(level), statusesByAiding[level], byAiding[level][hop.ordinal()]);
+                }
+            }
+        }
+    }
+
+    private static void exportRow(PrintWriter out, Hop hop, String aiding, long statuses, LatencyHistogram histogram) {
+        out.printf(Locale.US, "%s,%s,%d,%d,%d,%d,%d,%d,%d%n", hop, aiding, statuses, histogram.getCount(),
+                histogram.getMeanMicros(), histogram.percentileMicros(50), histogram.percentileMicros(99),
+                histogram.percentileMicros(99.9), histogram.getMaxMicros());
+    }
+}
@@ -0,0 +1,132 @@
+package com.signalquest.example;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Decides the Bluetooth link setting for a SitePoint connection, from whether it's aiding and how
+ * strong the signal is.
+ * <p>
+ * While RTCM is flowing the link runs {@link Mode#FAST} (high connection priority, LE 2M PHY) for the
+ * throughput and shorter connection interval; once RTCM stops for {@link #DEFAULT_IDLE_MILLISECONDS},
+ * or the smoothed RSSI drops below the weak threshold, it falls back to {@link Mode#BALANCED}
+ * (balanced priority, LE 1M PHY), whose longer symbols carry further. RSSI has to recover past a
+ * higher threshold before going fast again, and a setting is held for a while before changing, so
+ * a link at the edge of range doesn't flap.
+ */
+class LinkPolicy {
+    static final int DEFAULT_WEAK_RSSI = -85;
+    static final int DEFAULT_STRONG_RSSI = -75;
+    static final long DEFAULT_IDLE_MILLISECONDS = 5 * 1000;
+    static final long DEFAULT_HOLD_MILLISECONDS = 10 * 1000;
+    // smoothing, as a shift: each sample counts for 1/4
+    private static final int RSSI_SHIFT = 2;
+
+    enum Mode {
+        /** {@code CONNECTION_PRIORITY_HIGH} and LE 2M PHY. */
+        FAST,
+        /** {@code CONNECTION_PRIORITY_BALANCED} and LE 1M PHY, Android's defaults. */
+        BALANCED
+    }
+
+    private final int weakRssi;
+    private final int strongRssi;
+    private final long idleNanos;
+    private final long holdNanos;
+    private final LongSupplier nanoClock;
+    private Mode mode = Mode.BALANCED;
+    private long changedAt;
+    private boolean changed = false;
+    private boolean rssiKnown = false;
+    // smoothed RSSI, scaled up by RSSI_SHIFT
+    private int scaledRssi;
+    private boolean weak = false;
+    private long rtcmBytes = 0;
+    private long rtcmAt;
+    private boolean aiding = false;
+
+    LinkPolicy() {
+        this(DEFAULT_WEAK_RSSI, DEFAULT_STRONG_RSSI, DEFAULT_IDLE_MILLISECONDS, DEFAULT_HOLD_MILLISECONDS, System::nanoTime);
+    }
+
+    LinkPolicy(int weakRssi, int strongRssi, long idleMillis, long holdMillis, LongSupplier nanoClock) {
+        this.weakRssi = weakRssi;
+        this.strongRssi = strongRssi;
+        this.idleNanos = idleMillis * 1_000_000L;
+        this.holdNanos = holdMillis * 1_000_000L;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a link sample.
+     *
+     * @param rssi the connection's RSSI, in dBm.
+     * @param rtcmBytesWritten total RTCM written to the SitePoint so far; any increase means aiding.
+     * @return the mode changed, and should be applied.
+     */
+    synchronized boolean update(int rssi, long rtcmBytesWritten) {
+        long now = nanoClock.getAsLong();
+        if (rssiKnown) {
+            scaledRssi += rssi - (scaledRssi >> RSSI_SHIFT);
+        } else {
+            scaledRssi = rssi << RSSI_SHIFT;
+            rssiKnown = true;
+        }
+        int smoothed = getRssi();
+        if (smoothed < weakRssi) {
+            weak = true;
+        } else if (smoothed > strongRssi) {
+            weak = false;
+        }
+        if (rtcmBytesWritten != rtcmBytes) {
+            rtcmBytes = rtcmBytesWritten;
+            rtcmAt = now;
+            aiding = true;
+        } else if (aiding && now - rtcmAt >= idleNanos) {
+            aiding = false;
+        }
+        Mode wanted = aiding && !weak ? Mode.FAST : Mode.BALANCED;
+        if (wanted == mode || (changed && now - changedAt < holdNanos)) {
+            return false;
+        }
+        mode = wanted;
+        changedAt = now;
+        changed = true;
+        return true;
+    }
+
+    synchronized Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the smoothed RSSI, in dBm.
+     */
+    synchronized int getRssi() {
+        return scaledRssi >> RSSI_SHIFT;
+    }
+
+    synchronized boolean isAiding() {
+        return aiding;
+    }
+
+    synchronized boolean isWeak() {
+        return weak;
+    }
+
+    /**
+     * Starts over for a new connection, which Android brings up balanced on 1M.
+     */
+    synchronized void reset() {
+        mode = Mode.BALANCED;
+        changed = false;
+        rssiKnown = false;
+        weak = false;
+        aiding = false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LinkPolicy: " + mode + ", " + (aiding ? "aiding" : "idle") + ", RSSI " + getRssi() + " dBm"
+                + (weak ? " (weak)" : "");
+    }
+}
@@ -0,0 +1,143 @@
+package com.signalquest.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer, single-consumer ring of variable-length messages, handing SitePoint
+ * notifications from the Bluetooth binder thread to the thread that parses them.
+ * <p>
+ * Each message is copied in behind a two-byte length, so {@link #offer(byte[], int, int)} is a
+ * bounds check and one or two array copies, with no allocation or lock. When the ring is full the
+ * new message is dropped, and counted, rather than blocking the binder thread.
+ * <p>
+ * Positions only grow; each side caches the other's, reading the shared one only when the cached
+ * value says the ring is full (producer) or empty (consumer).
+ */
+class MessageRing {
+    private static final int HEADER_LENGTH = 2;
+
+    private final byte[] buffer;
+    private final int mask;
+    private final int maxMessageLength;
+    // read position, written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // write position, written by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // producer only
+    private long cachedHead = 0;
+    // consumer only
+    private long cachedTail = 0;
+
+    private volatile long offered = 0;
+    private volatile long dropped = 0;
+    private volatile int maxOccupancy = 0;
+
+    /**
+     * @param capacity bytes, a power of two; each message takes its length plus two.
+     * @param maxMessageLength longer messages are dropped.
+     */
+    MessageRing(int capacity, int maxMessageLength) {
+        if (Integer.bitCount(capacity) != 1 || maxMessageLength > 0xFFFF || maxMessageLength + HEADER_LENGTH > capacity) {
+            throw new IllegalArgumentException("Capacity must be a power of two, with room for a message");
+        }
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Copies a message in. Producer only.
+     *
+     * @return false if it was dropped, the ring being full or the message too long.
+     */
+    boolean offer(byte[] data, int offset, int length) {
+        long position = tail.get();
+        long end = position + HEADER_LENGTH + length;
+        if (length > maxMessageLength || (end - cachedHead > buffer.length && end - (cachedHead = head.get()) > buffer.length)) {
+            dropped++;
+            return false;
+        }
+        buffer[(int) position & mask] = (byte) (length >> 8);
+        buffer[(int) (position + 1) & mask] = (byte) length;
+        copyIn(data, offset, (int) (position + HEADER_LENGTH) & mask, length);
+        // a full write, not lazySet: the consumer checks this after saying it'll park
+        tail.set(end);
+        offered++;
+        int occupancy = (int) (end - cachedHead);
+        if (occupancy > maxOccupancy) {
+            maxOccupancy = occupancy;
+        }
+        return true;
+    }
+
+    private void copyIn(byte[] data, int offset, int at, int length) {
+        int first = Math.min(length, buffer.length - at);
+        System.arraycopy(data, offset, buffer, at, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+    }
+
+    /**
+     * Copies the oldest message out. Consumer only.
+     *
+     * @param into at least {@link #getMaxMessageLength()} long.
+     * @return the message's length, or -1 if the ring is empty.
+     */
+    int poll(byte[] into) {
+        long position = head.get();
+        if (position == cachedTail && position == (cachedTail = tail.get())) {
+            return -1;
+        }
+        int length = (buffer[(int) position & mask] & 0xFF) << 8 | buffer[(int) (position + 1) & mask] & 0xFF;
+        int at = (int) (position + HEADER_LENGTH) & mask;
+        int first = Math.min(length, buffer.length - at);
+        System.arraycopy(buffer, at, into, 0, first);
+        System.arraycopy(buffer, 0, into, first, length - first);
+        head.lazySet(position + HEADER_LENGTH + length);
+        return length;
+    }
+
+    /**
+     * @return nothing is waiting. Consumer only.
+     */
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return bytes in use, headers included. Any thread.
+     */
+    int getOccupancy() {
+        // head first, so a racing offer can't make this negative
+        long position = head.get();
+        return (int) (tail.get() - position);
+    }
+
+    /**
+     * @return the most bytes ever in use, as the producer saw it (so perhaps a little high).
+     */
+    int getMaxOccupancy() {
+        return maxOccupancy;
+    }
+
+    long getOffered() {
+        return offered;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageRing: " + getOccupancy() + "/" + buffer.length + " bytes, max " + maxOccupancy + ", "
+                + offered + " messages, " + dropped + " dropped";
+    }
+}
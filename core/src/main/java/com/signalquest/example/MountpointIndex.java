@@ -0,0 +1,135 @@
+package com.signalquest.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Spatial index over a sourcetable's RTCM 3 streams, for picking the closest base to a position.
+ * <p>
+ * Stream positions are kept as points on the unit sphere, in a k-d tree laid out in place (each range's
+ * middle element splits it), so {@link #nearest(double, double)} only visits a few dozen of even
+ * thousands of streams, with no allocation. The straight-line distance between points on the sphere
+ * orders them the same as the distance along it, so the tree needs no special cases for the poles or
+ * the antimeridian.
+ */
+class MountpointIndex {
+    static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final Sourcetable.Stream[] streams;
+    // per axis, per stream in tree order
+    private final double[][] points;
+
+    // per-query state; queries are synchronized
+    private final double[] query = new double[3];
+    private int best;
+    private double bestDistance;
+
+    /**
+     * Indexes the RTCM 3 streams that have a location.
+     */
+    MountpointIndex(List<Sourcetable.Stream> all) {
+        List<Sourcetable.Stream> located = new ArrayList<>();
+        for (Sourcetable.Stream stream : all) {
+            if (stream.isRtcm3() && stream.hasLocation()) {
+                located.add(stream);
+            }
+        }
+        streams = located.toArray(new Sourcetable.Stream[0]);
+        double[][] unsorted = new double[streams.length][];
+        for (int i = 0; i < streams.length; i++) {
+            unsorted[i] = toPoint(streams[i].latitude, streams[i].longitude, new double[3]);
+        }
+        Integer[] order = new Integer[streams.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        build(order, unsorted, 0, order.length, 0);
+        Sourcetable.Stream[] ordered = new Sourcetable.Stream[streams.length];
+        points = new double[3][streams.length];
+        for (int i = 0; i < order.length; i++) {
+            ordered[i] = streams[order[i]];
+            for (int axis = 0; axis < 3; axis++) {
+                points[axis][i] = unsorted[order[i]][axis];
+            }
+        }
+        System.arraycopy(ordered, 0, streams, 0, streams.length);
+    }
+
+    private static void build(Integer[] order, double[][] points, int from, int to, int axis) {
+        if (to - from < 2) {
+            return;
+        }
+        Arrays.sort(order, from, to, Comparator.comparingDouble(i -> points[i][axis]));
+        int middle = (from + to) >>> 1;
+        build(order, points, from, middle, (axis + 1) % 3);
+        build(order, points, middle + 1, to, (axis + 1) % 3);
+    }
+
+    private static double[] toPoint(double latitude, double longitude, double[] point) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        point[0] = Math.cos(lat) * Math.cos(lon);
+        point[1] = Math.cos(lat) * Math.sin(lon);
+        point[2] = Math.sin(lat);
+        return point;
+    }
+
+    int size() {
+        return streams.length;
+    }
+
+    /**
+     * @return the stream closest to the given position, or null if none have a location.
+     */
+    synchronized Sourcetable.Stream nearest(double latitude, double longitude) {
+        if (streams.length == 0) {
+            return null;
+        }
+        toPoint(latitude, longitude, query);
+        best = -1;
+        bestDistance = Double.MAX_VALUE;
+        search(0, streams.length, 0);
+        return streams[best];
+    }
+
+    private void search(int from, int to, int axis) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        double dx = query[0] - points[0][middle];
+        double dy = query[1] - points[1][middle];
+        double dz = query[2] - points[2][middle];
+        double distance = dx * dx + dy * dy + dz * dz;
+        if (distance < bestDistance) {
+            bestDistance = distance;
+            best = middle;
+        }
+        double split = query[axis] - points[axis][middle];
+        int next = (axis + 1) % 3;
+        if (split < 0) {
+            search(from, middle, next);
+            if (split * split < bestDistance) {
+                search(middle + 1, to, next);
+            }
+        } else {
+            search(middle + 1, to, next);
+            if (split * split < bestDistance) {
+                search(from, middle, next);
+            }
+        }
+    }
+
+    /**
+     * @return the great-circle distance from the given position to the stream's.
+     */
+    static double distanceKm(Sourcetable.Stream stream, double latitude, double longitude) {
+        double[] a = toPoint(latitude, longitude, new double[3]);
+        double[] b = toPoint(stream.latitude, stream.longitude, new double[3]);
+        double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+        double chord = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return 2 * Math.asin(Math.min(1.0, chord / 2)) * EARTH_RADIUS_KM;
+    }
+}
@@ -0,0 +1,469 @@
+package com.signalquest.example;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * One thread, with one {@link Selector}, that owns every NTRIP socket along with its write queue, and
+ * runs the timers that go with them (GGA, stall detection and reconnect backoff).
+ * <p>
+ * Connections, writes, timers and tasks may be started from any thread; they are handed to the
+ * reactor thread, which runs all the callbacks. Nothing is created per connection beyond the
+ * channel itself, so connecting and disconnecting over and over doesn't leak threads or descriptors.
+ * Host lookups, which can stall for as long as DNS does, run on pooled helper threads instead, so a
+ * slow one doesn't hold up the other connections, their lookups, or the timers. {@link #close()} closes
+ * every connection and ends the threads.
+ * <p>
+ * A task, timer or listener that throws doesn't end the reactor thread: a connection's listener hears
+ * about its own failures, and anything else goes to the {@link #setFailureHandler(Consumer) failure
+ * handler}, then the loop carries on.
+ */
+class NioReactor implements Closeable {
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /**
+     * Looks up a host, blocking; run on a helper thread.
+     */
+    interface Resolver {
+        InetSocketAddress resolve(String host, int port) throws IOException;
+    }
+
+    private static final Resolver DNS = (host, port) -> {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(host);
+        }
+        return address;
+    };
+
+    /**
+     * Connection events, all on the reactor thread.
+     */
+    interface Listener {
+        void connected(Connection connection);
+
+        /**
+         * Data is only valid for the duration of the call; the buffer is reused for the next read.
+         */
+        void handleData(Connection connection, byte[] buffer, int offset, int length);
+
+        /**
+         * The connection failed, or the server closed it; it's closed by the time this is called.
+         */
+        void handleException(Connection connection, Exception e);
+    }
+
+    private final Thread thread;
+    private final Selector selector;
+    private final Resolver resolver;
+    // reused between lookups, and only started for lookups running at once
+    private final ExecutorService lookups;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // reactor thread only
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private final Set<Connection> connections = new HashSet<>();
+    // shared by every connection's reads, which all happen on the reactor thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private volatile boolean running = true;
+    private volatile Consumer<RuntimeException> failureHandler = e -> { };
+    private volatile long failures = 0;
+    private long timerSequence = 0;
+
+    NioReactor(String name) {
+        this(name, DNS);
+    }
+
+    NioReactor(String name, Resolver resolver) {
+        this.resolver = resolver;
+        lookups = Executors.newCachedThreadPool(task -> {
+            Thread lookup = new Thread(task, name + " lookups");
+            lookup.setDaemon(true);
+            return lookup;
+        });
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open a selector", e);
+        }
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Looks the host up on a helper thread, then starts connecting on the reactor thread; the
+     * listener hears about the outcome, possibly before this returns.
+     */
+    Connection connect(String host, int port, Listener listener) {
+        Connection connection = new Connection(listener);
+        lookups.execute(() -> {
+            if (!connection.isOpen()) {
+                return;
+            }
+            try {
+                InetSocketAddress address = resolver.resolve(host, port);
+                execute(() -> connection.start(address));
+            } catch (IOException | RuntimeException e) {
+                execute(() -> connection.closeNow(e));
+            }
+        });
+        return connection;
+    }
+
+    /**
+     * Runs the task once, after the delay, on the reactor thread.
+     */
+    Timer schedule(Runnable task, long delayMillis) {
+        return schedule(task, delayMillis, 0);
+    }
+
+    /**
+     * Runs the task after the delay, then every period, on the reactor thread, until cancelled.
+     */
+    Timer schedule(Runnable task, long delayMillis, long periodMillis) {
+        Timer timer = new Timer(task, System.nanoTime() + delayMillis * 1_000_000L, periodMillis * 1_000_000L);
+        execute(() -> {
+            timer.sequence = timerSequence++;
+            timers.add(timer);
+        });
+        return timer;
+    }
+
+    /**
+     * Runs the task on the reactor thread: straight away if already on it, otherwise soon.
+     */
+    void execute(Runnable task) {
+        if (Thread.currentThread() == thread) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Hears about each task, timer or listener that threw on the reactor thread; called on it.
+     */
+    void setFailureHandler(Consumer<RuntimeException> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * @return tasks, timers and listeners that threw on the reactor thread.
+     */
+    long getFailures() {
+        return failures;
+    }
+
+    boolean isReactorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return open connections; only exact on the reactor thread.
+     */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Closes every connection, without calling their listeners, and ends the reactor thread; waits
+     * for it unless called on it.
+     */
+    @Override
+    public void close() {
+        running = false;
+        lookups.shutdownNow();
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                runTasks();
+                long untilTimer = runTimers();
+                if (!running) {
+                    break;
+                }
+                if (untilTimer < 0) {
+                    selector.select();
+                } else if (untilTimer == 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(untilTimer);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    // handled keys must be removed, or their stale ready ops are seen again on the next select
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        ((Connection) key.attachment()).handle(key);
+                    } catch (RuntimeException e) {
+                        // the listener threw while being told of the connection's own failure
+                        failed(e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // only the selector itself can fail here; connections' errors go to their listeners
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                connection.closeNow(null);
+            }
+            tasks.clear();
+            timers.clear();
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // nothing else to release
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            runSafely(task);
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(RuntimeException e) {
+        // only ever incremented on the reactor thread
+        failures++;
+        try {
+            failureHandler.accept(e);
+        } catch (RuntimeException ignored) {
+            // nowhere left to report it
+        }
+    }
+
+    /**
+     * @return milliseconds until the next timer is due, or -1 for none.
+     */
+    private long runTimers() {
+        long now = System.nanoTime();
+        Timer timer;
+        while ((timer = timers.peek()) != null) {
+            if (timer.cancelled) {
+                timers.poll();
+                continue;
+            }
+            long untilDue = timer.deadline - now;
+            if (untilDue > 0) {
+                // rounded up, so the timer isn't woken for just before it's due
+                return (untilDue + 999_999) / 1_000_000L;
+            }
+            timers.poll();
+            if (timer.periodNanos > 0) {
+                timer.deadline += timer.periodNanos;
+                timers.add(timer);
+            }
+            runSafely(timer.task);
+            now = System.nanoTime();
+        }
+        return -1;
+    }
+
+    /**
+     * A scheduled task, which can be cancelled from any thread.
+     */
+    static final class Timer implements Comparable<Timer> {
+        private final Runnable task;
+        private final long periodNanos;
+        private long deadline;
+        // keeps timers due at the same time in the order they were scheduled
+        private long sequence;
+        private volatile boolean cancelled = false;
+
+        private Timer(Runnable task, long deadline, long periodNanos) {
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timer another) {
+            long difference = deadline - another.deadline;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return Long.compare(sequence, another.sequence);
+        }
+    }
+
+    /**
+     * One socket. {@link #write(byte[])} and {@link #close()} may be called from any thread.
+     */
+    final class Connection {
+        private final Listener listener;
+        private final WriteQueue writes = new WriteQueue();
+        // a flush is on its way to the reactor, so further writes needn't wake it
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final Runnable flushTask = this::flushQueued;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private volatile boolean open = true;
+
+        private Connection(Listener listener) {
+            this.listener = listener;
+        }
+
+        private void start(InetSocketAddress address) {
+            if (!open) {
+                return;
+            }
+            try {
+                channel = SocketChannel.open();
+                connections.add(this);
+                channel.configureBlocking(false);
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                if (channel.connect(address)) {
+                    finishConnect();
+                }
+            } catch (IOException | RuntimeException e) {
+                closeNow(e);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            try {
+                if (key.isValid() && key.isConnectable() && channel.finishConnect()) {
+                    finishConnect();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    readBuffer.clear();
+                    int bytesRead = channel.read(readBuffer);
+                    if (bytesRead == -1) {
+                        throw new EOFException("Server has closed the connection");
+                    }
+                    if (bytesRead > 0) {
+                        listener.handleData(this, readBuffer.array(), readBuffer.arrayOffset(), bytesRead);
+                    }
+                }
+                if (open && key.isValid() && key.isWritable()) {
+                    flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                closeNow(e);
+            }
+        }
+
+        private void finishConnect() {
+            key.interestOps(SelectionKey.OP_READ | (writes.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+            listener.connected(this);
+        }
+
+        private void flush() throws IOException {
+            boolean emptied = writes.write(channel);
+            // if the socket's full, carry on when it's writable again
+            key.interestOps(emptied ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void flushQueued() {
+            flushScheduled.set(false);
+            if (!open || key == null || !key.isValid() || !channel.isConnected()) {
+                // still connecting; the writes go once connected
+                return;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                closeNow(e);
+            }
+        }
+
+        /**
+         * Queues the data, which is sent as is, so mustn't be changed afterwards. Lock-free, and only
+         * wakes the reactor if a flush isn't already on its way. Writes to a closed connection are dropped.
+         */
+        void write(byte[] data) {
+            if (!open) {
+                return;
+            }
+            writes.offer(ByteBuffer.wrap(data));
+            if (flushScheduled.compareAndSet(false, true)) {
+                execute(flushTask);
+            }
+        }
+
+        /**
+         * @return the write queue, for its byte counters.
+         */
+        WriteQueue getWriteQueue() {
+            return writes;
+        }
+
+        /**
+         * Closes the connection, without calling the listener.
+         */
+        void close() {
+            open = false;
+            execute(() -> closeNow(null));
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * Reactor thread only; reports the error, if any, unless the connection was already closed.
+         */
+        private void closeNow(Exception e) {
+            boolean wasOpen = open;
+            open = false;
+            connections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // it's closed as far as we're concerned
+                }
+            }
+            writes.clear();
+            if (e != null && wasOpen) {
+                listener.handleException(this, e);
+            }
+        }
+    }
+}
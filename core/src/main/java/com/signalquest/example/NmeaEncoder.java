@@ -0,0 +1,130 @@
+package com.signalquest.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes NMEA 0183 GGA sentences into one reused {@link ByteBuffer}, without allocating.
+ * <p>
+ * Numbers are written digit by digit from scaled longs rather than through {@code String.format},
+ * and the checksum is computed over the bytes as they're written. Positions get 7 decimal places of
+ * minutes (under a millimetre), enough for network RTK casters that place a VRS from the GGA.
+ */
+class NmeaEncoder {
+    // longest GGA we write is about 100 bytes; NMEA allows 82 but casters accept the extra precision
+    static final int MAX_SENTENCE_LENGTH = 128;
+    private static final long MILLISECONDS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    // GGA fix quality values
+    static final int QUALITY_INVALID = 0;
+    static final int QUALITY_GPS = 1;
+    static final int QUALITY_DGPS = 2;
+    static final int QUALITY_RTK_FIXED = 4;
+    static final int QUALITY_RTK_FLOAT = 5;
+    static final int QUALITY_MANUAL = 7;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_SENTENCE_LENGTH);
+    private final byte[] digits = new byte[20];
+    private int checksum;
+
+    /**
+     * Encodes a GGA sentence, with its trailing CRLF.
+     *
+     * @param utcMillis        the fix time, in UTC milliseconds (only the time of day is used).
+     * @param altitude         height above mean sea level, in metres.
+     * @param geoidSeparation  height of the geoid above the WGS84 ellipsoid, in metres.
+     * @return the reused buffer, positioned at the start of the sentence with its limit at the end;
+     * only valid until the next call.
+     */
+    ByteBuffer encodeGga(long utcMillis, double latitude, double longitude, int quality, int satellites,
+                         double hdop, double altitude, double geoidSeparation) {
+        buffer.clear();
+        buffer.put((byte) '$');
+        checksum = 0;
+        put("GPGGA,");
+        long millisOfDay = ((utcMillis % MILLISECONDS_PER_DAY) + MILLISECONDS_PER_DAY) % MILLISECONDS_PER_DAY;
+        long centiseconds = millisOfDay / 10;
+        putDigits(centiseconds / 360_000, 2);
+        putDigits(centiseconds / 6000 % 60, 2);
+        putDigits(centiseconds / 100 % 60, 2);
+        put((byte) '.');
+        putDigits(centiseconds % 100, 2);
+        put((byte) ',');
+        putAngle(Math.abs(latitude), 2);
+        put(latitude < 0 ? ",S," : ",N,");
+        putAngle(Math.abs(longitude), 3);
+        put(longitude < 0 ? ",W," : ",E,");
+        putDigits(quality, 1);
+        put((byte) ',');
+        putDigits(Math.min(Math.max(satellites, 0), 99), 2);
+        put((byte) ',');
+        putDecimal(hdop, 1);
+        put((byte) ',');
+        putDecimal(altitude, 3);
+        put(",M,");
+        putDecimal(geoidSeparation, 3);
+        // no differential age or station: this GGA is the client's, not a corrected receiver's
+        put(",M,,");
+        buffer.put((byte) '*');
+        buffer.put(HEX[(checksum >> 4) & 0xF]);
+        buffer.put(HEX[checksum & 0xF]);
+        buffer.put((byte) '\r');
+        buffer.put((byte) '\n');
+        buffer.flip();
+        return buffer;
+    }
+
+    private void put(byte b) {
+        buffer.put(b);
+        checksum ^= b;
+    }
+
+    private void put(String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            put((byte) ascii.charAt(i));
+        }
+    }
+
+    /**
+     * Writes degrees as NMEA's ddmm.mmmmmmm (or dddmm.mmmmmmm).
+     */
+    private void putAngle(double degrees, int degreeDigits) {
+        // rounded once, as a whole, so 59.99999999 minutes carries into the degrees
+        long scaledMinutes = Math.round(degrees * 60 * POWERS_OF_TEN[7]);
+        long minutesPerDegree = 60 * POWERS_OF_TEN[7];
+        putDigits(scaledMinutes / minutesPerDegree, degreeDigits);
+        long minutes = scaledMinutes % minutesPerDegree;
+        putDigits(minutes / POWERS_OF_TEN[7], 2);
+        put((byte) '.');
+        putDigits(minutes % POWERS_OF_TEN[7], 7);
+    }
+
+    private void putDecimal(double value, int decimals) {
+        long scaled = Math.round(value * POWERS_OF_TEN[decimals]);
+        if (scaled < 0) {
+            put((byte) '-');
+            scaled = -scaled;
+        }
+        putDigits(scaled / POWERS_OF_TEN[decimals], 1);
+        put((byte) '.');
+        putDigits(scaled % POWERS_OF_TEN[decimals], decimals);
+    }
+
+    /**
+     * Writes a non-negative value, zero-padded to at least {@code minDigits}.
+     */
+    private void putDigits(long value, int minDigits) {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (count < minDigits) {
+            digits[count++] = '0';
+        }
+        while (count > 0) {
+            put(digits[--count]);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.signalquest.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * NTRIP 2 requests, for a mountpoint's stream or the caster's sourcetable; the responses go through
+ * an {@link NtripResponseDecoder}.
+ */
+final class NtripRequest {
+    private static final String USER_AGENT = "SignalQuest NTRIP Client/1.0";
+
+    private NtripRequest() {
+    }
+
+    static byte[] stream(String server, String mountpoint, String username, String password) {
+        String request = "GET " + slashed(mountpoint) + " HTTP/1.1\r\nHost: " + server + "\r\nNtrip-Version: Ntrip/2.0\r\nAccept: */*\r\nUser-Agent: " + USER_AGENT + "\r\nAuthorization: Basic " + basicAuth(username, password) + "\r\nConnection: close\r\n\r\n";
+        return request.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] sourcetable(String server, String username, String password) {
+        String request = "GET / HTTP/1.1\r\nHost: " + server + "\r\nNtrip-Version: Ntrip/2.0\r\nUser-Agent: " + USER_AGENT + "\r\nAuthorization: Basic " + basicAuth(username, password) + "\r\nConnection: close\r\n\r\n";
+        return request.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static String slashed(String mountpoint) {
+        return mountpoint.startsWith("/") ? mountpoint : "/" + mountpoint;
+    }
+
+    private static String basicAuth(String username, String password) {
+        return Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+}
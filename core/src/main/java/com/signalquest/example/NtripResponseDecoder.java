@@ -0,0 +1,230 @@
+package com.signalquest.example;
+
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Incremental decoder for a caster's response to an NTRIP request, fed straight from socket reads.
+ * <p>
+ * Handles NTRIP 1 ({@code ICY 200 OK}, with or without a blank line before the data) and NTRIP 2
+ * ({@code HTTP/1.x 200 OK}, optionally with {@code Transfer-Encoding: chunked}). A sourcetable is told
+ * apart by NTRIP 1's {@code SOURCETABLE 200 OK}, or NTRIP 2's {@code Content-Type: gnss/sourcetable},
+ * which is how an NTRIP 2 caster answers a mountpoint it doesn't have. The header is
+ * reported once it is complete, however it was split across reads; payload is reported as slices of
+ * the caller's buffer, with any chunk framing stripped, so RTCM in the same read as the header isn't
+ * held back or copied.
+ */
+class NtripResponseDecoder {
+    static final int MAX_HEADER_LENGTH = 4096;
+    private static final int RTCM_PREAMBLE = 0xD3;
+
+    interface Listener {
+        /**
+         * The status line and headers, up to and including the blank line if there is one; the
+         * buffer is reused, so copy it to keep it.
+         *
+         * @param accepted the caster is streaming the mountpoint, rather than refusing the request or
+         *                 sending its sourcetable; or, for a sourcetable request, sending the table.
+         */
+        void onHeader(byte[] header, int length, boolean accepted);
+
+        /**
+         * Decoded payload; only valid for the duration of the call.
+         */
+        void onPayload(byte[] buffer, int offset, int length);
+    }
+
+    private enum Part { HEADER, BODY, CHUNK_SIZE, CHUNK_EXTENSION, CHUNK_DATA, CHUNK_END, DONE }
+
+    private final Listener listener;
+    private final boolean sourcetableRequest;
+    private final byte[] header = new byte[MAX_HEADER_LENGTH];
+    private int headerLength = 0;
+    private int lineStart = 0;
+    private Part part = Part.HEADER;
+    private int statusCode = 0;
+    private boolean sourcetable = false;
+    private boolean chunked = false;
+    private int chunkRemaining = 0;
+    private int chunkSizeDigits = 0;
+
+    NtripResponseDecoder(Listener listener) {
+        this(listener, false);
+    }
+
+    /**
+     * @param sourcetableRequest the request was for the sourcetable, which is then the payload.
+     */
+    NtripResponseDecoder(Listener listener, boolean sourcetableRequest) {
+        this.listener = listener;
+        this.sourcetableRequest = sourcetableRequest;
+    }
+
+    /**
+     * Starts over, for a new request.
+     */
+    void reset() {
+        headerLength = 0;
+        lineStart = 0;
+        part = Part.HEADER;
+        statusCode = 0;
+        sourcetable = false;
+        chunked = false;
+        chunkRemaining = 0;
+        chunkSizeDigits = 0;
+    }
+
+    /**
+     * @throws ProtocolException if the response is not NTRIP or HTTP, or its framing is broken.
+     */
+    void decode(byte[] data, int offset, int length) throws ProtocolException {
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            switch (part) {
+                case HEADER:
+                    position = decodeHeader(data, position, end);
+                    break;
+                case BODY:
+                    listener.onPayload(data, position, end - position);
+                    position = end;
+                    break;
+                case CHUNK_SIZE:
+                    position = decodeChunkSize(data[position] & 0xFF, position);
+                    break;
+                case CHUNK_EXTENSION:
+                    // extensions aren't used by casters; skip to the end of the line
+                    if (data[position++] == '\n') {
+                        endChunkSize();
+                    }
+                    break;
+                case CHUNK_DATA:
+                    int available = Math.min(chunkRemaining, end - position);
+                    listener.onPayload(data, position, available);
+                    position += available;
+                    chunkRemaining -= available;
+                    if (chunkRemaining == 0) {
+                        part = Part.CHUNK_END;
+                    }
+                    break;
+                case CHUNK_END:
+                    byte b = data[position++];
+                    if (b == '\n') {
+                        part = Part.CHUNK_SIZE;
+                    } else if (b != '\r') {
+                        throw new ProtocolException("Missing CRLF after chunk");
+                    }
+                    break;
+                case DONE:
+                    return;
+            }
+        }
+    }
+
+    private int decodeHeader(byte[] data, int position, int end) throws ProtocolException {
+        while (position < end) {
+            int b = data[position] & 0xFF;
+            // NTRIP 1 casters may start the data without a blank line after the status line
+            if (headerLength == lineStart && statusCode != 0 && b == RTCM_PREAMBLE) {
+                endHeader();
+                return position;
+            }
+            if (headerLength == header.length) {
+                throw new ProtocolException("NTRIP response header longer than " + MAX_HEADER_LENGTH + " bytes");
+            }
+            header[headerLength++] = (byte) b;
+            position++;
+            if (b == '\n') {
+                int lineEnd = headerLength - 1;
+                if (lineEnd > lineStart && header[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (statusCode == 0) {
+                    statusCode = parseStatusLine(lineStart, lineEnd);
+                } else if (lineEnd == lineStart) {
+                    endHeader();
+                    return position;
+                } else {
+                    parseHeaderLine(lineStart, lineEnd);
+                }
+                lineStart = headerLength;
+            }
+        }
+        return position;
+    }
+
+    private int parseStatusLine(int start, int end) throws ProtocolException {
+        String line = new String(header, start, end - start, StandardCharsets.US_ASCII);
+        String[] parts = line.split(" ", 3);
+        if (parts.length < 2 || !(parts[0].equals("ICY") || parts[0].startsWith("HTTP/") || parts[0].equals("SOURCETABLE"))) {
+            throw new ProtocolException("Not an NTRIP response: " + line);
+        }
+        sourcetable = parts[0].equals("SOURCETABLE");
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Bad NTRIP status line: " + line);
+        }
+    }
+
+    private void parseHeaderLine(int start, int end) {
+        String line = new String(header, start, end - start, StandardCharsets.US_ASCII).toLowerCase(Locale.US);
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+            return;
+        }
+        String name = line.substring(0, colon).trim();
+        if (name.equals("transfer-encoding")) {
+            chunked = line.substring(colon + 1).contains("chunked");
+        } else if (name.equals("content-type")) {
+            sourcetable |= line.substring(colon + 1).trim().startsWith("gnss/sourcetable");
+        }
+    }
+
+    private void endHeader() {
+        boolean accepted = statusCode == 200 && (sourcetableRequest || !sourcetable);
+        if (accepted) {
+            part = chunked ? Part.CHUNK_SIZE : Part.BODY;
+        } else {
+            // the caller reports the failure; a sourcetable or error page isn't RTCM
+            part = Part.DONE;
+        }
+        listener.onHeader(header, headerLength, accepted);
+    }
+
+    private int decodeChunkSize(int b, int position) throws ProtocolException {
+        int digit = Character.digit(b, 16);
+        if (digit >= 0) {
+            if (chunkSizeDigits == 7) {
+                throw new ProtocolException("Chunk too long");
+            }
+            chunkRemaining = chunkRemaining * 16 + digit;
+            chunkSizeDigits++;
+        } else if (b == ';' || b == ' ' || b == '\r') {
+            part = Part.CHUNK_EXTENSION;
+        } else if (b == '\n') {
+            endChunkSize();
+        } else {
+            throw new ProtocolException("Bad chunk size");
+        }
+        return position + 1;
+    }
+
+    private void endChunkSize() throws ProtocolException {
+        if (chunkSizeDigits == 0) {
+            throw new ProtocolException("Missing chunk size");
+        }
+        chunkSizeDigits = 0;
+        // the zero-length chunk ends the stream
+        part = chunkRemaining == 0 ? Part.DONE : Part.CHUNK_DATA;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    boolean isChunked() {
+        return chunked;
+    }
+}
@@ -0,0 +1,134 @@
+package com.signalquest.example;
+
+/**
+ * Reconnects a dropped NTRIP stream after a {@link Backoff} delay, and measures each outage.
+ * <p>
+ * Time-to-restore runs from losing the connection until the caster authorizes the stream again;
+ * the correction gap runs from the last correction before the loss to the first one after it,
+ * which is what the SitePoint actually sees.
+ */
+class Reconnector {
+    private final Backoff backoff;
+    private final NioReactor reactor;
+    private final Runnable reconnect;
+    private NioReactor.Timer pending;
+
+    // outage in progress, in System.nanoTime(); 0 for none
+    private long lostAt = 0;
+    private volatile long lastCorrectionAt = 0;
+    private long gapStartedAt = 0;
+    private volatile boolean awaitingCorrection = false;
+
+    private int restores = 0;
+    private long lastTimeToRestoreMillis = 0;
+    private long maxTimeToRestoreMillis = 0;
+    private long lastGapMillis = 0;
+    private long maxGapMillis = 0;
+
+    /**
+     * @param reconnect run on the reactor thread, after each backoff delay
+     */
+    Reconnector(Backoff backoff, NioReactor reactor, Runnable reconnect) {
+        this.backoff = backoff;
+        this.reactor = reactor;
+        this.reconnect = reconnect;
+    }
+
+    /**
+     * Schedules the next attempt; also called when an attempt fails.
+     *
+     * @return the delay before the attempt.
+     */
+    synchronized long connectionLost() {
+        long now = System.nanoTime();
+        if (lostAt == 0) {
+            lostAt = now;
+            gapStartedAt = lastCorrectionAt == 0 ? now : lastCorrectionAt;
+        }
+        long delay = backoff.nextDelayMillis();
+        if (pending != null) {
+            pending.cancel();
+        }
+        pending = reactor.schedule(reconnect, delay);
+        return delay;
+    }
+
+    /**
+     * The caster has authorized the stream again.
+     */
+    synchronized void restored() {
+        backoff.reset();
+        if (lostAt == 0) {
+            return;
+        }
+        long millis = (System.nanoTime() - lostAt) / 1_000_000L;
+        lastTimeToRestoreMillis = millis;
+        maxTimeToRestoreMillis = Math.max(maxTimeToRestoreMillis, millis);
+        restores++;
+        lostAt = 0;
+        awaitingCorrection = true;
+    }
+
+    /**
+     * Called for every correction read; cheap unless the first one after a restore is awaited.
+     */
+    void correctionReceived() {
+        long now = System.nanoTime();
+        if (awaitingCorrection) {
+            synchronized (this) {
+                if (awaitingCorrection) {
+                    long millis = (now - gapStartedAt) / 1_000_000L;
+                    lastGapMillis = millis;
+                    maxGapMillis = Math.max(maxGapMillis, millis);
+                    awaitingCorrection = false;
+                }
+            }
+        }
+        lastCorrectionAt = now;
+    }
+
+    /**
+     * Stops any pending attempt and forgets the outage, e.g. on a user disconnect.
+     */
+    synchronized void cancel() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        backoff.reset();
+        lostAt = 0;
+        lastCorrectionAt = 0;
+        awaitingCorrection = false;
+    }
+
+    synchronized boolean isReconnecting() {
+        return lostAt != 0;
+    }
+
+    synchronized int getRestores() {
+        return restores;
+    }
+
+    synchronized long getLastTimeToRestoreMillis() {
+        return lastTimeToRestoreMillis;
+    }
+
+    synchronized long getMaxTimeToRestoreMillis() {
+        return maxTimeToRestoreMillis;
+    }
+
+    synchronized long getLastGapMillis() {
+        return lastGapMillis;
+    }
+
+    synchronized long getMaxGapMillis() {
+        return maxGapMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Reconnector: " + restores + " restores, time-to-restore last " + lastTimeToRestoreMillis
+                + "ms max " + maxTimeToRestoreMillis + "ms, correction gap last " + lastGapMillis
+                + "ms max " + maxGapMillis + "ms";
+    }
+}
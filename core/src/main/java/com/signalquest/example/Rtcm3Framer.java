@@ -0,0 +1,142 @@
+package com.signalquest.example;
+
+/**
+ * Finds RTCM3 frames in a byte stream.
+ * <p>
+ * A frame is the 0xD3 preamble, 6 reserved (zero) bits, a 10-bit payload length, the payload
+ * (starting with the 12-bit message type), and a CRC-24Q over everything before it. Bytes outside a
+ * frame are skipped, and frames failing the CRC are dropped, resyncing on the next preamble.
+ * <p>
+ * Bytes can arrive in any split; {@link #feed(byte[], int, int)} copies them into a fixed buffer
+ * and reports whole frames to the {@link FrameListener}, without allocating.
+ */
+class Rtcm3Framer {
+    static final int PREAMBLE = 0xD3;
+    static final int HEADER_LENGTH = 3;
+    static final int CRC_LENGTH = 3;
+    static final int MAX_PAYLOAD_LENGTH = 1023;
+    static final int MAX_FRAME_LENGTH = HEADER_LENGTH + MAX_PAYLOAD_LENGTH + CRC_LENGTH;
+
+    private static final int[] CRC24Q_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 16;
+            for (int bit = 0; bit < 8; bit++) {
+                crc <<= 1;
+                if ((crc & 0x1000000) != 0) {
+                    crc ^= 0x1864CFB;
+                }
+            }
+            CRC24Q_TABLE[i] = crc & 0xFFFFFF;
+        }
+    }
+
+    /**
+     * Receives validated frames; the buffer is only valid for the duration of the call.
+     */
+    interface FrameListener {
+        void onFrame(byte[] buffer, int offset, int length, int messageType);
+    }
+
+    private final FrameListener listener;
+    // holds at most one partial frame between feeds, plus room for the next chunk
+    private final byte[] buffer = new byte[4 * MAX_FRAME_LENGTH];
+    private int end = 0;
+    private long frames = 0;
+    private long crcFailures = 0;
+    private long skippedBytes = 0;
+
+    Rtcm3Framer(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    void feed(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int chunk = Math.min(length, buffer.length - end);
+            System.arraycopy(data, offset, buffer, end, chunk);
+            end += chunk;
+            offset += chunk;
+            length -= chunk;
+            scan();
+        }
+    }
+
+    private void scan() {
+        int position = 0;
+        while (position < end) {
+            if ((buffer[position] & 0xFF) != PREAMBLE) {
+                position++;
+                skippedBytes++;
+                continue;
+            }
+            if (end - position < HEADER_LENGTH) {
+                break;
+            }
+            if ((buffer[position + 1] & 0xFC) != 0) {
+                // reserved bits set, so not a real preamble; checked early to avoid waiting on a bogus length
+                position++;
+                skippedBytes++;
+                continue;
+            }
+            int payloadLength = ((buffer[position + 1] & 0x03) << 8) | (buffer[position + 2] & 0xFF);
+            int frameLength = HEADER_LENGTH + payloadLength + CRC_LENGTH;
+            if (end - position < frameLength) {
+                break;
+            }
+            int crcPosition = position + HEADER_LENGTH + payloadLength;
+            int expected = ((buffer[crcPosition] & 0xFF) << 16)
+                    | ((buffer[crcPosition + 1] & 0xFF) << 8)
+                    | (buffer[crcPosition + 2] & 0xFF);
+            if (crc24q(buffer, position, HEADER_LENGTH + payloadLength) != expected) {
+                // a false preamble, or corruption; try again from the next byte
+                crcFailures++;
+                position++;
+                skippedBytes++;
+                continue;
+            }
+            frames++;
+            listener.onFrame(buffer, position, frameLength, messageType(buffer, position, payloadLength));
+            position += frameLength;
+        }
+        System.arraycopy(buffer, position, buffer, 0, end - position);
+        end -= position;
+    }
+
+    /**
+     * Drops any partial frame, e.g. when switching streams.
+     */
+    void reset() {
+        end = 0;
+    }
+
+    long getFrames() {
+        return frames;
+    }
+
+    long getCrcFailures() {
+        return crcFailures;
+    }
+
+    long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /**
+     * @return the 12-bit message type, or 0 for an empty payload.
+     */
+    static int messageType(byte[] frame, int offset, int payloadLength) {
+        if (payloadLength < 2) {
+            return 0;
+        }
+        return ((frame[offset + HEADER_LENGTH] & 0xFF) << 4) | ((frame[offset + HEADER_LENGTH + 1] & 0xFF) >>> 4);
+    }
+
+    static int crc24q(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) & 0xFFFFFF) ^ CRC24Q_TABLE[((crc >>> 16) ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+}
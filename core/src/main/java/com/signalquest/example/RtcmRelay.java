@@ -0,0 +1,108 @@
+package com.signalquest.example;
+
+/**
+ * Allocation-free, frame-aware hand-off of RTCM from the NTRIP socket to the SitePoint.
+ * <p>
+ * The NTRIP thread passes each socket read to {@link #put(byte[], int, int)}, where an
+ * {@link Rtcm3Framer} validates frames, and the ones SitePoints use are stored, one entry per
+ * message, in a {@link Sink}, the {@link CorrectionFanout}. On the Bluetooth side each SitePoint reads
+ * through its own {@link CorrectionFanout.Cursor}, which packs as many whole frames as fit into one
+ * write. Partial frames never go out, so the last frame of an epoch doesn't wait on the next write.
+ * <p>
+ * Writes come from a recycled pool and go back to it once written, so neither side allocates in
+ * steady state.
+ */
+class RtcmRelay implements Rtcm3Framer.FrameListener {
+    // the message types the NtripParser passes on to SitePoints
+    private static final int[] SITEPOINT_MESSAGE_TYPES = {
+            1001, 1002, 1003, 1004, 1005, 1006, 1007, 1009, 1010, 1011, 1012, 1033,
+            1074, 1075, 1077, 1084, 1085, 1087, 1094, 1095, 1097, 1124, 1125, 1127, 1230, 4072,
+    };
+    private static final boolean[] RELAYED = new boolean[4096];
+    private static final long NOT_STAMPED = Long.MIN_VALUE;
+
+    static {
+        for (int type : SITEPOINT_MESSAGE_TYPES) {
+            RELAYED[type] = true;
+        }
+    }
+
+    /**
+     * Where relayed frames are stored, for the Bluetooth side.
+     */
+    interface Sink {
+        /**
+         * Stores one frame, arriving now.
+         */
+        void offer(byte[] frame, int offset, int length);
+
+        /**
+         * Stores one frame, arriving at {@code arrivalNanos}; frames passed in order.
+         */
+        void offer(byte[] frame, int offset, int length, long arrivalNanos);
+
+        void clear();
+    }
+
+    private final Rtcm3Framer framer = new Rtcm3Framer(this);
+    private final Sink sink;
+    private long ignoredFrames = 0;
+    // when the bytes being framed were read, or NOT_STAMPED to stamp frames as they're queued
+    private long readAtNanos = NOT_STAMPED;
+
+    RtcmRelay(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Frames bytes from the socket; the data may end mid-frame.
+     */
+    synchronized void put(byte[] data, int offset, int length) {
+        framer.feed(data, offset, length);
+    }
+
+    /**
+     * Frames bytes from the socket, read at {@code readAtNanos}, which their frames are stamped with,
+     * so the time to get here is counted as part of their age.
+     */
+    synchronized void put(byte[] data, int offset, int length, long readAtNanos) {
+        this.readAtNanos = readAtNanos;
+        try {
+            framer.feed(data, offset, length);
+        } finally {
+            this.readAtNanos = NOT_STAMPED;
+        }
+    }
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length, int messageType) {
+        if (!RELAYED[messageType]) {
+            ignoredFrames++;
+            return;
+        }
+        if (readAtNanos != NOT_STAMPED) {
+            sink.offer(buffer, offset, length, readAtNanos);
+        } else {
+            sink.offer(buffer, offset, length);
+        }
+    }
+
+    synchronized void clear() {
+        framer.reset();
+        sink.clear();
+    }
+
+    /**
+     * @return valid frames of message types SitePoints don't use.
+     */
+    synchronized long getIgnoredFrames() {
+        return ignoredFrames;
+    }
+
+    /**
+     * @return frames dropped for failing the CRC-24Q check.
+     */
+    synchronized long getCrcFailures() {
+        return framer.getCrcFailures();
+    }
+}
@@ -0,0 +1,187 @@
+package com.signalquest.example;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Paces no-response RTCM writes to a SitePoint, and measures their throughput.
+ * <p>
+ * Android takes one GATT operation at a time, refusing another as busy until the last one's callback,
+ * so {@link GattScheduler} has at most one write outstanding (handed to the Bluetooth stack, with its
+ * {@code onCharacteristicWrite} still to come); queueing no-response writes for the radio is left to
+ * the stack, which calls back as soon as it has taken each. When the link reports congestion, or the
+ * stack refuses a write as busy, writing pauses for a back-off before the next. Achieved throughput is
+ * measured over one-second windows.
+ */
+class RtcmWritePacer {
+    static final long DEFAULT_BACKOFF_MILLISECONDS = GattScheduler.RETRY_MILLISECONDS;
+    private static final long SECOND = 1_000_000_000L;
+    private static final int NONE = -1;
+
+    private final LongSupplier nanoClock;
+    private final long backoffNanos;
+    // length of the write in flight, or NONE
+    private int inFlight = NONE;
+    private long resumeAt;
+    private boolean backingOff = false;
+
+    private long bytesWritten = 0;
+    private long writes = 0;
+    private long congestions = 0;
+    private long rejections = 0;
+    private long failures = 0;
+    private long drops = 0;
+    private long droppedBytes = 0;
+    private long rateStart;
+    private long rateBytes = 0;
+    private long bytesPerSecond = 0;
+
+    RtcmWritePacer() {
+        this(DEFAULT_BACKOFF_MILLISECONDS, System::nanoTime);
+    }
+
+    RtcmWritePacer(long backoffMillis, LongSupplier nanoClock) {
+        this.backoffNanos = backoffMillis * 1_000_000L;
+        this.nanoClock = nanoClock;
+        this.rateStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * @return a write may be started now.
+     */
+    synchronized boolean mayWrite() {
+        if (backingOff && nanoClock.getAsLong() - resumeAt < 0) {
+            return false;
+        }
+        backingOff = false;
+        return inFlight == NONE;
+    }
+
+    /**
+     * A write of {@code length} bytes has been handed to the stack.
+     */
+    synchronized void started(int length) {
+        inFlight = length;
+    }
+
+    /**
+     * The stack refused a write as busy: pause.
+     */
+    synchronized void rejected() {
+        rejections++;
+        backOff();
+    }
+
+    /**
+     * The write in flight has been sent.
+     */
+    synchronized void completed() {
+        int length = finish();
+        if (length == NONE) {
+            return;
+        }
+        writes++;
+        bytesWritten += length;
+        long now = nanoClock.getAsLong();
+        if (now - rateStart >= SECOND) {
+            bytesPerSecond = rateBytes * SECOND / (now - rateStart);
+            rateStart = now;
+            rateBytes = 0;
+        }
+        rateBytes += length;
+    }
+
+    /**
+     * The write in flight came back congested: pause.
+     */
+    synchronized void congested() {
+        finish();
+        congestions++;
+        backOff();
+    }
+
+    /**
+     * The write in flight failed; its data is lost, but the link carries on.
+     */
+    synchronized void failed() {
+        finish();
+        failures++;
+    }
+
+    /**
+     * A write the stack refused as busy too often was given up on, before it was ever sent.
+     */
+    synchronized void dropped(int length) {
+        drops++;
+        droppedBytes += length;
+    }
+
+    private int finish() {
+        int length = inFlight;
+        inFlight = NONE;
+        return length;
+    }
+
+    private void backOff() {
+        backingOff = true;
+        resumeAt = nanoClock.getAsLong() + backoffNanos;
+    }
+
+    /**
+     * @return how long until writing may resume after a back-off, or 0.
+     */
+    synchronized long getBackoffRemainingMillis() {
+        if (!backingOff) {
+            return 0;
+        }
+        return Math.max(0, (resumeAt - nanoClock.getAsLong() + 999_999) / 1_000_000L);
+    }
+
+    /**
+     * Forgets the write in flight, for a new connection; the counters carry on.
+     */
+    synchronized void reset() {
+        inFlight = NONE;
+        backingOff = false;
+    }
+
+    synchronized boolean isInFlight() {
+        return inFlight != NONE;
+    }
+
+    /**
+     * @return bytes sent over the last full second of writing.
+     */
+    synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    synchronized long getCongestions() {
+        return congestions;
+    }
+
+    synchronized long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * @return writes given up on unsent.
+     */
+    synchronized long getDrops() {
+        return drops;
+    }
+
+    synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RtcmWritePacer: " + bytesPerSecond + " B/s, " + bytesWritten + " bytes in " + writes
+                + " writes, " + (isInFlight() ? "1" : "0") + " in flight, " + congestions + " congested, "
+                + rejections + " busy, " + failures + " failed, " + drops + " dropped (" + droppedBytes + " bytes)";
+    }
+}
@@ -0,0 +1,177 @@
+package com.signalquest.example;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides the Bluetooth scan setting while looking for SitePoints, trading discovery latency for
+ * battery as the list of SitePoints settles.
+ * <p>
+ * A scan starts with a {@link Mode#BURST}, so SitePoints nearby show up at once, steps down to
+ * {@link Mode#BALANCED}, and, once no new SitePoint has appeared for {@link #DEFAULT_STABLE_MILLISECONDS},
+ * to {@link Mode#BATCHED}, where the controller holds results and wakes the app a few times a minute.
+ * A new SitePoint goes back to a burst. Android refuses more than five scan starts in 30 seconds, and
+ * each change restarts the scan, so changes are at least {@link #DEFAULT_MIN_CHANGE_MILLISECONDS} apart;
+ * a change wanted sooner is made on a later {@link #tick()}.
+ * <p>
+ * Counts scan callbacks, which are app wakeups, and results per mode, for measuring the savings.
+ */
+class ScanPolicy {
+    static final long DEFAULT_BURST_MILLISECONDS = 10 * 1000;
+    static final long DEFAULT_STABLE_MILLISECONDS = 30 * 1000;
+    static final long DEFAULT_MIN_CHANGE_MILLISECONDS = 6 * 1000;
+    // under the scan list's expiry, so batched SitePoints don't drop out between reports
+    static final long REPORT_DELAY_MILLISECONDS = 5 * 1000;
+
+    enum Mode {
+        /** {@code SCAN_MODE_LOW_LATENCY}, {@code MATCH_MODE_AGGRESSIVE}, each result reported. */
+        BURST,
+        /** {@code SCAN_MODE_BALANCED}, {@code MATCH_MODE_STICKY}, each result reported. */
+        BALANCED,
+        /** {@code SCAN_MODE_LOW_POWER}, {@code MATCH_MODE_STICKY}, reported in batches every {@link #REPORT_DELAY_MILLISECONDS}. */
+        BATCHED
+    }
+
+    private static final Mode[] MODES = Mode.values();
+
+    private final long burstNanos;
+    private final long stableNanos;
+    private final long minChangeNanos;
+    private final LongSupplier nanoClock;
+    private Mode mode = Mode.BURST;
+    private boolean scanning = false;
+    private long changedAt;
+    private long newDeviceAt;
+    private boolean newDeviceWaiting = false;
+    // per mode
+    private final long[] callbacks = new long[MODES.length];
+    private final long[] results = new long[MODES.length];
+    private final long[] nanosIn = new long[MODES.length];
+
+    ScanPolicy() {
+        this(DEFAULT_BURST_MILLISECONDS, DEFAULT_STABLE_MILLISECONDS, DEFAULT_MIN_CHANGE_MILLISECONDS, System::nanoTime);
+    }
+
+    ScanPolicy(long burstMillis, long stableMillis, long minChangeMillis, LongSupplier nanoClock) {
+        this.burstNanos = burstMillis * 1_000_000L;
+        this.stableNanos = stableMillis * 1_000_000L;
+        this.minChangeNanos = minChangeMillis * 1_000_000L;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * A scan is starting, in a {@link Mode#BURST}.
+     */
+    synchronized void start() {
+        long now = nanoClock.getAsLong();
+        mode = Mode.BURST;
+        scanning = true;
+        changedAt = now;
+        newDeviceAt = now;
+        newDeviceWaiting = false;
+    }
+
+    synchronized void stop() {
+        if (scanning) {
+            nanosIn[mode.ordinal()] += nanoClock.getAsLong() - changedAt;
+            scanning = false;
+        }
+    }
+
+    /**
+     * Takes a scan callback: one result, or a batch.
+     *
+     * @param newDevices SitePoints in it not seen before during this scan.
+     * @return the mode changed, and the scan should be restarted with it.
+     */
+    synchronized boolean scanned(int results, int newDevices) {
+        callbacks[mode.ordinal()]++;
+        this.results[mode.ordinal()] += results;
+        if (newDevices > 0) {
+            newDeviceAt = nanoClock.getAsLong();
+            newDeviceWaiting = mode != Mode.BURST;
+        }
+        return tick();
+    }
+
+    /**
+     * Steps the mode along with time; called every second or so while scanning.
+     *
+     * @return the mode changed, and the scan should be restarted with it.
+     */
+    synchronized boolean tick() {
+        if (!scanning) {
+            return false;
+        }
+        long now = nanoClock.getAsLong();
+        Mode wanted = mode;
+        if (newDeviceWaiting) {
+            wanted = Mode.BURST;
+        } else if (mode == Mode.BURST && now - changedAt >= burstNanos) {
+            wanted = Mode.BALANCED;
+        } else if (mode == Mode.BALANCED && now - newDeviceAt >= stableNanos) {
+            wanted = Mode.BATCHED;
+        }
+        if (wanted == mode || now - changedAt < minChangeNanos) {
+            return false;
+        }
+        nanosIn[mode.ordinal()] += now - changedAt;
+        mode = wanted;
+        changedAt = now;
+        newDeviceWaiting = false;
+        return true;
+    }
+
+    synchronized Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the mode's scan callbacks, so app wakeups, per minute spent in it.
+     */
+    synchronized double getCallbacksPerMinute(Mode mode) {
+        long nanos = nanosIn(mode);
+        return nanos == 0 ? 0 : callbacks[mode.ordinal()] * 60e9 / nanos;
+    }
+
+    /**
+     * @return the mode's results per scan callback.
+     */
+    synchronized double getResultsPerWakeup(Mode mode) {
+        long wakeups = callbacks[mode.ordinal()];
+        return wakeups == 0 ? 0 : (double) results[mode.ordinal()] / wakeups;
+    }
+
+    synchronized long getCallbacks(Mode mode) {
+        return callbacks[mode.ordinal()];
+    }
+
+    private long nanosIn(Mode mode) {
+        long nanos = nanosIn[mode.ordinal()];
+        if (scanning && mode == this.mode) {
+            nanos += nanoClock.getAsLong() - changedAt;
+        }
+        return nanos;
+    }
+
+    /**
+     * @return a line per mode scanned in: wakeups per minute and results per wakeup.
+     */
+    synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        for (Mode mode : MODES) {
+            long nanos = nanosIn(mode);
+            if (nanos == 0) {
+                continue;
+            }
+            report.append(String.format(Locale.US, "Scan %s: %.1f wakeups/min, %.1f results/wakeup over %ds%n",
+                    mode, getCallbacksPerMinute(mode), getResultsPerWakeup(mode), nanos / 1_000_000_000L));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScanPolicy: " + mode + (scanning ? "" : ", stopped");
+    }
+}
@@ -0,0 +1,159 @@
+package com.signalquest.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Devices seen while scanning, by Bluetooth address, in the order first seen, for the scan list.
+ * <p>
+ * Each advertisement is a hash lookup. Devices expire through a timing wheel with a bucket per tick
+ * of the expiry period, so {@link #expire(long)} only looks at the buckets that came due; a device
+ * seen again since it was bucketed is moved along then, instead of on every advertisement.
+ * <p>
+ * A device already listed reports a change at most once per update interval, unless the caller
+ * marks it significant, so RSSI jitter from dozens of devices doesn't keep redrawing the list.
+ * <p>
+ * Not thread-safe; used from the thread scan results arrive on.
+ */
+class SitePointRegistry<T> {
+    static final long DEFAULT_EXPIRY_MILLISECONDS = 10_000;
+    static final long DEFAULT_UPDATE_INTERVAL_MILLISECONDS = 1_000;
+    static final long DEFAULT_TICK_MILLISECONDS = 1_000;
+
+    private static final class Entry<T> {
+        final String address;
+        T device;
+        long seenAt;
+        long changedAt;
+        Entry<T> nextInBucket;
+
+        Entry(String address) {
+            this.address = address;
+        }
+    }
+
+    private final long expiryMillis;
+    private final long updateIntervalMillis;
+    private final long tickMillis;
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>();
+    private final Entry<T>[] wheel;
+    // the first tick expire hasn't processed, once anything has been bucketed
+    private long nextTick = -1;
+
+    SitePointRegistry() {
+        this(DEFAULT_EXPIRY_MILLISECONDS, DEFAULT_UPDATE_INTERVAL_MILLISECONDS, DEFAULT_TICK_MILLISECONDS);
+    }
+
+    SitePointRegistry(long expiryMillis, long updateIntervalMillis, long tickMillis) {
+        this.expiryMillis = expiryMillis;
+        this.updateIntervalMillis = updateIntervalMillis;
+        this.tickMillis = tickMillis;
+        // a deadline is never more than this many ticks past the last processed, so no rounds are needed
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Entry<T>[] slots = (Entry<T>[]) new Entry[(int) ((expiryMillis + tickMillis - 1) / tickMillis) + 2];
+        wheel = slots;
+    }
+
+    /**
+     * Records an advertisement.
+     *
+     * @param significant a change the list should show now, e.g. the device's connection state.
+     * @return the list should be updated: the device is new, significant, or due an update.
+     */
+    boolean update(String address, T device, long nowMillis, boolean significant) {
+        Entry<T> entry = entries.get(address);
+        if (entry == null) {
+            entry = new Entry<>(address);
+            entry.device = device;
+            entry.seenAt = nowMillis;
+            entry.changedAt = nowMillis;
+            entries.put(address, entry);
+            if (nextTick < 0) {
+                nextTick = nowMillis / tickMillis;
+            }
+            schedule(entry, nowMillis + expiryMillis);
+            return true;
+        }
+        entry.device = device;
+        entry.seenAt = Math.max(entry.seenAt, nowMillis);
+        if (significant || updateIntervalMillis <= nowMillis - entry.changedAt) {
+            entry.changedAt = nowMillis;
+            return true;
+        }
+        return false;
+    }
+
+    private void schedule(Entry<T> entry, long deadline) {
+        // the first tick at or after the deadline
+        long tick = (deadline + tickMillis - 1) / tickMillis;
+        int bucket = (int) (tick % wheel.length);
+        entry.nextInBucket = wheel[bucket];
+        wheel[bucket] = entry;
+    }
+
+    /**
+     * Removes devices not seen for the expiry period, processing the ticks up to now; a device goes on
+     * the first tick at or after its expiry.
+     *
+     * @return how many were removed.
+     */
+    int expire(long nowMillis) {
+        if (nextTick < 0) {
+            return 0;
+        }
+        long nowTick = nowMillis / tickMillis;
+        // after a long gap, each bucket only needs processing once
+        long tick = Math.max(nextTick, nowTick - wheel.length + 1);
+        int removed = 0;
+        for (; tick <= nowTick; tick++) {
+            int bucket = (int) (tick % wheel.length);
+            Entry<T> entry = wheel[bucket];
+            wheel[bucket] = null;
+            while (entry != null) {
+                Entry<T> next = entry.nextInBucket;
+                entry.nextInBucket = null;
+                // skip any removed, or replaced after a clear
+                if (entries.get(entry.address) == entry) {
+                    long deadline = entry.seenAt + expiryMillis;
+                    if (deadline <= nowMillis) {
+                        entries.remove(entry.address);
+                        removed++;
+                    } else {
+                        schedule(entry, deadline);
+                    }
+                }
+                entry = next;
+            }
+        }
+        nextTick = Math.max(nextTick, nowTick + 1);
+        return removed;
+    }
+
+    T get(String address) {
+        Entry<T> entry = entries.get(address);
+        return entry == null ? null : entry.device;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the latest of each device, in the order first seen; a copy, for handing to another thread.
+     */
+    List<T> devices() {
+        List<T> devices = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries.values()) {
+            devices.add(entry.device);
+        }
+        return devices;
+    }
+
+    void clear() {
+        entries.clear();
+        Arrays.fill(wheel, null);
+        nextTick = -1;
+    }
+}
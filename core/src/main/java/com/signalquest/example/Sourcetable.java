@@ -0,0 +1,182 @@
+package com.signalquest.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An NTRIP caster's sourcetable: its STR (stream), CAS (caster) and NET (network) records.
+ * <p>
+ * {@link #parse(InputStream)} reads the table a line at a time into a reused buffer, so even a national
+ * network's table is never held as one string; only the records themselves are kept.
+ */
+class Sourcetable {
+    // longest line kept; longer ones (only ever seen in free-text fields) are cut short
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final int MAX_FIELDS = 19;
+
+    final List<Stream> streams = new ArrayList<>();
+    final List<Caster> casters = new ArrayList<>();
+    final List<Network> networks = new ArrayList<>();
+
+    /**
+     * STR record, for one mountpoint.
+     */
+    static class Stream {
+        final String mountpoint;
+        final String identifier;
+        final String format;
+        final String navSystem;
+        final String network;
+        final String country;
+        final double latitude;
+        final double longitude;
+        // the caster needs a GGA position from the client
+        final boolean nmea;
+        // a network (e.g. VRS) solution rather than a single base
+        final boolean networkSolution;
+
+        Stream(String mountpoint, String identifier, String format, String navSystem, String network,
+               String country, double latitude, double longitude, boolean nmea, boolean networkSolution) {
+            this.mountpoint = mountpoint;
+            this.identifier = identifier;
+            this.format = format;
+            this.navSystem = navSystem;
+            this.network = network;
+            this.country = country;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.nmea = nmea;
+            this.networkSolution = networkSolution;
+        }
+
+        /**
+         * @return the stream is RTCM 3, which is all SitePoints take.
+         */
+        boolean isRtcm3() {
+            return format.regionMatches(true, 0, "RTCM 3", 0, 6) || format.regionMatches(true, 0, "RTCM3", 0, 5);
+        }
+
+        /**
+         * @return the caster gave a position; many leave it at 0/0.
+         */
+        boolean hasLocation() {
+            return latitude != 0.0 || longitude != 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return mountpoint + " (" + identifier + ", " + format + ", " + latitude + "/" + longitude + ")";
+        }
+    }
+
+    /**
+     * CAS record, for another caster.
+     */
+    static class Caster {
+        final String host;
+        final int port;
+        final String identifier;
+
+        Caster(String host, int port, String identifier) {
+            this.host = host;
+            this.port = port;
+            this.identifier = identifier;
+        }
+    }
+
+    /**
+     * NET record, for a network of streams.
+     */
+    static class Network {
+        final String identifier;
+        final String operator;
+
+        Network(String identifier, String operator) {
+            this.identifier = identifier;
+            this.operator = operator;
+        }
+    }
+
+    /**
+     * Reads records up to {@code ENDSOURCETABLE} or the end of the stream, skipping malformed ones.
+     * The caller closes the stream.
+     */
+    static Sourcetable parse(InputStream in) throws IOException {
+        Sourcetable table = new Sourcetable();
+        byte[] line = new byte[MAX_LINE_LENGTH];
+        String[] fields = new String[MAX_FIELDS];
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                if (b != '\r' && length < line.length) {
+                    line[length++] = (byte) b;
+                }
+                continue;
+            }
+            if (isEnd(line, length)) {
+                return table;
+            }
+            table.parseRecord(fields, split(line, length, fields));
+            length = 0;
+        }
+        if (length > 0 && !isEnd(line, length)) {
+            table.parseRecord(fields, split(line, length, fields));
+        }
+        return table;
+    }
+
+    private static boolean isEnd(byte[] line, int length) {
+        return length >= 14 && new String(line, 0, 14, StandardCharsets.US_ASCII).equals("ENDSOURCETABLE");
+    }
+
+    /**
+     * Splits on ';', with anything past the last field left in it.
+     *
+     * @return the number of fields.
+     */
+    private static int split(byte[] line, int length, String[] fields) {
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i < length && count < fields.length - 1; i++) {
+            if (line[i] == ';') {
+                fields[count++] = new String(line, start, i - start, StandardCharsets.ISO_8859_1);
+                start = i + 1;
+            }
+        }
+        fields[count++] = new String(line, start, length - start, StandardCharsets.ISO_8859_1);
+        return count;
+    }
+
+    private void parseRecord(String[] fields, int count) {
+        try {
+            switch (fields[0]) {
+                case "STR":
+                    if (count >= 13) {
+                        streams.add(new Stream(fields[1], fields[2], fields[3], fields[6], fields[7], fields[8],
+                                parseDouble(fields[9]), parseDouble(fields[10]), "1".equals(fields[11]), "1".equals(fields[12])));
+                    }
+                    break;
+                case "CAS":
+                    if (count >= 4) {
+                        casters.add(new Caster(fields[1], Integer.parseInt(fields[2].trim()), fields[3]));
+                    }
+                    break;
+                case "NET":
+                    if (count >= 3) {
+                        networks.add(new Network(fields[1], fields[2]));
+                    }
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // casters do publish the odd broken record; the rest of the table is still good
+        }
+    }
+
+    private static double parseDouble(String field) {
+        return field.isEmpty() ? 0.0 : Double.parseDouble(field.trim());
+    }
+}
@@ -0,0 +1,126 @@
+package com.signalquest.example;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Picks which of two redundant correction streams, a primary and a secondary, feeds the SitePoint.
+ * <p>
+ * Both streams are framed and scored ({@link StreamScore}) all the time, but only the active one's
+ * frames go on to the sink. When the active stream degrades, the other takes over at the start of its
+ * next epoch, so the switch costs at most one epoch and never splits one. The primary takes back over
+ * once it has been healthy for {@link #FAILBACK_NANOS}, so a flapping primary doesn't bounce the
+ * SitePoint between bases.
+ */
+class StreamFailover {
+    static final int PRIMARY = 0;
+    static final int SECONDARY = 1;
+    static final long FAILBACK_NANOS = 10_000_000_000L;
+
+    private final Rtcm3Framer.FrameListener sink;
+    private final LongSupplier nanoClock;
+    private final Stream[] streams = {new Stream(PRIMARY), new Stream(SECONDARY)};
+    private int active = PRIMARY;
+    // when the primary last came back from degraded, while the secondary was active
+    private long primaryHealthySince = 0;
+    private long switches = 0;
+
+    private class Stream implements Rtcm3Framer.FrameListener {
+        final int index;
+        final Rtcm3Framer framer = new Rtcm3Framer(this);
+        final StreamScore score = new StreamScore();
+        long now;
+
+        Stream(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length, int messageType) {
+            // checked before this frame freshens it, to see whether the stream has just come back
+            boolean wasDegraded = score.isDegraded(now);
+            boolean newEpoch = score.onFrame(now);
+            if (index != active && newEpoch) {
+                considerSwitch(this, wasDegraded, now);
+            }
+            if (index == active) {
+                sink.onFrame(buffer, offset, length, messageType);
+            }
+        }
+    }
+
+    StreamFailover(Rtcm3Framer.FrameListener sink) {
+        this(sink, System::nanoTime);
+    }
+
+    StreamFailover(Rtcm3Framer.FrameListener sink, LongSupplier nanoClock) {
+        this.sink = sink;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Frames bytes read from the given stream's socket; the data may end mid-frame.
+     */
+    synchronized void put(int stream, byte[] data, int offset, int length) {
+        Stream s = streams[stream];
+        s.now = nanoClock.getAsLong();
+        s.score.onBytes(s.now, length);
+        long crcFailures = s.framer.getCrcFailures();
+        s.framer.feed(data, offset, length);
+        s.score.onCrcFailures(s.framer.getCrcFailures() - crcFailures);
+    }
+
+    /**
+     * Drops the stream's partial frame and learnt rate, for a new connection.
+     */
+    synchronized void reset(int stream) {
+        streams[stream].framer.reset();
+        streams[stream].score.reset();
+        if (stream == PRIMARY) {
+            primaryHealthySince = 0;
+        }
+    }
+
+    private void considerSwitch(Stream candidate, boolean wasDegraded, long now) {
+        Stream current = streams[active];
+        if (candidate.index == PRIMARY && (wasDegraded || primaryHealthySince == 0)) {
+            primaryHealthySince = now;
+        }
+        if (candidate.score.isDegraded(now)) {
+            return;
+        }
+        if (candidate.index == PRIMARY && !current.score.isDegraded(now)) {
+            // fail back only once the primary has proven itself
+            if (now - primaryHealthySince < FAILBACK_NANOS) {
+                return;
+            }
+        } else if (!current.score.isDegraded(now)) {
+            return;
+        }
+        active = candidate.index;
+        primaryHealthySince = 0;
+        switches++;
+    }
+
+    synchronized int getActive() {
+        return active;
+    }
+
+    synchronized long getSwitches() {
+        return switches;
+    }
+
+    /**
+     * @return the stream's score, from 0 to 100, as of now.
+     */
+    synchronized int getScore(int stream) {
+        return streams[stream].score.score(nanoClock.getAsLong());
+    }
+
+    @Override
+    public synchronized String toString() {
+        long now = nanoClock.getAsLong();
+        return "StreamFailover: " + (active == PRIMARY ? "primary" : "secondary") + " active, " + switches
+                + " switches; primary " + streams[PRIMARY].score.toString(now)
+                + "; secondary " + streams[SECONDARY].score.toString(now);
+    }
+}
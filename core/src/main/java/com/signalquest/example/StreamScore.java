@@ -0,0 +1,149 @@
+package com.signalquest.example;
+
+import java.util.Locale;
+
+/**
+ * Running health of one correction stream: its byte rate, epoch rate, correction age and CRC failures.
+ * <p>
+ * Frames closer together than {@link CorrectionFanout#EPOCH_GAP_NANOS} are one epoch, as in the
+ * {@link CorrectionFanout}; the interval between epochs is learnt from the stream, so a 1 Hz and a
+ * 5 Hz caster are each judged against their own rate. A stream is degraded once its next epoch is
+ * half an interval late, or when several of its recent frames have failed the CRC.
+ */
+class StreamScore {
+    // before the stream has shown its own rate
+    private static final long DEFAULT_EPOCH_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+    // out of the last 32 frames
+    private static final int MAX_RECENT_CRC_FAILURES = 2;
+
+    private long lastFrameAt = 0;
+    private long lastEpochAt = 0;
+    private long epochIntervalNanos = 0;
+    // one bit per recent frame, set for a CRC failure
+    private int recentFrames = 0;
+    private long frames = 0;
+    private long epochs = 0;
+    private long crcFailures = 0;
+
+    private long windowStartedAt = 0;
+    private long windowBytes = 0;
+    private double bytesPerSecond = 0;
+
+    /**
+     * Bytes read from the socket, before framing.
+     */
+    void onBytes(long nowNanos, int length) {
+        if (windowStartedAt == 0) {
+            windowStartedAt = nowNanos;
+        }
+        windowBytes += length;
+        long elapsed = nowNanos - windowStartedAt;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            bytesPerSecond = windowBytes * 1e9 / elapsed;
+            windowStartedAt = nowNanos;
+            windowBytes = 0;
+        }
+    }
+
+    /**
+     * @return the frame starts a new epoch.
+     */
+    boolean onFrame(long nowNanos) {
+        boolean newEpoch = lastFrameAt == 0 || nowNanos - lastFrameAt > CorrectionFanout.EPOCH_GAP_NANOS;
+        if (newEpoch) {
+            if (lastEpochAt != 0) {
+                long interval = nowNanos - lastEpochAt;
+                // smoothed over about 8 epochs, but quick to settle on the first
+                epochIntervalNanos = epochIntervalNanos == 0 ? interval : epochIntervalNanos + (interval - epochIntervalNanos) / 8;
+            }
+            lastEpochAt = nowNanos;
+            epochs++;
+        }
+        lastFrameAt = nowNanos;
+        frames++;
+        recentFrames <<= 1;
+        return newEpoch;
+    }
+
+    void onCrcFailures(long count) {
+        for (long i = 0; i < count; i++) {
+            recentFrames = (recentFrames << 1) | 1;
+        }
+        crcFailures += count;
+    }
+
+    /**
+     * Forgets the rate and recent failures, e.g. on a new connection, but keeps the totals.
+     */
+    void reset() {
+        lastFrameAt = 0;
+        lastEpochAt = 0;
+        epochIntervalNanos = 0;
+        recentFrames = 0;
+        windowStartedAt = 0;
+        windowBytes = 0;
+        bytesPerSecond = 0;
+    }
+
+    long getEpochIntervalNanos() {
+        return epochIntervalNanos == 0 ? DEFAULT_EPOCH_INTERVAL_NANOS : epochIntervalNanos;
+    }
+
+    /**
+     * @return nanoseconds since the last frame, or -1 for none yet.
+     */
+    long getAgeNanos(long nowNanos) {
+        return lastFrameAt == 0 ? -1 : nowNanos - lastFrameAt;
+    }
+
+    boolean isDegraded(long nowNanos) {
+        if (lastFrameAt == 0) {
+            return true;
+        }
+        if (nowNanos - lastFrameAt > getEpochIntervalNanos() * 3 / 2) {
+            return true;
+        }
+        return Integer.bitCount(recentFrames) > MAX_RECENT_CRC_FAILURES;
+    }
+
+    /**
+     * @return 0 (nothing) to 100: how on time the stream is, scaled down by its recent CRC failures.
+     */
+    int score(long nowNanos) {
+        if (lastFrameAt == 0) {
+            return 0;
+        }
+        long due = getEpochIntervalNanos() * 3 / 2;
+        long age = nowNanos - lastFrameAt;
+        double timeliness = age <= due ? 1.0 : (double) due / age;
+        double integrity = 1.0 - Integer.bitCount(recentFrames) / 32.0;
+        return (int) Math.round(100 * timeliness * integrity);
+    }
+
+    double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    double getEpochRateHz() {
+        return epochIntervalNanos == 0 ? 0 : 1e9 / epochIntervalNanos;
+    }
+
+    long getFrames() {
+        return frames;
+    }
+
+    long getEpochs() {
+        return epochs;
+    }
+
+    long getCrcFailures() {
+        return crcFailures;
+    }
+
+    String toString(long nowNanos) {
+        return String.format(Locale.US, "score %d, %.0f B/s, %.1f Hz, age %dms, %d frames, %d CRC failures",
+                score(nowNanos), bytesPerSecond, getEpochRateHz(), Math.max(getAgeNanos(nowNanos), 0) / 1_000_000L,
+                frames, crcFailures);
+    }
+}
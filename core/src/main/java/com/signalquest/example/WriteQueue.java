@@ -0,0 +1,133 @@
+package com.signalquest.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Lock-free multi-producer, single-consumer queue of buffers waiting to go out on a socket.
+ * <p>
+ * Any thread may {@link #offer(ByteBuffer)}: each is one atomic swap of the tail, so producers never
+ * block each other or the consumer. Only the reactor thread {@link #write(GatheringByteChannel)}s,
+ * gathering up to {@link #GATHER_LIMIT} buffers into each channel write rather than one per wakeup.
+ * Order is kept per producer.
+ */
+class WriteQueue {
+    static final int GATHER_LIMIT = 16;
+
+    private static final class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        final ByteBuffer buffer;
+        volatile Node next;
+
+        Node(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    // consumer only; a spent (stub) node, whose next is the oldest queued
+    private Node head = new Node(null);
+    private final AtomicReference<Node> tail = new AtomicReference<>(head);
+    private final ByteBuffer[] gather = new ByteBuffer[GATHER_LIMIT];
+
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private volatile long maxQueuedBytes = 0;
+    private volatile long writtenBytes = 0;
+    private volatile long gatheringWrites = 0;
+
+    /**
+     * Queues the buffer's remaining bytes; the buffer mustn't be changed afterwards. Any thread.
+     */
+    void offer(ByteBuffer buffer) {
+        // counted first, so the consumer can't write the bytes before they're counted
+        long queued = queuedBytes.addAndGet(buffer.remaining());
+        Node node = new Node(buffer);
+        Node previous = tail.getAndSet(node);
+        // until this link is made the consumer sees the queue end at previous, so it's never torn
+        Node.NEXT.lazySet(previous, node);
+        if (queued > maxQueuedBytes) {
+            // racy, but only ever a little low, and only as a metric
+            maxQueuedBytes = queued;
+        }
+    }
+
+    /**
+     * Writes queued buffers until the queue or the channel's send buffer is empty. Consumer only.
+     *
+     * @return the queue has been emptied; otherwise the channel is full, and this should be called
+     * again once it's writable.
+     */
+    boolean write(GatheringByteChannel channel) throws IOException {
+        while (true) {
+            int count = 0;
+            for (Node node = head.next; node != null && count < GATHER_LIMIT; node = node.next) {
+                gather[count++] = node.buffer;
+            }
+            if (count == 0) {
+                return true;
+            }
+            long written = channel.write(gather, 0, count);
+            gatheringWrites++;
+            writtenBytes += written;
+            queuedBytes.addAndGet(-written);
+            int done = 0;
+            while (done < count && !gather[done].hasRemaining()) {
+                // the written node becomes the new stub; its spent buffer goes with the next one
+                head = head.next;
+                done++;
+            }
+            Arrays.fill(gather, 0, count, null);
+            if (done < count) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Drops everything queued. Consumer only.
+     */
+    void clear() {
+        for (Node node = head.next; node != null; node = node.next) {
+            queuedBytes.addAndGet(-node.buffer.remaining());
+            head = node;
+        }
+    }
+
+    /**
+     * @return nothing is queued, as far as the consumer can see.
+     */
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return channel writes made, each of up to {@link #GATHER_LIMIT} buffers.
+     */
+    long getGatheringWrites() {
+        return gatheringWrites;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteQueue: " + writtenBytes + " bytes in " + gatheringWrites + " writes, "
+                + queuedBytes.get() + " queued, max " + maxQueuedBytes;
+    }
+}
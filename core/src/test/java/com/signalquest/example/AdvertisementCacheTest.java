@@ -0,0 +1,78 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link AdvertisementCache} decodes each device's payload only when it changes.
+ */
+public class AdvertisementCacheTest {
+    private int decodes = 0;
+    private final AdvertisementCache<String> cache = new AdvertisementCache<>(payload -> {
+        decodes++;
+        return "battery " + payload[1];
+    }, 3);
+
+    @Test
+    public void reusesTheDecodingOfAnUnchangedPayload() {
+        String first = cache.decode("A", new byte[]{1, 80});
+        // a fresh array, as every scan record has
+        assertSame(first, cache.decode("A", new byte[]{1, 80}));
+        assertEquals(1, decodes);
+
+        assertEquals("battery 79", cache.decode("A", new byte[]{1, 79}));
+        assertEquals(2, decodes);
+        // same payload, different device
+        assertEquals("battery 79", cache.decode("B", new byte[]{1, 79}));
+        assertEquals(3, decodes);
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void keepsItsOwnCopyOfThePayload() {
+        byte[] payload = {1, 80};
+        cache.decode("A", payload);
+        payload[1] = 50;
+        assertEquals("battery 50", cache.decode("A", payload));
+        assertEquals(2, decodes);
+    }
+
+    @Test
+    public void dropsTheLeastRecentlyAdvertised() {
+        cache.decode("A", new byte[]{1, 1});
+        cache.decode("B", new byte[]{1, 2});
+        cache.decode("C", new byte[]{1, 3});
+        cache.decode("A", new byte[]{1, 1});
+        cache.decode("D", new byte[]{1, 4});
+        assertEquals(3, cache.size());
+        assertEquals(4, decodes);
+        // B went, A stayed
+        cache.decode("A", new byte[]{1, 1});
+        cache.decode("B", new byte[]{1, 2});
+        assertEquals(5, decodes);
+    }
+
+    @Test
+    public void hitsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        byte[][] payloads = {{1, 80, 12}, {0, 64, 9}, {1, 99, 20}};
+        String[] addresses = {"A", "B", "C"};
+        for (int i = 0; i < 30_000; i++) {
+            cache.decode(addresses[i % 3], payloads[i % 3]);
+        }
+        int advertisements = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < advertisements; i++) {
+            cache.decode(addresses[i % 3], payloads[i % 3]);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(3, decodes);
+        assertTrue("allocated " + allocated + " bytes for " + advertisements + " advertisements", allocated / advertisements < 1);
+    }
+}
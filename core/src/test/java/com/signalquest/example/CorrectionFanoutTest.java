@@ -0,0 +1,164 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks each {@link CorrectionFanout.Cursor} reads the whole stream at its own pace, that a slow one
+ * skips whole epochs without holding up the rest, and the per-cursor counters.
+ */
+public class CorrectionFanoutTest {
+    private static final long MILLISECOND = 1_000_000L;
+    private long now = 0;
+    private final CorrectionFanout fanout = new CorrectionFanout(512, 244, 1000, () -> now);
+
+    private void offer(byte[] frame) {
+        fanout.offer(frame, 0, frame.length);
+    }
+
+    @Test
+    public void everyCursorReadsEveryFrame() {
+        CorrectionFanout.Cursor first = fanout.newCursor();
+        CorrectionFanout.Cursor second = fanout.newCursor();
+        byte[] a = RtcmTestFrames.frame(1074, 100);
+        byte[] b = RtcmTestFrames.frame(1084, 50);
+        offer(a);
+        offer(b);
+
+        assertArrayEquals(RtcmTestFrames.concat(a, b), first.next(244));
+        assertArrayEquals(a, second.next(150));
+        assertEquals(1, second.getLagFrames());
+        assertEquals(b.length, second.getLagBytes());
+        assertArrayEquals(b, second.next(150));
+        assertSame(CorrectionFanout.EMPTY, first.next(244));
+        assertEquals(a.length + b.length, first.getBytes());
+        assertEquals(2, second.getFrames());
+        assertEquals(0, second.getLagFrames());
+        assertEquals(2, fanout.getDepth());
+    }
+
+    @Test
+    public void slowCursorDoesNotStallTheOthers() {
+        CorrectionFanout.Cursor fast = fanout.newCursor();
+        CorrectionFanout.Cursor slow = fanout.newCursor();
+        // a second of one-frame epochs, many times the ring
+        for (int i = 0; i < 100; i++) {
+            byte[] frame = RtcmTestFrames.frame(1077, 94);
+            offer(frame);
+            assertArrayEquals(frame, fast.next(244));
+            now += 30 * MILLISECOND;
+        }
+        assertEquals(100, fast.getFrames());
+        assertEquals(0, fast.getSkipped());
+        assertEquals(0, fast.getLagFrames());
+        // the ring holds five 100 byte frames; the slow one reads the newest of them
+        assertEquals(5, slow.getLagFrames());
+        assertEquals(500, slow.getLagBytes());
+        assertEquals(200, slow.next(244).length);
+        assertEquals(95, slow.getSkipped());
+        assertEquals(3, slow.getLagFrames());
+        assertEquals(95, fanout.getEvicted());
+    }
+
+    @Test
+    public void lappedCursorSkipsToTheNextEpoch() {
+        CorrectionFanout.Cursor cursor = fanout.newCursor();
+        byte[] a1 = RtcmTestFrames.frame(1074, 100);
+        byte[] a2 = RtcmTestFrames.frame(1084, 50);
+        byte[] b1 = RtcmTestFrames.frame(1074, 100);
+        byte[] b2 = RtcmTestFrames.frame(1084, 50);
+        byte[] c1 = RtcmTestFrames.frame(1094, 200);
+        offer(a1);
+        offer(a2);
+        now += 200 * MILLISECOND;
+        offer(b1);
+        offer(b2);
+        now += 200 * MILLISECOND;
+        // 324 bytes stored, 206 more doesn't fit in 512: a1 goes, and a2 is no use without it
+        offer(c1);
+
+        assertEquals(1, fanout.getEvicted());
+        assertArrayEquals(RtcmTestFrames.concat(b1, b2), cursor.next(244));
+        assertEquals(2, cursor.getSkipped());
+        assertArrayEquals(c1, cursor.next(244));
+    }
+
+    @Test
+    public void dropsStaleCorrectionsPerCursor() {
+        CorrectionFanout.Cursor prompt = fanout.newCursor();
+        CorrectionFanout.Cursor late = fanout.newCursor();
+        byte[] old = RtcmTestFrames.frame(1077, 40);
+        byte[] fresh = RtcmTestFrames.frame(1087, 40);
+        offer(old);
+        assertArrayEquals(old, prompt.next(244));
+        now += 900 * MILLISECOND;
+        offer(fresh);
+        now += 200 * MILLISECOND;
+
+        assertArrayEquals(fresh, late.next(244));
+        assertEquals(1, late.getStaleDrops());
+        assertEquals(200, late.getLastAgeMillis());
+        assertEquals(0, prompt.getStaleDrops());
+        assertArrayEquals(fresh, prompt.next(244));
+    }
+
+    @Test
+    public void splitsFramesLongerThanAWrite() {
+        CorrectionFanout.Cursor cursor = fanout.newCursor();
+        byte[] big = RtcmTestFrames.frame(1077, 400);
+        offer(big);
+        byte[] start = cursor.next(244);
+        assertEquals(244, start.length);
+        now += 2000 * MILLISECOND;
+        byte[] end = cursor.next(244);
+        assertEquals(big.length - 244, end.length);
+        assertArrayEquals(big, RtcmTestFrames.concat(start, end));
+        assertEquals(0, cursor.getStaleDrops());
+        assertEquals(2000, cursor.getMaxAgeAtReadMillis());
+    }
+
+    @Test
+    public void clearingIsNotSkipping() {
+        CorrectionFanout.Cursor cursor = fanout.newCursor();
+        offer(RtcmTestFrames.frame(1074, 100));
+        fanout.clear();
+        byte[] after = RtcmTestFrames.frame(1084, 50);
+        offer(after);
+
+        assertArrayEquals(after, cursor.next(244));
+        assertEquals(0, cursor.getSkipped());
+        assertEquals(1, fanout.getDepth());
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        CorrectionFanout fanout = new CorrectionFanout(16 * 1024, 244, 5000, () -> now);
+        CorrectionFanout.Cursor[] cursors = {fanout.newCursor(), fanout.newCursor(), fanout.newCursor()};
+        byte[] frame = RtcmTestFrames.frame(1077, 300);
+        // warms up each cursor's pool, and the JIT
+        for (int i = 0; i < 10_000; i++) { fanOut(fanout, cursors, frame); }
+
+        int frames = 100_000;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < frames; i++) { fanOut(fanout, cursors, frame); }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes for " + frames + " frames", allocated / frames < 1);
+    }
+
+    private void fanOut(CorrectionFanout fanout, CorrectionFanout.Cursor[] cursors, byte[] frame) {
+        now += 100 * MILLISECOND;
+        fanout.offer(frame, 0, frame.length);
+        for (CorrectionFanout.Cursor cursor : cursors) {
+            byte[] write;
+            while ((write = cursor.next(244)).length > 0) {
+                cursor.recycle(write);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link Dashboard} formats as the display did, renders a burst once, reports only changed
+ * fields, and allocates nothing once warmed up.
+ */
+public class DashboardTest {
+    private final Dashboard dashboard = new Dashboard();
+    private final boolean[] aiding = {true, false, true, true};
+
+    private String shown(Dashboard.Field field) {
+        return dashboard.text(field).toString();
+    }
+
+    @Test
+    public void formatsLikeStringFormat() {
+        double[] values = {0, 0.00004, -0.00004, 1.5, -1.5, 999.99995, 1234.56789, -1234567.8912, 39.7392358};
+        for (double value : values) {
+            Dashboard.Text text = new Dashboard.Text();
+            text.append(value, 4, true).commit();
+            assertEquals(String.format(Locale.US, "%,.4f", value), text.toString());
+            text.clear().append(value, 7, false).commit();
+            assertEquals(String.format(Locale.US, "%.7f", value), text.toString());
+        }
+        long[] longs = {0, 7, -7, 1000, -1234567, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : longs) {
+            Dashboard.Text text = new Dashboard.Text();
+            text.append(value).commit();
+            assertEquals(Long.toString(value), text.toString());
+            text.clear().append(value, true).commit();
+            assertEquals(String.format(Locale.US, "%,d", value), text.toString());
+        }
+    }
+
+    @Test
+    public void formatsEveryField() {
+        dashboard.setLocation(123_450, 39.7392358, -104.990251, 1609.3441, 0.0123, 1234.5);
+        dashboard.setStatus(123_400, 1_700_000_000L, 4, 23, 87, true, aiding, "Fixed");
+        dashboard.render();
+        assertEquals("123450", shown(Dashboard.Field.LOCATION_ITOW));
+        assertEquals("39.7392358\u00B0", shown(Dashboard.Field.LATITUDE));
+        assertEquals("-104.9902510\u00B0", shown(Dashboard.Field.LONGITUDE));
+        assertEquals("1,609.3441m", shown(Dashboard.Field.HEIGHT));
+        assertEquals("0.0123m", shown(Dashboard.Field.HORIZONTAL_ACCURACY));
+        assertEquals("1,234.5000m", shown(Dashboard.Field.VERTICAL_ACCURACY));
+        assertEquals("87%", shown(Dashboard.Field.BATTERY));
+        assertEquals("true", shown(Dashboard.Field.CHARGING));
+        assertEquals("1700000000", shown(Dashboard.Field.TIME));
+        // 2023-11-14T22:13:20Z
+        assertEquals("22:13:20", shown(Dashboard.Field.TIME_FORMATTED));
+        assertEquals("23", shown(Dashboard.Field.SATELLITES));
+        assertEquals("4", shown(Dashboard.Field.MODE));
+        assertEquals("Fixed", shown(Dashboard.Field.MODE_LABEL));
+        assertEquals("1011", shown(Dashboard.Field.AIDING_QUALITY));
+    }
+
+    @Test
+    public void rendersABurstOnce() {
+        assertTrue(dashboard.setLocation(1, 1, 1, 1, 1, 1));
+        assertFalse(dashboard.setLocation(2, 2, 2, 2, 2, 2));
+        assertFalse(dashboard.setStatus(2, 2, 2, 2, 2, false, aiding, "Two"));
+        dashboard.render();
+        assertEquals("2", shown(Dashboard.Field.LOCATION_ITOW));
+        assertEquals("Two", shown(Dashboard.Field.MODE_LABEL));
+        // nothing pending
+        assertEquals(0, dashboard.render());
+        assertTrue(dashboard.setLocation(3, 3, 3, 3, 3, 3));
+    }
+
+    @Test
+    public void reportsOnlyChangedFields() {
+        dashboard.setStatus(100, 1000, 4, 20, 90, false, aiding, "Fixed");
+        int first = dashboard.render();
+        for (int i = Dashboard.Field.BATTERY.ordinal(); i <= Dashboard.Field.AIDING_QUALITY.ordinal(); i++) {
+            assertTrue(Dashboard.changed(first, Dashboard.FIELDS[i]));
+        }
+        assertFalse(Dashboard.changed(first, Dashboard.Field.LATITUDE));
+
+        dashboard.setStatus(150, 1000, 4, 20, 90, false, aiding, "Fixed");
+        int second = dashboard.render();
+        assertEquals(1 << Dashboard.Field.STATUS_ITOW.ordinal(), second);
+
+        // cleared views need everything again
+        dashboard.reset();
+        dashboard.setStatus(150, 1000, 4, 20, 90, false, aiding, "Fixed");
+        assertEquals(first, dashboard.render());
+    }
+
+    /**
+     * 20 Hz of messages against 60 Hz frames, as the renderer sees them.
+     */
+    @Test
+    public void steadyStateAllocatesNothing() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        // warm up, also growing any buffer to its largest
+        simulate(0, 2_000);
+        int seconds = 600;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int renders = simulate(2_000, seconds);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(seconds * 20, renders);
+        assertEquals("allocated " + allocated + " bytes over " + renders + " renders", 0, allocated);
+    }
+
+    /**
+     * @return frames that rendered something.
+     */
+    private int simulate(int fromSecond, int seconds) {
+        int renders = 0;
+        boolean framePending = false;
+        for (long frame = fromSecond * 60L; frame < (fromSecond + seconds) * 60L; frame++) {
+            // a message on every third frame: 50 ms
+            if (frame % 3 == 0) {
+                long iTow = frame / 3 * 50;
+                framePending |= dashboard.setLocation(iTow, 39.7392358 + iTow * 1e-9, -104.990251,
+                        1609.3441 + (iTow % 1000) * 1e-4, 0.0123, 0.0234);
+                framePending |= dashboard.setStatus(iTow, 1_700_000_000L + iTow / 1000, 4, 23, 87, false, aiding, "Fixed");
+            }
+            if (framePending) {
+                framePending = false;
+                if (dashboard.render() != 0) {
+                    renders++;
+                }
+            }
+        }
+        return renders;
+    }
+}
@@ -0,0 +1,133 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link EventStream} delivers every event, or the latest at a subscriber's rate, on the
+ * subscriber's dispatcher.
+ */
+public class EventStreamTest {
+    private long now = 0;
+    private final EventStream<Integer> stream = new EventStream<>(() -> now);
+
+    /**
+     * Holds dispatched tasks until run, like a thread's message queue.
+     */
+    private static class QueuedDispatcher implements EventStream.Dispatcher {
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+
+        @Override
+        public void dispatch(Runnable task, long delayMillis) {
+            tasks.add(task);
+            delays.add(delayMillis);
+        }
+
+        void runAll() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            delays.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+
+    @Test
+    public void deliversEveryEventInOrder() {
+        List<Integer> direct = new ArrayList<>();
+        List<Integer> queued = new ArrayList<>();
+        QueuedDispatcher dispatcher = new QueuedDispatcher();
+        stream.subscribe(direct::add, EventStream.PUBLISHING_THREAD, 0);
+        stream.subscribe(queued::add, dispatcher, 0);
+        for (int i = 0; i < 5; i++) {
+            stream.publish(i);
+        }
+        assertEquals(5, direct.size());
+        assertTrue(queued.isEmpty());
+        dispatcher.runAll();
+        assertEquals(direct, queued);
+        assertEquals(5, stream.getPublished());
+    }
+
+    @Test
+    public void conflatesToTheSubscribersRate() {
+        List<Integer> received = new ArrayList<>();
+        QueuedDispatcher dispatcher = new QueuedDispatcher();
+        stream.subscribe(received::add, dispatcher, 100);
+        stream.publish(1);
+        stream.publish(2);
+        // one delivery dispatched, right away, for the latest
+        assertEquals(1, dispatcher.tasks.size());
+        assertEquals(0, (long) dispatcher.delays.get(0));
+        dispatcher.runAll();
+        assertEquals(1, received.size());
+        assertEquals(2, (int) received.get(0));
+
+        // 20 Hz against a 100 ms interval: the next waits out the interval
+        now += 50_000_000L;
+        stream.publish(3);
+        now += 50_000_000L;
+        stream.publish(4);
+        assertEquals(1, dispatcher.tasks.size());
+        assertEquals(50, (long) dispatcher.delays.get(0));
+        dispatcher.runAll();
+        assertEquals(4, (int) received.get(1));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void stopsOnCancel() {
+        List<Integer> received = new ArrayList<>();
+        QueuedDispatcher dispatcher = new QueuedDispatcher();
+        EventStream.Subscription every = stream.subscribe(received::add, dispatcher, 0);
+        EventStream.Subscription latest = stream.subscribe(received::add, dispatcher, 100);
+        stream.publish(1);
+        every.cancel();
+        latest.cancel();
+        // already dispatched, but not delivered
+        dispatcher.runAll();
+        stream.publish(2);
+        assertTrue(received.isEmpty());
+        assertTrue(dispatcher.tasks.isEmpty());
+        assertEquals(0, stream.getSubscriberCount());
+    }
+
+    @Test
+    public void deliversAcrossThreads() throws InterruptedException {
+        EventStream<Integer> stream = new EventStream<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch every = new CountDownLatch(1000);
+            int[] last = {-1};
+            stream.subscribe(event -> {
+                assertEquals(last[0] + 1, (int) event);
+                last[0] = event;
+                every.countDown();
+            }, (task, delay) -> executor.execute(task), 0);
+            CountDownLatch latest = new CountDownLatch(1);
+            stream.subscribe(event -> {
+                if (event == 999) {
+                    latest.countDown();
+                }
+            }, (task, delay) -> executor.execute(task), 10);
+            for (int i = 0; i < 1000; i++) {
+                stream.publish(i);
+            }
+            assertTrue(every.await(5, TimeUnit.SECONDS));
+            // however the burst was conflated, its last event arrives
+            assertTrue(latest.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
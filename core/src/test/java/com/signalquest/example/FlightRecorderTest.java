@@ -0,0 +1,54 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link FlightRecorder} dumps stay parseable after the ring wraps.
+ */
+public class FlightRecorderTest {
+
+    @Test
+    public void keepsNewestWholeRecordsWhenWrapping() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(100);
+        byte[] data = new byte[20];
+        for (int i = 0; i < 10; i++) {
+            data[0] = (byte) i;
+            recorder.record(FlightRecorder.NTRIP_RX, data);
+        }
+        recorder.event(FlightRecorder.GATT_MTU, 247, 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.dump(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(FlightRecorder.MAGIC, in.readInt());
+        assertEquals(FlightRecorder.VERSION, in.readByte());
+        in.readLong();
+        in.readLong();
+
+        // 31 bytes per data record, 19 for the event: two data records plus the event fit in 100
+        long lastNanos = 0;
+        for (int expected = 8; expected < 10; expected++) {
+            long nanos = in.readLong();
+            assertTrue(nanos >= lastNanos);
+            lastNanos = nanos;
+            assertEquals(FlightRecorder.NTRIP_RX, in.readByte());
+            assertEquals(20, in.readUnsignedShort());
+            assertEquals(expected, in.readByte());
+            in.skipBytes(19);
+        }
+        in.readLong();
+        assertEquals(FlightRecorder.GATT_MTU, in.readByte());
+        assertEquals(8, in.readUnsignedShort());
+        assertEquals(247, in.readInt());
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.available());
+        assertEquals(8, recorder.getDroppedRecords());
+    }
+}
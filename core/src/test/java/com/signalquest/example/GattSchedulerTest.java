@@ -0,0 +1,204 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link GattScheduler} against a fake GATT: one operation at a time, RTCM first without
+ * starving control operations, and retries and timeouts so nothing hangs.
+ */
+public class GattSchedulerTest {
+    private static final long MILLISECOND = 1_000_000L;
+    private long now = 0;
+    private final FakeGatt gatt = new FakeGatt();
+    private final GattScheduler scheduler = new GattScheduler(gatt, () -> now);
+
+    /**
+     * Takes operations like a {@code BluetoothGatt}, refusing those it's told to, and hands out
+     * queued RTCM.
+     */
+    private static class FakeGatt implements GattScheduler.Gatt {
+        final List<GattScheduler.Operation> started = new ArrayList<>();
+        final List<GattScheduler.Operation> givenUp = new ArrayList<>();
+        final ArrayDeque<byte[]> rtcm = new ArrayDeque<>();
+        int refuse = 0;
+        long wakeIn = -1;
+
+        @Override
+        public boolean start(GattScheduler.Operation operation) {
+            if (refuse > 0) {
+                refuse--;
+                return false;
+            }
+            started.add(operation);
+            return true;
+        }
+
+        @Override
+        public byte[] nextRtcm() {
+            return rtcm.poll();
+        }
+
+        @Override
+        public void gaveUp(GattScheduler.Operation operation) {
+            givenUp.add(operation);
+        }
+
+        @Override
+        public void wake(long delayMillis) {
+            wakeIn = delayMillis;
+        }
+
+        GattScheduler.Kind last() {
+            return started.get(started.size() - 1).kind;
+        }
+    }
+
+    /**
+     * Lets the requested wake-up come.
+     */
+    private void alarm() {
+        now += gatt.wakeIn * MILLISECOND;
+        scheduler.onAlarm();
+    }
+
+    @Test
+    public void runsOneOperationAtATime() {
+        scheduler.submit(GattScheduler.Kind.MTU, 517);
+        scheduler.submit(GattScheduler.Kind.DISCOVER_SERVICES);
+        assertEquals(1, gatt.started.size());
+        assertEquals(517, gatt.started.get(0).argument);
+        assertEquals(1, scheduler.getQueued());
+        // not what's in flight
+        assertFalse(scheduler.completed(GattScheduler.Kind.DISCOVER_SERVICES));
+
+        now += 30 * MILLISECOND;
+        assertTrue(scheduler.completed(GattScheduler.Kind.MTU));
+        assertEquals(GattScheduler.Kind.DISCOVER_SERVICES, gatt.last());
+        assertTrue(scheduler.completed(GattScheduler.Kind.DISCOVER_SERVICES));
+        assertEquals(0, scheduler.getQueued());
+        LatencyHistogram mtu = scheduler.getLatency(GattScheduler.Kind.MTU);
+        assertEquals(1, mtu.getCount());
+        assertEquals(30_000, mtu.getMaxMicros());
+        assertTrue(scheduler.report(), scheduler.report().startsWith("MTU: n=1"));
+    }
+
+    @Test
+    public void putsRtcmFirstWithoutStarvingControl() {
+        for (int i = 0; i < 10; i++) {
+            gatt.rtcm.add(new byte[]{(byte) i});
+        }
+        scheduler.rtcmAvailable();
+        scheduler.submit(GattScheduler.Kind.READ_RSSI);
+        // the first write is in flight; the RSSI read waits through a streak
+        for (int i = 0; i < GattScheduler.MAX_RTCM_STREAK; i++) {
+            assertEquals(GattScheduler.Kind.RTCM_WRITE, gatt.last());
+            scheduler.completed(GattScheduler.Kind.RTCM_WRITE);
+        }
+        assertEquals(GattScheduler.Kind.READ_RSSI, gatt.last());
+        scheduler.completed(GattScheduler.Kind.READ_RSSI);
+        assertEquals(GattScheduler.Kind.RTCM_WRITE, gatt.last());
+        assertEquals(4, gatt.started.get(gatt.started.size() - 1).data[0]);
+    }
+
+    @Test
+    public void retriesWhenTheStackIsBusy() {
+        gatt.refuse = 2;
+        scheduler.submit(GattScheduler.Kind.WRITE_DESCRIPTOR);
+        assertTrue(gatt.started.isEmpty());
+        assertEquals(GattScheduler.RETRY_MILLISECONDS, gatt.wakeIn);
+        // an early wake-up just asks again
+        scheduler.onAlarm();
+        assertTrue(gatt.started.isEmpty());
+        alarm();
+        alarm();
+        assertEquals(1, gatt.started.size());
+        assertEquals(3, gatt.started.get(0).attempts);
+        assertEquals(2, scheduler.getRefusals(GattScheduler.Kind.WRITE_DESCRIPTOR));
+
+        scheduler.completed(GattScheduler.Kind.WRITE_DESCRIPTOR);
+        gatt.refuse = GattScheduler.MAX_ATTEMPTS;
+        scheduler.submit(GattScheduler.Kind.READ_RSSI);
+        alarm();
+        alarm();
+        assertEquals(1, gatt.givenUp.size());
+        assertEquals(GattScheduler.Kind.READ_RSSI, gatt.givenUp.get(0).kind);
+    }
+
+    @Test
+    public void retriesAHungOperationThenMovesOn() {
+        scheduler.submit(GattScheduler.Kind.DISCOVER_SERVICES);
+        scheduler.submit(GattScheduler.Kind.WRITE_DESCRIPTOR);
+        assertEquals(GattScheduler.Kind.DISCOVER_SERVICES.timeoutMillis, gatt.wakeIn);
+        for (int i = 0; i < GattScheduler.MAX_ATTEMPTS; i++) {
+            assertEquals(GattScheduler.Kind.DISCOVER_SERVICES, gatt.last());
+            alarm();
+        }
+        assertEquals(GattScheduler.MAX_ATTEMPTS, gatt.started.size() - 1);
+        assertEquals(GattScheduler.MAX_ATTEMPTS, scheduler.getTimeouts(GattScheduler.Kind.DISCOVER_SERVICES));
+        assertEquals(1, scheduler.getGivenUp(GattScheduler.Kind.DISCOVER_SERVICES));
+        assertEquals(GattScheduler.Kind.WRITE_DESCRIPTOR, gatt.last());
+        // its late callback isn't taken for the descriptor write's
+        assertFalse(scheduler.completed(GattScheduler.Kind.DISCOVER_SERVICES));
+    }
+
+    @Test
+    public void dropsATimedOutRtcmWrite() {
+        gatt.rtcm.add(new byte[10]);
+        gatt.rtcm.add(new byte[20]);
+        scheduler.rtcmAvailable();
+        alarm();
+        assertEquals(1, gatt.givenUp.size());
+        assertEquals(10, gatt.givenUp.get(0).data.length);
+        assertEquals(20, gatt.started.get(1).data.length);
+
+        // the stack took it, so there is nothing to hand back
+        assertNull(scheduler.reset());
+        assertFalse(scheduler.completed(GattScheduler.Kind.RTCM_WRITE));
+        // a stale wake-up after the reset does nothing
+        scheduler.onAlarm();
+        assertEquals(2, gatt.started.size());
+    }
+
+    @Test
+    public void lateCallbackDoesNotCompleteTheNextWrite() {
+        gatt.rtcm.add(new byte[10]);
+        gatt.rtcm.add(new byte[20]);
+        gatt.rtcm.add(new byte[30]);
+        scheduler.rtcmAvailable();
+        alarm();
+        assertEquals(20, gatt.started.get(1).data.length);
+        List<Integer> settled = new ArrayList<>();
+
+        // the first write's callback, after its timeout
+        assertFalse(scheduler.completed(GattScheduler.Kind.RTCM_WRITE, settled::add, 1));
+        assertTrue(settled.isEmpty());
+        assertEquals(2, gatt.started.size());
+        assertEquals(1, scheduler.getLateCallbacks(GattScheduler.Kind.RTCM_WRITE));
+
+        assertTrue(scheduler.completed(GattScheduler.Kind.RTCM_WRITE, settled::add, 0));
+        assertEquals(1, settled.size());
+        assertEquals(30, gatt.started.get(2).data.length);
+    }
+
+    @Test
+    public void recoversWhenALateCallbackNeverComes() {
+        gatt.rtcm.add(new byte[10]);
+        gatt.rtcm.add(new byte[20]);
+        gatt.rtcm.add(new byte[30]);
+        scheduler.rtcmAvailable();
+        alarm();
+        // the first write's callback never comes, so the second's is taken for it
+        assertFalse(scheduler.completed(GattScheduler.Kind.RTCM_WRITE));
+        alarm();
+        assertEquals(2, gatt.givenUp.size());
+        assertEquals(30, gatt.started.get(2).data.length);
+        // the second write isn't owed a callback, so the third's is its own
+        assertTrue(scheduler.completed(GattScheduler.Kind.RTCM_WRITE));
+    }
+}
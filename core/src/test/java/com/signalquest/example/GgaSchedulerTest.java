@@ -0,0 +1,64 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GgaScheduler} sends on movement, fix quality changes and the maximum interval only.
+ */
+public class GgaSchedulerTest {
+    private static final long SECOND = 1_000_000_000L;
+    // about 11m of latitude
+    private static final double STEP = 0.0001;
+    private final GgaScheduler scheduler = new GgaScheduler(100, 30 * 1000);
+
+    private GgaScheduler.Reason sendIfDue(long now, double latitude, double longitude, int quality) {
+        GgaScheduler.Reason reason = scheduler.due(now, latitude, longitude, quality);
+        if (reason != null) {
+            scheduler.sent(reason, now, latitude, longitude, quality);
+        }
+        return reason;
+    }
+
+    @Test
+    public void stationaryRoverOnlySendsAtTheMaximumInterval() {
+        assertEquals(GgaScheduler.Reason.FIRST, sendIfDue(0, 39.7, -105.0, NmeaEncoder.QUALITY_RTK_FIXED));
+        int sent = 0;
+        for (long t = 1; t <= 120; t++) {
+            // jitter of a few centimetres
+            if (sendIfDue(t * SECOND, 39.7 + (t % 2) * 1e-7, -105.0, NmeaEncoder.QUALITY_RTK_FIXED) != null) {
+                sent++;
+            }
+        }
+        assertEquals(4, sent);
+        assertEquals(4, scheduler.getSent(GgaScheduler.Reason.INTERVAL));
+    }
+
+    @Test
+    public void movingRoverSendsEveryHundredMetres() {
+        sendIfDue(0, 39.7, -105.0, NmeaEncoder.QUALITY_RTK_FIXED);
+        // 30 m/s north, for 10 s
+        for (long t = 1; t <= 10; t++) {
+            sendIfDue(t * SECOND, 39.7 + t * 3 * STEP * 0.9, -105.0, NmeaEncoder.QUALITY_RTK_FIXED);
+        }
+        assertEquals(2, scheduler.getSent(GgaScheduler.Reason.MOVED));
+        assertEquals(0, scheduler.getSent(GgaScheduler.Reason.INTERVAL));
+    }
+
+    @Test
+    public void qualityChangeSendsAndResetStartsOver() {
+        sendIfDue(0, 39.7, -105.0, NmeaEncoder.QUALITY_RTK_FLOAT);
+        assertNull(sendIfDue(SECOND, 39.7, -105.0, NmeaEncoder.QUALITY_RTK_FLOAT));
+        assertEquals(GgaScheduler.Reason.QUALITY, sendIfDue(2 * SECOND, 39.7, -105.0, NmeaEncoder.QUALITY_RTK_FIXED));
+        scheduler.reset();
+        assertEquals(GgaScheduler.Reason.FIRST, sendIfDue(3 * SECOND, 39.7, -105.0, NmeaEncoder.QUALITY_RTK_FIXED));
+    }
+
+    @Test
+    public void measuresAcrossTheAntimeridian() {
+        sendIfDue(0, 0.0, 179.9999, NmeaEncoder.QUALITY_GPS);
+        // 0.0002 degrees, about 22 m, apart
+        assertNull(sendIfDue(SECOND, 0.0, -179.9999, NmeaEncoder.QUALITY_GPS));
+    }
+}
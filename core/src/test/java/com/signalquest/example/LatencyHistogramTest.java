@@ -0,0 +1,85 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link LatencyHistogram} bucketing and percentile accuracy.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        int previous = -1;
+        for (long micros = 0; micros <= LatencyHistogram.MAX_MICROS; micros += 1 + micros / 64) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(bucket >= previous);
+            assertTrue(micros + " above its bucket's top", micros <= LatencyHistogram.bucketTop(bucket));
+            if (bucket > 0) {
+                assertTrue(micros + " below its bucket", micros > LatencyHistogram.bucketTop(bucket - 1));
+            }
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.SUB_BUCKETS, LatencyHistogram.bucket(LatencyHistogram.SUB_BUCKETS));
+        assertEquals(LatencyHistogram.MAX_MICROS, LatencyHistogram.bucketTop(LatencyHistogram.bucket(LatencyHistogram.MAX_MICROS)));
+    }
+
+    @Test
+    public void percentilesAreWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal-ish, like real latencies: mostly milliseconds, with a long tail
+            values[i] = (long) Math.exp(7 + random.nextGaussian() * 1.5);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{50, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.percentileMicros(percentile);
+            assertTrue(percentile + ": " + estimate + " < " + exact, estimate >= exact);
+            assertTrue(percentile + ": " + estimate + " vs " + exact, estimate <= exact * 1.07);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxMicros());
+        assertEquals(histogram.getMaxMicros(), histogram.percentileMicros(100));
+    }
+
+    @Test
+    public void clampsAndConvertsNanos() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-5);
+        histogram.recordNanos(1_500_000);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(3, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(1));
+        assertEquals(LatencyHistogram.MAX_MICROS, histogram.getMaxMicros());
+        assertEquals(1500.0, histogram.percentileMicros(50), 1500.0 / 16);
+    }
+
+    @Test
+    public void addsAndClears() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            a.record(i);
+            b.record(1000 + i);
+        }
+        a.add(b);
+        assertEquals(200, a.getCount());
+        assertEquals(1100, a.getMaxMicros());
+        assertEquals(550, a.getMeanMicros());
+        assertTrue(a.percentileMicros(50) < 1000);
+        assertTrue(a.percentileMicros(51) > 1000);
+
+        a.clear();
+        assertEquals(0, a.getCount());
+        assertEquals(0, a.getMaxMicros());
+        assertEquals(0, a.percentileMicros(99));
+        assertEquals("n=0 p50=0.00ms p99=0.00ms p99.9=0.00ms max=0.00ms", a.toString());
+    }
+}
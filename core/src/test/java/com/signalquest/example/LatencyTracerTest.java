@@ -0,0 +1,148 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link LatencyTracer} times frames through the primary SitePoint's
+ * {@link CorrectionFanout.Cursor} and a write, and files the samples under the aiding quality of the
+ * status that follows them.
+ */
+public class LatencyTracerTest {
+    private static final long MILLISECOND = 1_000_000L;
+    private long now = 0;
+    private final LatencyTracer tracer = new LatencyTracer(() -> now);
+    private final CorrectionFanout fanout = new CorrectionFanout(4096, 244, 5000, () -> now);
+    private final CorrectionFanout.Cursor primary = fanout.newCursor();
+    // another SitePoint's, not traced
+    private final CorrectionFanout.Cursor other = fanout.newCursor();
+
+    {
+        primary.setTracer(tracer);
+    }
+
+    private static boolean[] aiding(int level) {
+        boolean[] bins = new boolean[LatencyTracer.AIDING_BINS];
+        for (int i = 0; i < level; i++) {
+            bins[i] = true;
+        }
+        return bins;
+    }
+
+    /**
+     * One frame read at the current time, queued 1ms later, dequeued after {@code waitMillis} and
+     * written in {@code writeMillis}.
+     */
+    private void relay(long waitMillis, long writeMillis) {
+        byte[] frame = RtcmTestFrames.frame(1077, 100);
+        long readAt = now;
+        now += MILLISECOND;
+        fanout.offer(frame, 0, frame.length, readAt);
+        tracer.record(LatencyTracer.Hop.SOCKET_TO_PARSED, now - readAt);
+        now += waitMillis * MILLISECOND;
+        primary.recycle(primary.next(244));
+        other.recycle(other.next(244));
+        tracer.writeStarted();
+        now += writeMillis * MILLISECOND;
+        tracer.writeCompleted();
+        now += 100 * MILLISECOND;
+    }
+
+    @Test
+    public void timesEachHop() {
+        relay(10, 20);
+        assertEquals(1, tracer.getCount(LatencyTracer.Hop.QUEUE_WAIT));
+        assertEquals(1, tracer.getCount(LatencyTracer.Hop.END_TO_END));
+        // from the socket read, not from being queued
+        assertEquals(11, tracer.summary(LatencyTracer.Hop.QUEUE_WAIT)[3] / 1000);
+        assertEquals(20, tracer.summary(LatencyTracer.Hop.GATT_WRITE)[3] / 1000);
+        assertEquals(31, tracer.summary(LatencyTracer.Hop.END_TO_END)[3] / 1000);
+        assertEquals(1, tracer.summary(LatencyTracer.Hop.SOCKET_TO_PARSED)[3] / 1000);
+    }
+
+    @Test
+    public void timesAWriteFromItsOldestFrame() {
+        byte[] frame = RtcmTestFrames.frame(1077, 50);
+        fanout.offer(frame, 0, frame.length);
+        now += 30 * MILLISECOND;
+        fanout.offer(frame, 0, frame.length);
+        primary.next(244);
+        tracer.writeStarted();
+        now += 5 * MILLISECOND;
+        tracer.writeCompleted();
+        assertEquals(2, tracer.getCount(LatencyTracer.Hop.QUEUE_WAIT));
+        assertEquals(1, tracer.getCount(LatencyTracer.Hop.END_TO_END));
+        assertEquals(35, tracer.summary(LatencyTracer.Hop.END_TO_END)[3] / 1000);
+
+        // a callback without a write in flight, and a write without a dequeue, aren't end to end
+        tracer.writeCompleted();
+        tracer.writeStarted();
+        tracer.writeCompleted();
+        assertEquals(2, tracer.getCount(LatencyTracer.Hop.GATT_WRITE));
+        assertEquals(1, tracer.getCount(LatencyTracer.Hop.END_TO_END));
+    }
+
+    @Test
+    public void tracesWhicheverCursorIsPrimary() {
+        primary.setTracer(null);
+        other.setTracer(tracer);
+        relay(10, 20);
+        relay(30, 20);
+        assertEquals(2, tracer.getCount(LatencyTracer.Hop.QUEUE_WAIT));
+        assertEquals(2, tracer.getCount(LatencyTracer.Hop.END_TO_END));
+        assertEquals(51, tracer.summary(LatencyTracer.Hop.END_TO_END)[3] / 1000);
+    }
+
+    @Test
+    public void filesSamplesUnderTheNextStatusesAiding() {
+        for (int i = 0; i < 10; i++) {
+            relay(5, 5);
+        }
+        tracer.onAidingQuality(aiding(LatencyTracer.AIDING_BINS));
+        for (int i = 0; i < 10; i++) {
+            relay(500, 5);
+        }
+        tracer.onAidingQuality(aiding(2));
+        // nothing new since the last status
+        tracer.onAidingQuality(aiding(2));
+
+        long[] aided = tracer.summary(LatencyTracer.Hop.END_TO_END, LatencyTracer.AIDING_BINS);
+        long[] poorlyAided = tracer.summary(LatencyTracer.Hop.END_TO_END, 2);
+        assertEquals(11, aided[3] / 1000);
+        assertEquals(506, poorlyAided[3] / 1000);
+        assertEquals(0, tracer.summary(LatencyTracer.Hop.END_TO_END, 0)[3]);
+        assertEquals(20, tracer.getCount(LatencyTracer.Hop.END_TO_END));
+
+        String report = tracer.report();
+        assertTrue(report, report.contains("aiding 8/8 (1 statuses)"));
+        assertTrue(report, report.contains("aiding 2/8 (2 statuses)"));
+        assertFalse(report, report.contains("aiding 0/8"));
+    }
+
+    @Test
+    public void exportsEveryHistogram() throws Exception {
+        relay(10, 20);
+        tracer.onAidingQuality(aiding(3));
+        File file = File.createTempFile("latency", ".csv");
+        try {
+            tracer.export(file);
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            int hops = LatencyTracer.Hop.values().length;
+            assertEquals(1 + hops + (LatencyTracer.AIDING_BINS + 1) * hops, lines.size());
+            assertTrue(lines.contains("END_TO_END,all,0,1,31000,31000,31000,31000,31000"));
+            assertTrue(lines.contains("END_TO_END,3,1,1,31000,31000,31000,31000,31000"));
+        } finally {
+            assertTrue(file.delete());
+        }
+
+        tracer.clear();
+        assertEquals(0, tracer.getCount(LatencyTracer.Hop.END_TO_END));
+        assertFalse(tracer.report().contains("aiding"));
+    }
+}
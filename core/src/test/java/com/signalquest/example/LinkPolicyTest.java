@@ -0,0 +1,102 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link LinkPolicy} goes fast while aiding on a good signal, falls back when idle or weak,
+ * and doesn't flap.
+ */
+public class LinkPolicyTest {
+    private static final long SECOND = 1_000_000_000L;
+    private long now = 0;
+    private long rtcm = 0;
+    // weak under -85, strong over -75, idle after 5s, hold for 10s
+    private final LinkPolicy policy = new LinkPolicy(-85, -75, 5000, 10000, () -> now);
+
+    /**
+     * Two seconds pass, with {@code bytes} more RTCM written, then a sample.
+     */
+    private boolean sample(int rssi, long bytes) {
+        now += 2 * SECOND;
+        rtcm += bytes;
+        return policy.update(rssi, rtcm);
+    }
+
+    @Test
+    public void goesFastWhileAiding() {
+        assertFalse(sample(-60, 0));
+        assertEquals(LinkPolicy.Mode.BALANCED, policy.getMode());
+        assertTrue(sample(-60, 5000));
+        assertEquals(LinkPolicy.Mode.FAST, policy.getMode());
+        assertTrue(policy.isAiding());
+    }
+
+    @Test
+    public void fallsBackWhenRtcmStops() {
+        sample(-60, 5000);
+        sample(-60, 0);
+        sample(-60, 0);
+        assertTrue(policy.isAiding());
+        // 6s without RTCM
+        sample(-60, 0);
+        assertFalse(policy.isAiding());
+        // once the setting's been held 10s
+        sample(-60, 0);
+        assertTrue(sample(-60, 0));
+        assertEquals(LinkPolicy.Mode.BALANCED, policy.getMode());
+    }
+
+    @Test
+    public void fallsBackOnAWeakSignalWithHysteresis() {
+        sample(-70, 5000);
+        assertEquals(LinkPolicy.Mode.FAST, policy.getMode());
+        // one bad reading is smoothed over
+        assertFalse(sample(-100, 1000));
+        assertFalse(policy.isWeak());
+        for (int i = 0; i < 4; i++) {
+            sample(-100, 1000);
+        }
+        assertTrue(policy.isWeak());
+        assertEquals(LinkPolicy.Mode.BALANCED, policy.getMode());
+        assertTrue(policy.getRssi() < -85);
+
+        // between the thresholds stays weak
+        for (int i = 0; i < 10; i++) {
+            sample(-80, 1000);
+        }
+        assertEquals(-80, policy.getRssi(), 1);
+        assertTrue(policy.isWeak());
+        assertEquals(LinkPolicy.Mode.BALANCED, policy.getMode());
+        for (int i = 0; i < 10; i++) {
+            sample(-65, 1000);
+        }
+        assertFalse(policy.isWeak());
+        assertEquals(LinkPolicy.Mode.FAST, policy.getMode());
+    }
+
+    @Test
+    public void holdsEachSettingBeforeChanging() {
+        assertTrue(sample(-60, 5000));
+        // idle from here; it would fall back after 5s, but holds for 10s
+        int samples = 1;
+        while (!sample(-60, 0)) {
+            samples++;
+        }
+        assertEquals(5, samples);
+        assertEquals(LinkPolicy.Mode.BALANCED, policy.getMode());
+        // and aiding again is held off just as long
+        assertFalse(sample(-60, 5000));
+    }
+
+    @Test
+    public void startsOverBalanced() {
+        sample(-60, 5000);
+        policy.reset();
+        assertEquals(LinkPolicy.Mode.BALANCED, policy.getMode());
+        assertFalse(sample(-60, 0));
+        // no hold carried over from the last connection
+        assertTrue(sample(-60, 5000));
+    }
+}
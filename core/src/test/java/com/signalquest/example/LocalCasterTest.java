@@ -0,0 +1,161 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link LocalCaster} test fixture speaks NTRIP 1 and 2 as the client expects, and that
+ * its {@link SyntheticRtcm} streams frame cleanly at their rate.
+ */
+public class LocalCasterTest {
+    private static final String MOUNTPOINT = "SYNTH";
+
+    /**
+     * What the client sees of a response: the header, and the RTCM frames after it.
+     */
+    private static class Response implements NtripResponseDecoder.Listener, Rtcm3Framer.FrameListener {
+        final NtripResponseDecoder decoder = new NtripResponseDecoder(this);
+        final Rtcm3Framer framer = new Rtcm3Framer(this);
+        final List<Integer> types = new ArrayList<>();
+        String header;
+        boolean accepted;
+
+        @Override
+        public void onHeader(byte[] header, int length, boolean accepted) {
+            this.header = new String(header, 0, length, StandardCharsets.US_ASCII);
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void onPayload(byte[] buffer, int offset, int length) {
+            framer.feed(buffer, offset, length);
+        }
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length, int messageType) {
+            types.add(messageType);
+        }
+    }
+
+    /**
+     * Sends the request and decodes the response until {@code frames} frames or the end of the stream.
+     */
+    private static Response exchange(LocalCaster caster, byte[] request, int frames) throws IOException {
+        Response response = new Response();
+        try (Socket socket = new Socket("127.0.0.1", caster.getPort())) {
+            socket.getOutputStream().write(request);
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while (response.types.size() < frames && (read = in.read(buffer)) != -1) {
+                response.decoder.decode(buffer, 0, read);
+            }
+        }
+        return response;
+    }
+
+    @Test
+    public void streamsToAnNtrip2Client() throws IOException {
+        SyntheticRtcm rtcm = SyntheticRtcm.msm7Base();
+        try (LocalCaster caster = new LocalCaster("user", "pass").mount(MOUNTPOINT, rtcm, 20, 1)) {
+            Response response = exchange(caster, NtripRequest.stream("127.0.0.1", MOUNTPOINT, "user", "pass"), 15);
+            assertTrue(response.header, response.accepted);
+            assertTrue(response.decoder.isChunked());
+            // station, then the four MSM7s, then the MSM7s again
+            assertEquals(1005, (int) response.types.get(0));
+            assertEquals(1077, (int) response.types.get(1));
+            assertEquals(1127, (int) response.types.get(4));
+            assertEquals(1077, (int) response.types.get(5));
+            assertEquals(0, response.framer.getCrcFailures());
+        }
+    }
+
+    @Test
+    public void streamsToAnNtrip1Client() throws IOException {
+        try (LocalCaster caster = new LocalCaster("user", "pass").mount(MOUNTPOINT, SyntheticRtcm.msm4Base(), 20, 1)) {
+            String auth = "Authorization: Basic dXNlcjpwYXNz\r\n";
+            Response response = exchange(caster, ("GET /" + MOUNTPOINT + " HTTP/1.0\r\nUser-Agent: NTRIP Test\r\n" + auth + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII), 3);
+            assertTrue(response.header, response.header.startsWith("ICY 200 OK"));
+            assertFalse(response.decoder.isChunked());
+            assertEquals(3, response.types.size());
+            assertEquals(1074, (int) response.types.get(1));
+            assertEquals(1084, (int) response.types.get(2));
+        }
+    }
+
+    @Test
+    public void refusesBadCredentialsAndUnknownMountpoints() throws IOException {
+        try (LocalCaster caster = new LocalCaster("user", "pass").mount(MOUNTPOINT, SyntheticRtcm.msm4Base(), 1, 1)) {
+            Response refused = exchange(caster, NtripRequest.stream("127.0.0.1", MOUNTPOINT, "user", "wrong"), 1);
+            assertFalse(refused.accepted);
+            assertEquals(401, refused.decoder.getStatusCode());
+            Response unknown = exchange(caster, NtripRequest.stream("127.0.0.1", "NOPE", "user", "pass"), 1);
+            assertEquals(404, unknown.decoder.getStatusCode());
+            assertEquals(2, caster.getRefused());
+            assertEquals(0, caster.getBytesSent());
+        }
+    }
+
+    @Test
+    public void answersSourcetableRequests() throws IOException {
+        try (LocalCaster caster = new LocalCaster("user", "pass").mount(MOUNTPOINT, SyntheticRtcm.msm7Base(), 1, 1)) {
+            byte[] response = readAll(caster, NtripRequest.sourcetable("127.0.0.1", "user", "pass"));
+            String text = new String(response, StandardCharsets.US_ASCII);
+            assertTrue(text, text.startsWith("HTTP/1.1 200 OK"));
+            int body = text.indexOf("\r\n\r\n") + 4;
+            Sourcetable table = Sourcetable.parse(new ByteArrayInputStream(response, body, response.length - body));
+            assertEquals(1, table.streams.size());
+            assertEquals(MOUNTPOINT, table.streams.get(0).mountpoint);
+            assertTrue(table.streams.get(0).isRtcm3());
+        }
+    }
+
+    @Test
+    public void keepsItsRateInBursts() throws Exception {
+        try (LocalCaster caster = new LocalCaster("user", "pass").mount(MOUNTPOINT, SyntheticRtcm.msm7Base(), 10, 2)) {
+            long start = System.nanoTime();
+            // 10 bursts of 2 epochs of 5 or 4 frames, at 10 Hz: about a second
+            Response response = exchange(caster, NtripRequest.stream("127.0.0.1", MOUNTPOINT, "user", "pass"), 82);
+            long millis = (System.nanoTime() - start) / 1_000_000L;
+            assertTrue(millis + "ms", millis >= 800 && millis < 3000);
+            assertEquals(0, response.framer.getCrcFailures());
+            assertEquals(0, caster.getLateEpochs());
+        }
+    }
+
+    @Test
+    public void sizesMsmsLikeARealBase() {
+        // 10 satellites on 2 signals: 169 + 20 + 10 * 36 + 20 * 80 bits
+        assertEquals(269, SyntheticRtcm.msmPayloadLength(7, 10, 2));
+        assertEquals(80, SyntheticRtcm.msmPayloadLength(4, 7, 1));
+        assertEquals("1005(10),1074(1),1084(1)", SyntheticRtcm.msm4Base().getFormatDetails());
+        SyntheticRtcm rtcm = SyntheticRtcm.msm4Base();
+        assertTrue(rtcm.epoch(0).length > rtcm.epoch(1).length);
+        assertSame(rtcm.epoch(0), rtcm.epoch(10));
+    }
+
+    private static byte[] readAll(LocalCaster caster, byte[] request) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", caster.getPort())) {
+            socket.getOutputStream().write(request);
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+            return response.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link MessageRing} hands messages over whole and in order, across the wrap, between threads,
+ * and drops rather than blocks when full.
+ */
+public class MessageRingTest {
+    private static byte[] message(int length, int seed) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (seed + i);
+        }
+        return message;
+    }
+
+    @Test
+    public void handsOverMessagesInOrder() {
+        MessageRing ring = new MessageRing(64, 20);
+        byte[] into = new byte[ring.getMaxMessageLength()];
+        assertEquals(-1, ring.poll(into));
+        assertTrue(ring.offer(message(5, 1), 0, 5));
+        assertTrue(ring.offer(message(10, 2), 2, 3));
+        assertEquals(12, ring.getOccupancy());
+        assertEquals(5, ring.poll(into));
+        assertArrayEquals(message(5, 1), Arrays.copyOf(into, 5));
+        assertEquals(3, ring.poll(into));
+        assertArrayEquals(new byte[]{4, 5, 6}, Arrays.copyOf(into, 3));
+        assertTrue(ring.isEmpty());
+        assertEquals(12, ring.getMaxOccupancy());
+    }
+
+    @Test
+    public void wrapsAroundTheEnd() {
+        MessageRing ring = new MessageRing(32, 20);
+        byte[] into = new byte[20];
+        for (int i = 0; i < 100; i++) {
+            int length = 1 + i % 20;
+            assertTrue(ring.offer(message(length, i), 0, length));
+            assertEquals(length, ring.poll(into));
+            assertArrayEquals(message(length, i), Arrays.copyOf(into, length));
+        }
+        assertEquals(0, ring.getDropped());
+    }
+
+    @Test
+    public void dropsWhenFullOrTooLong() {
+        MessageRing ring = new MessageRing(32, 20);
+        assertFalse(ring.offer(new byte[21], 0, 21));
+        assertTrue(ring.offer(new byte[14], 0, 14));
+        assertTrue(ring.offer(new byte[14], 0, 14));
+        // 32 bytes used, none left
+        assertFalse(ring.offer(new byte[0], 0, 0));
+        assertEquals(2, ring.getDropped());
+        assertEquals(2, ring.getOffered());
+        ring.poll(new byte[20]);
+        assertTrue(ring.offer(new byte[14], 0, 14));
+    }
+
+    @Test
+    public void handsOverBetweenThreads() throws InterruptedException {
+        MessageRing ring = new MessageRing(1024, 244);
+        int count = 200_000;
+        Thread producer = new Thread(() -> {
+            byte[] data = new byte[244];
+            for (int i = 0; i < count; i++) {
+                int length = 1 + i % 244;
+                Arrays.fill(data, 0, length, (byte) i);
+                while (!ring.offer(data, 0, length)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        byte[] into = new byte[244];
+        for (int i = 0; i < count; ) {
+            int length = ring.poll(into);
+            if (length < 0) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(1 + i % 244, length);
+            assertEquals((byte) i, into[0]);
+            assertEquals((byte) i, into[length - 1]);
+            i++;
+        }
+        producer.join();
+        assertTrue(ring.isEmpty());
+        assertTrue(ring.getMaxOccupancy() <= 1024);
+    }
+}
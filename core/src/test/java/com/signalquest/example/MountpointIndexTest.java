@@ -0,0 +1,55 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link MountpointIndex} finds the same stream as a linear search, anywhere on the globe.
+ */
+public class MountpointIndexTest {
+    private static Sourcetable.Stream stream(String mountpoint, double latitude, double longitude) {
+        return new Sourcetable.Stream(mountpoint, "", "RTCM 3.2", "GPS", "", "", latitude, longitude, false, false);
+    }
+
+    @Test
+    public void matchesLinearSearch() {
+        Random random = new Random(7);
+        List<Sourcetable.Stream> streams = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            streams.add(stream("M" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        MountpointIndex index = new MountpointIndex(streams);
+        assertEquals(5000, index.size());
+        for (int q = 0; q < 2000; q++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            Sourcetable.Stream closest = null;
+            for (Sourcetable.Stream stream : streams) {
+                if (closest == null || MountpointIndex.distanceKm(stream, latitude, longitude)
+                        < MountpointIndex.distanceKm(closest, latitude, longitude)) {
+                    closest = stream;
+                }
+            }
+            assertSame(closest, index.nearest(latitude, longitude));
+        }
+    }
+
+    @Test
+    public void handlesTheAntimeridianAndSkipsUnusableStreams() {
+        List<Sourcetable.Stream> streams = new ArrayList<>();
+        streams.add(stream("EAST", -17.0, 179.9));
+        streams.add(stream("WEST", -17.0, -170.0));
+        streams.add(stream("UNLOCATED", 0.0, 0.0));
+        streams.add(new Sourcetable.Stream("RTCM2", "", "RTCM 2.3", "GPS", "", "", -17.0, -179.9, false, false));
+        MountpointIndex index = new MountpointIndex(streams);
+        assertEquals(2, index.size());
+        assertEquals("EAST", index.nearest(-17.0, -179.9).mountpoint);
+        assertEquals(21.3, MountpointIndex.distanceKm(index.nearest(-17.0, -179.9), -17.0, -179.9), 0.1);
+        assertNull(new MountpointIndex(new ArrayList<>()).nearest(0, 0));
+    }
+}
@@ -0,0 +1,266 @@
+package com.signalquest.example;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link NioReactor} runs many connections and timers on its one thread, and that neither
+ * connecting over and over nor closing it leaves threads or file descriptors behind.
+ */
+public class NioReactorTest {
+    private static final int CYCLES = 1000;
+    private static final byte[] REQUEST = "GET /TEST HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final String HEADER = "ICY 200 OK\r\n\r\n";
+
+    @Test
+    public void connectDisconnectCyclesLeakNothing() throws Exception {
+        byte[] stream = RtcmTestFrames.frame(1005, 19);
+        try (FakeCaster caster = new FakeCaster(stream)) {
+            NioReactor reactor = new NioReactor("cycle reactor");
+            // warm up, so lazily created JDK internals aren't counted as leaks
+            for (int i = 0; i < 20; i++) {
+                cycle(reactor, caster.getPort());
+            }
+            int threads = Thread.activeCount();
+            long descriptors = openDescriptors();
+            for (int i = 0; i < CYCLES; i++) {
+                cycle(reactor, caster.getPort());
+            }
+            assertEquals(0, connectionCount(reactor));
+            // other tests' threads may still be ending, so the count can only have dropped
+            assertTrue("threads grew from " + threads + " to " + Thread.activeCount(), Thread.activeCount() <= threads);
+            assertEquals(1, threadsNamed("cycle reactor"));
+            // the caster may still be closing its end of the last connection or two
+            assertTrue("descriptors grew from " + descriptors + " to " + openDescriptors(),
+                    openDescriptors() <= descriptors + 4);
+            assertEquals(CYCLES + 20, caster.getConnections());
+
+            reactor.close();
+            assertEquals(0, threadsNamed("cycle reactor"));
+        }
+    }
+
+    @Test
+    public void servesConcurrentConnectionsOnOneThread() throws Exception {
+        byte[] first = RtcmTestFrames.frame(1005, 19);
+        byte[] second = RtcmTestFrames.concat(RtcmTestFrames.frame(1077, 200), RtcmTestFrames.frame(1087, 150));
+        try (FakeCaster casterA = new FakeCaster(first);
+             FakeCaster casterB = new FakeCaster(second);
+             NioReactor reactor = new NioReactor("shared reactor")) {
+            List<Recorder> recorders = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Recorder recorder = new Recorder(reactor);
+                reactor.connect("127.0.0.1", (i % 2 == 0 ? casterA : casterB).getPort(), recorder);
+                recorders.add(recorder);
+            }
+            for (int i = 0; i < recorders.size(); i++) {
+                Recorder recorder = recorders.get(i);
+                assertTrue(recorder.closed.await(5, TimeUnit.SECONDS));
+                assertTrue(recorder.error instanceof EOFException);
+                assertTrue(recorder.onReactorThread);
+                byte[] stream = i % 2 == 0 ? first : second;
+                assertEquals(HEADER.length() + stream.length, recorder.bytes.get());
+            }
+            assertEquals(0, connectionCount(reactor));
+        }
+    }
+
+    @Test
+    public void slowLookupHoldsUpNothingElse() throws Exception {
+        CountDownLatch lookupReleased = new CountDownLatch(1);
+        NioReactor.Resolver resolver = (host, port) -> {
+            if (host.equals("stalled.example")) {
+                try {
+                    lookupReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new UnknownHostException(host);
+            }
+            return new InetSocketAddress(host, port);
+        };
+        try (FakeCaster caster = new FakeCaster(RtcmTestFrames.frame(1005, 19));
+             NioReactor reactor = new NioReactor("lookup reactor", resolver)) {
+            Recorder stalled = new Recorder(reactor);
+            reactor.connect("stalled.example", 2101, stalled);
+            CountDownLatch ticked = new CountDownLatch(1);
+            reactor.schedule(ticked::countDown, 10);
+            Recorder other = new Recorder(reactor);
+            reactor.connect("127.0.0.1", caster.getPort(), other);
+
+            assertTrue(ticked.await(5, TimeUnit.SECONDS));
+            assertTrue(other.received.await(5, TimeUnit.SECONDS));
+            assertEquals(1, stalled.closed.getCount());
+            lookupReleased.countDown();
+            assertTrue(stalled.closed.await(5, TimeUnit.SECONDS));
+            assertTrue(stalled.error instanceof UnknownHostException);
+            assertTrue(stalled.onReactorThread);
+        }
+    }
+
+    @Test
+    public void timersRunInDeadlineOrderUntilCancelled() throws Exception {
+        try (NioReactor reactor = new NioReactor("timer reactor")) {
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(1);
+            reactor.schedule(() -> order.add(3), 30);
+            reactor.schedule(() -> order.add(1), 10);
+            reactor.schedule(() -> order.add(2), 20);
+            reactor.schedule(() -> order.add(-1), 15).cancel();
+            AtomicInteger ticks = new AtomicInteger();
+            NioReactor.Timer[] periodic = new NioReactor.Timer[1];
+            periodic[0] = reactor.schedule(() -> {
+                if (ticks.incrementAndGet() == 5) {
+                    periodic[0].cancel();
+                }
+            }, 1, 5);
+            reactor.schedule(done::countDown, 60);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(1, 2, 3), order);
+            assertEquals(5, ticks.get());
+        }
+    }
+
+    @Test
+    public void throwingTasksAndTimersLeaveTheReactorRunning() throws Exception {
+        try (NioReactor reactor = new NioReactor("failing reactor")) {
+            List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<>());
+            reactor.setFailureHandler(failures::add);
+            AtomicInteger ticks = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(1);
+            reactor.execute(() -> {
+                throw new IllegalStateException("task");
+            });
+            reactor.schedule(() -> {
+                throw new IllegalStateException("timer");
+            }, 5);
+            NioReactor.Timer periodic = reactor.schedule(() -> {
+                ticks.incrementAndGet();
+                throw new IllegalStateException("periodic");
+            }, 1, 5);
+            reactor.schedule(() -> {
+                periodic.cancel();
+                done.countDown();
+            }, 40);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            // a periodic timer keeps its schedule after throwing
+            assertTrue(ticks.get() > 1);
+            assertEquals(2 + ticks.get(), failures.size());
+            assertEquals(failures.size(), reactor.getFailures());
+            assertEquals(1, threadsNamed("failing reactor"));
+        }
+    }
+
+    @Test
+    public void closeEndsThreadAndClosesConnectionsQuietly() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            NioReactor reactor = new NioReactor("closing reactor");
+            Recorder recorder = new Recorder(reactor);
+            reactor.connect("127.0.0.1", server.getLocalPort(), recorder);
+            try (Socket accepted = server.accept()) {
+                assertTrue(recorder.connected.await(5, TimeUnit.SECONDS));
+                reactor.close();
+                assertEquals(0, threadsNamed("closing reactor"));
+                accepted.setSoTimeout(5000);
+                InputStream in = accepted.getInputStream();
+                byte[] request = new byte[REQUEST.length];
+                int read = 0;
+                while (read < request.length) {
+                    read += in.read(request, read, request.length - read);
+                }
+                assertEquals(-1, in.read());
+            }
+            // the listener isn't told about connections it didn't lose
+            assertNull(recorder.error);
+        }
+    }
+
+    private static void cycle(NioReactor reactor, int port) throws InterruptedException {
+        Recorder recorder = new Recorder(reactor);
+        NioReactor.Connection connection = reactor.connect("127.0.0.1", port, recorder);
+        assertTrue(recorder.received.await(5, TimeUnit.SECONDS));
+        connection.close();
+    }
+
+    private static int connectionCount(NioReactor reactor) throws InterruptedException {
+        int[] count = new int[1];
+        CountDownLatch counted = new CountDownLatch(1);
+        reactor.execute(() -> {
+            count[0] = reactor.getConnectionCount();
+            counted.countDown();
+        });
+        assertTrue(counted.await(5, TimeUnit.SECONDS));
+        return count[0];
+    }
+
+    private static long openDescriptors() {
+        return ((UnixOperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getOpenFileDescriptorCount();
+    }
+
+    private static int threadsNamed(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class Recorder implements NioReactor.Listener {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicInteger bytes = new AtomicInteger();
+        private final NioReactor reactor;
+        volatile boolean onReactorThread = true;
+        volatile Exception error;
+
+        Recorder(NioReactor reactor) {
+            this.reactor = reactor;
+        }
+
+        @Override
+        public void connected(NioReactor.Connection connection) {
+            onReactorThread &= reactor.isReactorThread();
+            connection.write(REQUEST);
+            connected.countDown();
+        }
+
+        @Override
+        public void handleData(NioReactor.Connection connection, byte[] buffer, int offset, int length) {
+            onReactorThread &= reactor.isReactorThread();
+            bytes.addAndGet(length);
+            received.countDown();
+        }
+
+        @Override
+        public void handleException(NioReactor.Connection connection, Exception e) {
+            onReactorThread &= reactor.isReactorThread();
+            error = e;
+            closed.countDown();
+        }
+    }
+}
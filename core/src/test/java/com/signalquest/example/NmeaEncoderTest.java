@@ -0,0 +1,74 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link NmeaEncoder} GGA fields, checksums and rounding, and that encoding doesn't allocate.
+ */
+public class NmeaEncoderTest {
+    private final NmeaEncoder encoder = new NmeaEncoder();
+
+    private static String text(ByteBuffer buffer) {
+        return new String(buffer.array(), buffer.position(), buffer.remaining(), StandardCharsets.US_ASCII);
+    }
+
+    private static void assertChecksum(String sentence) {
+        int star = sentence.indexOf('*');
+        int checksum = 0;
+        for (int i = 1; i < star; i++) {
+            checksum ^= sentence.charAt(i);
+        }
+        assertEquals(String.format("%02X", checksum), sentence.substring(star + 1, star + 3));
+        assertTrue(sentence.endsWith("\r\n"));
+    }
+
+    @Test
+    public void encodesGga() {
+        // 12:35:19.5 UTC
+        long utc = ((12 * 60 + 35) * 60 + 19) * 1000L + 500;
+        String gga = text(encoder.encodeGga(utc, 48.1173, 11.516666667, NmeaEncoder.QUALITY_RTK_FIXED, 12, 0.9, 545.4, 46.9));
+        assertEquals("$GPGGA,123519.50,4807.0380000,N,01131.0000000,E,4,12,0.9,545.400,M,46.900,M,,*", gga.substring(0, gga.indexOf('*') + 1));
+        assertChecksum(gga);
+    }
+
+    @Test
+    public void handlesSouthWestNegativeHeightsAndRounding() {
+        String gga = text(encoder.encodeGga(-1000, -33.999999999999, -151.5, NmeaEncoder.QUALITY_RTK_FLOAT, 7, 1.0, -12.3456, -0.5));
+        String[] fields = gga.split(",");
+        // a negative time wraps to the previous day
+        assertEquals("235959.00", fields[1]);
+        // 59.99999999994 minutes rounds up into the next degree
+        assertEquals("3400.0000000", fields[2]);
+        assertEquals("S", fields[3]);
+        assertEquals("15130.0000000", fields[4]);
+        assertEquals("W", fields[5]);
+        assertEquals("5", fields[6]);
+        assertEquals("07", fields[7]);
+        assertEquals("-12.346", fields[9]);
+        assertEquals("-0.500", fields[11]);
+        assertChecksum(gga);
+    }
+
+    @Test
+    public void encodingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 10_000; i++) {
+            encoder.encodeGga(i * 1000L, 39.7 + i * 1e-7, -105.0, 4, 20, 0.8, 1609.3, -17.1);
+        }
+        int sentences = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < sentences; i++) {
+            encoder.encodeGga(i * 1000L, 39.7 + i * 1e-7, -105.0, 4, 20, 0.8, 1609.3, -17.1);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes for " + sentences + " sentences", allocated / sentences < 1);
+    }
+}
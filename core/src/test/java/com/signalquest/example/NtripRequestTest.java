@@ -0,0 +1,30 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link NtripRequest} builds NTRIP 2 requests a caster accepts.
+ */
+public class NtripRequestTest {
+
+    @Test
+    public void requestsAMountpointsStream() {
+        String request = new String(NtripRequest.stream("caster.example.com", "MOUNT", "user", "pass"), StandardCharsets.US_ASCII);
+        assertTrue(request, request.startsWith("GET /MOUNT HTTP/1.1\r\nHost: caster.example.com\r\nNtrip-Version: Ntrip/2.0\r\n"));
+        // base64 of user:pass
+        assertTrue(request, request.contains("\r\nAuthorization: Basic dXNlcjpwYXNz\r\n"));
+        assertTrue(request, request.endsWith("\r\n\r\n"));
+        assertEquals("/MOUNT", NtripRequest.slashed("/MOUNT"));
+    }
+
+    @Test
+    public void requestsTheSourcetable() {
+        String request = new String(NtripRequest.sourcetable("caster.example.com", "user", "pass"), StandardCharsets.US_ASCII);
+        assertTrue(request, request.startsWith("GET / HTTP/1.1\r\nHost: caster.example.com\r\n"));
+        assertTrue(request, request.contains("\r\nAuthorization: Basic dXNlcjpwYXNz\r\n"));
+    }
+}
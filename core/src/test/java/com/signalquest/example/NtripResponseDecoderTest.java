@@ -0,0 +1,155 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link NtripResponseDecoder} against NTRIP 1 and 2 responses, split across reads every way.
+ */
+public class NtripResponseDecoderTest {
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private String header;
+    private boolean accepted;
+    private final NtripResponseDecoder decoder = new NtripResponseDecoder(new NtripResponseDecoder.Listener() {
+        @Override
+        public void onHeader(byte[] buffer, int length, boolean streaming) {
+            assertNull("header reported twice", header);
+            header = new String(buffer, 0, length, StandardCharsets.US_ASCII);
+            accepted = streaming;
+        }
+
+        @Override
+        public void onPayload(byte[] buffer, int offset, int length) {
+            assertNotNull("payload before header", header);
+            payload.write(buffer, offset, length);
+        }
+    });
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] chunk(byte[] data, int offset, int length) {
+        return RtcmTestFrames.concat(ascii(Integer.toHexString(length) + "\r\n"),
+                Arrays.copyOfRange(data, offset, offset + length), ascii("\r\n"));
+    }
+
+    private void decodeInReadsOf(byte[] response, int readLength) throws ProtocolException {
+        decoder.reset();
+        header = null;
+        payload.reset();
+        for (int i = 0; i < response.length; i += readLength) {
+            decoder.decode(response, i, Math.min(readLength, response.length - i));
+        }
+    }
+
+    @Test
+    public void passesRtcmInTheHeaderReadStraightThrough() throws ProtocolException {
+        byte[] rtcm = RtcmTestFrames.concat(RtcmTestFrames.frame(1005, 19), RtcmTestFrames.frame(1077, 120));
+        byte[] response = RtcmTestFrames.concat(ascii("ICY 200 OK\r\n\r\n"), rtcm);
+        decodeInReadsOf(response, response.length);
+        assertEquals("ICY 200 OK\r\n\r\n", header);
+        assertTrue(accepted);
+        assertArrayEquals(rtcm, payload.toByteArray());
+    }
+
+    @Test
+    public void handlesIcyWithoutBlankLine() throws ProtocolException {
+        byte[] rtcm = RtcmTestFrames.frame(1074, 60);
+        byte[] response = RtcmTestFrames.concat(ascii("ICY 200 OK\r\n"), rtcm);
+        for (int readLength = 1; readLength <= response.length; readLength++) {
+            decodeInReadsOf(response, readLength);
+            assertTrue(accepted);
+            assertArrayEquals(rtcm, payload.toByteArray());
+        }
+    }
+
+    @Test
+    public void stripsChunkFramingAcrossAnySplit() throws ProtocolException {
+        byte[] rtcm = RtcmTestFrames.concat(RtcmTestFrames.frame(1005, 19), RtcmTestFrames.frame(1087, 300));
+        byte[] response = RtcmTestFrames.concat(
+                ascii("HTTP/1.1 200 OK\r\nNtrip-Version: Ntrip/2.0\r\nTransfer-Encoding: chunked\r\n\r\n"),
+                chunk(rtcm, 0, 10),
+                chunk(rtcm, 10, 200),
+                chunk(rtcm, 210, rtcm.length - 210),
+                ascii("0\r\n\r\n"),
+                RtcmTestFrames.frame(1005, 19));
+        for (int readLength = 1; readLength <= response.length; readLength++) {
+            decodeInReadsOf(response, readLength);
+            assertTrue(decoder.isChunked());
+            assertArrayEquals("read length " + readLength, rtcm, payload.toByteArray());
+        }
+    }
+
+    @Test
+    public void passesNoPayloadForFailures() throws ProtocolException {
+        decodeInReadsOf(ascii("HTTP/1.1 401 Unauthorized\r\nContent-Length: 5\r\n\r\nnope!"), 7);
+        assertFalse(accepted);
+        assertEquals(401, decoder.getStatusCode());
+        assertEquals(0, payload.size());
+        decodeInReadsOf(ascii("SOURCETABLE 200 OK\r\n\r\nSTR;MOUNT;\r\nENDSOURCETABLE\r\n"), 64);
+        assertFalse(accepted);
+        assertTrue(header.startsWith("SOURCETABLE"));
+        assertEquals(0, payload.size());
+    }
+
+    @Test
+    public void refusesAnNtrip2SourcetableForAStream() throws IOException {
+        byte[] response;
+        try (LocalCaster caster = new LocalCaster("user", "pass").mount("MOUNT", SyntheticRtcm.msm4Base(), 1, 1);
+             Socket socket = new Socket("127.0.0.1", caster.getPort())) {
+            // how an NTRIP 2 caster answers a mountpoint it doesn't know: 200 OK, with the table
+            socket.getOutputStream().write(NtripRequest.sourcetable("127.0.0.1", "user", "pass"));
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                read.write(buffer, 0, length);
+            }
+            response = read.toByteArray();
+        }
+        decodeInReadsOf(response, 64);
+        assertEquals(200, decoder.getStatusCode());
+        assertTrue(header, header.contains("gnss/sourcetable"));
+        assertFalse(accepted);
+        assertEquals(0, payload.size());
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        NtripResponseDecoder tableDecoder = new NtripResponseDecoder(new NtripResponseDecoder.Listener() {
+            @Override
+            public void onHeader(byte[] buffer, int length, boolean streaming) {
+                assertTrue(streaming);
+            }
+
+            @Override
+            public void onPayload(byte[] buffer, int offset, int length) {
+                table.write(buffer, offset, length);
+            }
+        }, true);
+        tableDecoder.decode(response, 0, response.length);
+        assertTrue(new String(table.toByteArray(), StandardCharsets.US_ASCII).contains("STR;MOUNT;"));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void rejectsNonNtripResponses() throws ProtocolException {
+        decodeInReadsOf(ascii("SSH-2.0-OpenSSH_9.6\r\n"), 64);
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void rejectsEndlessHeaders() throws ProtocolException {
+        byte[] response = new byte[NtripResponseDecoder.MAX_HEADER_LENGTH + 100];
+        Arrays.fill(response, (byte) 'a');
+        System.arraycopy(ascii("HTTP/1.1 200 OK\r\n"), 0, response, 0, 17);
+        decodeInReadsOf(response, 512);
+    }
+}
@@ -0,0 +1,90 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives an {@link NioReactor} connection against a {@link FakeCaster} that drops every connection, and checks
+ * the {@link Reconnector} brings the stream back each time and measures the outages.
+ */
+public class ReconnectorTest {
+    private static final int DROPS = 3;
+    private static final byte[] REQUEST = "GET /TEST HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void backoffGrowsWithJitterAndResets() {
+        Backoff backoff = new Backoff(100, 1000, new Random(1));
+        long[] windows = {100, 200, 400, 800, 1000, 1000};
+        for (long window : windows) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay >= window / 2 && delay <= window);
+        }
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+
+    @Test
+    public void reconnectsAfterEachDrop() throws Exception {
+        byte[] stream = RtcmTestFrames.concat(RtcmTestFrames.frame(1005, 19), RtcmTestFrames.frame(1077, 200));
+        try (FakeCaster caster = new FakeCaster(stream)) {
+            Client client = new Client(caster.getPort());
+            client.connect();
+            assertTrue("stream not restored " + DROPS + " times; " + client.reconnector,
+                    client.restored.await(10, TimeUnit.SECONDS));
+            client.reactor.close();
+
+            assertTrue(client.reconnector.getRestores() >= DROPS);
+            assertTrue(caster.getConnections() > DROPS);
+            // the first drop can't be restored sooner than the initial backoff
+            assertTrue(client.reconnector.getMaxTimeToRestoreMillis() >= 5);
+            assertTrue(client.reconnector.getMaxGapMillis() >= client.reconnector.getMaxTimeToRestoreMillis());
+        }
+    }
+
+    /**
+     * The part of {@code Ntrip} that reconnects, without the native parser or app wiring.
+     */
+    private static class Client implements NioReactor.Listener {
+        final NioReactor reactor = new NioReactor("test reactor");
+        final Reconnector reconnector = new Reconnector(new Backoff(10, 100), reactor, this::connect);
+        final CountDownLatch restored = new CountDownLatch(DROPS + 1);
+        private final int port;
+        private boolean authorized;
+
+        Client(int port) {
+            this.port = port;
+        }
+
+        void connect() {
+            authorized = false;
+            reactor.connect("127.0.0.1", port, this);
+        }
+
+        @Override
+        public void connected(NioReactor.Connection connection) {
+            connection.write(REQUEST);
+        }
+
+        @Override
+        public void handleData(NioReactor.Connection connection, byte[] buffer, int offset, int length) {
+            if (!authorized) {
+                authorized = new String(buffer, offset, length, StandardCharsets.US_ASCII).startsWith("ICY 200 OK");
+                assertTrue(authorized);
+                reconnector.restored();
+                restored.countDown();
+            }
+            reconnector.correctionReceived();
+        }
+
+        @Override
+        public void handleException(NioReactor.Connection connection, Exception e) {
+            reconnector.connectionLost();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link Rtcm3Framer} framing, CRC-24Q validation and resyncing.
+ */
+public class Rtcm3FramerTest {
+    // RTCM 1005 example frame from the RTCM 10403 standard
+    private static final byte[] MESSAGE_1005 = {
+            (byte) 0xD3, 0x00, 0x13, 0x3E, (byte) 0xD7, (byte) 0xD3, 0x02, 0x02, (byte) 0x98, 0x0E,
+            (byte) 0xDE, (byte) 0xEF, 0x34, (byte) 0xB4, (byte) 0xBD, 0x62, (byte) 0xAC, 0x09, 0x41,
+            (byte) 0x98, 0x6F, 0x33, 0x36, 0x0B, (byte) 0x98,
+    };
+
+    private final List<byte[]> frames = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+    private final Rtcm3Framer framer = new Rtcm3Framer((buffer, offset, length, messageType) -> {
+        frames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+        types.add(messageType);
+    });
+
+    @Test
+    public void validatesStandardExample() {
+        framer.feed(MESSAGE_1005, 0, MESSAGE_1005.length);
+        assertEquals(1, frames.size());
+        assertEquals(1005, (int) types.get(0));
+        assertArrayEquals(MESSAGE_1005, frames.get(0));
+    }
+
+    @Test
+    public void reassemblesFramesSplitAcrossReads() {
+        byte[] stream = RtcmTestFrames.concat(RtcmTestFrames.frame(1077, 600), MESSAGE_1005, RtcmTestFrames.frame(1127, 300));
+        for (int offset = 0; offset < stream.length; offset += 7) {
+            framer.feed(stream, offset, Math.min(7, stream.length - offset));
+        }
+        assertEquals(Arrays.asList(1077, 1005, 1127), types);
+        assertEquals(0, framer.getSkippedBytes());
+    }
+
+    @Test
+    public void dropsCorruptFramesAndResyncs() {
+        byte[] corrupt = RtcmTestFrames.frame(1087, 100);
+        corrupt[50] ^= 0x01;
+        byte[] stream = RtcmTestFrames.concat(new byte[] { 0x00, (byte) 0xD3 }, corrupt, MESSAGE_1005);
+        framer.feed(stream, 0, stream.length);
+        assertEquals(Arrays.asList(1005), types);
+        assertTrue(framer.getCrcFailures() >= 1);
+        assertEquals(stream.length - MESSAGE_1005.length, framer.getSkippedBytes());
+    }
+}
@@ -0,0 +1,105 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link RtcmRelay} packs whole frames into a SitePoint's writes, and doesn't allocate once warmed up.
+ */
+public class RtcmRelayTest {
+    private static final int MAX_WRITE = 244;
+    private CorrectionFanout fanout;
+    private CorrectionFanout.Cursor cursor;
+
+    @Test
+    public void packsWholeFramesIntoWrites() {
+        RtcmRelay relay = newRelay(4096, MAX_WRITE);
+        byte[] a = RtcmTestFrames.frame(1005, 19);
+        byte[] b = RtcmTestFrames.frame(1077, 150);
+        byte[] c = RtcmTestFrames.frame(1087, 100);
+        byte[] stream = RtcmTestFrames.concat(a, b, c);
+        // ends mid-frame: only a and b are complete
+        relay.put(stream, 0, stream.length - 10);
+
+        assertArrayEquals(RtcmTestFrames.concat(a, b), cursor.next(MAX_WRITE));
+        assertSame(CorrectionFanout.EMPTY, cursor.next(MAX_WRITE));
+
+        relay.put(stream, stream.length - 10, 10);
+        assertArrayEquals(c, cursor.next(MAX_WRITE));
+    }
+
+    @Test
+    public void splitsOnlyFramesLongerThanAWrite() {
+        RtcmRelay relay = newRelay(4096, MAX_WRITE);
+        byte[] big = RtcmTestFrames.frame(1077, 600);
+        byte[] small = RtcmTestFrames.frame(1005, 19);
+        byte[] stream = RtcmTestFrames.concat(big, small);
+        relay.put(stream, 0, stream.length);
+
+        assertArrayEquals(Arrays.copyOfRange(big, 0, MAX_WRITE), cursor.next(MAX_WRITE));
+        assertArrayEquals(Arrays.copyOfRange(big, MAX_WRITE, 2 * MAX_WRITE), cursor.next(MAX_WRITE));
+        // the rest of the big frame leaves room for the small one
+        assertArrayEquals(RtcmTestFrames.concat(Arrays.copyOfRange(big, 2 * MAX_WRITE, big.length), small), cursor.next(MAX_WRITE));
+        assertSame(CorrectionFanout.EMPTY, cursor.next(MAX_WRITE));
+    }
+
+    @Test
+    public void skipsUnusedMessageTypes() {
+        RtcmRelay relay = newRelay(4096, MAX_WRITE);
+        byte[] ephemeris = RtcmTestFrames.frame(1019, 58);
+        byte[] msm = RtcmTestFrames.frame(1077, 100);
+        byte[] stream = RtcmTestFrames.concat(ephemeris, msm);
+        relay.put(stream, 0, stream.length);
+        assertArrayEquals(msm, cursor.next(MAX_WRITE));
+        assertEquals(1, relay.getIgnoredFrames());
+    }
+
+    @Test
+    public void dropsOldestFramesWhenFull() {
+        RtcmRelay relay = newRelay(256, MAX_WRITE);
+        byte[] a = RtcmTestFrames.frame(1074, 100);
+        byte[] b = RtcmTestFrames.frame(1084, 100);
+        byte[] c = RtcmTestFrames.frame(1094, 100);
+        byte[] stream = RtcmTestFrames.concat(a, b, c);
+        relay.put(stream, 0, stream.length);
+        assertEquals(1, fanout.getEvicted());
+        assertArrayEquals(RtcmTestFrames.concat(b, c), cursor.next(MAX_WRITE));
+    }
+
+    @Test
+    public void steadyStateRelayDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        RtcmRelay relay = newRelay(16 * 1024, 512);
+        // stand-in for the reused socket read buffer, holding one MSM7-sized frame
+        byte[] frame = RtcmTestFrames.frame(1077, 700);
+        byte[] socketBuffer = Arrays.copyOf(frame, 4096);
+
+        for (int i = 0; i < 10_000; i++) { relayFrame(relay, socketBuffer, frame.length); }
+
+        int frames = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < frames; i++) { relayFrame(relay, socketBuffer, frame.length); }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes for " + frames + " frames", allocated / frames < 1);
+    }
+
+    private RtcmRelay newRelay(int capacity, int maxWrite) {
+        fanout = new CorrectionFanout(capacity, maxWrite, 5000);
+        cursor = fanout.newCursor();
+        return new RtcmRelay(fanout);
+    }
+
+    private void relayFrame(RtcmRelay relay, byte[] socketBuffer, int length) {
+        relay.put(socketBuffer, 0, length);
+        byte[] message;
+        while ((message = cursor.next(MAX_WRITE)).length > 0) {
+            cursor.recycle(message);
+        }
+    }
+}
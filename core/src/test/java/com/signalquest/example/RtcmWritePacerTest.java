@@ -0,0 +1,82 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link RtcmWritePacer} allows one write in flight, backs off on congestion and busy
+ * refusals, and measures throughput.
+ */
+public class RtcmWritePacerTest {
+    private static final long MILLISECOND = 1_000_000L;
+    private long now = 0;
+    private final RtcmWritePacer pacer = new RtcmWritePacer(50, () -> now);
+
+    @Test
+    public void allowsOneWriteInFlight() {
+        assertTrue(pacer.mayWrite());
+        pacer.started(244);
+        assertTrue(pacer.isInFlight());
+        assertFalse(pacer.mayWrite());
+        pacer.completed();
+        assertTrue(pacer.mayWrite());
+        pacer.started(244);
+        pacer.completed();
+        assertFalse(pacer.isInFlight());
+        assertEquals(2 * 244, pacer.getBytesWritten());
+        // a stray callback counts nothing
+        pacer.completed();
+        assertEquals(2 * 244, pacer.getBytesWritten());
+        assertTrue(pacer.mayWrite());
+    }
+
+    @Test
+    public void pausesOnCongestion() {
+        pacer.started(100);
+        pacer.congested();
+        assertEquals(1, pacer.getCongestions());
+        assertFalse(pacer.isInFlight());
+        assertFalse(pacer.mayWrite());
+        assertEquals(50, pacer.getBackoffRemainingMillis());
+
+        now += 50 * MILLISECOND;
+        assertEquals(0, pacer.getBackoffRemainingMillis());
+        assertTrue(pacer.mayWrite());
+        assertEquals(0, pacer.getBytesWritten());
+    }
+
+    @Test
+    public void pausesWhenTheStackIsBusy() {
+        pacer.rejected();
+        assertEquals(50, pacer.getBackoffRemainingMillis());
+        assertFalse(pacer.mayWrite());
+        now += 50 * MILLISECOND;
+        assertTrue(pacer.mayWrite());
+        assertEquals(1, pacer.getRejections());
+
+        // refused too often, so given up on
+        pacer.dropped(200);
+        assertEquals(1, pacer.getDrops());
+        assertEquals(200, pacer.getDroppedBytes());
+        assertEquals(0, pacer.getBytesWritten());
+        assertTrue(pacer.toString(), pacer.toString().contains("1 dropped (200 bytes)"));
+    }
+
+    @Test
+    public void measuresBytesPerSecond() {
+        for (int i = 0; i <= 100; i++) {
+            pacer.started(500);
+            pacer.completed();
+            now += 10 * MILLISECOND;
+        }
+        // 100 writes of 500 bytes in the first second
+        assertEquals(50_000, pacer.getBytesPerSecond());
+
+        pacer.started(100);
+        pacer.reset();
+        assertFalse(pacer.isInFlight());
+        assertTrue(pacer.mayWrite());
+        assertTrue(pacer.toString(), pacer.toString().contains("50000 B/s"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link ScanPolicy} steps down as the SitePoint list settles, bursts for new ones, and
+ * keeps to Android's scan start limit.
+ */
+public class ScanPolicyTest {
+    private long now = 0;
+    private final ScanPolicy policy = new ScanPolicy(10_000, 30_000, 6_000, () -> now);
+
+    private void advance(long millis) {
+        now += millis * 1_000_000L;
+    }
+
+    /**
+     * Ticks each second for the period, with a result each tick.
+     *
+     * @return how many times the mode changed.
+     */
+    private int run(long millis) {
+        int changes = 0;
+        for (long t = 0; t < millis; t += 1000) {
+            advance(1000);
+            if (policy.scanned(1, 0)) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    @Test
+    public void stepsDownAsTheListSettles() {
+        policy.start();
+        assertEquals(ScanPolicy.Mode.BURST, policy.getMode());
+        assertEquals(0, run(9_000));
+        assertEquals(1, run(1_000));
+        assertEquals(ScanPolicy.Mode.BALANCED, policy.getMode());
+        // 30 s since the scan started, with nothing new
+        assertEquals(0, run(19_000));
+        assertEquals(1, run(1_000));
+        assertEquals(ScanPolicy.Mode.BATCHED, policy.getMode());
+        assertEquals(0, run(60_000));
+    }
+
+    @Test
+    public void burstsForANewSitePoint() {
+        policy.start();
+        run(40_000);
+        assertEquals(ScanPolicy.Mode.BATCHED, policy.getMode());
+        advance(5_000);
+        assertTrue(policy.scanned(3, 1));
+        assertEquals(ScanPolicy.Mode.BURST, policy.getMode());
+        run(10_000);
+        assertEquals(ScanPolicy.Mode.BALANCED, policy.getMode());
+        // the stable period runs from the new one
+        run(19_000);
+        assertEquals(ScanPolicy.Mode.BALANCED, policy.getMode());
+        run(1_000);
+        assertEquals(ScanPolicy.Mode.BATCHED, policy.getMode());
+    }
+
+    @Test
+    public void waitsOutTheMinimumBetweenChanges() {
+        policy.start();
+        run(10_000);
+        assertEquals(ScanPolicy.Mode.BALANCED, policy.getMode());
+        advance(2_000);
+        // too soon after the last restart
+        assertFalse(policy.scanned(1, 1));
+        assertEquals(ScanPolicy.Mode.BALANCED, policy.getMode());
+        advance(3_000);
+        assertFalse(policy.tick());
+        advance(1_000);
+        assertTrue(policy.tick());
+        assertEquals(ScanPolicy.Mode.BURST, policy.getMode());
+    }
+
+    @Test
+    public void countsWakeupsAndResultsPerMode() {
+        policy.start();
+        // one result a second for the burst
+        run(10_000);
+        // batches of 20 every 5 s
+        for (int i = 0; i < 12; i++) {
+            advance(5_000);
+            policy.scanned(20, 0);
+        }
+        assertEquals(ScanPolicy.Mode.BATCHED, policy.getMode());
+        assertEquals(60.0, policy.getCallbacksPerMinute(ScanPolicy.Mode.BURST), 0.01);
+        assertEquals(1.0, policy.getResultsPerWakeup(ScanPolicy.Mode.BURST), 0.01);
+        assertEquals(20.0, policy.getResultsPerWakeup(ScanPolicy.Mode.BATCHED), 0.01);
+        policy.stop();
+        assertFalse(policy.tick());
+        assertTrue(policy.report().contains("Scan BURST: 60.0 wakeups/min, 1.0 results/wakeup over 10s"));
+    }
+}
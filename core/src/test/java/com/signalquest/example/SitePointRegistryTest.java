@@ -0,0 +1,101 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link SitePointRegistry} throttles list updates and expires devices on time, however
+ * irregularly it's ticked.
+ */
+public class SitePointRegistryTest {
+    private final SitePointRegistry<String> registry = new SitePointRegistry<>(10_000, 1_000, 1_000);
+
+    @Test
+    public void keepsTheLatestInTheOrderFirstSeen() {
+        assertTrue(registry.update("A", "a1", 0, false));
+        assertTrue(registry.update("B", "b1", 10, false));
+        assertFalse(registry.update("A", "a2", 20, false));
+        assertEquals(Arrays.asList("a2", "b1"), registry.devices());
+        assertEquals("a2", registry.get("A"));
+        assertNull(registry.get("C"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void throttlesUpdatesButNotSignificantOnes() {
+        registry.update("A", "a", 0, false);
+        assertFalse(registry.update("A", "a", 500, false));
+        assertTrue(registry.update("A", "a", 500, true));
+        // the interval runs from the last change reported
+        assertFalse(registry.update("A", "a", 1_400, false));
+        assertTrue(registry.update("A", "a", 1_500, false));
+    }
+
+    @Test
+    public void expiresDevicesNotSeenForTheExpiryPeriod() {
+        registry.update("A", "a", 0, false);
+        registry.update("B", "b", 0, false);
+        for (long now = 0; now < 10_000; now += 250) {
+            if (now <= 4_000) {
+                registry.update("B", "b", now, false);
+            }
+            assertEquals(0, registry.expire(now));
+        }
+        assertEquals(1, registry.expire(10_000));
+        assertNull(registry.get("A"));
+        // B was moved along, not dropped with A
+        assertEquals(0, registry.expire(13_999));
+        assertEquals(1, registry.expire(14_000));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void expiresAfterALongGap() {
+        registry.update("A", "a", 0, false);
+        registry.update("B", "b", 5_300, false);
+        assertEquals(0, registry.expire(1_000));
+        // nothing processed in between
+        assertEquals(2, registry.expire(60_000));
+        assertEquals(0, registry.size());
+
+        registry.update("C", "c", 61_000, false);
+        assertEquals(0, registry.expire(70_999));
+        assertEquals(1, registry.expire(71_000));
+    }
+
+    @Test
+    public void forgetsEverythingOnClear() {
+        registry.update("A", "a", 0, false);
+        registry.clear();
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.expire(20_000));
+        // seen again after the clear, so the old bucketing is ignored
+        registry.update("A", "a", 20_000, false);
+        assertEquals(0, registry.expire(29_999));
+        assertEquals(1, registry.expire(30_000));
+    }
+
+    @Test
+    public void handlesManyDevices() {
+        for (int i = 0; i < 100; i++) {
+            registry.update("device " + i, "d" + i, i * 100L, false);
+        }
+        int removed = 0;
+        for (long now = 0; now <= 25_000; now += 100) {
+            // the even ones keep advertising until 15 s
+            for (int i = 0; i < 100 && now < 15_000; i += 2) {
+                registry.update("device " + i, "d" + i, now, false);
+            }
+            removed += registry.expire(now);
+            if (now == 20_000) {
+                // expiry is to the tick: the last odd one, seen at 9.9 s, goes on the tick at 20 s
+                assertEquals(50, removed);
+                assertEquals(50, registry.size());
+            }
+        }
+        assertEquals(0, registry.size());
+    }
+}
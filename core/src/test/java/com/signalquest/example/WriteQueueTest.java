@@ -0,0 +1,222 @@
+package com.signalquest.example;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link WriteQueue} gathers buffers into few writes, picks up after partial writes, and
+ * keeps every producer's records whole and in order while several threads hammer it, both on its own
+ * and behind a {@link NioReactor} connection.
+ */
+public class WriteQueueTest {
+    private static final int PRODUCERS = 8;
+    private static final int RECORDS = 20_000;
+    private static final int RECORD_LENGTH = 8;
+
+    private static ByteBuffer record(int producer, int sequence) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_LENGTH);
+        buffer.putInt(producer).putInt(sequence).flip();
+        return buffer;
+    }
+
+    @Test
+    public void gathersQueuedBuffersIntoFewWrites() throws IOException {
+        WriteQueue queue = new WriteQueue();
+        for (int i = 0; i < 40; i++) {
+            queue.offer(record(0, i));
+        }
+        assertEquals(40 * RECORD_LENGTH, queue.getQueuedBytes());
+        RecordChannel channel = new RecordChannel(Integer.MAX_VALUE);
+        assertTrue(queue.write(channel));
+        assertEquals(3, queue.getGatheringWrites());
+        assertEquals(40, channel.records);
+        assertEquals(0, queue.getQueuedBytes());
+        assertTrue(queue.isEmpty());
+        assertEquals(40 * RECORD_LENGTH, queue.getMaxQueuedBytes());
+    }
+
+    @Test
+    public void picksUpAfterPartialWrites() throws IOException {
+        WriteQueue queue = new WriteQueue();
+        for (int i = 0; i < 10; i++) {
+            queue.offer(record(0, i));
+        }
+        RecordChannel channel = new RecordChannel(5);
+        int writes = 0;
+        while (!queue.write(channel)) {
+            assertEquals(10 * RECORD_LENGTH - channel.bytes, queue.getQueuedBytes());
+            writes++;
+        }
+        // 5 bytes a call, so a record at a time at best
+        assertTrue(writes >= 10);
+        assertEquals(10, channel.records);
+        assertEquals(0, queue.getQueuedBytes());
+    }
+
+    @Test
+    public void keepsEachProducersOrderUnderContention() throws Exception {
+        WriteQueue queue = new WriteQueue();
+        RecordChannel channel = new RecordChannel(997);
+        Thread[] producers = startProducers(queue::offer);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> {
+            try {
+                while (producing.get() || !queue.isEmpty()) {
+                    queue.write(channel);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        consumer.start();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        producing.set(false);
+        consumer.join(10_000);
+
+        assertNull(channel.error);
+        assertEquals(PRODUCERS * RECORDS, channel.records);
+        assertEquals(0, queue.getQueuedBytes());
+        assertEquals((long) PRODUCERS * RECORDS * RECORD_LENGTH, queue.getWrittenBytes());
+        assertTrue(queue.getMaxQueuedBytes() > 0);
+    }
+
+    @Test
+    public void keepsEachProducersOrderThroughTheReactor() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             NioReactor reactor = new NioReactor("write reactor")) {
+            CountDownLatch connected = new CountDownLatch(1);
+            NioReactor.Connection connection = reactor.connect("127.0.0.1", server.getLocalPort(), new NioReactor.Listener() {
+                @Override
+                public void connected(NioReactor.Connection connection) {
+                    connected.countDown();
+                }
+
+                @Override
+                public void handleData(NioReactor.Connection connection, byte[] buffer, int offset, int length) {
+                }
+
+                @Override
+                public void handleException(NioReactor.Connection connection, Exception e) {
+                    // a failure shows up as missing records at the server
+                }
+            });
+            try (Socket accepted = server.accept()) {
+                assertTrue(connected.await(5, TimeUnit.SECONDS));
+                Thread[] producers = startProducers(buffer -> connection.write(buffer.array()));
+
+                int[] next = new int[PRODUCERS];
+                DataInputStream in = new DataInputStream(accepted.getInputStream());
+                for (int i = 0; i < PRODUCERS * RECORDS; i++) {
+                    int producer = in.readInt();
+                    assertEquals(next[producer]++, in.readInt());
+                }
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+                connection.close();
+            }
+            WriteQueue writes = connection.getWriteQueue();
+            assertEquals(0, writes.getQueuedBytes());
+            // a write per buffer would be one per record
+            assertTrue(writes.toString(), writes.getGatheringWrites() < PRODUCERS * RECORDS);
+        }
+    }
+
+    private interface Producer {
+        void offer(ByteBuffer buffer);
+    }
+
+    private static Thread[] startProducers(Producer producer) {
+        Thread[] threads = new Thread[PRODUCERS];
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < PRODUCERS; p++) {
+            int id = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < RECORDS; i++) {
+                    producer.offer(record(id, i));
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+        return threads;
+    }
+
+    /**
+     * Takes up to a budget of bytes a call, and checks the records it reassembles arrive in order.
+     */
+    private static class RecordChannel implements GatheringByteChannel {
+        private final int budget;
+        private final ByteBuffer pending = ByteBuffer.allocate(RECORD_LENGTH);
+        private final int[] next = new int[PRODUCERS];
+        volatile int records = 0;
+        long bytes = 0;
+        volatile String error;
+
+        RecordChannel(int budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length && written < budget; i++) {
+                ByteBuffer source = sources[i];
+                while (source.hasRemaining() && written < budget) {
+                    pending.put(source.get());
+                    written++;
+                    if (!pending.hasRemaining()) {
+                        pending.flip();
+                        int producer = pending.getInt();
+                        int sequence = pending.getInt();
+                        if (next[producer]++ != sequence && error == null) {
+                            error = "producer " + producer + " sent " + sequence + ", expected " + (next[producer] - 1);
+                        }
+                        pending.clear();
+                        records++;
+                    }
+                }
+            }
+            bytes += written;
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            return (int) write(new ByteBuffer[]{source}, 0, 1);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.signalquest.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal NTRIP caster on a loopback port for tests: answers each request with {@code ICY 200 OK}
+ * (or the given header) followed by the given stream, then hangs up, so every connection is a
+ * dropped stream.
+ * <p>
+ * Alternatively, it sends the stream as an epoch, repeated on an interval, a given number of times,
+ * and then goes quiet with the connection left open, like a stalled caster.
+ */
+class FakeCaster implements Runnable, AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final byte[] header;
+    private final byte[] stream;
+    private final long epochMillis;
+    private final int epochs;
+    private final Thread thread;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    FakeCaster(byte[] stream) throws IOException {
+        this("ICY 200 OK\r\n\r\n", stream);
+    }
+
+    FakeCaster(String header, byte[] stream) throws IOException {
+        this(header, stream, 0, 1);
+    }
+
+    /**
+     * Streams the epoch every {@code epochMillis}, {@code epochs} times, then stalls.
+     */
+    FakeCaster(byte[] epoch, long epochMillis, int epochs) throws IOException {
+        this("ICY 200 OK\r\n\r\n", epoch, epochMillis, epochs);
+    }
+
+    FakeCaster(String header, byte[] stream, long epochMillis, int epochs) throws IOException {
+        this.epochMillis = epochMillis;
+        this.epochs = epochs;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.header = header.getBytes("US-ASCII");
+        this.stream = stream;
+        this.thread = new Thread(this, "fake caster");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                readRequest(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                out.write(header);
+                out.write(stream);
+                out.flush();
+                if (epochMillis > 0) {
+                    for (int i = 1; i < epochs; i++) {
+                        Thread.sleep(epochMillis);
+                        out.write(stream);
+                        out.flush();
+                    }
+                    while (!serverSocket.isClosed()) {
+                        Thread.sleep(10);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // closed, or the client went away; either way, on to the next connection
+            }
+        }
+    }
+
+    private static void readRequest(InputStream in) throws IOException {
+        int matched = 0;
+        byte[] end = {'\r', '\n', '\r', '\n'};
+        while (matched < end.length) {
+            int b = in.read();
+            if (b == -1) {
+                throw new IOException("Request ended early");
+            }
+            matched = b == end[matched] ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
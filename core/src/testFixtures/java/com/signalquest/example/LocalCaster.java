@@ -0,0 +1,259 @@
+package com.signalquest.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process NTRIP caster on a loopback port, standing in for a live caster account in tests and
+ * load runs.
+ * <p>
+ * It answers NTRIP 1 ({@code ICY 200 OK}) and NTRIP 2 (chunked {@code HTTP/1.1}) requests, checks
+ * Basic auth on streams, and sends its sourcetable for {@code GET /} (and, as NTRIP 1 casters do,
+ * for unknown mountpoints). Each mountpoint streams a {@link SyntheticRtcm} mix at a rate, a burst
+ * of epochs at a time, on a thread per connection.
+ * <p>
+ * An epoch sent more than a period late means the client stopped keeping up: the socket's buffers
+ * had filled, so the caster's writes blocked. Those are counted in {@link #getLateEpochs()}.
+ */
+class LocalCaster implements AutoCloseable {
+    private static final int MAX_REQUEST_LENGTH = 8192;
+
+    private static final class Mountpoint {
+        final String name;
+        final SyntheticRtcm rtcm;
+        final long periodNanos;
+        final int burstEpochs;
+
+        Mountpoint(String name, SyntheticRtcm rtcm, double rateHz, int burstEpochs) {
+            this.name = name;
+            this.rtcm = rtcm;
+            this.periodNanos = (long) (1_000_000_000L / rateHz);
+            this.burstEpochs = burstEpochs;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final String authorization;
+    private final Map<String, Mountpoint> mountpoints = new ConcurrentHashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger refused = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong epochsSent = new AtomicLong();
+    private final AtomicLong lateEpochs = new AtomicLong();
+
+    LocalCaster(String username, String password) throws IOException {
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(this::accept, "local caster");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds (or replaces) a mountpoint streaming {@code rtcm} at {@code rateHz}, {@code burstEpochs}
+     * epochs back to back each period, in a single write.
+     */
+    LocalCaster mount(String name, SyntheticRtcm rtcm, double rateHz, int burstEpochs) {
+        mountpoints.put(name, new Mountpoint(name, rtcm, rateHz, burstEpochs));
+        return this;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * @return requests turned away for bad credentials, or for an unknown NTRIP 2 mountpoint.
+     */
+    int getRefused() {
+        return refused.get();
+    }
+
+    /**
+     * @return RTCM bytes sent, without any chunk framing.
+     */
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    long getEpochsSent() {
+        return epochsSent.get();
+    }
+
+    /**
+     * @return epochs sent more than a period after they were due.
+     */
+    long getLateEpochs() {
+        return lateEpochs.get();
+    }
+
+    String getSourcetable() {
+        StringBuilder table = new StringBuilder();
+        for (Mountpoint mountpoint : mountpoints.values()) {
+            int bitsPerSecond = (int) (mountpoint.rtcm.epoch(1).length * 8 * 1_000_000_000L / mountpoint.periodNanos);
+            table.append(String.format(Locale.US, "STR;%s;%s;RTCM 3.3;%s;2;GPS+GLO+GAL+BDS;LOCAL;XXX;0.00;0.00;0;0;LocalCaster;none;B;N;%d;\r\n",
+                    mountpoint.name, mountpoint.name, mountpoint.rtcm.getFormatDetails(), bitsPerSecond));
+        }
+        return table.append("ENDSOURCETABLE\r\n").toString();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                clients.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "local caster client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket ignored = socket) {
+            String[] request = readRequest(socket.getInputStream()).split("\r\n");
+            String[] requestLine = request[0].split(" ");
+            String path = requestLine.length > 1 ? requestLine[1] : "/";
+            boolean version2 = false;
+            String credentials = null;
+            for (int i = 1; i < request.length; i++) {
+                String header = request[i].toLowerCase(Locale.US);
+                if (header.startsWith("ntrip-version:") && header.contains("ntrip/2.0")) {
+                    version2 = true;
+                } else if (header.startsWith("authorization:")) {
+                    credentials = request[i].substring("authorization:".length()).trim();
+                }
+            }
+            OutputStream out = socket.getOutputStream();
+            Mountpoint mountpoint = mountpoints.get(path.startsWith("/") ? path.substring(1) : path);
+            if (mountpoint == null) {
+                if (version2 && !path.equals("/")) {
+                    refused.incrementAndGet();
+                    write(out, "HTTP/1.1 404 Not Found\r\nNtrip-Version: Ntrip/2.0\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+                } else {
+                    sendSourcetable(out, version2);
+                }
+            } else if (!authorization.equals(credentials)) {
+                refused.incrementAndGet();
+                write(out, version2
+                        ? "HTTP/1.1 401 Unauthorized\r\nNtrip-Version: Ntrip/2.0\r\nWWW-Authenticate: Basic realm=\"/" + mountpoint.name + "\"\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                        : "HTTP/1.0 401 Unauthorized\r\n\r\n");
+            } else {
+                write(out, version2
+                        ? "HTTP/1.1 200 OK\r\nNtrip-Version: Ntrip/2.0\r\nContent-Type: gnss/data\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n"
+                        : "ICY 200 OK\r\n\r\n");
+                stream(out, mountpoint, version2);
+            }
+        } catch (IOException e) {
+            // closed, or the client went away
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    private void sendSourcetable(OutputStream out, boolean version2) throws IOException {
+        byte[] table = getSourcetable().getBytes(StandardCharsets.US_ASCII);
+        write(out, (version2
+                ? "HTTP/1.1 200 OK\r\nNtrip-Version: Ntrip/2.0\r\nContent-Type: gnss/sourcetable\r\n"
+                : "SOURCETABLE 200 OK\r\nContent-Type: text/plain\r\n")
+                + "Content-Length: " + table.length + "\r\nConnection: close\r\n\r\n");
+        out.write(table);
+        out.flush();
+    }
+
+    /**
+     * Sends bursts on the mountpoint's schedule until the client goes away or the caster closes.
+     */
+    private void stream(OutputStream out, Mountpoint mountpoint, boolean chunked) throws IOException {
+        byte[] burst = new byte[0];
+        long epoch = 0;
+        long due = System.nanoTime();
+        while (!serverSocket.isClosed()) {
+            int length = 0;
+            for (int i = 0; i < mountpoint.burstEpochs; i++) {
+                length += mountpoint.rtcm.epoch(epoch + i).length;
+            }
+            if (burst.length < length) {
+                burst = new byte[length];
+            }
+            int offset = 0;
+            for (int i = 0; i < mountpoint.burstEpochs; i++) {
+                byte[] frames = mountpoint.rtcm.epoch(epoch++);
+                System.arraycopy(frames, 0, burst, offset, frames.length);
+                offset += frames.length;
+            }
+            if (chunked) {
+                out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            }
+            out.write(burst, 0, length);
+            if (chunked) {
+                out.write('\r');
+                out.write('\n');
+            }
+            out.flush();
+            bytesSent.addAndGet(length);
+            epochsSent.addAndGet(mountpoint.burstEpochs);
+            long now = System.nanoTime();
+            if (now - due > mountpoint.periodNanos) {
+                lateEpochs.addAndGet(mountpoint.burstEpochs);
+                // start over from now, rather than bursting to catch up
+                due = now;
+            }
+            due += mountpoint.periodNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0 && !serverSocket.isClosed()) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private static void write(OutputStream out, String response) throws IOException {
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static String readRequest(InputStream in) throws IOException {
+        StringBuilder request = new StringBuilder();
+        int matched = 0;
+        byte[] end = {'\r', '\n', '\r', '\n'};
+        while (matched < end.length) {
+            int b = in.read();
+            if (b == -1 || request.length() > MAX_REQUEST_LENGTH) {
+                throw new IOException("Request ended early");
+            }
+            request.append((char) b);
+            matched = b == end[matched] ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return request.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+    }
+}
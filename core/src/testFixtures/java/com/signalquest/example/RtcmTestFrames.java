@@ -0,0 +1,39 @@
+package com.signalquest.example;
+
+/**
+ * Builds valid RTCM3 frames for tests.
+ */
+class RtcmTestFrames {
+
+    /**
+     * @return a frame of the given message type, with {@code payloadLength} bytes of payload.
+     */
+    static byte[] frame(int messageType, int payloadLength) {
+        byte[] frame = new byte[Rtcm3Framer.HEADER_LENGTH + payloadLength + Rtcm3Framer.CRC_LENGTH];
+        frame[0] = (byte) Rtcm3Framer.PREAMBLE;
+        frame[1] = (byte) (payloadLength >>> 8);
+        frame[2] = (byte) payloadLength;
+        frame[3] = (byte) (messageType >>> 4);
+        frame[4] = (byte) (messageType << 4);
+        for (int i = 5; i < Rtcm3Framer.HEADER_LENGTH + payloadLength; i++) {
+            frame[i] = (byte) (i * 31);
+        }
+        int crc = Rtcm3Framer.crc24q(frame, 0, Rtcm3Framer.HEADER_LENGTH + payloadLength);
+        frame[frame.length - 3] = (byte) (crc >>> 16);
+        frame[frame.length - 2] = (byte) (crc >>> 8);
+        frame[frame.length - 1] = (byte) crc;
+        return frame;
+    }
+
+    static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) { length += part.length; }
+        byte[] joined = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, joined, offset, part.length);
+            offset += part.length;
+        }
+        return joined;
+    }
+}
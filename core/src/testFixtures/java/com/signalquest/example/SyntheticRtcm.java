@@ -0,0 +1,122 @@
+package com.signalquest.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A synthetic RTCM3 stream's message mix: the station position (1005) every so many epochs, and
+ * MSM4 or MSM7 observations for each constellation, each frame sized as a real base's would be for
+ * the satellites and signals given. Payloads are filler, but every frame passes its CRC.
+ */
+class SyntheticRtcm {
+    static final int STATION_TYPE = 1005;
+    private static final int STATION_PAYLOAD_LENGTH = 19;
+
+    enum Constellation {
+        GPS(1070), GLONASS(1080), GALILEO(1090), BEIDOU(1120);
+
+        final int msmBase;
+
+        Constellation(int msmBase) {
+            this.msmBase = msmBase;
+        }
+    }
+
+    private final List<byte[]> observations = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+    private int stationEvery = 0;
+    private byte[] withStation;
+    private byte[] withoutStation;
+
+    /**
+     * 1005 every 10 epochs and MSM7 on two signals for all four constellations, like a multi-band base.
+     */
+    static SyntheticRtcm msm7Base() {
+        return new SyntheticRtcm().station(10)
+                .msm(7, Constellation.GPS, 10, 2).msm(7, Constellation.GLONASS, 7, 2)
+                .msm(7, Constellation.GALILEO, 8, 2).msm(7, Constellation.BEIDOU, 10, 2);
+    }
+
+    /**
+     * 1005 every 10 epochs and MSM4 on one signal for GPS and GLONASS, like a single-band base.
+     */
+    static SyntheticRtcm msm4Base() {
+        return new SyntheticRtcm().station(10)
+                .msm(4, Constellation.GPS, 10, 1).msm(4, Constellation.GLONASS, 7, 1);
+    }
+
+    /**
+     * Sends the station position in the first epoch and every {@code everyEpochs} after.
+     */
+    SyntheticRtcm station(int everyEpochs) {
+        if (stationEvery == 0) {
+            types.add(0, STATION_TYPE);
+        }
+        stationEvery = everyEpochs;
+        withStation = null;
+        return this;
+    }
+
+    /**
+     * Adds an MSM4 or MSM7 message for the constellation to every epoch.
+     */
+    SyntheticRtcm msm(int level, Constellation constellation, int satellites, int signals) {
+        if (level != 4 && level != 7) {
+            throw new IllegalArgumentException("MSM" + level + " not supported, only MSM4 and MSM7");
+        }
+        int type = constellation.msmBase + level;
+        observations.add(RtcmTestFrames.frame(type, msmPayloadLength(level, satellites, signals)));
+        types.add(type);
+        withStation = null;
+        return this;
+    }
+
+    /**
+     * Bits, per the RTCM 10403 MSM layout: the header with its satellite, signal and cell masks,
+     * then the satellite data and the signal data per cell.
+     */
+    static int msmPayloadLength(int level, int satellites, int signals) {
+        int cells = satellites * signals;
+        if (satellites > 64 || signals > 32 || cells > 64) {
+            throw new IllegalArgumentException(satellites + " satellites on " + signals + " signals won't fit an MSM");
+        }
+        int satelliteBits = level == 7 ? 36 : 18;
+        int cellBits = level == 7 ? 80 : 48;
+        int bits = 169 + cells + satellites * satelliteBits + cells * cellBits;
+        return (bits + 7) / 8;
+    }
+
+    /**
+     * @return the epoch's frames, back to back; shared, so don't change it.
+     */
+    byte[] epoch(long index) {
+        if (withStation == null) {
+            withoutStation = RtcmTestFrames.concat(observations.toArray(new byte[0][]));
+            withStation = stationEvery == 0 ? withoutStation : RtcmTestFrames.concat(
+                    RtcmTestFrames.frame(STATION_TYPE, STATION_PAYLOAD_LENGTH), withoutStation);
+        }
+        return stationEvery != 0 && index % stationEvery == 0 ? withStation : withoutStation;
+    }
+
+    /**
+     * @return the message types, station first, as a sourcetable's format details.
+     */
+    String getFormatDetails() {
+        StringBuilder details = new StringBuilder();
+        for (int type : types) {
+            if (details.length() > 0) {
+                details.append(',');
+            }
+            details.append(type).append(type == STATION_TYPE ? "(" + stationEvery + ")" : "(1)");
+        }
+        return details.toString();
+    }
+
+    int[] getMessageTypes() {
+        int[] messageTypes = new int[types.size()];
+        for (int i = 0; i < messageTypes.length; i++) {
+            messageTypes[i] = types.get(i);
+        }
+        return messageTypes;
+    }
+}
@@ -23,3 +23,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "SitePoint Java Example"
 include(":app")
+include(":core")
+include(":benchmarks")